@@ -2,6 +2,13 @@ package niconoggi.clientserver.base;
 
 import java.net.Socket;
 
+import javax.management.ObjectName;
+
+import niconoggi.clientserver.compression.Compression;
+import niconoggi.clientserver.metrics.ComponentMetrics;
+import niconoggi.clientserver.metrics.MetricsRegistry;
+import niconoggi.clientserver.protocol.FrameValues;
+
 /**
  * An abstract implementation of the {@link CommunicationComponent} interface.
  * It provides a {@link Socket} and information about host ip and port
@@ -14,6 +21,13 @@ public abstract class AbstractClient implements CommunicationComponent{
 	protected Socket socket;
 	protected String host;
 	protected int port;
+	/** the compression of written payloads, null if they are written as they are */
+	protected Compression compression;
+	/** the payload length of the chunks of streamed messages */
+	protected int chunkLength = FrameValues.DEFAULT_CHUNK_LENGTH;
+	/** the metrics of the client, only registered over JMX if asked to */
+	protected ComponentMetrics metrics = new ComponentMetrics();
+	private ObjectName metricsName;
 	
 	public AbstractClient() {}
 	
@@ -30,6 +44,36 @@ public abstract class AbstractClient implements CommunicationComponent{
 		setPort(port);
 	} 
 	
+	/**
+	 * @return the metrics of the client
+	 */
+	public ComponentMetrics getMetrics() {
+		return metrics;
+	}
+	
+	/**
+	 * sets the metrics the client records into, so several clients can record into the same
+	 * @param metrics the metrics to record into
+	 */
+	public void setMetrics(final ComponentMetrics metrics) {
+		this.metrics = metrics;
+	}
+	
+	/**
+	 * registers the metrics of the client over JMX. Clients are not registered
+	 * by default, as short lived clients would fill the MBean server
+	 * @param name the name of the client, unique among all clients registered
+	 */
+	public void registerMetrics(final String name) {
+		unregisterMetrics();
+		metricsName = MetricsRegistry.register(MetricsRegistry.TYPE_CLIENT, name, metrics);
+	}
+	
+	public void unregisterMetrics() {
+		MetricsRegistry.unregister(metricsName);
+		metricsName = null;
+	}
+	
 	public String getHost() {
 		return host;
 	}
@@ -46,6 +90,30 @@ public abstract class AbstractClient implements CommunicationComponent{
 		this.port = port;
 	}
 	
+	public int getChunkLength() {
+		return chunkLength;
+	}
+	
+	/**
+	 * @param chunkLength the payload length of the chunks streamed messages are written in
+	 */
+	public void setChunkLength(final int chunkLength) {
+		this.chunkLength = chunkLength;
+	}
+	
+	public Compression getCompression() {
+		return compression;
+	}
+	
+	/**
+	 * sets the compression stage applied to written payloads. Compressed payloads
+	 * are always decompressed when reading, whether this is set or not
+	 * @param compression the compression stage or null, to write payloads as they are
+	 */
+	public void setCompression(final Compression compression) {
+		this.compression = compression;
+	}
+	
 	@Override
 	public boolean equals(final Object obj) {
 		if(obj == null) {
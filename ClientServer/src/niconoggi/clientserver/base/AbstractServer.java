@@ -1,8 +1,17 @@
 package niconoggi.clientserver.base;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
+import java.nio.channels.ServerSocketChannel;
 
+import javax.management.ObjectName;
+
+import niconoggi.clientserver.compression.Compression;
+import niconoggi.clientserver.metrics.ComponentMetrics;
+import niconoggi.clientserver.metrics.MetricsRegistry;
+import niconoggi.clientserver.protocol.FrameValues;
+import niconoggi.clientserver.server.Acceptor;
 import niconoggi.clientserver.server.ServerValues;
 
 /**
@@ -19,6 +28,18 @@ public abstract class AbstractServer implements CommunicationComponent{
 	protected int connectTimeout = ServerValues.DEFAULT_CONNECTION_TIMEOUT;
 	protected int maxRetries = ServerValues.DEFAULT_CONNECTION_RETRIES;
 	protected int connectionRetries;
+	protected int ioTimeout = ServerValues.DEFAULT_IO_TIMEOUT;
+	/** the compression of written payloads, null if they are written as they are */
+	protected Compression compression;
+	/** the payload length of the chunks of streamed messages */
+	protected int chunkLength = FrameValues.DEFAULT_CHUNK_LENGTH;
+	protected int backlog = ServerValues.DEFAULT_BACKLOG;
+	protected int acceptQueueCapacity = ServerValues.DEFAULT_ACCEPT_QUEUE_CAPACITY;
+	/** the acceptor of servers accepting on a thread of its own, null for all others */
+	protected Acceptor acceptor;
+	/** the metrics of the server, registered over JMX while the server runs */
+	protected final ComponentMetrics metrics = new ComponentMetrics();
+	private ObjectName metricsName;
 	
 	public AbstractServer() {}
 	
@@ -31,14 +52,19 @@ public abstract class AbstractServer implements CommunicationComponent{
 	}
 	
 	/**
-	 * Starts the server by initializing the {@link ServerSocket}.
+	 * Starts the server by initializing the {@link ServerSocket}. It belongs to
+	 * a {@link ServerSocketChannel}, so the accepted sockets have channels, which
+	 * lets them send files without copying, see {@link niconoggi.clientserver.util.FileTransferUtil}.
 	 * <p>
 	 * NOTE: This start method assumes the port is already set
 	 * @throws IOException an error when instanciating the {@link ServerSocket}.
 	 * 						could happen if the given port is already bound
 	 */
 	public void start() throws IOException{
-		server = new ServerSocket(port);
+		final ServerSocketChannel channel = ServerSocketChannel.open();
+		channel.bind(new InetSocketAddress(port), backlog);
+		server = channel.socket();
+		registerMetrics();
 	}
 	
 	/**
@@ -58,7 +84,44 @@ public abstract class AbstractServer implements CommunicationComponent{
 	 */
 	public void stop() throws IOException{
 		disconnect();
-		server.close();
+		if(acceptor != null) {
+			acceptor.close();
+		}
+		if(server != null) {
+			server.close();
+		}
+		unregisterMetrics();
+	}
+	
+	/**
+	 * starts an {@link Acceptor} accepting from the {@link ServerSocket}
+	 * on a thread of its own. Servers using it take their clients from it
+	 * instead of accepting themselves
+	 */
+	protected void startAcceptor() {
+		acceptor = new Acceptor(server, acceptQueueCapacity, metrics);
+		acceptor.start();
+	}
+	
+	/**
+	 * registers the metrics over JMX, named after the class and the port the server is bound to,
+	 * which is the port the system chose if the port is 0, so every running server has a name of its own
+	 */
+	protected void registerMetrics() {
+		final int boundPort = server != null && server.isBound() ? server.getLocalPort() : port;
+		metricsName = MetricsRegistry.register(MetricsRegistry.TYPE_SERVER, getClass().getSimpleName() + "-" + boundPort, metrics);
+	}
+	
+	protected void unregisterMetrics() {
+		MetricsRegistry.unregister(metricsName);
+		metricsName = null;
+	}
+	
+	/**
+	 * @return the metrics of the server
+	 */
+	public ComponentMetrics getMetrics() {
+		return metrics;
 	}
 	
 	public int getPort() {
@@ -89,6 +152,77 @@ public abstract class AbstractServer implements CommunicationComponent{
 		connectTimeout = timeout;
 	}
 	
+	public int getIoTimeout() {
+		return ioTimeout;
+	}
+	
+	/**
+	 * sets the time in milliseconds servers reading or writing with
+	 * multiple clients at once wait at most for all clients to finish
+	 * @param timeout the timeout in milliseconds
+	 */
+	public void setIoTimeout(final int timeout) {
+		ioTimeout = timeout;
+	}
+	
+	public int getBacklog() {
+		return backlog;
+	}
+	
+	/**
+	 * sets the amount of pending connections the operating system queues
+	 * for the server. Only applies to servers started afterwards
+	 * @param backlog the backlog, 0 or less for the default of the operating system
+	 */
+	public void setBacklog(final int backlog) {
+		this.backlog = backlog;
+	}
+	
+	public int getAcceptQueueCapacity() {
+		return acceptQueueCapacity;
+	}
+	
+	/**
+	 * sets the amount of accepted clients waiting to be taken by the server.
+	 * Only applies to servers started afterwards
+	 * @param capacity the capacity of the queue of the {@link Acceptor}
+	 */
+	public void setAcceptQueueCapacity(final int capacity) {
+		acceptQueueCapacity = capacity;
+	}
+	
+	/**
+	 * @return the acceptor with its accept metrics, null if the server does
+	 * 			not accept on a thread of its own or is not started
+	 */
+	public Acceptor getAcceptor() {
+		return acceptor;
+	}
+	
+	public int getChunkLength() {
+		return chunkLength;
+	}
+	
+	/**
+	 * @param chunkLength the payload length of the chunks streamed messages are written in
+	 */
+	public void setChunkLength(final int chunkLength) {
+		this.chunkLength = chunkLength;
+	}
+	
+	public Compression getCompression() {
+		return compression;
+	}
+	
+	/**
+	 * sets the compression stage applied to written payloads. Compressed payloads
+	 * are always decompressed when reading, whether this is set or not
+	 * @param compression the compression stage or null, to write payloads as they are
+	 */
+	public void setCompression(final Compression compression) {
+		this.compression = compression;
+	}
+	
 	@Override
 	public boolean equals(final Object obj) {
 		if(obj == null){
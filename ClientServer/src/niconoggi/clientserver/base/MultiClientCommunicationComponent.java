@@ -0,0 +1,40 @@
+package niconoggi.clientserver.base;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * An extension of {@link CommunicationComponent} for components
+ * communicating with multiple partners at once. The data that is written
+ * is the same for all partners, the read data is kept per partner.
+ * @author niconoggi
+ *
+ */
+public interface MultiClientCommunicationComponent extends CommunicationComponent {
+
+	/**
+	 * sets the data that will be written to all partners on the next write
+	 * @param dataToWrite the data to write
+	 */
+	void setDataToWrite(final byte[] dataToWrite);
+	
+	/**
+	 * sets an already encoded frame that will be written to all partners on the
+	 * next write. Every partner gets a read-only view of the same buffer, so
+	 * the frame is neither encoded nor copied per partner
+	 * @param frame the complete frame, header and payload, ready to be read from
+	 */
+	void setFrameToWrite(final ByteBuffer frame);
+	
+	/**
+	 * @return the data read from the partners during the last read,
+	 * 			one entry per partner
+	 */
+	List<byte[]> getReadData();
+	
+	/**
+	 * @param clientNumber the index of the partner
+	 * @return the data read from the given partner during the last read
+	 */
+	byte[] getSpecificReadData(final int clientNumber);
+}
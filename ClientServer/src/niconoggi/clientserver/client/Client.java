@@ -1,16 +1,38 @@
 package niconoggi.clientserver.client;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.concurrent.Flow;
 
 import niconoggi.clientserver.base.AbstractClient;
+import niconoggi.clientserver.codec.Codec;
+import niconoggi.clientserver.protocol.ChunkPublisher;
+import niconoggi.clientserver.protocol.ChunkedInputStream;
+import niconoggi.clientserver.protocol.ChunkedOutputStream;
+import niconoggi.clientserver.protocol.FrameBuffer;
+import niconoggi.clientserver.protocol.MessageFrame;
+import niconoggi.clientserver.util.FileTransferUtil;
+import niconoggi.clientserver.util.FramingUtil;
 
 /**
  * A basic extension of {@link AbstractClient}.
  * It provides basic implementations for connect, disconnect,
- * read and write. written and read data is stored in a byte array
+ * read and write. written and read data is stored in a byte array.
+ * <p>
+ * Data is sent as {@link MessageFrame}s, so reading and writing does not
+ * close the socket and many messages can be exchanged per connection.
+ * <p>
+ * Messages too long to hold as a whole are streamed in chunks instead, see
+ * {@link #writeStream(InputStream)} and {@link #readStream()}, files are sent and
+ * received without passing the heap, see {@link #sendFile(Path)} and {@link #receiveFile(Path)}.
+ * <p>
+ * With a {@link ClientConnectionPool} set, connect borrows a connection
+ * of the pool and disconnect gives it back instead of closing it.
  * @author niconoggi
  *
  */
@@ -18,6 +40,11 @@ public class Client extends AbstractClient{
 
 	protected byte[] dataToWrite;
 	protected byte[] readData;
+	protected final FrameBuffer readBuffer = new FrameBuffer();
+	protected final FrameBuffer writeBuffer = new FrameBuffer();
+	protected ClientConnectionPool connectionPool;
+	/** whether an exchange failed, so the connection must not be given back to the pool */
+	private boolean broken;
 	
 	public Client() {}
 	
@@ -35,40 +62,225 @@ public class Client extends AbstractClient{
 	
 	@Override
 	public void connect() throws IOException {
-		socket = new Socket(host, port);
+		if(connectionPool == null) {
+			socket = SocketChannel.open(new InetSocketAddress(host, port)).socket();
+			metrics.recordConnect();
+			return;
+		}
+		if(socket != null) {
+			disconnect();
+		}
+		socket = connectionPool.borrow(host, port);
+		broken = false;
+		metrics.recordConnect();
 	}
 
 	@Override
 	public void write() throws IOException {
-		final DataOutputStream out = new DataOutputStream(socket.getOutputStream());
-		out.write(dataToWrite);
-		out.flush();
-		out.close();
+		try {
+			if(dataToWrite == null && !writeBuffer.isEmpty()) {
+				if(compression != null) {
+					writeBuffer.compress(compression);
+				}
+				writeBuffer.writeTo(socket.getOutputStream());
+				metrics.recordSent(writeBuffer.getPayloadLength());
+				return;
+			}
+			metrics.recordSent(FramingUtil.writeData(socket.getOutputStream(), dataToWrite, compression));
+		} catch (IOException e) {
+			broken = true;
+			throw e;
+		}
 	}
 
 	@Override
 	public void read() throws IOException {
-		final DataInputStream in = new DataInputStream(socket.getInputStream());
-		readData = in.readAllBytes();
-		in.close();
+		try {
+			readBuffer.readFrom(socket.getInputStream());
+			metrics.recordReceived(readBuffer.getReceivedLength());
+		} catch (IOException e) {
+			broken = true;
+			throw e;
+		}
+		readData = null;
 	}
 
+	/**
+	 * closes the socket or, if it was borrowed from a {@link ClientConnectionPool},
+	 * gives it back. A borrowed socket whose last exchange failed is closed
+	 */
 	@Override
 	public void disconnect() throws IOException {
+		if(socket != null && connectionPool != null) {
+			if(broken) {
+				connectionPool.invalidate(socket);
+			} else {
+				connectionPool.release(socket);
+			}
+			socket = null;
+			return;
+		}
 		if(socket != null && !socket.isClosed()) {
 			socket.close();
 		}
 		socket = null;
 	}
 	
+	/**
+	 * writes the given data as a streamed message, in chunks of the chunk length,
+	 * so the data is never held as a whole. Blocks while the other side does not keep up
+	 * @param data the data to write, which is read until its end but not closed
+	 * @return the amount of written bytes, before compressing
+	 * @throws IOException an error occuring while reading the data or writing
+	 */
+	public long writeStream(final InputStream data) throws IOException {
+		final ChunkedOutputStream out = openWriteStream();
+		data.transferTo(out);
+		out.close();
+		return out.getWritten();
+	}
+	
+	/**
+	 * opens a streamed message to write. Closing the returned stream ends the message,
+	 * nothing else may be written until then
+	 * @return the stream writing the message in chunks of the chunk length
+	 */
+	public ChunkedOutputStream openWriteStream() {
+		final Socket connected = socket;
+		return new ChunkedOutputStream(frame -> writeChunk(connected, frame), chunkLength, compression);
+	}
+	
+	/**
+	 * reads the next message as a stream, chunk by chunk as the returned stream is read,
+	 * so the message is never held as a whole. Nothing else may be read until the
+	 * returned stream is at its end or closed
+	 * @return the stream of the next message
+	 */
+	public ChunkedInputStream readStream() {
+		final Socket connected = socket;
+		return new ChunkedInputStream(() -> readChunk(connected));
+	}
+	
+	/**
+	 * reads the next message as the chunks a {@link Flow.Publisher} publishes,
+	 * as its subscriber requests them, see {@link #readStream()}
+	 * @return the publisher of the chunks of the next message
+	 */
+	public Flow.Publisher<ByteBuffer> readPublisher() {
+		return new ChunkPublisher(readStream());
+	}
+	
+	/**
+	 * sends the given file as a streamed message, without reading it into the heap,
+	 * see {@link FileTransferUtil}. The other side reads it like any streamed message
+	 * @param file the file to send
+	 * @return the amount of sent bytes
+	 * @throws IOException an error occuring while reading the file or sending
+	 */
+	public long sendFile(final Path file) throws IOException {
+		try {
+			return FileTransferUtil.sendFile(socket, file, chunkLength, metrics);
+		} catch (IOException e) {
+			broken = true;
+			throw e;
+		}
+	}
+	
+	/**
+	 * receives the next message into the given file, without reading it into the heap,
+	 * see {@link FileTransferUtil}. The message may be any streamed or plain message
+	 * @param file the file to write to, replacing its content
+	 * @return the amount of received bytes
+	 * @throws IOException an error occuring while receiving or writing the file
+	 */
+	public long receiveFile(final Path file) throws IOException {
+		try {
+			return FileTransferUtil.receiveFile(socket, file, metrics);
+		} catch (IOException e) {
+			broken = true;
+			throw e;
+		}
+	}
+	
+	private void writeChunk(final Socket connected, final MessageFrame frame) throws IOException {
+		try {
+			FramingUtil.writeFrame(connected.getOutputStream(), frame);
+		} catch (IOException e) {
+			broken = true;
+			throw e;
+		}
+		metrics.recordSent(frame.getPayload().length);
+	}
+	
+	private MessageFrame readChunk(final Socket connected) throws IOException {
+		final MessageFrame frame;
+		try {
+			frame = FramingUtil.readFrame(connected.getInputStream());
+		} catch (IOException e) {
+			broken = true;
+			throw e;
+		}
+		metrics.recordReceived(frame.getPayload().length);
+		return frame;
+	}
+
+	public ClientConnectionPool getConnectionPool() {
+		return connectionPool;
+	}
+	
+	/**
+	 * sets the pool connect borrows connections from. Should not be changed while connected
+	 * @param connectionPool the pool to use or null, to open a new connection every time
+	 */
+	public void setConnectionPool(final ClientConnectionPool connectionPool) {
+		this.connectionPool = connectionPool;
+	}
+	
 	public void setDataToWrite(final byte[] data) {
 		dataToWrite = data;
+		writeBuffer.clear();
 	}
 	
+	/**
+	 * encodes the given data as the data to write, directly into a
+	 * reused buffer, so no arrays are allocated for it
+	 * @param <D> the type of the data
+	 * @param codec the codec to encode with
+	 * @param data the data to write
+	 * @throws IOException an error occuring while encoding
+	 */
+	public <D> void encodeDataToWrite(final Codec<D> codec, final D data) throws IOException {
+		dataToWrite = null;
+		final long start = System.nanoTime();
+		writeBuffer.encode(codec, data);
+		metrics.recordEncode(start);
+	}
+	
+	/**
+	 * @return the read data, copied out of the read buffer on first use
+	 */
 	public byte[] getReadData() {
+		if(readData == null && !readBuffer.isEmpty()) {
+			readData = readBuffer.copyPayload();
+		}
 		return readData;
 	}
 	
+	/**
+	 * decodes the read data directly out of the read buffer,
+	 * so no arrays are allocated for it
+	 * @param <D> the type of the data
+	 * @param codec the codec to decode with
+	 * @return the decoded read data
+	 * @throws IOException an error occuring while decoding or if nothing was read yet
+	 */
+	public <D> D decodeReadData(final Codec<D> codec) throws IOException {
+		final long start = System.nanoTime();
+		final D decoded = readBuffer.decode(codec);
+		metrics.recordDecode(start);
+		return decoded;
+	}
+	
 	@Override
 	public boolean equals(final Object obj) {
 		if(!super.equals(obj)) {
@@ -0,0 +1,349 @@
+package niconoggi.clientserver.client;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps connections to servers open, so clients exchanging many messages with
+ * the same server do not pay for connecting every time and do not leave a closed
+ * socket in TIME_WAIT behind for every exchange. A {@link Client} with a pool
+ * borrows a connection on connect and gives it back on disconnect.
+ * <p>
+ * Connections are pooled per endpoint, which is the pair of host and port:
+ * <ul>
+ * <li>at most the given amount of connections per endpoint is open at the same time,
+ * borrowing waits for one to be given back if all of them are in use</li>
+ * <li>the connection given back last is borrowed first, so few connections stay warm</li>
+ * <li>before a connection is handed out it is checked without blocking, so connections
+ * the server closed or that have unexpected data pending are replaced by new ones</li>
+ * <li>connections unused for longer than the idle timeout are closed by a background thread,
+ * which is started by {@link #start()} or by the first borrow</li>
+ * </ul>
+ * Pooling only pays off with servers keeping connections open between messages,
+ * such as servers running in a session or the {@link niconoggi.clientserver.server.ThreadPerClientServer}.
+ * <p>
+ * A pool is thread safe and meant to be shared by many clients.
+ * @author niconoggi
+ *
+ */
+public class ClientConnectionPool implements Closeable {
+
+	private final int maxConnectionsPerEndpoint;
+	private final int idleTimeout;
+	private final int borrowTimeout;
+
+	private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<String, Endpoint>();
+	private final Map<Socket, Endpoint> borrowed = new ConcurrentHashMap<Socket, Endpoint>();
+	private ScheduledExecutorService evictor;
+	private volatile boolean closed;
+
+	public ClientConnectionPool() {
+		this(ClientValues.DEFAULT_MAX_CONNECTIONS_PER_ENDPOINT, ClientValues.DEFAULT_IDLE_TIMEOUT,
+				ClientValues.DEFAULT_BORROW_TIMEOUT);
+	}
+
+	/**
+	 * @param maxConnectionsPerEndpoint the amount of connections open per endpoint at most
+	 * @param idleTimeout the time in milliseconds an unused connection stays open
+	 * @param borrowTimeout the time in milliseconds borrowing waits if all connections of an endpoint are in use
+	 */
+	public ClientConnectionPool(final int maxConnectionsPerEndpoint, final int idleTimeout, final int borrowTimeout) {
+		this.maxConnectionsPerEndpoint = maxConnectionsPerEndpoint;
+		this.idleTimeout = idleTimeout;
+		this.borrowTimeout = borrowTimeout;
+	}
+
+	/**
+	 * starts the background thread closing idle connections, if it is not running yet.
+	 * Borrowing starts it as well, so calling this is only needed to start it earlier
+	 * @return this pool
+	 */
+	public synchronized ClientConnectionPool start() {
+		if(evictor == null && !closed) {
+			evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				final Thread thread = new Thread(runnable, "connection-pool-evictor");
+				thread.setDaemon(true);
+				return thread;
+			});
+			final long period = Math.max(1, idleTimeout / 2);
+			evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+		}
+		return this;
+	}
+
+	/**
+	 * hands out an open connection to the given endpoint, which is either
+	 * an unused pooled one or a new one
+	 * @param host the host to connect to
+	 * @param port the port to connect to
+	 * @return the connection, which has to be given back by {@link #release(Socket)} or {@link #invalidate(Socket)}
+	 * @throws IOException an error occuring while connecting, or a {@link SocketTimeoutException}
+	 * 						if all connections of the endpoint stayed in use for the borrow timeout
+	 */
+	public Socket borrow(final String host, final int port) throws IOException {
+		if(closed) {
+			throw new IOException("the connection pool is closed");
+		}
+		if(evictor == null) {
+			start();
+		}
+		final Endpoint endpoint = endpoints.computeIfAbsent(host + ":" + port, key -> new Endpoint(host, port));
+		try {
+			if(!endpoint.permits.tryAcquire(borrowTimeout, TimeUnit.MILLISECONDS)) {
+				throw new SocketTimeoutException("all " + maxConnectionsPerEndpoint + " connections to "
+						+ host + ":" + port + " are in use");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted while waiting for a connection");
+		}
+		try {
+			Socket socket = null;
+			Idle idle;
+			while(socket == null && (idle = endpoint.idle.pollFirst()) != null) {
+				if(isUsable(idle.socket)) {
+					socket = idle.socket;
+				} else {
+					closeQuietly(idle.socket);
+				}
+			}
+			if(socket == null) {
+				socket = open(host, port);
+			}
+			borrowed.put(socket, endpoint);
+			return socket;
+		} catch (IOException | RuntimeException e) {
+			endpoint.permits.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * gives a borrowed connection back, so it can be borrowed again. A connection
+	 * that is not usable anymore or was not borrowed from this pool is closed instead
+	 * @param socket the connection to give back
+	 */
+	public void release(final Socket socket) {
+		final Endpoint endpoint = borrowed.remove(socket);
+		if(endpoint == null) {
+			closeQuietly(socket);
+			return;
+		}
+		if(closed || !isUsable(socket)) {
+			closeQuietly(socket);
+		} else {
+			endpoint.idle.offerFirst(new Idle(socket, System.nanoTime()));
+		}
+		endpoint.permits.release();
+	}
+
+	/**
+	 * closes a borrowed connection that broke, for example because an exchange
+	 * failed in the middle of a message, instead of giving it back
+	 * @param socket the connection to close
+	 */
+	public void invalidate(final Socket socket) {
+		final Endpoint endpoint = borrowed.remove(socket);
+		closeQuietly(socket);
+		if(endpoint != null) {
+			endpoint.permits.release();
+		}
+	}
+
+	/**
+	 * closes all unused connections that exceeded the idle timeout or are not usable anymore.
+	 * This is done regularly by a background thread.
+	 * <p>
+	 * A connection is taken out of the pool before it is checked, so it is never checked
+	 * while it is borrowed. Usable connections are put back in front, in their order, and
+	 * the oldest ones are closed if more connections than allowed are open afterwards
+	 */
+	public void evictIdle() {
+		final long oldest = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(idleTimeout);
+		for(final Endpoint endpoint : endpoints.values()) {
+			final Idle[] snapshot = endpoint.idle.toArray(new Idle[0]);
+			final Deque<Idle> usable = new ArrayDeque<Idle>();
+			for(final Idle idle : snapshot) {
+				if(!endpoint.idle.remove(idle)) {
+					//borrowed in the meantime
+					continue;
+				}
+				if(idle.since - oldest < 0 || !isUsable(idle.socket)) {
+					closeQuietly(idle.socket);
+				} else {
+					usable.addFirst(idle);
+				}
+			}
+			for(final Idle idle : usable) {
+				endpoint.idle.offerFirst(idle);
+			}
+			//borrowers finding no idle connection meanwhile opened new ones, so the oldest surplus is closed
+			Idle surplus;
+			while(endpoint.idle.size() > endpoint.permits.availablePermits() && (surplus = endpoint.idle.pollLast()) != null) {
+				closeQuietly(surplus.socket);
+			}
+			if(closed) {
+				//closed while the connections were out of the pool
+				closeIdle(endpoint);
+			}
+		}
+	}
+
+	/**
+	 * closes all unused connections and stops the background thread. Borrowed
+	 * connections are closed as soon as they are given back
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		synchronized (this) {
+			if(evictor != null) {
+				evictor.shutdownNow();
+			}
+		}
+		for(final Endpoint endpoint : endpoints.values()) {
+			closeIdle(endpoint);
+		}
+	}
+
+	private static void closeIdle(final Endpoint endpoint) {
+		Idle idle;
+		while((idle = endpoint.idle.pollFirst()) != null) {
+			closeQuietly(idle.socket);
+		}
+	}
+
+	/**
+	 * @return the amount of unused connections of all endpoints
+	 */
+	public int getIdleCount() {
+		int count = 0;
+		for(final Endpoint endpoint : endpoints.values()) {
+			count += endpoint.idle.size();
+		}
+		return count;
+	}
+
+	/**
+	 * @return the amount of connections of all endpoints currently borrowed
+	 */
+	public int getBorrowedCount() {
+		return borrowed.size();
+	}
+
+	public int getMaxConnectionsPerEndpoint() {
+		return maxConnectionsPerEndpoint;
+	}
+
+	public int getIdleTimeout() {
+		return idleTimeout;
+	}
+
+	public int getBorrowTimeout() {
+		return borrowTimeout;
+	}
+
+	/**
+	 * opens a connection backed by a {@link SocketChannel}, which is what
+	 * allows {@link #isUsable(Socket)} to check it without blocking
+	 */
+	private static Socket open(final String host, final int port) throws IOException {
+		final SocketChannel channel = SocketChannel.open(new InetSocketAddress(host, port));
+		channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+		channel.setOption(StandardSocketOptions.SO_KEEPALIVE, true);
+		return channel.socket();
+	}
+
+	/**
+	 * @param socket a connection not in use
+	 * @return true, if the connection is open and the server neither closed it nor sent anything.
+	 * 			The check reads at most one byte, which would break the protocol anyway
+	 */
+	private static boolean isUsable(final Socket socket) {
+		if(socket.isClosed() || !socket.isConnected() || socket.isInputShutdown() || socket.isOutputShutdown()) {
+			return false;
+		}
+		final SocketChannel channel = socket.getChannel();
+		if(channel == null) {
+			return true;
+		}
+		synchronized (channel.blockingLock()) {
+			try {
+				channel.configureBlocking(false);
+				try {
+					return channel.read(ByteBuffer.allocate(1)) == 0;
+				} finally {
+					channel.configureBlocking(true);
+				}
+			} catch (IOException e) {
+				return false;
+			}
+		}
+	}
+
+	private static void closeQuietly(final Socket socket) {
+		try {
+			socket.close();
+		} catch (IOException e) {
+			//the connection is dropped either way
+		}
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder builder = new StringBuilder("connection pool: ");
+		builder.append("idle = ").append(getIdleCount());
+		builder.append(", borrowed = ").append(getBorrowedCount());
+		builder.append(", max connections per endpoint = ").append(maxConnectionsPerEndpoint);
+		return builder.toString();
+	}
+
+	/**
+	 * the connections to a single pair of host and port
+	 */
+	private final class Endpoint {
+		private final String host;
+		private final int port;
+		private final Semaphore permits = new Semaphore(maxConnectionsPerEndpoint);
+		private final ConcurrentLinkedDeque<Idle> idle = new ConcurrentLinkedDeque<Idle>();
+
+		private Endpoint(final String host, final int port) {
+			this.host = host;
+			this.port = port;
+		}
+
+		@Override
+		public String toString() {
+			return host + ":" + port;
+		}
+	}
+
+	/**
+	 * an unused connection and the point in time it was given back at
+	 */
+	private static final class Idle {
+		private final Socket socket;
+		private final long since;
+
+		private Idle(final Socket socket, final long since) {
+			this.socket = socket;
+			this.since = since;
+		}
+	}
+}
@@ -0,0 +1,23 @@
+package niconoggi.clientserver.client;
+
+/**
+ * Container for client connection values
+ * @author niconoggi
+ *
+ */
+public class ClientValues {
+
+	/** the amount of connections a {@link ClientConnectionPool} keeps open per endpoint at most */
+	public static final int DEFAULT_MAX_CONNECTIONS_PER_ENDPOINT = 8;
+
+	/** the time an unused pooled connection stays open */
+	public static final int DEFAULT_IDLE_TIMEOUT = 60000;
+
+	/** the time borrowing waits for a connection if all connections of the endpoint are in use */
+	public static final int DEFAULT_BORROW_TIMEOUT = 10000;
+
+	/** the time a {@link MultiplexedClient} waits for the answer to a request */
+	public static final int DEFAULT_RESPONSE_TIMEOUT = 10000;
+
+	private ClientValues() {}
+}
@@ -0,0 +1,306 @@
+package niconoggi.clientserver.client;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import niconoggi.clientserver.base.AbstractClient;
+import niconoggi.clientserver.compression.Compression;
+import niconoggi.clientserver.protocol.FrameValues;
+import niconoggi.clientserver.protocol.MessageFrame;
+import niconoggi.clientserver.util.CorrelationUtil;
+import niconoggi.clientserver.util.FramingUtil;
+
+/**
+ * A client that has many requests in flight on a single connection. Every
+ * request is sent as correlated {@link MessageFrame} right away, without waiting
+ * for the answers of earlier requests, and the answer is matched back by its
+ * correlation id, in whatever order the server answers. Thus one connection
+ * can be used by any amount of threads at the same time.
+ * <p>
+ * The answers are read by a virtual thread per connection, started on connect. Requests
+ * belong to the connection they were sent on, so when a connection breaks or is closed
+ * only its own requests fail, also if the client is connected again in the meantime.
+ * Servers need to understand correlated frames, as the
+ * {@link niconoggi.clientserver.runner.serverrunner.VirtualThreadServerRunner} does.
+ * <p>
+ * write and read still work as for every other {@link niconoggi.clientserver.base.CommunicationComponent}:
+ * write sends the data to write as request and read waits for its answer.
+ * @author niconoggi
+ *
+ */
+public class MultiplexedClient extends AbstractClient {
+
+	private volatile Connection connection;
+	private final AtomicInteger nextId = new AtomicInteger();
+	private final ReentrantLock writeLock = new ReentrantLock();
+	private int responseTimeout = ClientValues.DEFAULT_RESPONSE_TIMEOUT;
+
+	private byte[] dataToWrite;
+	private byte[] readData;
+	private CompletableFuture<byte[]> lastResponse;
+
+	public MultiplexedClient() {}
+
+	public MultiplexedClient(final String host) {
+		super(host);
+	}
+
+	public MultiplexedClient(final int port) {
+		super(port);
+	}
+
+	public MultiplexedClient(final String host, final int port) {
+		super(host, port);
+	}
+
+	/**
+	 * connects and starts reading the answers
+	 */
+	@Override
+	public void connect() throws IOException {
+		final Socket connected = new Socket(host, port);
+		connected.setTcpNoDelay(true);
+		final Connection opened = new Connection(connected);
+		socket = connected;
+		connection = opened;
+		metrics.recordConnect();
+		Thread.ofVirtual().name("multiplexed-reader-" + host + ":" + port).start(() -> readAnswers(opened));
+	}
+
+	/**
+	 * sends the data to write as request, without waiting for the answer
+	 */
+	@Override
+	public void write() throws IOException {
+		lastResponse = send(dataToWrite);
+		if(lastResponse.isCompletedExceptionally()) {
+			await(lastResponse);
+		}
+	}
+
+	/**
+	 * waits for the answer to the request sent by the last write
+	 */
+	@Override
+	public void read() throws IOException {
+		if(lastResponse == null) {
+			throw new IOException("nothing was written that could be answered");
+		}
+		readData = await(lastResponse);
+		lastResponse = null;
+	}
+
+	/**
+	 * closes the connection. Requests still waiting for their answer fail
+	 */
+	@Override
+	public void disconnect() throws IOException {
+		final Connection closing = connection;
+		connection = null;
+		socket = null;
+		if(closing != null) {
+			closing.close(new IOException("the connection was closed"));
+		}
+	}
+
+	/**
+	 * sends the given data as request without waiting for the answer.
+	 * This may be called by any amount of threads at once
+	 * @param data the data of the request
+	 * @return the future completed with the answer, or completed exceptionally if the request
+	 * 			could not be sent, the server could not answer it or the response timeout ran out
+	 */
+	public CompletableFuture<byte[]> send(final byte[] data) {
+		Objects.requireNonNull(data, "data");
+		final CompletableFuture<byte[]> response = new CompletableFuture<byte[]>();
+		final Connection connected = connection;
+		if(connected == null || connected.socket.isClosed()) {
+			response.completeExceptionally(new IOException("the client is not connected"));
+			return response;
+		}
+		final int id = nextId.incrementAndGet();
+		final Map<Integer, CompletableFuture<byte[]>> pending = connected.pending;
+		pending.put(id, response);
+		if(responseTimeout > 0) {
+			response.orTimeout(responseTimeout, TimeUnit.MILLISECONDS);
+		}
+		final long start = System.nanoTime();
+		response.whenComplete((answer, error) -> {
+			pending.remove(id, response);
+			if(error == null) {
+				metrics.recordExchange(start);
+			} else {
+				metrics.recordError();
+			}
+		});
+		try {
+			writeFrame(connected, CorrelationUtil.correlate(id, FrameValues.TYPE_DATA, data));
+		} catch (IOException e) {
+			response.completeExceptionally(e);
+		}
+		return response;
+	}
+
+	/**
+	 * sends the given data as request and waits for the answer
+	 * @param data the data of the request
+	 * @return the answer
+	 * @throws IOException an error occuring while sending, or if the server did not answer in time
+	 */
+	public byte[] request(final byte[] data) throws IOException {
+		return await(send(data));
+	}
+
+	/**
+	 * @return true, if the client is connected and the connection was not closed
+	 */
+	public boolean isConnected() {
+		final Connection connected = connection;
+		return connected != null && !connected.socket.isClosed();
+	}
+
+	public void setDataToWrite(final byte[] dataToWrite) {
+		this.dataToWrite = dataToWrite;
+	}
+
+	public byte[] getReadData() {
+		return readData;
+	}
+
+	/**
+	 * @return the amount of requests of the current connection waiting for their answer
+	 */
+	public int getPendingCount() {
+		final Connection connected = connection;
+		return connected == null ? 0 : connected.pending.size();
+	}
+
+	public int getResponseTimeout() {
+		return responseTimeout;
+	}
+
+	/**
+	 * sets the time in milliseconds a request waits for its answer
+	 * before it fails with a {@link TimeoutException}
+	 * @param timeout the timeout in milliseconds, 0 to wait forever
+	 */
+	public void setResponseTimeout(final int timeout) {
+		responseTimeout = timeout;
+	}
+
+	/**
+	 * writes the frame to the given connection. If writing fails, the frame may have been
+	 * written partly, which leaves the connection unusable, so it is closed
+	 * @param connected the connection to write to
+	 * @param frame the frame to write
+	 * @throws IOException an error occuring while compressing or writing
+	 */
+	private void writeFrame(final Connection connected, final MessageFrame frame) throws IOException {
+		final MessageFrame toWrite = compression == null ? frame : compression.compress(frame);
+		writeLock.lock();
+		try {
+			final OutputStream out = connected.socket.getOutputStream();
+			FramingUtil.writeFrame(out, toWrite);
+			metrics.recordSent(toWrite.getPayload().length);
+		} catch (IOException e) {
+			connected.close(e);
+			throw e;
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * reads answers until the connection is closed and completes the matching requests
+	 * @param connected the connection to read from
+	 */
+	private void readAnswers(final Connection connected) {
+		final Map<Integer, CompletableFuture<byte[]>> pending = connected.pending;
+		try {
+			while(true) {
+				final MessageFrame received = FramingUtil.readFrame(connected.socket.getInputStream());
+				metrics.recordReceived(received.getPayload().length);
+				final MessageFrame frame = Compression.decompress(received);
+				final CompletableFuture<byte[]> response = pending.get(CorrelationUtil.idOf(frame));
+				if(response == null) {
+					//the request timed out already
+					continue;
+				}
+				if(frame.getType() == FrameValues.TYPE_ERROR) {
+					response.completeExceptionally(new IOException("the server could not answer: "
+							+ new String(CorrelationUtil.dataOf(frame), StandardCharsets.UTF_8)));
+				} else {
+					response.complete(CorrelationUtil.dataOf(frame));
+				}
+			}
+		} catch (IOException e) {
+			connected.close(e);
+		}
+	}
+
+	private static byte[] await(final CompletableFuture<byte[]> response) throws IOException {
+		try {
+			return response.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted while waiting for the answer");
+		} catch (ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if(cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if(cause instanceof TimeoutException) {
+				throw new SocketTimeoutException("the server did not answer in time");
+			}
+			throw new IOException(cause);
+		}
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder builder = new StringBuilder(super.toString());
+		builder.append(", pending requests = ").append(getPendingCount());
+		return builder.toString();
+	}
+
+	/**
+	 * a connection and the requests sent on it that wait for their answer
+	 */
+	private static final class Connection {
+
+		private final Socket socket;
+		private final Map<Integer, CompletableFuture<byte[]>> pending = new ConcurrentHashMap<Integer, CompletableFuture<byte[]>>();
+
+		private Connection(final Socket socket) {
+			this.socket = socket;
+		}
+
+		/**
+		 * closes the connection and fails the requests waiting for their answer
+		 * @param cause the reason the requests fail
+		 */
+		private void close(final IOException cause) {
+			try {
+				socket.close();
+			} catch (IOException closeError) {
+				//the connection is dropped either way
+			}
+			for(final CompletableFuture<byte[]> response : pending.values()) {
+				response.completeExceptionally(cause);
+			}
+		}
+	}
+}
@@ -0,0 +1,267 @@
+package niconoggi.clientserver.codec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+import niconoggi.clientserver.protocol.FrameValues;
+import niconoggi.clientserver.util.BufferPool;
+import niconoggi.clientserver.util.ByteBufferOutputStream;
+import niconoggi.clientserver.util.ObjectPool;
+import niconoggi.clientserver.util.ReusableByteArrayInputStream;
+
+/**
+ * A {@link Codec} for hand-written binary formats. Subclasses only write and
+ * read the fields of the data object, in the same order, using {@link DataOutput}
+ * and {@link DataInput}. Unlike Java serialization, no class descriptors and no
+ * reflection are involved, so the encoded data is much smaller and encoding
+ * and decoding is much faster.
+ * <p>
+ * Example for a type with a name and an age:
+ * <pre>
+ * protected void write(final Person data, final DataOutput out) throws IOException {
+ * 	out.writeUTF(data.getName());
+ * 	out.writeInt(data.getAge());
+ * }
+ * 
+ * protected Person read(final DataInput in) throws IOException {
+ * 	return new Person(in.readUTF(), in.readInt());
+ * }
+ * </pre>
+ * The streams used for encoding and decoding are pooled and shared by all threads, so
+ * {@link #encodeInto(Object, ByteBuffer)}, {@link #encodeTo(Object, OutputStream)} and {@link #decode(byte[], int, int)}
+ * allocate nothing but the decoded object itself.
+ * @author niconoggi
+ *
+ * @param <D> the type of the data object
+ */
+public abstract class BinaryCodec<D> implements Codec<D> {
+
+	private static final ObjectPool<Streams> STREAMS = new ObjectPool<Streams>(ObjectPool.PER_PROCESSOR_CAPACITY);
+	private static final byte[] EMPTY = new byte[0];
+	/** lists are created with at most this capacity, so a wrong size does not allocate a huge array up front */
+	private static final int MAX_INITIAL_LIST_CAPACITY = 1024;
+	
+	/**
+	 * writes the fields of the given data
+	 * @param data the data to write
+	 * @param out the output to write the fields to
+	 * @throws IOException an error occuring while writing
+	 */
+	protected abstract void write(final D data, final DataOutput out) throws IOException;
+	
+	/**
+	 * reads the fields written by {@link #write(Object, DataOutput)} and creates the data object
+	 * @param in the input to read the fields from
+	 * @return the data object
+	 * @throws IOException an error occuring while reading
+	 */
+	protected abstract D read(final DataInput in) throws IOException;
+	
+	@Override
+	public byte[] encode(final D data) throws IOException {
+		final Streams streams = lease();
+		try {
+			streams.bytes.reset();
+			write(data, streams.toBytes);
+			streams.toBytes.flush();
+			return streams.bytes.toByteArray();
+		} finally {
+			giveBack(streams);
+		}
+	}
+	
+	@Override
+	public int encodeInto(final D data, final ByteBuffer target) throws IOException {
+		final Streams streams = lease();
+		try {
+			final int start = target.position();
+			streams.buffer.setTarget(target);
+			write(data, streams.toBuffer);
+			streams.toBuffer.flush();
+			return target.position() - start;
+		} finally {
+			streams.buffer.setTarget(ByteBuffer.wrap(EMPTY));
+			giveBack(streams);
+		}
+	}
+	
+	@Override
+	public void encodeTo(final D data, final OutputStream out) throws IOException {
+		final Streams streams = lease();
+		try {
+			streams.forwarding.target = out;
+			write(data, streams.toForwarding);
+			streams.toForwarding.flush();
+		} finally {
+			streams.forwarding.target = null;
+			giveBack(streams);
+		}
+	}
+	
+	@Override
+	public D decode(final byte[] bytes) throws IOException {
+		return decode(bytes, 0, bytes.length);
+	}
+	
+	@Override
+	public D decode(final byte[] bytes, final int offset, final int length) throws IOException {
+		final Streams streams = lease();
+		try {
+			streams.in.setBytes(bytes, offset, length);
+			return read(streams.fromBytes);
+		} finally {
+			streams.in.setBytes(EMPTY, 0, 0);
+			giveBack(streams);
+		}
+	}
+	
+	/**
+	 * writes the given text as UTF-8 with a leading length, so unlike
+	 * {@link DataOutput#writeUTF(String)} neither its length is limited nor is
+	 * null excluded
+	 * @param out the output to write to
+	 * @param value the text to write, may be null
+	 * @throws IOException an error occuring while writing
+	 */
+	protected static void writeString(final DataOutput out, final String value) throws IOException {
+		writeBytes(out, value == null ? null : value.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * @param in the input to read from
+	 * @return the text written by {@link #writeString(DataOutput, String)}
+	 * @throws IOException an error occuring while reading
+	 */
+	protected static String readString(final DataInput in) throws IOException {
+		final byte[] bytes = readBytes(in);
+		return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * writes the given bytes with a leading length
+	 * @param out the output to write to
+	 * @param value the bytes to write, may be null
+	 * @throws IOException an error occuring while writing
+	 */
+	protected static void writeBytes(final DataOutput out, final byte[] value) throws IOException {
+		if(value == null) {
+			out.writeInt(-1);
+			return;
+		}
+		out.writeInt(value.length);
+		out.write(value);
+	}
+
+	/**
+	 * @param in the input to read from
+	 * @return the bytes written by {@link #writeBytes(DataOutput, byte[])}
+	 * @throws IOException an error occuring while reading
+	 */
+	protected static byte[] readBytes(final DataInput in) throws IOException {
+		final int length = in.readInt();
+		if(length == -1) {
+			return null;
+		}
+		if(length < 0 || length > FrameValues.MAX_PAYLOAD_LENGTH) {
+			throw new IOException("invalid length " + length + " of bytes");
+		}
+		final byte[] value = new byte[length];
+		in.readFully(value);
+		return value;
+	}
+
+	/**
+	 * @param in the input to read from
+	 * @return the size of a collection written as int, which is never negative
+	 * @throws IOException an error occuring while reading, also if the size is negative
+	 */
+	protected static int readSize(final DataInput in) throws IOException {
+		final int size = in.readInt();
+		if(size < 0) {
+			throw new IOException("invalid size " + size + " of a collection");
+		}
+		return size;
+	}
+
+	/**
+	 * @param <E> the type of the elements
+	 * @param size the amount of elements that will be added
+	 * @return an empty list, presized for the given amount of elements up to a limit
+	 */
+	protected static <E> ArrayList<E> newList(final int size) {
+		return new ArrayList<E>(Math.min(size, MAX_INITIAL_LIST_CAPACITY));
+	}
+
+	/**
+	 * @param <E> the type of the enum
+	 * @param in the input to read from
+	 * @param constants the constants of the enum, as given by its values()
+	 * @return the constant whose ordinal was written as int
+	 * @throws IOException an error occuring while reading, also if there is no constant with the ordinal
+	 */
+	protected static <E extends Enum<E>> E readEnum(final DataInput in, final E[] constants) throws IOException {
+		final int ordinal = in.readInt();
+		if(ordinal < 0 || ordinal >= constants.length) {
+			throw new IOException("invalid ordinal " + ordinal + " of an enum with " + constants.length + " constants");
+		}
+		return constants[ordinal];
+	}
+
+	/**
+	 * takes idle streams out of the pool. While they are in use, they
+	 * are not available to others, so a codec used while encoding or
+	 * decoding with another one gets streams of its own
+	 * @return the streams to use
+	 */
+	private static Streams lease() {
+		final Streams streams = STREAMS.poll();
+		return streams == null ? new Streams() : streams;
+	}
+	
+	private static void giveBack(final Streams streams) {
+		//streams that grew too big are dropped instead of being kept forever
+		if(streams.bytes.size() <= BufferPool.MAX_POOLED_SIZE) {
+			STREAMS.offer(streams);
+		}
+	}
+	
+	/**
+	 * the reusable streams of a single encoding or decoding
+	 */
+	private static final class Streams {
+		private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		private final DataOutputStream toBytes = new DataOutputStream(bytes);
+		private final ByteBufferOutputStream buffer = new ByteBufferOutputStream(ByteBuffer.allocate(0));
+		private final DataOutputStream toBuffer = new DataOutputStream(buffer);
+		private final Forwarding forwarding = new Forwarding();
+		private final DataOutputStream toForwarding = new DataOutputStream(forwarding);
+		private final ReusableByteArrayInputStream in = new ReusableByteArrayInputStream();
+		private final DataInputStream fromBytes = new DataInputStream(in);
+	}
+	
+	/**
+	 * a stream passing everything on to the stream of the current {@link #encodeTo(Object, OutputStream)}
+	 */
+	private static final class Forwarding extends OutputStream {
+		
+		private OutputStream target;
+		
+		@Override
+		public void write(final int b) throws IOException {
+			target.write(b);
+		}
+		
+		@Override
+		public void write(final byte[] bytes, final int offset, final int length) throws IOException {
+			target.write(bytes, offset, length);
+		}
+	}
+}
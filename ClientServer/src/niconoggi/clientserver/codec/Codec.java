@@ -0,0 +1,100 @@
+package niconoggi.clientserver.codec;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import niconoggi.clientserver.protocol.MessageFrame;
+import niconoggi.clientserver.util.DataConverterUtil;
+import niconoggi.clientserver.util.FramingUtil;
+
+/**
+ * Converts data objects to bytes and back. The runners use a codec for
+ * everything they write and read, so the wire format can be chosen per
+ * deployment: {@link DataConverterUtil} uses Java serialization and works
+ * for any {@link java.io.Serializable}, a {@link BinaryCodec} writes only
+ * the fields themselves and is a lot more compact and faster.
+ * <p>
+ * Implementations should be stateless or thread safe, as a codec
+ * may be shared by many runners.
+ * @author niconoggi
+ *
+ * @param <D> the type of the data object
+ */
+public interface Codec<D> {
+
+	/**
+	 * converts the given data to bytes
+	 * @param data the data to convert
+	 * @return the encoded bytes
+	 * @throws IOException an error occuring while encoding
+	 */
+	byte[] encode(final D data) throws IOException;
+	
+	/**
+	 * converts the given bytes back to a data object
+	 * @param bytes the encoded bytes
+	 * @return the decoded data
+	 * @throws IOException an error occuring while decoding, also if the bytes do not
+	 * 						describe a valid data object
+	 */
+	D decode(final byte[] bytes) throws IOException;
+	
+	/**
+	 * converts the given bytes back to a data object without requiring
+	 * the encoded bytes to fill an array of their own, so pooled buffers
+	 * can be decoded from. Implementations able to read from a part of an
+	 * array should override this to avoid copying
+	 * @param bytes the array containing the encoded bytes
+	 * @param offset the index of the first encoded byte
+	 * @param length the amount of encoded bytes
+	 * @return the decoded data
+	 * @throws IOException an error occuring while decoding
+	 */
+	default D decode(final byte[] bytes, final int offset, final int length) throws IOException {
+		return decode(Arrays.copyOfRange(bytes, offset, offset + length));
+	}
+	
+	/**
+	 * converts the given data directly into the given buffer, starting at its
+	 * position. Implementations able to write into a buffer should override this
+	 * to avoid the intermediate array
+	 * @param data the data to convert
+	 * @param target the buffer to write to
+	 * @return the amount of bytes written
+	 * @throws IOException an error occuring while encoding
+	 * @throws BufferOverflowException if the buffer is too small, the content
+	 * 						and position of the buffer are undefined then
+	 */
+	default int encodeInto(final D data, final ByteBuffer target) throws IOException {
+		final byte[] encoded = encode(data);
+		target.put(encoded);
+		return encoded.length;
+	}
+	
+	/**
+	 * converts the given data directly into the given stream, so the caller can
+	 * grow its target while the data is encoded only once. Implementations able to
+	 * write into a stream should override this to avoid the intermediate array
+	 * @param data the data to convert
+	 * @param out the stream to write to, which is neither flushed nor closed
+	 * @throws IOException an error occuring while encoding or writing
+	 */
+	default void encodeTo(final D data, final OutputStream out) throws IOException {
+		out.write(encode(data));
+	}
+	
+	/**
+	 * converts the given data to a complete {@link MessageFrame}, that can be
+	 * shared by many receivers. Implementations able to encode into a buffer
+	 * directly should override this to avoid copying the encoded bytes
+	 * @param data the data to convert
+	 * @return the encoded frame, ready to be read from
+	 * @throws IOException an error occuring while encoding
+	 */
+	default ByteBuffer encodeToFrame(final D data) throws IOException {
+		return FramingUtil.encodeFrame(new MessageFrame(encode(data)));
+	}
+}
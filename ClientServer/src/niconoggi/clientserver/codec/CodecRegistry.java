@@ -0,0 +1,75 @@
+package niconoggi.clientserver.codec;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import niconoggi.clientserver.util.DataConverterUtil;
+
+/**
+ * Finds the {@link Codec} to use for a data type. Types annotated with
+ * {@link WireMessage} get the codec generated for them, other {@link Serializable}
+ * types get a {@link DataConverterUtil}. Codecs registered by
+ * {@link #register(Class, Codec)} take precedence over both.
+ * <p>
+ * The generated codec is looked up only once per type, after that
+ * the same instance is returned every time.
+ * @author niconoggi
+ *
+ */
+public class CodecRegistry {
+
+	private static final Map<Class<?>, Codec<?>> CODECS = new ConcurrentHashMap<Class<?>, Codec<?>>();
+
+	private CodecRegistry() {}
+
+	/**
+	 * @param <D> the data type
+	 * @param type the class of the data
+	 * @return the codec to use for the given type
+	 * @throws IllegalArgumentException if the type is neither registered, nor a {@link WireMessage},
+	 * 									nor {@link Serializable}, or if its generated codec can not be loaded
+	 */
+	@SuppressWarnings("unchecked")
+	public static <D> Codec<D> forType(final Class<D> type) {
+		return (Codec<D>) CODECS.computeIfAbsent(type, CodecRegistry::createCodec);
+	}
+
+	/**
+	 * registers the codec to use for the given type, replacing
+	 * the codec found so far
+	 * @param <D> the data type
+	 * @param type the class of the data
+	 * @param codec the codec to use for it
+	 */
+	public static <D> void register(final Class<D> type, final Codec<D> codec) {
+		CODECS.put(type, codec);
+	}
+
+	/**
+	 * @param type a type annotated with {@link WireMessage}
+	 * @return the fully qualified name of the codec generated for the type
+	 */
+	public static String generatedCodecName(final Class<?> type) {
+		final String packageName = type.getPackageName();
+		final String name = packageName.isEmpty() ? type.getName() : type.getName().substring(packageName.length() + 1);
+		final String codecName = name.replace('$', '_') + WireMessage.CODEC_SUFFIX;
+		return packageName.isEmpty() ? codecName : packageName + "." + codecName;
+	}
+
+	private static Codec<?> createCodec(final Class<?> type) {
+		if(type.isAnnotationPresent(WireMessage.class)) {
+			final String name = generatedCodecName(type);
+			try {
+				return (Codec<?>) Class.forName(name, true, type.getClassLoader()).getConstructor().newInstance();
+			} catch (ReflectiveOperationException e) {
+				throw new IllegalArgumentException("the generated codec " + name + " could not be loaded,"
+						+ " check that the annotation processor ran", e);
+			}
+		}
+		if(Serializable.class.isAssignableFrom(type)) {
+			return new DataConverterUtil<Object>();
+		}
+		throw new IllegalArgumentException(type.getName() + " is neither a wire message nor serializable");
+	}
+}
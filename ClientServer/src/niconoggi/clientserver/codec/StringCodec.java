@@ -0,0 +1,22 @@
+package niconoggi.clientserver.codec;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A {@link Codec} for plain text, encoded as UTF-8 without
+ * any additional bytes
+ * @author niconoggi
+ *
+ */
+public class StringCodec implements Codec<String> {
+
+	@Override
+	public byte[] encode(final String data) {
+		return data.getBytes(StandardCharsets.UTF_8);
+	}
+	
+	@Override
+	public String decode(final byte[] bytes) {
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
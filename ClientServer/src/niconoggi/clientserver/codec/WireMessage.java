@@ -0,0 +1,42 @@
+package niconoggi.clientserver.codec;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a record or class as message type, for which a {@link BinaryCodec}
+ * is generated at compile time by the
+ * {@link niconoggi.clientserver.codec.processor.WireMessageProcessor}.
+ * The generated codec writes and reads the fields one after another, without
+ * reflection or class descriptors, and is named after the type with the
+ * suffix {@link #CODEC_SUFFIX}, in the package of the type. Nested types are
+ * named after all enclosing types, joined by underscores.
+ * <p>
+ * Supported field types are primitives and their wrappers, {@link String},
+ * byte arrays, enums, other message types and {@link java.util.List}s of
+ * these. Null values are supported for all of them except primitives.
+ * <p>
+ * For records, all components are written and the canonical constructor is used
+ * for reading. For classes, all fields declared by the class itself that are
+ * neither static nor transient are written. They must not be private or final,
+ * and the class needs a constructor without parameters that is not private.
+ * <p>
+ * {@link CodecRegistry#forType(Class)} finds the generated codec, so the
+ * runners constructed with the class of the data use it automatically.
+ * @author niconoggi
+ *
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface WireMessage {
+
+	/**
+	 * the suffix appended to the name of a message type to get
+	 * the name of its generated codec
+	 */
+	String CODEC_SUFFIX = "WireCodec";
+}
@@ -0,0 +1,427 @@
+package niconoggi.clientserver.codec.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.RecordComponentElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+import niconoggi.clientserver.codec.BinaryCodec;
+import niconoggi.clientserver.codec.WireMessage;
+
+/**
+ * Generates a {@link BinaryCodec} for every type annotated with {@link WireMessage}.
+ * The generated codec writes the fields with plain {@link java.io.DataOutput} calls in
+ * declaration order and reads them back in the same order, so encoding and decoding
+ * involve neither reflection nor class descriptors.
+ * <p>
+ * Besides implementing {@link BinaryCodec}, a generated codec offers its field
+ * handling as public static methods, which the codecs of message types containing
+ * the type call directly.
+ * <p>
+ * The processor is registered as service, so it runs whenever this library
+ * is on the annotation processor path of the compiler.
+ * @author niconoggi
+ *
+ */
+@SupportedAnnotationTypes("niconoggi.clientserver.codec.WireMessage")
+public class WireMessageProcessor extends AbstractProcessor {
+
+	private static final String LIST = "java.util.List";
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(final Set<? extends TypeElement> annotations, final RoundEnvironment roundEnv) {
+		for(final Element element : roundEnv.getElementsAnnotatedWith(WireMessage.class)) {
+			if(isValidMessageType(element)) {
+				generate((TypeElement) element);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param type a type annotated with {@link WireMessage}
+	 * @return the fully qualified name of its generated codec
+	 */
+	static String codecName(final TypeElement type) {
+		final StringBuilder name = new StringBuilder(WireMessage.CODEC_SUFFIX);
+		Element current = type;
+		while(current.getKind() != ElementKind.PACKAGE) {
+			name.insert(0, current.getSimpleName());
+			current = current.getEnclosingElement();
+			if(current.getKind() != ElementKind.PACKAGE) {
+				name.insert(0, '_');
+			}
+		}
+		final PackageElement packageElement = (PackageElement) current;
+		return packageElement.isUnnamed() ? name.toString() : packageElement.getQualifiedName() + "." + name;
+	}
+
+	private boolean isValidMessageType(final Element element) {
+		if(element.getKind() != ElementKind.CLASS && element.getKind() != ElementKind.RECORD) {
+			return error(element, "only classes and records can be wire messages");
+		}
+		final TypeElement type = (TypeElement) element;
+		if(type.getModifiers().contains(Modifier.PRIVATE) || type.getModifiers().contains(Modifier.ABSTRACT)) {
+			return error(type, "wire messages must neither be private nor abstract");
+		}
+		if(!type.getTypeParameters().isEmpty()) {
+			return error(type, "wire messages must not have type parameters");
+		}
+		if(type.getEnclosingElement().getKind() != ElementKind.PACKAGE
+				&& type.getKind() == ElementKind.CLASS && !type.getModifiers().contains(Modifier.STATIC)) {
+			return error(type, "nested wire messages must be static");
+		}
+		if(type.getKind() == ElementKind.RECORD) {
+			return true;
+		}
+		boolean valid = hasUsableConstructor(type) || error(type, "wire messages need a constructor without parameters that is not private");
+		for(final VariableElement field : fieldsOf(type)) {
+			if(field.getModifiers().contains(Modifier.PRIVATE) || field.getModifiers().contains(Modifier.FINAL)) {
+				valid = error(field, "fields of wire message classes must neither be private nor final,"
+						+ " use a record for immutable messages");
+			}
+		}
+		return valid;
+	}
+
+	private static boolean hasUsableConstructor(final TypeElement type) {
+		for(final ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+			if(constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static List<VariableElement> fieldsOf(final TypeElement type) {
+		final List<VariableElement> fields = new ArrayList<VariableElement>();
+		for(final VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+			if(!field.getModifiers().contains(Modifier.STATIC) && !field.getModifiers().contains(Modifier.TRANSIENT)) {
+				fields.add(field);
+			}
+		}
+		return fields;
+	}
+
+	private void generate(final TypeElement type) {
+		final String codecName = codecName(type);
+		final int packageEnd = codecName.lastIndexOf('.');
+		final String typeName = type.getQualifiedName().toString();
+		final boolean isRecord = type.getKind() == ElementKind.RECORD;
+
+		final List<String> names = new ArrayList<String>();
+		final List<TypeMirror> types = new ArrayList<TypeMirror>();
+		final List<Element> elements = new ArrayList<Element>();
+		if(isRecord) {
+			for(final RecordComponentElement component : type.getRecordComponents()) {
+				names.add(component.getSimpleName().toString());
+				types.add(component.asType());
+				elements.add(component);
+			}
+		} else {
+			for(final VariableElement field : fieldsOf(type)) {
+				names.add(field.getSimpleName().toString());
+				types.add(field.asType());
+				elements.add(field);
+			}
+		}
+
+		final Code write = new Code(2);
+		final Code read = new Code(2);
+		final Map<String, String> enumConstants = new LinkedHashMap<String, String>();
+		final List<String> readValues = new ArrayList<String>();
+		boolean valid = true;
+		for(int i = 0; i < names.size(); i++) {
+			final String access = isRecord ? "data." + names.get(i) + "()" : "data." + names.get(i);
+			valid &= writeValue(types.get(i), access, write, enumConstants, elements.get(i));
+			final String value = readValue(types.get(i), read, enumConstants, elements.get(i));
+			valid &= value != null;
+			readValues.add(value);
+		}
+		if(!valid) {
+			return;
+		}
+		if(isRecord) {
+			read.line("return new " + typeName + "(" + String.join(", ", readValues) + ");");
+		} else {
+			read.line("final " + typeName + " data = new " + typeName + "();");
+			for(int i = 0; i < names.size(); i++) {
+				read.line("data." + names.get(i) + " = " + readValues.get(i) + ";");
+			}
+			read.line("return data;");
+		}
+
+		final StringBuilder source = new StringBuilder();
+		if(packageEnd > 0) {
+			source.append("package ").append(codecName, 0, packageEnd).append(";\n\n");
+		}
+		final String simpleName = codecName.substring(packageEnd + 1);
+		source.append("@javax.annotation.processing.Generated(\"").append(getClass().getName()).append("\")\n");
+		source.append("public final class ").append(simpleName)
+				.append(" extends ").append(BinaryCodec.class.getName()).append("<").append(typeName).append("> {\n\n");
+		for(final Map.Entry<String, String> constants : enumConstants.entrySet()) {
+			source.append("\tprivate static final ").append(constants.getKey()).append("[] ").append(constants.getValue())
+					.append(" = ").append(constants.getKey()).append(".values();\n");
+		}
+		if(!enumConstants.isEmpty()) {
+			source.append('\n');
+		}
+		source.append("\tpublic static void writeFields(final ").append(typeName)
+				.append(" data, final java.io.DataOutput out) throws java.io.IOException {\n");
+		source.append(write).append("\t}\n\n");
+		source.append("\tpublic static ").append(typeName)
+				.append(" readFields(final java.io.DataInput in) throws java.io.IOException {\n");
+		source.append(read).append("\t}\n\n");
+		source.append("\t@Override\n\tprotected void write(final ").append(typeName)
+				.append(" data, final java.io.DataOutput out) throws java.io.IOException {\n");
+		source.append("\t\twriteFields(data, out);\n\t}\n\n");
+		source.append("\t@Override\n\tprotected ").append(typeName)
+				.append(" read(final java.io.DataInput in) throws java.io.IOException {\n");
+		source.append("\t\treturn readFields(in);\n\t}\n}\n");
+
+		try (Writer writer = processingEnv.getFiler().createSourceFile(codecName, type).openWriter()) {
+			writer.write(source.toString());
+		} catch (IOException e) {
+			error(type, "the codec could not be generated: " + e);
+		}
+	}
+
+	/**
+	 * adds the statements writing the given value
+	 * @return false, if the type of the value is not supported
+	 */
+	private boolean writeValue(final TypeMirror type, final String value, final Code code,
+			final Map<String, String> enumConstants, final Element element) {
+		if(type.getKind().isPrimitive()) {
+			code.line("out.write" + primitiveMethod(type.getKind()) + "(" + value + ");");
+			return true;
+		}
+		if(isByteArray(type)) {
+			code.line("writeBytes(out, " + value + ");");
+			return true;
+		}
+		if(type.getKind() != TypeKind.DECLARED) {
+			return error(element, "the type " + type + " is not supported by wire messages");
+		}
+		final DeclaredType declared = (DeclaredType) type;
+		final TypeElement typeElement = (TypeElement) declared.asElement();
+		final String name = typeElement.getQualifiedName().toString();
+		if(name.equals(String.class.getName())) {
+			code.line("writeString(out, " + value + ");");
+			return true;
+		}
+		if(!isSupportedReference(declared, element)) {
+			return false;
+		}
+		final String local = code.newName();
+		code.line("final " + type + " " + local + " = " + value + ";");
+		code.line("out.writeBoolean(" + local + " != null);");
+		code.open("if(" + local + " != null) {");
+		boolean valid = true;
+		if(isBoxed(type)) {
+			final TypeKind primitive = processingEnv.getTypeUtils().unboxedType(type).getKind();
+			code.line("out.write" + primitiveMethod(primitive) + "(" + local + ");");
+		} else if(typeElement.getKind() == ElementKind.ENUM) {
+			code.line("out.writeInt(" + local + ".ordinal());");
+		} else if(typeElement.getAnnotation(WireMessage.class) != null) {
+			code.line(codecName(typeElement) + ".writeFields(" + local + ", out);");
+		} else {
+			final TypeMirror elementType = declared.getTypeArguments().get(0);
+			final String item = code.newName();
+			code.line("out.writeInt(" + local + ".size());");
+			code.open("for(final " + elementType + " " + item + " : " + local + ") {");
+			valid = writeValue(elementType, item, code, enumConstants, element);
+			code.close();
+		}
+		code.close();
+		return valid;
+	}
+
+	/**
+	 * adds the statements reading a value of the given type into a new local variable
+	 * @return the name of the local variable or null, if the type is not supported
+	 */
+	private String readValue(final TypeMirror type, final Code code,
+			final Map<String, String> enumConstants, final Element element) {
+		final String local = code.newName();
+		if(type.getKind().isPrimitive()) {
+			code.line("final " + type + " " + local + " = in.read" + primitiveMethod(type.getKind()) + "();");
+			return local;
+		}
+		if(isByteArray(type)) {
+			code.line("final byte[] " + local + " = readBytes(in);");
+			return local;
+		}
+		if(type.getKind() != TypeKind.DECLARED) {
+			//the error is reported when writing
+			return null;
+		}
+		final DeclaredType declared = (DeclaredType) type;
+		final TypeElement typeElement = (TypeElement) declared.asElement();
+		final String name = typeElement.getQualifiedName().toString();
+		if(name.equals(String.class.getName())) {
+			code.line("final java.lang.String " + local + " = readString(in);");
+			return local;
+		}
+		if(!isSupportedReference(declared, null)) {
+			return null;
+		}
+		code.line(type + " " + local + " = null;");
+		code.open("if(in.readBoolean()) {");
+		String result = local;
+		if(isBoxed(type)) {
+			final TypeKind primitive = processingEnv.getTypeUtils().unboxedType(type).getKind();
+			code.line(local + " = in.read" + primitiveMethod(primitive) + "();");
+		} else if(typeElement.getKind() == ElementKind.ENUM) {
+			final String constants = enumConstants.computeIfAbsent(name,
+					key -> "CONSTANTS_" + (enumConstants.size() + 1));
+			code.line(local + " = readEnum(in, " + constants + ");");
+		} else if(typeElement.getAnnotation(WireMessage.class) != null) {
+			code.line(local + " = " + codecName(typeElement) + ".readFields(in);");
+		} else {
+			final TypeMirror elementType = declared.getTypeArguments().get(0);
+			final String size = code.newName();
+			final String index = code.newName();
+			code.line("final int " + size + " = readSize(in);");
+			code.line(local + " = newList(" + size + ");");
+			code.open("for(int " + index + " = 0; " + index + " < " + size + "; " + index + "++) {");
+			final String item = readValue(elementType, code, enumConstants, element);
+			if(item == null) {
+				result = null;
+			} else {
+				code.line(local + ".add(" + item + ");");
+			}
+			code.close();
+		}
+		code.close();
+		return result;
+	}
+
+	/**
+	 * @param element the element to report an unsupported type at or null, if it is reported already
+	 * @return true, if the reference type is a wrapper, an enum, a wire message or a list of supported types
+	 */
+	private boolean isSupportedReference(final DeclaredType type, final Element element) {
+		final TypeElement typeElement = (TypeElement) type.asElement();
+		if(isBoxed(type) || typeElement.getKind() == ElementKind.ENUM || typeElement.getAnnotation(WireMessage.class) != null) {
+			return true;
+		}
+		if(typeElement.getQualifiedName().contentEquals(LIST) && type.getTypeArguments().size() == 1) {
+			final TypeMirror elementType = type.getTypeArguments().get(0);
+			if(isByteArray(elementType)) {
+				return true;
+			}
+			if(elementType.getKind() == TypeKind.DECLARED) {
+				final DeclaredType declaredElement = (DeclaredType) elementType;
+				return ((TypeElement) declaredElement.asElement()).getQualifiedName().contentEquals(String.class.getName())
+						|| isSupportedReference(declaredElement, element);
+			}
+		}
+		return element == null || error(element, "the type " + type + " is not supported by wire messages");
+	}
+
+	private boolean isBoxed(final TypeMirror type) {
+		try {
+			processingEnv.getTypeUtils().unboxedType(type);
+			return true;
+		} catch (IllegalArgumentException e) {
+			return false;
+		}
+	}
+
+	private static boolean isByteArray(final TypeMirror type) {
+		return type.getKind() == TypeKind.ARRAY && ((ArrayType) type).getComponentType().getKind() == TypeKind.BYTE;
+	}
+
+	private static String primitiveMethod(final TypeKind kind) {
+		switch(kind) {
+		case BOOLEAN:
+			return "Boolean";
+		case BYTE:
+			return "Byte";
+		case SHORT:
+			return "Short";
+		case CHAR:
+			return "Char";
+		case INT:
+			return "Int";
+		case LONG:
+			return "Long";
+		case FLOAT:
+			return "Float";
+		default:
+			return "Double";
+		}
+	}
+
+	private boolean error(final Element element, final String message) {
+		processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+		return false;
+	}
+
+	/**
+	 * the body of a generated method, with indentation and unique local names
+	 */
+	private static final class Code {
+		private final StringBuilder lines = new StringBuilder();
+		private int indent;
+		private int names;
+
+		private Code(final int indent) {
+			this.indent = indent;
+		}
+
+		private void line(final String line) {
+			for(int i = 0; i < indent; i++) {
+				lines.append('\t');
+			}
+			lines.append(line).append('\n');
+		}
+
+		private void open(final String line) {
+			line(line);
+			indent++;
+		}
+
+		private void close() {
+			indent--;
+			line("}");
+		}
+
+		private String newName() {
+			return "v" + names++;
+		}
+
+		@Override
+		public String toString() {
+			return lines.toString();
+		}
+	}
+}
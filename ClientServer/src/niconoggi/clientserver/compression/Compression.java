@@ -0,0 +1,287 @@
+package niconoggi.clientserver.compression;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import niconoggi.clientserver.protocol.FrameValues;
+import niconoggi.clientserver.protocol.MessageFrame;
+import niconoggi.clientserver.util.BufferPool;
+import niconoggi.clientserver.util.FramingUtil;
+
+/**
+ * The optional compression stage of the send path. Payloads of at least
+ * the threshold size are compressed with the {@link Compressor} and sent with
+ * {@link FrameValues#FLAG_COMPRESSED}, smaller payloads and payloads that
+ * would not get smaller are sent as they are.
+ * <p>
+ * A compressed payload starts with {@link #PREFIX_LENGTH} bytes:
+ * <ul>
+ * <li>1 byte: the id of the {@link Compressor}</li>
+ * <li>4 bytes: the length of the original payload (big endian)</li>
+ * </ul>
+ * followed by the compressed bytes. Receiving is always transparent: every
+ * component decompresses flagged frames with the registered compressor of that
+ * id, no matter whether it compresses itself. {@link DeflateCompressor} is
+ * registered by default, other algorithms need to be registered on both sides.
+ * <p>
+ * As the original length is sent by the peer, it is only trusted up to
+ * {@link #getMaxRatio()} times the compressed length, so a few bytes cannot make
+ * the receiver allocate a huge array before decompressing anything.
+ * <p>
+ * A compression stage is immutable and can be shared by any amount of components.
+ * @author niconoggi
+ *
+ */
+public class Compression {
+
+	public static final int PREFIX_LENGTH = 5;
+
+	/** payloads smaller than this rarely get smaller enough to be worth the time */
+	public static final int DEFAULT_THRESHOLD = 4 * 1024;
+
+	/** the highest ratio deflate compresses to, so any valid deflate payload is accepted */
+	public static final int DEFAULT_MAX_RATIO = 1032;
+
+	private static volatile int maxRatio = DEFAULT_MAX_RATIO;
+
+	private static final AtomicReferenceArray<Compressor> COMPRESSORS = new AtomicReferenceArray<Compressor>(256);
+
+	static {
+		register(new DeflateCompressor());
+	}
+
+	private final Compressor compressor;
+	private final int threshold;
+
+	/**
+	 * creates a stage compressing with a {@link DeflateCompressor} above the {@link #DEFAULT_THRESHOLD}
+	 */
+	public Compression() {
+		this(new DeflateCompressor(), DEFAULT_THRESHOLD);
+	}
+
+	/**
+	 * @param compressor the algorithm to compress with
+	 * @param threshold the payload size in bytes from which on payloads are compressed
+	 */
+	public Compression(final Compressor compressor, final int threshold) {
+		this.compressor = compressor;
+		this.threshold = threshold;
+	}
+
+	/**
+	 * registers the given compressor for decompressing payloads with its id,
+	 * replacing the one registered so far
+	 * @param compressor the compressor to register
+	 */
+	public static void register(final Compressor compressor) {
+		COMPRESSORS.set(compressor.getId() & 0xFF, compressor);
+	}
+
+	/**
+	 * @param frame the frame to send
+	 * @return the frame with its payload compressed or the given frame, if
+	 * 			compressing does not apply to it
+	 * @throws IOException an error occuring while compressing
+	 */
+	public MessageFrame compress(final MessageFrame frame) throws IOException {
+		if(frame.hasFlag(FrameValues.FLAG_COMPRESSED)) {
+			return frame;
+		}
+		final byte[] payload = frame.getPayload();
+		final byte[] compressed = compressPayload(payload, 0, payload.length);
+		if(compressed == null) {
+			return frame;
+		}
+		return new MessageFrame(frame.getType(), (byte) (frame.getFlags() | FrameValues.FLAG_COMPRESSED), compressed);
+	}
+
+	/**
+	 * compresses the payload of an encoded frame as written by
+	 * {@link FramingUtil#encodeFrame(MessageFrame)}
+	 * @param frame the encoded frame, ready to be read from. It is not changed
+	 * @return a new encoded frame with its payload compressed or the given frame,
+	 * 			if compressing does not apply to it
+	 * @throws IOException an error occuring while compressing
+	 */
+	public ByteBuffer compress(final ByteBuffer frame) throws IOException {
+		final int start = frame.position();
+		final byte flags = frame.get(start + 5);
+		final int length = frame.getInt(start);
+		if((flags & FrameValues.FLAG_COMPRESSED) != 0 || length < threshold) {
+			return frame;
+		}
+		final byte[] compressed;
+		if(frame.hasArray()) {
+			compressed = compressPayload(frame.array(), frame.arrayOffset() + start + FrameValues.HEADER_LENGTH, length);
+		} else {
+			final byte[] payload = BufferPool.acquire(length);
+			try {
+				frame.get(start + FrameValues.HEADER_LENGTH, payload, 0, length);
+				compressed = compressPayload(payload, 0, length);
+			} finally {
+				BufferPool.release(payload);
+			}
+		}
+		if(compressed == null) {
+			return frame;
+		}
+		return FramingUtil.encodeFrame(new MessageFrame(frame.get(start + 4), (byte) (flags | FrameValues.FLAG_COMPRESSED), compressed));
+	}
+
+	/**
+	 * @param payload the array holding the payload
+	 * @param offset the index of the first byte of the payload
+	 * @param length the length of the payload
+	 * @return the compressed payload including the prefix or null, if the payload is
+	 * 			smaller than the threshold or does not get smaller by compressing
+	 * @throws IOException an error occuring while compressing
+	 */
+	public byte[] compressPayload(final byte[] payload, final int offset, final int length) throws IOException {
+		if(length < threshold) {
+			return null;
+		}
+		final ByteArrayOutputStream out = new ByteArrayOutputStream(length / 2);
+		out.write(compressor.getId());
+		out.write(length >>> 24);
+		out.write(length >>> 16);
+		out.write(length >>> 8);
+		out.write(length);
+		compressor.compress(payload, offset, length, out);
+		return out.size() < length ? out.toByteArray() : null;
+	}
+
+	/**
+	 * @param frame a received frame
+	 * @return the payload of the frame, decompressed if the frame is flagged as compressed
+	 * @throws IOException an error occuring while decompressing
+	 */
+	public static byte[] payloadOf(final MessageFrame frame) throws IOException {
+		final byte[] payload = frame.getPayload();
+		if(!frame.hasFlag(FrameValues.FLAG_COMPRESSED)) {
+			return payload;
+		}
+		final byte[] original = new byte[originalLength(payload, 0, payload.length)];
+		decompress(payload, 0, payload.length, original, 0);
+		return original;
+	}
+
+	/**
+	 * @param frame a received frame
+	 * @return the frame with its payload decompressed or the given frame, if it is not compressed
+	 * @throws IOException an error occuring while decompressing
+	 */
+	public static MessageFrame decompress(final MessageFrame frame) throws IOException {
+		if(!frame.hasFlag(FrameValues.FLAG_COMPRESSED)) {
+			return frame;
+		}
+		return new MessageFrame(frame.getType(), (byte) (frame.getFlags() & ~FrameValues.FLAG_COMPRESSED), payloadOf(frame));
+	}
+
+	/**
+	 * @param payload the array holding a compressed payload
+	 * @param offset the index of the first byte of the payload
+	 * @param length the length of the payload
+	 * @return the length the payload decompresses to
+	 * @throws IOException if the prefix is incomplete or announces a length too big for a frame
+	 * 						or too big for the compressed length, see {@link #getMaxRatio()}
+	 */
+	public static int originalLength(final byte[] payload, final int offset, final int length) throws IOException {
+		if(length < PREFIX_LENGTH) {
+			throw new IOException("the compressed payload is too short");
+		}
+		final int original = ((payload[offset + 1] & 0xFF) << 24) | ((payload[offset + 2] & 0xFF) << 16)
+				| ((payload[offset + 3] & 0xFF) << 8) | (payload[offset + 4] & 0xFF);
+		if(original < 0 || original > FrameValues.MAX_PAYLOAD_LENGTH) {
+			throw new IOException("invalid decompressed payload length: " + original);
+		}
+		if(original > (long) (length - PREFIX_LENGTH) * maxRatio) {
+			throw new IOException("decompressed payload length of " + original + " is too big for "
+					+ (length - PREFIX_LENGTH) + " compressed bytes");
+		}
+		return original;
+	}
+
+	/**
+	 * decompresses a compressed payload into the given array
+	 * @param payload the array holding the compressed payload
+	 * @param offset the index of the first byte of the payload
+	 * @param length the length of the payload
+	 * @param target the array to decompress into, with space for {@link #originalLength(byte[], int, int)} bytes
+	 * @param targetOffset the index of the first decompressed byte in the target
+	 * @throws IOException an error occuring while decompressing, also if the compressor is unknown
+	 */
+	public static void decompress(final byte[] payload, final int offset, final int length,
+			final byte[] target, final int targetOffset) throws IOException {
+		final int original = originalLength(payload, offset, length);
+		compressorOf(payload[offset]).decompress(payload, offset + PREFIX_LENGTH, length - PREFIX_LENGTH, target, targetOffset, original);
+	}
+
+	/**
+	 * decompresses a compressed payload read from the given stream. Unlike the
+	 * other variants the payload is not held in memory as a whole, if the
+	 * compressor decompresses piece by piece, as {@link DeflateCompressor} does
+	 * @param in the stream to read the payload from, which is read up to its end
+	 * @param length the length of the payload
+	 * @param out the stream to write the decompressed bytes to
+	 * @return the amount of decompressed bytes
+	 * @throws IOException an error occuring while reading, decompressing or writing, also if the
+	 * 						compressor is unknown or the prefix is invalid, see {@link #originalLength(byte[], int, int)}
+	 */
+	public static int decompress(final InputStream in, final int length, final OutputStream out) throws IOException {
+		if(length < PREFIX_LENGTH) {
+			throw new IOException("the compressed payload is too short");
+		}
+		final byte[] prefix = new byte[PREFIX_LENGTH];
+		if(in.readNBytes(prefix, 0, PREFIX_LENGTH) < PREFIX_LENGTH) {
+			throw new EOFException("stream ended before the end of the compressed payload");
+		}
+		//the length is only needed for the ratio, the prefix is all that is read
+		final int original = originalLength(prefix, 0, length);
+		compressorOf(prefix[0]).decompress(in, length - PREFIX_LENGTH, out, original);
+		return original;
+	}
+
+	/**
+	 * @return the amount of times the original length of a received payload may exceed its compressed length
+	 */
+	public static int getMaxRatio() {
+		return maxRatio;
+	}
+
+	/**
+	 * sets the amount of times the original length of a received payload may exceed its
+	 * compressed length, {@link #DEFAULT_MAX_RATIO} by default. Payloads announcing a
+	 * bigger length are rejected before anything is allocated
+	 * @param ratio the highest ratio accepted, for all components
+	 */
+	public static void setMaxRatio(final int ratio) {
+		maxRatio = ratio;
+	}
+
+	private static Compressor compressorOf(final byte id) throws IOException {
+		final Compressor compressor = COMPRESSORS.get(id & 0xFF);
+		if(compressor == null) {
+			throw new IOException("no compressor registered for id " + id);
+		}
+		return compressor;
+	}
+
+	public Compressor getCompressor() {
+		return compressor;
+	}
+
+	public int getThreshold() {
+		return threshold;
+	}
+
+	@Override
+	public String toString() {
+		return "compression with " + compressor + " from " + threshold + " bytes on";
+	}
+}
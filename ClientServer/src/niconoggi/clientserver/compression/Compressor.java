@@ -0,0 +1,71 @@
+package niconoggi.clientserver.compression;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A compression algorithm used by the {@link Compression} stage. Every
+ * algorithm has an id of its own, which is sent with every compressed
+ * payload, so receivers know how to decompress it without any negotiation.
+ * Receivers find the algorithm by {@link Compression#register(Compressor)}.
+ * <p>
+ * Implementations must be thread safe, as a compressor is shared
+ * by all connections using the same {@link Compression}.
+ * @author niconoggi
+ *
+ */
+public interface Compressor {
+
+	/**
+	 * @return the id identifying the algorithm on the wire
+	 */
+	byte getId();
+
+	/**
+	 * compresses the given bytes
+	 * @param data the array holding the bytes to compress
+	 * @param offset the index of the first byte to compress
+	 * @param length the amount of bytes to compress
+	 * @param out the stream to write the compressed bytes to
+	 * @throws IOException an error occuring while compressing
+	 */
+	void compress(final byte[] data, final int offset, final int length, final OutputStream out) throws IOException;
+
+	/**
+	 * decompresses the given bytes into the target array
+	 * @param data the array holding the compressed bytes
+	 * @param offset the index of the first compressed byte
+	 * @param length the amount of compressed bytes
+	 * @param target the array to decompress into
+	 * @param targetOffset the index of the first decompressed byte in the target
+	 * @param originalLength the amount of bytes the data decompresses to
+	 * @throws IOException an error occuring while decompressing, also if the data
+	 * 						does not decompress to exactly the original length
+	 */
+	void decompress(final byte[] data, final int offset, final int length,
+			final byte[] target, final int targetOffset, final int originalLength) throws IOException;
+
+	/**
+	 * decompresses the given amount of compressed bytes read from the stream into
+	 * the other stream. By default the bytes are read and decompressed as a whole by
+	 * {@link #decompress(byte[], int, int, byte[], int, int)}, compressors able to
+	 * decompress piece by piece should override this
+	 * @param in the stream to read the compressed bytes from, which is read up to their end
+	 * @param length the amount of compressed bytes
+	 * @param out the stream to write the decompressed bytes to
+	 * @param originalLength the amount of bytes the data decompresses to
+	 * @throws IOException an error occuring while reading, decompressing or writing, also if the
+	 * 						data does not decompress to exactly the original length
+	 */
+	default void decompress(final InputStream in, final int length, final OutputStream out, final int originalLength) throws IOException {
+		final byte[] data = in.readNBytes(length);
+		if(data.length < length) {
+			throw new EOFException("stream ended " + (length - data.length) + " bytes before the end of the compressed bytes");
+		}
+		final byte[] original = new byte[originalLength];
+		decompress(data, 0, length, original, 0, originalLength);
+		out.write(original);
+	}
+}
@@ -0,0 +1,170 @@
+package niconoggi.clientserver.compression;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import niconoggi.clientserver.util.BufferPool;
+import niconoggi.clientserver.util.ObjectPool;
+
+/**
+ * The built-in {@link Compressor} using {@link Deflater} and {@link Inflater}.
+ * The {@link Deflater}s and {@link Inflater}s are pooled and reset before every use,
+ * as creating them allocates native memory. The ones not fitting into their
+ * pool are ended right away, which frees that memory.
+ * <p>
+ * The compression level only matters for compressing, so payloads of
+ * compressors with any level are decompressed by any other instance.
+ * By default {@link Deflater#BEST_SPEED} is used, which for repetitive data
+ * compresses almost as well as the higher levels at a fraction of their cost.
+ * @author niconoggi
+ *
+ */
+public class DeflateCompressor implements Compressor {
+
+	public static final byte ID = 1;
+
+	private static final int CHUNK_SIZE = 8192;
+	private static final ObjectPool<Inflater> INFLATERS = new ObjectPool<Inflater>(ObjectPool.PER_PROCESSOR_CAPACITY, Inflater::end);
+
+	private final int level;
+	private final ObjectPool<Deflater> deflaters = new ObjectPool<Deflater>(ObjectPool.PER_PROCESSOR_CAPACITY, Deflater::end);
+
+	public DeflateCompressor() {
+		this(Deflater.BEST_SPEED);
+	}
+
+	/**
+	 * @param level the compression level between {@link Deflater#BEST_SPEED} and {@link Deflater#BEST_COMPRESSION}
+	 */
+	public DeflateCompressor(final int level) {
+		this.level = level;
+	}
+
+	@Override
+	public byte getId() {
+		return ID;
+	}
+
+	@Override
+	public void compress(final byte[] data, final int offset, final int length, final OutputStream out) throws IOException {
+		final Deflater deflater = takeDeflater();
+		final byte[] chunk = BufferPool.acquire(CHUNK_SIZE);
+		try {
+			deflater.setInput(data, offset, length);
+			deflater.finish();
+			while(!deflater.finished()) {
+				final int written = deflater.deflate(chunk, 0, chunk.length);
+				out.write(chunk, 0, written);
+			}
+		} finally {
+			BufferPool.release(chunk);
+			deflaters.offer(deflater);
+		}
+	}
+
+	@Override
+	public void decompress(final byte[] data, final int offset, final int length,
+			final byte[] target, final int targetOffset, final int originalLength) throws IOException {
+		final Inflater inflater = takeInflater();
+		int read = 0;
+		try {
+			inflater.setInput(data, offset, length);
+			while(!inflater.finished() && read < originalLength) {
+				final int inflated = inflater.inflate(target, targetOffset + read, originalLength - read);
+				if(inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+				read += inflated;
+			}
+		} catch (DataFormatException e) {
+			throw new IOException("the compressed payload is corrupt", e);
+		} finally {
+			INFLATERS.offer(inflater);
+		}
+		if(read != originalLength) {
+			throw new IOException("the compressed payload does not decompress to " + originalLength + " bytes");
+		}
+	}
+
+	@Override
+	public void decompress(final InputStream in, final int length, final OutputStream out, final int originalLength) throws IOException {
+		final Inflater inflater = takeInflater();
+		final byte[] input = BufferPool.acquire(CHUNK_SIZE);
+		final byte[] output = BufferPool.acquire(CHUNK_SIZE);
+		try {
+			int unread = length;
+			long written = 0;
+			while(!inflater.finished()) {
+				if(inflater.needsInput()) {
+					if(unread == 0) {
+						break;
+					}
+					final int read = in.read(input, 0, Math.min(input.length, unread));
+					if(read < 0) {
+						throw new EOFException("stream ended " + unread + " bytes before the end of the compressed bytes");
+					}
+					unread -= read;
+					inflater.setInput(input, 0, read);
+				}
+				final int inflated = inflater.inflate(output, 0, output.length);
+				if(inflated == 0 && inflater.needsDictionary()) {
+					break;
+				}
+				written += inflated;
+				if(written > originalLength) {
+					break;
+				}
+				out.write(output, 0, inflated);
+			}
+			if(written != originalLength) {
+				throw new IOException("the compressed payload does not decompress to " + originalLength + " bytes");
+			}
+			//bytes following the compressed data are ignored, like by the array variant
+			in.skipNBytes(unread);
+		} catch (DataFormatException e) {
+			throw new IOException("the compressed payload is corrupt", e);
+		} finally {
+			BufferPool.release(input);
+			BufferPool.release(output);
+			INFLATERS.offer(inflater);
+		}
+	}
+
+	/**
+	 * @return a reset deflater out of the pool, or a new one
+	 */
+	private Deflater takeDeflater() {
+		final Deflater deflater = deflaters.poll();
+		if(deflater == null) {
+			return new Deflater(level);
+		}
+		deflater.reset();
+		return deflater;
+	}
+
+	/**
+	 * @return a reset inflater out of the pool, or a new one
+	 */
+	private static Inflater takeInflater() {
+		final Inflater inflater = INFLATERS.poll();
+		if(inflater == null) {
+			return new Inflater();
+		}
+		inflater.reset();
+		return inflater;
+	}
+
+	public int getLevel() {
+		return level;
+	}
+
+	@Override
+	public String toString() {
+		return "deflate compressor, level = " + level;
+	}
+}
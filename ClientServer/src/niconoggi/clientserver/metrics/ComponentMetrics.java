@@ -0,0 +1,275 @@
+package niconoggi.clientserver.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import niconoggi.clientserver.protocol.FrameValues;
+
+/**
+ * The metrics of a single server or client. Every server and client records
+ * into metrics of its own, which can be read directly or, once registered by
+ * the {@link MetricsRegistry}, over JMX.
+ * <p>
+ * Counters are {@link LongAdder}s and durations are recorded into
+ * {@link LatencyHistogram}s, so recording costs a few nanoseconds and does
+ * not slow down threads recording at the same time:
+ * <ul>
+ * <li>connects: the connections a client opened or a server took on</li>
+ * <li>accepts and rejects: the connections the acceptor of a server accepted, and
+ * the ones it closed right away as its queue was full</li>
+ * <li>bytes and messages: the frames sent and received, in bytes as on the wire</li>
+ * <li>errors: the failed exchanges and connections</li>
+ * <li>dropped: the messages a server dropped instead of writing them to a slow client</li>
+ * <li>encode and decode: the time the codecs took to convert the data</li>
+ * <li>exchange: the time from sending a request to receiving its answer, for clients</li>
+ * </ul>
+ * @author niconoggi
+ *
+ */
+public class ComponentMetrics implements ComponentMetricsMBean {
+
+	private final LongAdder connects = new LongAdder();
+	private final LongAdder accepts = new LongAdder();
+	private final LongAdder rejects = new LongAdder();
+	private final LongAdder bytesIn = new LongAdder();
+	private final LongAdder bytesOut = new LongAdder();
+	private final LongAdder messagesIn = new LongAdder();
+	private final LongAdder messagesOut = new LongAdder();
+	private final LongAdder errors = new LongAdder();
+	private final LongAdder dropped = new LongAdder();
+	private final LatencyHistogram encodeTime = new LatencyHistogram();
+	private final LatencyHistogram decodeTime = new LatencyHistogram();
+	private final LatencyHistogram exchangeTime = new LatencyHistogram();
+
+	public void recordConnect() {
+		connects.increment();
+	}
+
+	public void recordAccept() {
+		accepts.increment();
+	}
+
+	public void recordReject() {
+		rejects.increment();
+	}
+
+	public void recordError() {
+		errors.increment();
+	}
+
+	/**
+	 * @param messages the amount of messages dropped instead of being written
+	 */
+	public void recordDropped(final long messages) {
+		dropped.add(messages);
+	}
+
+	/**
+	 * records a sent frame
+	 * @param payloadLength the length of the payload as sent, so after compressing
+	 */
+	public void recordSent(final int payloadLength) {
+		messagesOut.increment();
+		bytesOut.add(FrameValues.HEADER_LENGTH + payloadLength);
+	}
+
+	/**
+	 * records a received frame
+	 * @param payloadLength the length of the payload as received, so before decompressing
+	 */
+	public void recordReceived(final int payloadLength) {
+		messagesIn.increment();
+		bytesIn.add(FrameValues.HEADER_LENGTH + payloadLength);
+	}
+
+	/**
+	 * @param startNanos the point in time encoding started at, as given by {@link System#nanoTime()}
+	 */
+	public void recordEncode(final long startNanos) {
+		encodeTime.recordSince(startNanos);
+	}
+
+	/**
+	 * @param startNanos the point in time decoding started at, as given by {@link System#nanoTime()}
+	 */
+	public void recordDecode(final long startNanos) {
+		decodeTime.recordSince(startNanos);
+	}
+
+	/**
+	 * @param startNanos the point in time the request was sent at, as given by {@link System#nanoTime()}
+	 */
+	public void recordExchange(final long startNanos) {
+		exchangeTime.recordSince(startNanos);
+	}
+
+	public LatencyHistogram getEncodeTime() {
+		return encodeTime;
+	}
+
+	public LatencyHistogram getDecodeTime() {
+		return decodeTime;
+	}
+
+	public LatencyHistogram getExchangeTime() {
+		return exchangeTime;
+	}
+
+	@Override
+	public long getConnects() {
+		return connects.sum();
+	}
+
+	@Override
+	public long getAccepts() {
+		return accepts.sum();
+	}
+
+	@Override
+	public long getRejects() {
+		return rejects.sum();
+	}
+
+	@Override
+	public long getBytesIn() {
+		return bytesIn.sum();
+	}
+
+	@Override
+	public long getBytesOut() {
+		return bytesOut.sum();
+	}
+
+	@Override
+	public long getMessagesIn() {
+		return messagesIn.sum();
+	}
+
+	@Override
+	public long getMessagesOut() {
+		return messagesOut.sum();
+	}
+
+	@Override
+	public long getErrors() {
+		return errors.sum();
+	}
+
+	@Override
+	public long getDropped() {
+		return dropped.sum();
+	}
+
+	@Override
+	public long getEncodeCount() {
+		return encodeTime.getCount();
+	}
+
+	@Override
+	public double getEncodeMeanNanos() {
+		return encodeTime.getMean();
+	}
+
+	@Override
+	public long getEncode50thPercentileNanos() {
+		return encodeTime.getPercentile(50);
+	}
+
+	@Override
+	public long getEncode99thPercentileNanos() {
+		return encodeTime.getPercentile(99);
+	}
+
+	@Override
+	public long getEncodeMaxNanos() {
+		return encodeTime.getMax();
+	}
+
+	@Override
+	public long getDecodeCount() {
+		return decodeTime.getCount();
+	}
+
+	@Override
+	public double getDecodeMeanNanos() {
+		return decodeTime.getMean();
+	}
+
+	@Override
+	public long getDecode50thPercentileNanos() {
+		return decodeTime.getPercentile(50);
+	}
+
+	@Override
+	public long getDecode99thPercentileNanos() {
+		return decodeTime.getPercentile(99);
+	}
+
+	@Override
+	public long getDecodeMaxNanos() {
+		return decodeTime.getMax();
+	}
+
+	@Override
+	public long getExchangeCount() {
+		return exchangeTime.getCount();
+	}
+
+	@Override
+	public double getExchangeMeanNanos() {
+		return exchangeTime.getMean();
+	}
+
+	@Override
+	public long getExchange50thPercentileNanos() {
+		return exchangeTime.getPercentile(50);
+	}
+
+	@Override
+	public long getExchange99thPercentileNanos() {
+		return exchangeTime.getPercentile(99);
+	}
+
+	@Override
+	public long getExchange999thPercentileNanos() {
+		return exchangeTime.getPercentile(99.9);
+	}
+
+	@Override
+	public long getExchangeMaxNanos() {
+		return exchangeTime.getMax();
+	}
+
+	@Override
+	public void reset() {
+		connects.reset();
+		accepts.reset();
+		rejects.reset();
+		bytesIn.reset();
+		bytesOut.reset();
+		messagesIn.reset();
+		messagesOut.reset();
+		errors.reset();
+		dropped.reset();
+		encodeTime.reset();
+		decodeTime.reset();
+		exchangeTime.reset();
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder builder = new StringBuilder("metrics: ");
+		builder.append("connects = ").append(getConnects());
+		builder.append(", accepts = ").append(getAccepts());
+		builder.append(", rejects = ").append(getRejects());
+		builder.append(", bytes in = ").append(getBytesIn());
+		builder.append(", bytes out = ").append(getBytesOut());
+		builder.append(", messages in = ").append(getMessagesIn());
+		builder.append(", messages out = ").append(getMessagesOut());
+		builder.append(", errors = ").append(getErrors());
+		builder.append(", dropped = ").append(getDropped());
+		builder.append(", encode: {").append(encodeTime).append("}");
+		builder.append(", decode: {").append(decodeTime).append("}");
+		builder.append(", exchange: {").append(exchangeTime).append("}");
+		return builder.toString();
+	}
+}
@@ -0,0 +1,65 @@
+package niconoggi.clientserver.metrics;
+
+/**
+ * The management interface of {@link ComponentMetrics}, as shown by JMX clients
+ * such as JConsole or VisualVM. Durations are given in nanoseconds.
+ * @author niconoggi
+ *
+ */
+public interface ComponentMetricsMBean {
+
+	long getConnects();
+
+	long getAccepts();
+
+	long getRejects();
+
+	long getBytesIn();
+
+	long getBytesOut();
+
+	long getMessagesIn();
+
+	long getMessagesOut();
+
+	long getErrors();
+
+	long getDropped();
+
+	long getEncodeCount();
+
+	double getEncodeMeanNanos();
+
+	long getEncode50thPercentileNanos();
+
+	long getEncode99thPercentileNanos();
+
+	long getEncodeMaxNanos();
+
+	long getDecodeCount();
+
+	double getDecodeMeanNanos();
+
+	long getDecode50thPercentileNanos();
+
+	long getDecode99thPercentileNanos();
+
+	long getDecodeMaxNanos();
+
+	long getExchangeCount();
+
+	double getExchangeMeanNanos();
+
+	long getExchange50thPercentileNanos();
+
+	long getExchange99thPercentileNanos();
+
+	long getExchange999thPercentileNanos();
+
+	long getExchangeMaxNanos();
+
+	/**
+	 * sets all counters and histograms back to zero
+	 */
+	void reset();
+}
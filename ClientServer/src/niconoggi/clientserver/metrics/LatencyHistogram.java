@@ -0,0 +1,145 @@
+package niconoggi.clientserver.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records durations in nanoseconds into a fixed set of buckets, so recording
+ * neither allocates nor locks and the memory used does not depend on the amount
+ * of recorded values.
+ * <p>
+ * The buckets are laid out like in an HDR histogram: every power of two is split
+ * into {@link #SUB_BUCKETS} buckets of the same width, so every value is
+ * recorded with a relative error of at most 1 / {@link #SUB_BUCKETS}, from single
+ * nanoseconds up to hours. Percentiles are reported as the upper bound of the
+ * bucket they fall into.
+ * <p>
+ * A histogram is thread safe. Reading while others record gives a view that
+ * may miss the values recorded at the same time.
+ * @author niconoggi
+ *
+ */
+public class LatencyHistogram {
+
+	/** the amount of buckets every power of two is split into */
+	public static final int SUB_BUCKETS = 8;
+
+	private static final int SUB_BUCKET_BITS = Integer.numberOfTrailingZeros(SUB_BUCKETS);
+	private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+	/**
+	 * records a duration
+	 * @param nanos the duration in nanoseconds, negative durations are recorded as 0
+	 */
+	public void record(final long nanos) {
+		final long value = Math.max(0, nanos);
+		counts.incrementAndGet(bucketOf(value));
+		count.increment();
+		sum.add(value);
+		max.accumulate(value);
+	}
+
+	/**
+	 * records the time passed since the given start
+	 * @param startNanos the start as given by {@link System#nanoTime()}
+	 */
+	public void recordSince(final long startNanos) {
+		record(System.nanoTime() - startNanos);
+	}
+
+	/**
+	 * @return the amount of recorded durations
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * @return the mean of the recorded durations in nanoseconds, 0 if there are none
+	 */
+	public double getMean() {
+		final long recorded = count.sum();
+		return recorded == 0 ? 0 : sum.sum() / (double) recorded;
+	}
+
+	/**
+	 * @return the longest recorded duration in nanoseconds
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * @param percentile the percentile between 0 and 100, such as 99.9
+	 * @return the duration in nanoseconds the given percentage of the recorded
+	 * 			durations did not exceed, 0 if there are none
+	 */
+	public long getPercentile(final double percentile) {
+		final long[] snapshot = new long[BUCKETS];
+		long total = 0;
+		for(int bucket = 0; bucket < BUCKETS; bucket++) {
+			snapshot[bucket] = counts.get(bucket);
+			total += snapshot[bucket];
+		}
+		if(total == 0) {
+			return 0;
+		}
+		final long rank = Math.max(1, (long) Math.ceil(total * Math.min(100, percentile) / 100));
+		long seen = 0;
+		for(int bucket = 0; bucket < BUCKETS; bucket++) {
+			seen += snapshot[bucket];
+			if(seen >= rank) {
+				return Math.min(upperBoundOf(bucket), max.get());
+			}
+		}
+		return max.get();
+	}
+
+	/**
+	 * discards all recorded durations. Durations recorded at the same time may be kept partly
+	 */
+	public void reset() {
+		for(int bucket = 0; bucket < BUCKETS; bucket++) {
+			counts.set(bucket, 0);
+		}
+		count.reset();
+		sum.reset();
+		max.reset();
+	}
+
+	private static int bucketOf(final long value) {
+		if(value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		final int exponent = 63 - Long.numberOfLeadingZeros(value);
+		final int shift = exponent - SUB_BUCKET_BITS;
+		return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+	}
+
+	private static long upperBoundOf(final int bucket) {
+		if(bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		final int shift = bucket / SUB_BUCKETS - 1;
+		final long lowerBound = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+		return lowerBound + (1L << shift) - 1;
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder builder = new StringBuilder();
+		builder.append("count = ").append(getCount());
+		builder.append(", mean = ").append(TimeUnit.NANOSECONDS.toMicros((long) getMean())).append("us");
+		builder.append(", p50 = ").append(TimeUnit.NANOSECONDS.toMicros(getPercentile(50))).append("us");
+		builder.append(", p99 = ").append(TimeUnit.NANOSECONDS.toMicros(getPercentile(99))).append("us");
+		builder.append(", max = ").append(TimeUnit.NANOSECONDS.toMicros(getMax())).append("us");
+		return builder.toString();
+	}
+}
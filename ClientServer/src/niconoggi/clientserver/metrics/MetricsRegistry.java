@@ -0,0 +1,68 @@
+package niconoggi.clientserver.metrics;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Util class registering {@link ComponentMetrics} as MBeans at the platform
+ * MBean server, under the domain {@link #DOMAIN}, as
+ * {@code niconoggi.clientserver:type=<type>,name=<name>}.
+ * <p>
+ * Servers register their metrics on start and unregister them on stop.
+ * Clients only do so if asked to, as short lived clients would fill
+ * the MBean server otherwise.
+ * @author niconoggi
+ *
+ */
+public class MetricsRegistry {
+
+	public static final String DOMAIN = "niconoggi.clientserver";
+	public static final String TYPE_SERVER = "Server";
+	public static final String TYPE_CLIENT = "Client";
+
+	private MetricsRegistry() {}
+
+	/**
+	 * registers the metrics under the given type and name, replacing
+	 * metrics registered under the same name so far
+	 * @param type the type of the component, such as {@link #TYPE_SERVER}
+	 * @param name the name of the component, unique per type
+	 * @param metrics the metrics to register
+	 * @return the name the metrics are registered under or null, if registering failed
+	 */
+	public static ObjectName register(final String type, final String name, final ComponentMetrics metrics) {
+		try {
+			final ObjectName objectName = new ObjectName(DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name));
+			final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			if(server.isRegistered(objectName)) {
+				server.unregisterMBean(objectName);
+			}
+			server.registerMBean(metrics, objectName);
+			return objectName;
+		} catch (JMException e) {
+			//metrics are optional, a component works without them
+			return null;
+		}
+	}
+
+	/**
+	 * unregisters the metrics registered under the given name
+	 * @param objectName the name returned by {@link #register(String, String, ComponentMetrics)} or null
+	 */
+	public static void unregister(final ObjectName objectName) {
+		if(objectName == null) {
+			return;
+		}
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+		} catch (InstanceNotFoundException e) {
+			//unregistered already
+		} catch (JMException e) {
+			//metrics are optional, a component works without them
+		}
+	}
+}
@@ -0,0 +1,140 @@
+package niconoggi.clientserver.protocol;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the chunks of a streamed message to a single {@link Flow.Subscriber}.
+ * Chunks are only read from the connection as the subscriber requests them,
+ * so a subscriber that does not request more holds back the sender.
+ * <p>
+ * The chunks are read and published on a virtual thread. Cancelling skips the
+ * rest of the message, so the connection can be used for the next one.
+ * @author niconoggi
+ *
+ */
+public class ChunkPublisher implements Flow.Publisher<ByteBuffer> {
+
+	private final ChunkedInputStream source;
+	private final Executor executor;
+	private final AtomicBoolean subscribed = new AtomicBoolean();
+
+	/**
+	 * @param source the message to publish
+	 */
+	public ChunkPublisher(final ChunkedInputStream source) {
+		this(source, Thread::startVirtualThread);
+	}
+
+	/**
+	 * @param source the message to publish
+	 * @param executor the executor reading and publishing the chunks
+	 */
+	public ChunkPublisher(final ChunkedInputStream source, final Executor executor) {
+		this.source = source;
+		this.executor = executor;
+	}
+
+	@Override
+	public void subscribe(final Flow.Subscriber<? super ByteBuffer> subscriber) {
+		if(!subscribed.compareAndSet(false, true)) {
+			subscriber.onSubscribe(new ChunkSubscription(subscriber, true));
+			subscriber.onError(new IllegalStateException("the message can only be read once"));
+			return;
+		}
+		subscriber.onSubscribe(new ChunkSubscription(subscriber, false));
+	}
+
+	private final class ChunkSubscription implements Flow.Subscription {
+
+		private final Flow.Subscriber<? super ByteBuffer> subscriber;
+		private final AtomicLong demand = new AtomicLong();
+		/** true while a thread reads and publishes, so only one does at a time */
+		private final AtomicBoolean draining = new AtomicBoolean();
+		private volatile boolean cancelled;
+		/** the error of an invalid request, which the draining thread signals */
+		private volatile IllegalArgumentException invalidRequest;
+		private boolean done;
+
+		private ChunkSubscription(final Flow.Subscriber<? super ByteBuffer> subscriber, final boolean done) {
+			this.subscriber = subscriber;
+			this.done = done;
+		}
+
+		@Override
+		public void request(final long n) {
+			if(n <= 0) {
+				//signalled by the draining thread, so it does not overlap with onNext
+				invalidRequest = new IllegalArgumentException("the requested amount has to be positive, was " + n);
+				cancelled = true;
+				schedule();
+				return;
+			}
+			demand.accumulateAndGet(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+			schedule();
+		}
+
+		@Override
+		public void cancel() {
+			cancelled = true;
+			schedule();
+		}
+
+		private void skipRest() {
+			try {
+				source.close();
+			} catch (IOException e) {
+				//the subscriber cancelled, so it is not told about errors anymore
+			}
+		}
+
+		private void schedule() {
+			if(draining.compareAndSet(false, true)) {
+				executor.execute(this::drain);
+			}
+		}
+
+		private void drain() {
+			try {
+				if(done) {
+					return;
+				}
+				if(invalidRequest != null) {
+					done = true;
+					skipRest();
+					subscriber.onError(invalidRequest);
+					return;
+				}
+				if(cancelled) {
+					done = true;
+					skipRest();
+					return;
+				}
+				while(demand.get() > 0 && !cancelled) {
+					final ByteBuffer chunk = source.readChunk();
+					if(chunk == null) {
+						done = true;
+						subscriber.onComplete();
+						return;
+					}
+					demand.decrementAndGet();
+					subscriber.onNext(chunk);
+				}
+			} catch (IOException e) {
+				done = true;
+				subscriber.onError(e);
+				return;
+			} finally {
+				draining.set(false);
+			}
+			//requests or a cancel arriving while draining have to be handled as well
+			if(!done && (cancelled || demand.get() > 0)) {
+				schedule();
+			}
+		}
+	}
+}
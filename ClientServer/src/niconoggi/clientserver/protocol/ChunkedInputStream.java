@@ -0,0 +1,153 @@
+package niconoggi.clientserver.protocol;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import niconoggi.clientserver.compression.Compression;
+
+/**
+ * Reads a message written by a {@link ChunkedOutputStream} chunk by chunk, so
+ * only a single chunk is held at a time, no matter how long the message is.
+ * A plain {@link FrameValues#TYPE_DATA} frame is read as a message of a single chunk.
+ * <p>
+ * A chunk is only read from the connection once the one before is used up,
+ * so a receiver reading slowly slows the sender down. Closing the stream skips
+ * the rest of the message, so the connection can be used for the next one,
+ * but does not close the connection.
+ * @author niconoggi
+ *
+ */
+public class ChunkedInputStream extends InputStream {
+
+	/**
+	 * the origin of the chunk frames, such as the connection of a client
+	 */
+	@FunctionalInterface
+	public interface FrameSource {
+
+		/**
+		 * @return the next frame, blocking until it is read completely
+		 * @throws IOException an error occuring while reading
+		 */
+		MessageFrame read() throws IOException;
+	}
+
+	private static final byte[] NO_BYTES = new byte[0];
+
+	private final FrameSource source;
+	private byte[] chunk = NO_BYTES;
+	private int position;
+	private boolean ended;
+	private long read;
+
+	/**
+	 * @param source the origin of the chunk frames
+	 */
+	public ChunkedInputStream(final FrameSource source) {
+		this.source = source;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if(!fill()) {
+			return -1;
+		}
+		read++;
+		return chunk[position++] & 0xFF;
+	}
+
+	@Override
+	public int read(final byte[] bytes, final int offset, final int count) throws IOException {
+		if(count == 0) {
+			return 0;
+		}
+		if(!fill()) {
+			return -1;
+		}
+		final int copied = Math.min(count, chunk.length - position);
+		System.arraycopy(chunk, position, bytes, offset, copied);
+		position += copied;
+		read += copied;
+		return copied;
+	}
+
+	@Override
+	public int available() {
+		return chunk.length - position;
+	}
+
+	/**
+	 * returns the rest of the current chunk or, if it is used up, the next chunk
+	 * as a whole, without copying it
+	 * @return the bytes or null, if the message ended
+	 * @throws IOException an error occuring while reading
+	 */
+	public ByteBuffer readChunk() throws IOException {
+		if(!fill()) {
+			return null;
+		}
+		final ByteBuffer rest = ByteBuffer.wrap(chunk, position, chunk.length - position);
+		read += rest.remaining();
+		position = chunk.length;
+		return rest;
+	}
+
+	/**
+	 * skips the rest of the message. The connection stays open
+	 */
+	@Override
+	public void close() throws IOException {
+		position = chunk.length;
+		while(!ended) {
+			nextChunk();
+		}
+		chunk = NO_BYTES;
+		position = 0;
+	}
+
+	/**
+	 * @return the amount of bytes of the message read so far
+	 */
+	public long getRead() {
+		return read;
+	}
+
+	/**
+	 * @return true, if the last chunk of the message was read
+	 */
+	public boolean isEnded() {
+		return ended;
+	}
+
+	/**
+	 * reads chunks until there is a byte left to read or the message ended
+	 * @return true, if there is a byte left to read
+	 */
+	private boolean fill() throws IOException {
+		while(position == chunk.length) {
+			if(ended) {
+				return false;
+			}
+			nextChunk();
+		}
+		return true;
+	}
+
+	private void nextChunk() throws IOException {
+		final MessageFrame frame = Compression.decompress(source.read());
+		switch (frame.getType()) {
+		case FrameValues.TYPE_CHUNK:
+			break;
+		case FrameValues.TYPE_CHUNK_END:
+		case FrameValues.TYPE_DATA:
+			ended = true;
+			break;
+		default:
+			ended = true;
+			throw new IOException("expected a chunk of a streamed message, got a frame of type " + frame.getType());
+		}
+		chunk = frame.getPayload();
+		position = 0;
+	}
+}
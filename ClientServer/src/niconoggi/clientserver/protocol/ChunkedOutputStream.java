@@ -0,0 +1,116 @@
+package niconoggi.clientserver.protocol;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import niconoggi.clientserver.compression.Compression;
+
+/**
+ * Writes a message of any length as a sequence of frames, so neither side
+ * has to hold the whole message. The written bytes are collected until a
+ * chunk is full, which is then written as a {@link FrameValues#TYPE_CHUNK}
+ * frame. Closing the stream writes the rest as {@link FrameValues#TYPE_CHUNK_END}
+ * frame, which ends the message.
+ * <p>
+ * Writing blocks while the connection does not take more bytes, so a sender
+ * never gets further ahead of a slow receiver than the socket buffers allow.
+ * Closing the stream does not close the connection.
+ * @author niconoggi
+ *
+ */
+public class ChunkedOutputStream extends OutputStream {
+
+	/**
+	 * the destination of the chunk frames, such as the connection of a client
+	 */
+	@FunctionalInterface
+	public interface FrameSink {
+
+		/**
+		 * @param frame the complete chunk frame to write
+		 * @throws IOException an error occuring while writing
+		 */
+		void write(MessageFrame frame) throws IOException;
+	}
+
+	private final FrameSink sink;
+	private final Compression compression;
+	private final byte[] chunk;
+	private int length;
+	private long written;
+	private boolean closed;
+
+	/**
+	 * @param sink the destination of the chunk frames
+	 * @param chunkLength the payload length of a chunk
+	 * @param compression the compression applied to every chunk or null, to write them as they are
+	 */
+	public ChunkedOutputStream(final FrameSink sink, final int chunkLength, final Compression compression) {
+		if(chunkLength <= 0 || chunkLength > FrameValues.MAX_PAYLOAD_LENGTH) {
+			throw new IllegalArgumentException("the chunk length has to be between 1 and " + FrameValues.MAX_PAYLOAD_LENGTH);
+		}
+		this.sink = sink;
+		this.compression = compression;
+		chunk = new byte[chunkLength];
+	}
+
+	@Override
+	public void write(final int b) throws IOException {
+		ensureOpen();
+		chunk[length++] = (byte) b;
+		if(length == chunk.length) {
+			writeChunk(FrameValues.TYPE_CHUNK);
+		}
+	}
+
+	@Override
+	public void write(final byte[] bytes, final int offset, final int count) throws IOException {
+		ensureOpen();
+		int position = offset;
+		final int end = offset + count;
+		while(position < end) {
+			final int copied = Math.min(chunk.length - length, end - position);
+			System.arraycopy(bytes, position, chunk, length, copied);
+			length += copied;
+			position += copied;
+			if(length == chunk.length) {
+				writeChunk(FrameValues.TYPE_CHUNK);
+			}
+		}
+	}
+
+	/**
+	 * writes the rest of the message as last chunk. The connection stays open
+	 */
+	@Override
+	public void close() throws IOException {
+		if(closed) {
+			return;
+		}
+		closed = true;
+		writeChunk(FrameValues.TYPE_CHUNK_END);
+	}
+
+	/**
+	 * @return the amount of bytes of the message written so far, before compressing
+	 */
+	public long getWritten() {
+		return written;
+	}
+
+	private void writeChunk(final byte type) throws IOException {
+		//a full chunk is written before it is reused, so it is not copied
+		final byte[] payload = length == chunk.length ? chunk : Arrays.copyOf(chunk, length);
+		final MessageFrame frame = new MessageFrame(type, FrameValues.NO_FLAGS, payload);
+		sink.write(compression == null ? frame : compression.compress(frame));
+		written += length;
+		length = 0;
+	}
+
+	private void ensureOpen() throws IOException {
+		if(closed) {
+			throw new IOException("the stream is closed");
+		}
+	}
+}
@@ -0,0 +1,238 @@
+package niconoggi.clientserver.protocol;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import niconoggi.clientserver.codec.Codec;
+import niconoggi.clientserver.compression.Compression;
+import niconoggi.clientserver.util.BufferPool;
+import niconoggi.clientserver.util.FramingUtil;
+
+/**
+ * A reusable buffer holding one complete {@link MessageFrame}, header and
+ * payload, in a single array taken from the {@link BufferPool}. Data can be
+ * encoded directly behind the header and decoded directly from the buffer,
+ * so reading and writing messages in steady state allocates no arrays at all.
+ * The array only grows if a frame does not fit into it.
+ * <p>
+ * An instance belongs to one connection and one direction and is not thread safe.
+ * @author niconoggi
+ *
+ */
+public class FrameBuffer {
+
+	private static final int INITIAL_SIZE = 1024;
+
+	private byte[] buffer = BufferPool.acquire(INITIAL_SIZE);
+	private final PayloadOutputStream payloadOut = new PayloadOutputStream();
+	private int payloadLength = -1;
+	private int receivedLength = -1;
+
+	/**
+	 * reads the next frame of the given stream into this buffer.
+	 * A compressed payload is decompressed right away
+	 * @param in the stream to read from
+	 * @throws IOException an error occuring while reading, see {@link FramingUtil#readFrame(InputStream)}
+	 */
+	public void readFrom(final InputStream in) throws IOException {
+		payloadLength = -1;
+		final int length = FramingUtil.readHeader(in, buffer);
+		receivedLength = length;
+		int read = 0;
+		while(read < length) {
+			//grows as the payload arrives, see FrameValues.INITIAL_PAYLOAD_CAPACITY
+			ensureCapacity(Math.min(length, Math.max(FrameValues.INITIAL_PAYLOAD_CAPACITY, 2 * read)), FrameValues.HEADER_LENGTH + read);
+			final int until = Math.min(length, buffer.length - FrameValues.HEADER_LENGTH);
+			FramingUtil.readPayload(in, buffer, FrameValues.HEADER_LENGTH + read, until - read);
+			read = until;
+		}
+		if((buffer[5] & FrameValues.FLAG_COMPRESSED) != 0) {
+			decompress(length);
+			return;
+		}
+		payloadLength = length;
+	}
+
+	/**
+	 * compresses the held payload, if the given compression applies to it. A payload
+	 * compressed already is not compressed again
+	 * @param compression the compression stage to use
+	 * @throws IOException an error occuring while compressing
+	 */
+	public void compress(final Compression compression) throws IOException {
+		if(isEmpty() || (buffer[5] & FrameValues.FLAG_COMPRESSED) != 0) {
+			return;
+		}
+		final byte[] compressed = compression.compressPayload(buffer, FrameValues.HEADER_LENGTH, payloadLength);
+		if(compressed == null) {
+			return;
+		}
+		final byte type = buffer[4];
+		final byte flags = buffer[5];
+		System.arraycopy(compressed, 0, buffer, FrameValues.HEADER_LENGTH, compressed.length);
+		FramingUtil.writeHeader(buffer, compressed.length, type, (byte) (flags | FrameValues.FLAG_COMPRESSED));
+		payloadLength = compressed.length;
+	}
+
+	/**
+	 * encodes the given data with the given codec directly behind
+	 * the header, growing the buffer while the data is written, so
+	 * the data is encoded once no matter its size
+	 * @param <D> the type of the data
+	 * @param codec the codec to encode with
+	 * @param data the data to encode
+	 * @throws IOException an error occuring while encoding
+	 */
+	public <D> void encode(final Codec<D> codec, final D data) throws IOException {
+		payloadLength = -1;
+		payloadOut.written = 0;
+		codec.encodeTo(data, payloadOut);
+		final int length = payloadOut.written;
+		FramingUtil.writeHeader(buffer, length, FrameValues.TYPE_DATA, FrameValues.NO_FLAGS);
+		payloadLength = length;
+	}
+
+	/**
+	 * @param <D> the type of the data
+	 * @param codec the codec to decode with
+	 * @return the payload decoded with the given codec
+	 * @throws IOException an error occuring while decoding
+	 */
+	public <D> D decode(final Codec<D> codec) throws IOException {
+		if(isEmpty()) {
+			throw new IOException("the buffer holds no frame");
+		}
+		return codec.decode(buffer, FrameValues.HEADER_LENGTH, payloadLength);
+	}
+
+	/**
+	 * writes the whole frame held by this buffer with a single write
+	 * @param out the stream to write to
+	 * @throws IOException an error occuring while writing
+	 */
+	public void writeTo(final OutputStream out) throws IOException {
+		out.write(buffer, 0, FrameValues.HEADER_LENGTH + payloadLength);
+		out.flush();
+	}
+
+	/**
+	 * @return a copy of the payload, as array of its own
+	 */
+	public byte[] copyPayload() {
+		return Arrays.copyOfRange(buffer, FrameValues.HEADER_LENGTH, FrameValues.HEADER_LENGTH + payloadLength);
+	}
+
+	public byte getType() {
+		return buffer[4];
+	}
+
+	public byte getFlags() {
+		return buffer[5];
+	}
+
+	/**
+	 * @return the length of the held payload or -1, if the buffer holds no frame
+	 */
+	public int getPayloadLength() {
+		return payloadLength;
+	}
+
+	/**
+	 * @return the length of the payload last read as it was received, so before
+	 * 			decompressing, or -1 if nothing was read yet
+	 */
+	public int getReceivedLength() {
+		return receivedLength;
+	}
+
+	/**
+	 * @return true, if the buffer holds no frame. false otherwise
+	 */
+	public boolean isEmpty() {
+		return payloadLength < 0;
+	}
+
+	/**
+	 * forgets the held frame, keeping the array for the next one
+	 */
+	public void clear() {
+		payloadLength = -1;
+	}
+
+	/**
+	 * replaces the compressed payload just read by the decompressed one
+	 * @param length the length of the compressed payload
+	 * @throws IOException an error occuring while decompressing
+	 */
+	private void decompress(final int length) throws IOException {
+		final int original = Compression.originalLength(buffer, FrameValues.HEADER_LENGTH, length);
+		final byte[] decompressed = BufferPool.acquire(FrameValues.HEADER_LENGTH + original);
+		boolean done = false;
+		try {
+			Compression.decompress(buffer, FrameValues.HEADER_LENGTH, length, decompressed, FrameValues.HEADER_LENGTH);
+			done = true;
+		} finally {
+			if(!done) {
+				BufferPool.release(decompressed);
+			}
+		}
+		FramingUtil.writeHeader(decompressed, original, buffer[4], (byte) (buffer[5] & ~FrameValues.FLAG_COMPRESSED));
+		BufferPool.release(buffer);
+		buffer = decompressed;
+		payloadLength = original;
+	}
+
+	/**
+	 * @param payloadCapacity the payload length the buffer has to hold
+	 * @param keep the amount of bytes at the start of the buffer to keep
+	 */
+	private void ensureCapacity(final int payloadCapacity, final int keep) {
+		final int needed = FrameValues.HEADER_LENGTH + payloadCapacity;
+		if(buffer.length >= needed) {
+			return;
+		}
+		final byte[] grown = BufferPool.acquire(needed);
+		System.arraycopy(buffer, 0, grown, 0, keep);
+		BufferPool.release(buffer);
+		buffer = grown;
+	}
+	
+	/**
+	 * the stream codecs encode into, writing behind the header and growing the buffer as needed
+	 */
+	private final class PayloadOutputStream extends OutputStream {
+		
+		private int written;
+		
+		@Override
+		public void write(final int b) throws IOException {
+			ensureWritable(1);
+			buffer[FrameValues.HEADER_LENGTH + written++] = (byte) b;
+		}
+		
+		@Override
+		public void write(final byte[] bytes, final int offset, final int length) throws IOException {
+			ensureWritable(length);
+			System.arraycopy(bytes, offset, buffer, FrameValues.HEADER_LENGTH + written, length);
+			written += length;
+		}
+		
+		private void ensureWritable(final int length) throws IOException {
+			final long needed = (long) written + length;
+			if(needed > FrameValues.MAX_PAYLOAD_LENGTH) {
+				throw new IOException("payload of more than " + FrameValues.MAX_PAYLOAD_LENGTH + " bytes is too long for a frame");
+			}
+			if(FrameValues.HEADER_LENGTH + needed > buffer.length) {
+				final int doubled = (int) Math.min(FrameValues.MAX_PAYLOAD_LENGTH, 2L * buffer.length);
+				ensureCapacity((int) Math.max(needed, doubled), FrameValues.HEADER_LENGTH + written);
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "frame buffer of " + buffer.length + " bytes, payload length = " + payloadLength;
+	}
+}
@@ -0,0 +1,72 @@
+package niconoggi.clientserver.protocol;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import niconoggi.clientserver.util.FramingUtil;
+
+/**
+ * Decodes {@link MessageFrame}s out of {@link ByteBuffer}s that may contain
+ * only parts of a frame, as it is the case for non-blocking channels.
+ * The decoder remembers what it already read, so a frame can be spread over
+ * any number of calls to {@link #decode(ByteBuffer)}. The payload array grows
+ * as the bytes arrive, see {@link FrameValues#INITIAL_PAYLOAD_CAPACITY}.
+ * <p>
+ * An instance belongs to exactly one connection and is not thread safe.
+ * @author niconoggi
+ *
+ */
+public class FrameDecoder {
+
+	private final byte[] header = new byte[FrameValues.HEADER_LENGTH];
+	private int headerRead;
+	private byte[] payload;
+	private int payloadLength;
+	private int payloadRead;
+	
+	/**
+	 * consumes bytes of the given buffer until either one frame is complete
+	 * or the buffer has no bytes remaining. Bytes belonging to the next frame
+	 * are left in the buffer.
+	 * @param source the buffer to read from, in read mode
+	 * @return the completed frame or null, if more bytes are needed
+	 * @throws IOException if the header announces an invalid length
+	 */
+	public MessageFrame decode(final ByteBuffer source) throws IOException {
+		if(headerRead < header.length) {
+			final int count = Math.min(source.remaining(), header.length - headerRead);
+			source.get(header, headerRead, count);
+			headerRead += count;
+			if(headerRead < header.length) {
+				return null;
+			}
+			payloadLength = FramingUtil.readLength(header);
+			payload = new byte[Math.min(payloadLength, FrameValues.INITIAL_PAYLOAD_CAPACITY)];
+		}
+		while(payloadRead < payloadLength && source.hasRemaining()) {
+			if(payloadRead == payload.length) {
+				payload = Arrays.copyOf(payload, (int) Math.min(payloadLength, 2L * payload.length));
+			}
+			final int count = Math.min(source.remaining(), payload.length - payloadRead);
+			source.get(payload, payloadRead, count);
+			payloadRead += count;
+		}
+		if(payloadRead < payloadLength) {
+			return null;
+		}
+		
+		final MessageFrame frame = new MessageFrame(header[4], header[5], payload);
+		headerRead = 0;
+		payload = null;
+		payloadRead = 0;
+		return frame;
+	}
+	
+	/**
+	 * @return true, if the decoder holds parts of an unfinished frame
+	 */
+	public boolean isInsideFrame() {
+		return headerRead > 0;
+	}
+}
@@ -0,0 +1,53 @@
+package niconoggi.clientserver.protocol;
+
+/**
+ * Container for the values describing the wire format of a {@link MessageFrame}.
+ * <p>
+ * Every frame starts with a header of {@link #HEADER_LENGTH} bytes:
+ * <ul>
+ * <li>4 bytes: the length of the payload (big endian)</li>
+ * <li>1 byte: the message type</li>
+ * <li>1 byte: the message flags</li>
+ * </ul>
+ * followed by exactly as many payload bytes as the header announced.
+ * @author niconoggi
+ *
+ */
+public class FrameValues {
+
+	public static final int HEADER_LENGTH = 6;
+	
+	/** frames announcing a bigger payload are treated as corrupt */
+	public static final int MAX_PAYLOAD_LENGTH = 256 * 1024 * 1024;
+	
+	/**
+	 * the amount of payload bytes space is made for before any of them arrived. The
+	 * space grows as the bytes arrive, so a header announcing a long payload cannot make
+	 * the receiver allocate more than the peer actually sends
+	 */
+	public static final int INITIAL_PAYLOAD_CAPACITY = 64 * 1024;
+	
+	public static final byte TYPE_DATA = 0;
+	
+	/** an answer to a correlated request that could not be answered, the payload is the UTF-8 reason */
+	public static final byte TYPE_ERROR = 1;
+	
+	/** a chunk of a streamed message, followed by more chunks, see {@link ChunkedOutputStream} */
+	public static final byte TYPE_CHUNK = 2;
+	
+	/** the last chunk of a streamed message, which may be empty */
+	public static final byte TYPE_CHUNK_END = 3;
+	
+	/** the payload length of the chunks of streamed messages by default */
+	public static final int DEFAULT_CHUNK_LENGTH = 64 * 1024;
+	
+	public static final byte NO_FLAGS = 0;
+	
+	/** the payload is compressed, see {@link niconoggi.clientserver.compression.Compression} */
+	public static final byte FLAG_COMPRESSED = 1;
+	
+	/** the payload starts with a correlation id, see {@link niconoggi.clientserver.util.CorrelationUtil} */
+	public static final byte FLAG_CORRELATED = 2;
+	
+	private FrameValues() {}
+}
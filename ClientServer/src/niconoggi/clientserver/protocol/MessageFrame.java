@@ -0,0 +1,79 @@
+package niconoggi.clientserver.protocol;
+
+import java.util.Arrays;
+
+/**
+ * A single message as it is sent over the wire: a message type,
+ * some flags and the payload. The length of the payload is part of the
+ * header on the wire, which is what allows many messages to be sent over
+ * the same socket without closing it after every message.
+ * @author niconoggi
+ *
+ */
+public class MessageFrame {
+
+	private final byte type;
+	private final byte flags;
+	private final byte[] payload;
+	
+	/**
+	 * creates a plain data frame without any flags
+	 * @param payload the payload of the frame
+	 */
+	public MessageFrame(final byte[] payload) {
+		this(FrameValues.TYPE_DATA, FrameValues.NO_FLAGS, payload);
+	}
+	
+	public MessageFrame(final byte type, final byte flags, final byte[] payload) {
+		this.type = type;
+		this.flags = flags;
+		this.payload = payload == null ? new byte[0] : payload;
+	}
+	
+	public byte getType() {
+		return type;
+	}
+	
+	public byte getFlags() {
+		return flags;
+	}
+	
+	/**
+	 * @param flag the flag to check
+	 * @return true, if the given flag is set on this frame. false otherwise
+	 */
+	public boolean hasFlag(final byte flag) {
+		return (flags & flag) == flag;
+	}
+	
+	public byte[] getPayload() {
+		return payload;
+	}
+	
+	@Override
+	public boolean equals(final Object obj) {
+		if(obj == null) {
+			return false;
+		}
+		if(!(obj instanceof MessageFrame)) {
+			return false;
+		}
+		
+		final MessageFrame other = (MessageFrame) obj;
+		return type == other.type && flags == other.flags && Arrays.equals(payload, other.payload);
+	}
+	
+	@Override
+	public int hashCode() {
+		return type + flags + Arrays.hashCode(payload);
+	}
+	
+	@Override
+	public String toString() {
+		final StringBuilder builder = new StringBuilder();
+		builder.append("type = ").append(type);
+		builder.append(", flags = ").append(flags);
+		builder.append(", payload length = ").append(payload.length);
+		return builder.toString();
+	}
+}
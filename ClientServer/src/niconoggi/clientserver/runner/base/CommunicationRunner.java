@@ -25,4 +25,23 @@ public interface CommunicationRunner {
 	 */
 	void runWriteFirst();
 	
+	/**
+	 * Opens a session by connecting the underlying {@link CommunicationComponent}
+	 * once. While the session is open, {@link #runReadFirst()} and {@link #runWriteFirst()}
+	 * exchange their data over that connection instead of connecting
+	 * and disconnecting for every read and write.
+	 */
+	void openSession();
+	
+	/**
+	 * Closes a session opened by {@link #openSession()} and disconnects
+	 * the underlying {@link CommunicationComponent}
+	 */
+	void closeSession();
+	
+	/**
+	 * @return true, if a session is currently open. false otherwise
+	 */
+	boolean isSessionOpen();
+	
 }
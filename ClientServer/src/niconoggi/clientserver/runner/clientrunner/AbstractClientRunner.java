@@ -1,13 +1,28 @@
 package niconoggi.clientserver.runner.clientrunner;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import niconoggi.clientserver.base.AbstractClient;
+import niconoggi.clientserver.client.Client;
+import niconoggi.clientserver.client.ClientConnectionPool;
+import niconoggi.clientserver.client.MultiplexedClient;
+import niconoggi.clientserver.codec.Codec;
+import niconoggi.clientserver.compression.Compression;
+import niconoggi.clientserver.metrics.ComponentMetrics;
 import niconoggi.clientserver.runner.base.AbstractRunner;
 
 /**
  * An abstract extension of {@link AbstractRunner} representing the runner
  * class for clients
+ * <p>
+ * Besides the blocking run methods, runners offer asynchronous exchanges,
+ * which are sent over a single connection of a {@link MultiplexedClient}
+ * opened on first use, so any amount of exchanges can be in flight at once
+ * without blocking a thread for each of them. The server has to answer
+ * correlated requests for that, as the
+ * {@link niconoggi.clientserver.runner.serverrunner.VirtualThreadServerRunner} does.
  * @author niconoggi
  *
  */
@@ -16,6 +31,8 @@ public abstract class AbstractClientRunner extends AbstractRunner{
 	protected AbstractClient client;
 	protected String host;
 	protected int port;
+	protected boolean sessionOpen;
+	private MultiplexedClient multiplexedClient;
 	
 	public AbstractClientRunner() {}
 	
@@ -34,37 +51,105 @@ public abstract class AbstractClientRunner extends AbstractRunner{
 	
 	@Override
 	public void runReadFirst() {
+		if(sessionOpen) {
+			try {
+				final long start = System.nanoTime();
+				client.read();
+				client.write();
+				client.getMetrics().recordExchange(start);
+			} catch (IOException e) {
+				client.getMetrics().recordError();
+				closeSession();
+				handleErrors(e);
+			}
+			return;
+		}
+		if(isPooled()) {
+			//both messages have to use the same borrowed connection
+			openSession();
+			if(sessionOpen) {
+				runReadFirst();
+				closeSession();
+			}
+			return;
+		}
 		try {
 			client.connect();
+			final long start = System.nanoTime();
 			client.read();
 			client.disconnect();
 			client.connect();
 			client.write();
+			client.getMetrics().recordExchange(start);
 			client.disconnect();
 		} catch (IOException e) {
+			client.getMetrics().recordError();
+			stopClient();
 			handleErrors(e);
 		}
 	}
 	
 	@Override
 	public void runWriteFirst() {
+		if(sessionOpen) {
+			try {
+				final long start = System.nanoTime();
+				client.write();
+				client.read();
+				client.getMetrics().recordExchange(start);
+			} catch (IOException e) {
+				client.getMetrics().recordError();
+				closeSession();
+				handleErrors(e);
+			}
+			return;
+		}
+		if(isPooled()) {
+			//both messages have to use the same borrowed connection
+			openSession();
+			if(sessionOpen) {
+				runWriteFirst();
+				closeSession();
+			}
+			return;
+		}
 		try {
 			client.connect();
+			final long start = System.nanoTime();
 			client.write();
 			client.disconnect();
 			client.connect();
 			client.read();
+			client.getMetrics().recordExchange(start);
 			client.disconnect();
 		} catch (IOException e) {
+			client.getMetrics().recordError();
+			stopClient();
 			handleErrors(e);
 		}
 	}
 	
 	/**
-	 * disconnects the client. The client instance will not be set null,
-	 * however the clients socket will be set null
+	 * connects the client once. Until {@link #closeSession()} is called,
+	 * every run method uses this connection. If an error occurs during an
+	 * exchange, the session is closed.
 	 */
-	public void stopClient() {
+	@Override
+	public void openSession() {
+		if(sessionOpen) {
+			return;
+		}
+		try {
+			client.connect();
+			sessionOpen = true;
+		} catch (IOException e) {
+			handleErrors(e);
+		}
+	}
+	
+	@Override
+	public void closeSession() {
+		sessionOpen = false;
 		try {
 			client.disconnect();
 		} catch (IOException e) {
@@ -72,6 +157,117 @@ public abstract class AbstractClientRunner extends AbstractRunner{
 		}
 	}
 	
+	@Override
+	public boolean isSessionOpen() {
+		return sessionOpen;
+	}
+	
+	private boolean isPooled() {
+		return client instanceof Client && ((Client) client).getConnectionPool() != null;
+	}
+	
+	/**
+	 * disconnects the client. The client instance will not be set null,
+	 * however the clients socket will be set null. The connection of the
+	 * asynchronous exchanges is closed as well, exchanges still in flight fail
+	 */
+	public void stopClient() {
+		closeSession();
+		synchronized (this) {
+			if(multiplexedClient != null) {
+				try {
+					multiplexedClient.disconnect();
+				} catch (IOException e) {
+					handleErrors(e);
+				}
+				multiplexedClient = null;
+			}
+		}
+	}
+	
+	/**
+	 * encodes the given request and sends it asynchronously, see
+	 * {@link #exchangeBytes(byte[], Codec)}
+	 * @param <Q> the type of the request
+	 * @param <A> the type of the answer
+	 * @param request the request
+	 * @param requestCodec the codec encoding the request
+	 * @param answerCodec the codec decoding the answer
+	 * @return the future completed with the decoded answer, or exceptionally with the
+	 * 			{@link IOException} that made encoding or the exchange fail
+	 */
+	protected <Q, A> CompletableFuture<A> exchangeData(final Q request, final Codec<Q> requestCodec, final Codec<A> answerCodec) {
+		final long start = System.nanoTime();
+		final byte[] encoded;
+		try {
+			encoded = requestCodec.encode(request);
+		} catch (IOException e) {
+			client.getMetrics().recordError();
+			return CompletableFuture.failedFuture(e);
+		}
+		client.getMetrics().recordEncode(start);
+		return exchangeBytes(encoded, answerCodec);
+	}
+	
+	/**
+	 * sends the given request asynchronously and returns the future of the
+	 * answer, which is decoded with the given codec
+	 * @param <A> the type of the answer
+	 * @param request the encoded request
+	 * @param answerCodec the codec decoding the answer
+	 * @return the future completed with the decoded answer, or exceptionally with the
+	 * 			{@link IOException} that made the exchange fail
+	 */
+	protected <A> CompletableFuture<A> exchangeBytes(final byte[] request, final Codec<A> answerCodec) {
+		final MultiplexedClient connected;
+		try {
+			connected = multiplexedClient();
+		} catch (IOException e) {
+			return CompletableFuture.failedFuture(e);
+		}
+		return connected.send(request).thenApply(answer -> {
+			try {
+				final long start = System.nanoTime();
+				final A decoded = answerCodec.decode(answer);
+				client.getMetrics().recordDecode(start);
+				return decoded;
+			} catch (IOException e) {
+				throw new CompletionException(e);
+			}
+		});
+	}
+	
+	/**
+	 * @return the connected client of the asynchronous exchanges,
+	 * 			which is connected again if the connection broke
+	 * @throws IOException an error occuring while connecting
+	 */
+	private synchronized MultiplexedClient multiplexedClient() throws IOException {
+		if(multiplexedClient == null || !multiplexedClient.isConnected()) {
+			final MultiplexedClient created = new MultiplexedClient(host, port);
+			created.setCompression(client.getCompression());
+			created.setMetrics(client.getMetrics());
+			created.connect();
+			multiplexedClient = created;
+		}
+		return multiplexedClient;
+	}
+	
+	/**
+	 * @return the metrics of the client, which the asynchronous exchanges record into as well
+	 */
+	public ComponentMetrics getMetrics() {
+		return client.getMetrics();
+	}
+	
+	/**
+	 * exposes the metrics of the client over JMX, see {@link AbstractClient#registerMetrics(String)}
+	 * @param name the name of the client, unique among the registered clients
+	 */
+	public void registerMetrics(final String name) {
+		client.registerMetrics(name);
+	}
+	
 	public void setHost(final String host) {
 		this.host = host;
 		client.setHost(host);
@@ -82,6 +278,22 @@ public abstract class AbstractClientRunner extends AbstractRunner{
 		client.setPort(port);
 	}
 	
+	/**
+	 * @param compression the compression stage applied to the written data or null, to write it as it is
+	 */
+	public void setCompression(final Compression compression) {
+		client.setCompression(compression);
+	}
+	
+	/**
+	 * lets the client borrow its connections from the given pool instead
+	 * of opening a new one for every exchange. Many runners can share one pool
+	 * @param connectionPool the pool to use or null, to open a new connection every time
+	 */
+	public void setConnectionPool(final ClientConnectionPool connectionPool) {
+		((Client) client).setConnectionPool(connectionPool);
+	}
+	
 	@Override
 	public boolean equals(final Object obj) {
 		if(obj == null) {
@@ -1,21 +1,25 @@
 package niconoggi.clientserver.runner.clientrunner;
 
 import java.io.IOException;
-import java.io.Serializable;
+import java.util.concurrent.CompletableFuture;
 
 import niconoggi.clientserver.client.Client;
+import niconoggi.clientserver.codec.Codec;
+import niconoggi.clientserver.codec.CodecRegistry;
 import niconoggi.clientserver.util.DataConverterUtil;
 
 /**
  * an instanciateable extension of {@link AbstractClientRunner}
  * that represents a client communicating with generic object data.
+ * The data is converted with the {@link Codec} given via constructor,
+ * which is a {@link DataConverterUtil} if none is given.
  * @author niconoggi
  *
  * @param <D> the object type that is written and read
  */
-public class GenericClientRunner<D extends Serializable> extends AbstractClientRunner {
+public class GenericClientRunner<D> extends AbstractClientRunner {
 
-	private DataConverterUtil<D> converter;
+	private Codec<D> converter;
 
 	public GenericClientRunner() {
 		client = new Client();
@@ -40,9 +44,44 @@ public class GenericClientRunner<D extends Serializable> extends AbstractClientR
 		converter = new DataConverterUtil<D>();
 	}
 	
+	/**
+	 * constructor using the given codec instead of a {@link DataConverterUtil}
+	 * @param host the host to connect to
+	 * @param port the port to connect to
+	 * @param codec the codec converting the written and read data
+	 */
+	public GenericClientRunner(final String host, final int port, final Codec<D> codec) {
+		super(host, port);
+		client = new Client(host, port);
+		converter = codec;
+	}
+	
+	/**
+	 * constructor using the codec the {@link CodecRegistry} finds for the given type,
+	 * which is the generated codec for types annotated with {@link niconoggi.clientserver.codec.WireMessage}
+	 * @param host the host to connect to
+	 * @param port the port to connect to
+	 * @param type the class of the written and read data
+	 */
+	public GenericClientRunner(final String host, final int port, final Class<D> type) {
+		this(host, port, CodecRegistry.forType(type));
+	}
+	
+	/**
+	 * sends the given request without blocking and returns the future of the answer.
+	 * Any amount of exchanges can be in flight at once, they share a single connection,
+	 * which is opened on first use and closed by {@link #stopClient()}
+	 * @param request the data to send
+	 * @return the future completed with the answer of the server, or exceptionally
+	 * 			if converting, sending or answering fails
+	 */
+	public CompletableFuture<D> exchange(final D request) {
+		return exchangeData(request, converter, converter);
+	}
+	
 	public void setDataToWrite(final D dataToWrite) {
 		try {
-			((Client) client).setDataToWrite(converter.convertToBytes(dataToWrite));
+			((Client) client).encodeDataToWrite(converter, dataToWrite);
 		} catch (IOException e) {
 			handleErrors(e);
 		}
@@ -50,8 +89,8 @@ public class GenericClientRunner<D extends Serializable> extends AbstractClientR
 	
 	public D getReadData() {
 		try {
-			return converter.convertFromByteArray(((Client) client).getReadData());
-		} catch (ClassNotFoundException | IOException e) {
+			return ((Client) client).decodeReadData(converter);
+		} catch (IOException e) {
 			handleErrors(e);
 			return null;
 		}
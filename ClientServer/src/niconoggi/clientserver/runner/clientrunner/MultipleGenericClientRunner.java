@@ -1,24 +1,28 @@
 package niconoggi.clientserver.runner.clientrunner;
 
 import java.io.IOException;
-import java.io.Serializable;
+import java.util.concurrent.CompletableFuture;
 
 import niconoggi.clientserver.client.Client;
+import niconoggi.clientserver.codec.Codec;
+import niconoggi.clientserver.codec.CodecRegistry;
 import niconoggi.clientserver.util.DataConverterUtil;
 
 /**
  * An instanciatable extension of {@link AbstractClientRunner}
  * that represents a client communicating with different generic data.
  * The data is split in written generic data and read generic data.
+ * Both are converted with the {@link Codec}s given via constructor,
+ * which are {@link DataConverterUtil}s if none are given.
  * @author niconoggi
  *
  * @param <W> the object type to write
  * @param <R> the object type that is read
  */
-public class MultipleGenericClientRunner<W extends Serializable, R extends Serializable> extends AbstractClientRunner {
+public class MultipleGenericClientRunner<W, R> extends AbstractClientRunner {
 
-	private DataConverterUtil<W> writeConverter;
-	private DataConverterUtil<R> readConverter;
+	private Codec<W> writeConverter;
+	private Codec<R> readConverter;
 
 	public MultipleGenericClientRunner() {
 		client = new Client();
@@ -47,9 +51,47 @@ public class MultipleGenericClientRunner<W extends Serializable, R extends Seria
 		readConverter = new DataConverterUtil<R>();
 	}
 	
+	/**
+	 * constructor using the given codecs instead of {@link DataConverterUtil}s
+	 * @param host the host to connect to
+	 * @param port the port to connect to
+	 * @param writeCodec the codec converting the written data
+	 * @param readCodec the codec converting the read data
+	 */
+	public MultipleGenericClientRunner(final String host, final int port, final Codec<W> writeCodec, final Codec<R> readCodec) {
+		super(host, port);
+		client = new Client(host, port);
+		writeConverter = writeCodec;
+		readConverter = readCodec;
+	}
+	
+	/**
+	 * constructor using the codecs the {@link CodecRegistry} finds for the given types,
+	 * which are the generated codecs for types annotated with {@link niconoggi.clientserver.codec.WireMessage}
+	 * @param host the host to connect to
+	 * @param port the port to connect to
+	 * @param writeType the class of the written data
+	 * @param readType the class of the read data
+	 */
+	public MultipleGenericClientRunner(final String host, final int port, final Class<W> writeType, final Class<R> readType) {
+		this(host, port, CodecRegistry.forType(writeType), CodecRegistry.forType(readType));
+	}
+	
+	/**
+	 * sends the given request without blocking and returns the future of the answer.
+	 * Any amount of exchanges can be in flight at once, they share a single connection,
+	 * which is opened on first use and closed by {@link #stopClient()}
+	 * @param request the data to send
+	 * @return the future completed with the answer of the server, or exceptionally
+	 * 			if converting, sending or answering fails
+	 */
+	public CompletableFuture<R> exchange(final W request) {
+		return exchangeData(request, writeConverter, readConverter);
+	}
+	
 	public void setDataToWrite(final W dataToWrite) {
 		try {
-			((Client) client).setDataToWrite(writeConverter.convertToBytes(dataToWrite));
+			((Client) client).encodeDataToWrite(writeConverter, dataToWrite);
 		} catch (IOException e) {
 			handleErrors(e);
 		}
@@ -57,8 +99,8 @@ public class MultipleGenericClientRunner<W extends Serializable, R extends Seria
 	
 	public R getReadData() {
 		try {
-			return readConverter.convertFromByteArray(((Client) client).getReadData());
-		} catch (ClassNotFoundException | IOException e) {
+			return ((Client) client).decodeReadData(readConverter);
+		} catch (IOException e) {
 			handleErrors(e);
 			return null;
 		}
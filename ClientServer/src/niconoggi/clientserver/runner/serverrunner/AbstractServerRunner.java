@@ -3,6 +3,8 @@ package niconoggi.clientserver.runner.serverrunner;
 import java.io.IOException;
 
 import niconoggi.clientserver.base.AbstractServer;
+import niconoggi.clientserver.compression.Compression;
+import niconoggi.clientserver.metrics.ComponentMetrics;
 import niconoggi.clientserver.runner.base.AbstractRunner;
 
 /**
@@ -15,6 +17,7 @@ public abstract class AbstractServerRunner extends AbstractRunner{
 
 	protected AbstractServer server;
 	protected int port;
+	protected boolean sessionOpen;
 	
 	public AbstractServerRunner() {}
 	
@@ -24,16 +27,28 @@ public abstract class AbstractServerRunner extends AbstractRunner{
 	
 	@Override
 	public void runWriteFirst() {
+		if(sessionOpen) {
+			try {
+				server.write();
+				server.read();
+			} catch (IOException e) {
+				server.getMetrics().recordError();
+				closeSession();
+				handleErrors(e);
+			}
+			return;
+		}
 		try {
 			server.connect();
 			server.write();
-			//reconnecting is important due to closing
-			// the streams resulting in closing the client
+			//without an open session every step
+			// uses a connection of its own
 			server.disconnect();
 			server.connect();
 			server.read();
 			server.disconnect();
 		} catch (IOException e) {
+			server.getMetrics().recordError();
 			stopServer();
 			handleErrors(e);
 		}
@@ -41,21 +56,68 @@ public abstract class AbstractServerRunner extends AbstractRunner{
 	
 	@Override
 	public void runReadFirst() {
+		if(sessionOpen) {
+			try {
+				server.read();
+				server.write();
+			} catch (IOException e) {
+				server.getMetrics().recordError();
+				closeSession();
+				handleErrors(e);
+			}
+			return;
+		}
 		try {
 			server.connect();
 			server.read();
-			//reconnecting is important due to closing
-			// the streams resulting in closing the client
+			//without an open session every step
+			// uses a connection of its own
 			server.disconnect();
 			server.connect();
 			server.write();
 			server.disconnect();
 		} catch (IOException e) {
+			server.getMetrics().recordError();
 			stopServer();
 			handleErrors(e);
 		}
 	}
 	
+	/**
+	 * accepts the client(s) once. Until {@link #closeSession()} is called,
+	 * every run method communicates with the already connected client(s).
+	 * If an error occurs during an exchange, the session is closed.
+	 * <p>
+	 * NOTE: the server has to be started before opening a session
+	 */
+	@Override
+	public void openSession() {
+		if(sessionOpen) {
+			return;
+		}
+		try {
+			server.connect();
+			sessionOpen = true;
+		} catch (IOException e) {
+			handleErrors(e);
+		}
+	}
+	
+	@Override
+	public void closeSession() {
+		sessionOpen = false;
+		try {
+			server.disconnect();
+		} catch (IOException e) {
+			handleErrors(e);
+		}
+	}
+	
+	@Override
+	public boolean isSessionOpen() {
+		return sessionOpen;
+	}
+	
 	/**
 	 * starts the server. If an error occures during that process,
 	 * the server may not be started as intended
@@ -73,6 +135,7 @@ public abstract class AbstractServerRunner extends AbstractRunner{
 	 * the server may not be stopped as intended
 	 */
 	public void stopServer() {
+		sessionOpen = false;
 		try {
 			server.stop();
 		} catch (IOException e) {
@@ -84,6 +147,36 @@ public abstract class AbstractServerRunner extends AbstractRunner{
 		this.port = port;
 	}
 	
+	/**
+	 * @param compression the compression stage applied to the written data or null, to write it as it is
+	 */
+	public void setCompression(final Compression compression) {
+		server.setCompression(compression);
+	}
+	
+	/**
+	 * @param backlog the amount of pending connections the operating system queues
+	 * 			for the server. Has to be set before the server is started
+	 */
+	public void setBacklog(final int backlog) {
+		server.setBacklog(backlog);
+	}
+	
+	/**
+	 * @param capacity the amount of accepted clients waiting to be taken by the server.
+	 * 			Has to be set before the server is started
+	 */
+	public void setAcceptQueueCapacity(final int capacity) {
+		server.setAcceptQueueCapacity(capacity);
+	}
+	
+	/**
+	 * @return the metrics of the server, which are exposed over JMX while it is started
+	 */
+	public ComponentMetrics getMetrics() {
+		return server.getMetrics();
+	}
+	
 	@Override
 	public boolean equals(final Object obj) {
 		if(obj == null) {
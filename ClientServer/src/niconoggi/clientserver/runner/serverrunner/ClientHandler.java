@@ -0,0 +1,20 @@
+package niconoggi.clientserver.runner.serverrunner;
+
+/**
+ * The application logic of a {@link VirtualThreadServerRunner}: it
+ * answers every message a client sends.
+ * @author niconoggi
+ *
+ * @param <W> the type of the written answer
+ * @param <R> the type of the read message
+ */
+@FunctionalInterface
+public interface ClientHandler<W, R> {
+
+	/**
+	 * creates the answer for the given message
+	 * @param readData the message the client sent
+	 * @return the answer to write back, or null to end the communication with the client
+	 */
+	W handle(final R readData);
+}
@@ -5,8 +5,13 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
+import niconoggi.clientserver.base.AbstractServer;
+import niconoggi.clientserver.base.MultiClientCommunicationComponent;
 import niconoggi.clientserver.base.SerializableArrayList;
+import niconoggi.clientserver.codec.Codec;
+import niconoggi.clientserver.codec.CodecRegistry;
 import niconoggi.clientserver.server.MultiClientServer;
+import niconoggi.clientserver.server.NioMultiClientServer;
 import niconoggi.clientserver.server.SingleClientServer;
 import niconoggi.clientserver.util.DataConverterUtil;
 
@@ -19,41 +24,100 @@ import niconoggi.clientserver.util.DataConverterUtil;
  * That is also the reason why one of the generics needs to be a subclass
  * of {@link SerializableArrayList}, which is just an {@link ArrayList} that
  * implements {@link Serializable}. 
+ * <p>
+ * By default a {@link MultiClientServer} is used, any other server
+ * implementing {@link MultiClientCommunicationComponent}, such as the
+ * {@link NioMultiClientServer}, can be given via constructor.
+ * The data is converted with the {@link Codec} given via constructor,
+ * which is a {@link DataConverterUtil} if none is given.
  * @author niconoggi
  *
  * @param <W> The generic data that is written
  * @param <R> the generic data that is read
  * 
  */
-public class GenericMultiClientServerRunner<W extends Serializable, R extends SerializableArrayList<W>> extends AbstractServerRunner{
+public class GenericMultiClientServerRunner<W, R extends SerializableArrayList<W>> extends AbstractServerRunner{
 
-	private DataConverterUtil<W> writeConverter;
-	private DataConverterUtil<W> readConverter;
+	private Codec<W> writeConverter;
+	private Codec<W> readConverter;
 	
 	public GenericMultiClientServerRunner() {
 		super();
 		server = new MultiClientServer();
+		writeConverter = new DataConverterUtil<W>();
+		readConverter = writeConverter;
 	}
 	
 	public GenericMultiClientServerRunner(final int port) {
 		super(port);
 		server = new MultiClientServer(port);
+		writeConverter = new DataConverterUtil<W>();
+		readConverter = writeConverter;
 	}
 	
 	public GenericMultiClientServerRunner(final int port, final int clientAmount) {
 		super(port);
 		server = new MultiClientServer(port, clientAmount);
+		writeConverter = new DataConverterUtil<W>();
+		readConverter = writeConverter;
+	}
+	
+	/**
+	 * constructor using the given codec instead of a {@link DataConverterUtil}
+	 * @param port the port the server will be bound to
+	 * @param clientAmount the amount of clients the server expects
+	 * @param codec the codec converting the written and read data
+	 */
+	public GenericMultiClientServerRunner(final int port, final int clientAmount, final Codec<W> codec) {
+		super(port);
+		server = new MultiClientServer(port, clientAmount);
+		writeConverter = codec;
+		readConverter = codec;
+	}
+	
+	/**
+	 * constructor using the codec the {@link CodecRegistry} finds for the given type,
+	 * which is the generated codec for types annotated with {@link niconoggi.clientserver.codec.WireMessage}
+	 * @param port the port the server will be bound to
+	 * @param clientAmount the amount of clients the server expects
+	 * @param type the class of the written data and of the elements of the read data
+	 */
+	public GenericMultiClientServerRunner(final int port, final int clientAmount, final Class<W> type) {
+		this(port, clientAmount, CodecRegistry.forType(type));
+	}
+	
+	/**
+	 * constructor using the given server instead of a {@link MultiClientServer}
+	 * @param server the server to run, which also has to be a {@link MultiClientCommunicationComponent}
+	 */
+	public <S extends AbstractServer & MultiClientCommunicationComponent> GenericMultiClientServerRunner(final S server) {
+		this(server, new DataConverterUtil<W>());
+	}
+	
+	/**
+	 * constructor using the given server and codec
+	 * @param server the server to run, which also has to be a {@link MultiClientCommunicationComponent}
+	 * @param codec the codec converting the written and read data
+	 */
+	public <S extends AbstractServer & MultiClientCommunicationComponent> GenericMultiClientServerRunner(final S server, final Codec<W> codec) {
+		super(server.getPort());
+		this.server = server;
+		writeConverter = codec;
+		readConverter = codec;
 	}
 	
 	/**
 	 * sets the data the server will write. It will
-	 * be converted using {@link DataConverterUtil}, so in case
+	 * be converted using the {@link Codec}, so in case
 	 * an exception occurs, the data might not be set.
+	 * The data is converted once into a frame shared by all clients.
 	 * @param dataToWrite the data that is written by the server
 	 */
 	public void setDataToWrite(final W dataToWrite) {
 		try {
-			((MultiClientServer) server).setDataToWrite(writeConverter.convertToBytes(dataToWrite));
+			final long start = System.nanoTime();
+			((MultiClientCommunicationComponent) server).setFrameToWrite(writeConverter.encodeToFrame(dataToWrite));
+			server.getMetrics().recordEncode(start);
 		} catch (IOException e) {
 			handleErrors(e);
 		}
@@ -62,19 +126,24 @@ public class GenericMultiClientServerRunner<W extends Serializable, R extends Se
 	/**
 	 * returns the data read by the server.<p>
 	 * If an error occured during converting the data
-	 * using {@link DataConverterUtil}, null is returned
+	 * using the {@link Codec}, null is returned
 	 * @return the read data by the server or null in case of an exception
 	 */
 	public R getReadData() {
 		try {
-			final List<byte[]> readByServer = ((MultiClientServer)server).getReadData();
-			final SerializableArrayList<byte[]> convertable = (SerializableArrayList<byte[]>) readByServer;
+			final List<byte[]> readByServer = ((MultiClientCommunicationComponent)server).getReadData();
 			final SerializableArrayList<W> converted = new SerializableArrayList<W>();
-			for(final byte[] toConvert : convertable) {
-				converted.add(readConverter.convertFromByteArray(toConvert));
+			for(final byte[] toConvert : readByServer) {
+				if(toConvert == null) {
+					converted.add(null);
+					continue;
+				}
+				final long start = System.nanoTime();
+				converted.add(readConverter.decode(toConvert));
+				server.getMetrics().recordDecode(start);
 			}
 			return (R) converted;
-		} catch (ClassNotFoundException | IOException e) {
+		} catch (IOException e) {
 			handleErrors(e);
 			return null;
 		}
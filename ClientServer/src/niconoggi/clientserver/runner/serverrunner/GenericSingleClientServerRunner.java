@@ -1,8 +1,9 @@
 package niconoggi.clientserver.runner.serverrunner;
 
 import java.io.IOException;
-import java.io.Serializable;
 
+import niconoggi.clientserver.codec.Codec;
+import niconoggi.clientserver.codec.CodecRegistry;
 import niconoggi.clientserver.server.SingleClientServer;
 import niconoggi.clientserver.util.DataConverterUtil;
 
@@ -11,34 +12,59 @@ import niconoggi.clientserver.util.DataConverterUtil;
  * that represents a runner for {@link SingleClientServer}.
  * This assumes that the written generic data equals the read
  * generic data in type.
+ * The data is converted with the {@link Codec} given via constructor,
+ * which is a {@link DataConverterUtil} if none is given.
  * 
  * @author niconoggi
  *
  * @param <D> the type of data that is written and read
  */
-public class GenericSingleClientServerRunner<D extends Serializable> extends AbstractServerRunner{
+public class GenericSingleClientServerRunner<D> extends AbstractServerRunner{
 
-	private DataConverterUtil<D> converter;
+	private Codec<D> converter;
 	
 	public GenericSingleClientServerRunner() {
 		super();
 		server = new SingleClientServer();
+		converter = new DataConverterUtil<D>();
 	}
 	
 	public GenericSingleClientServerRunner(final int port) {
 		super(port);
 		server = new SingleClientServer(port);
+		converter = new DataConverterUtil<D>();
+	}
+	
+	/**
+	 * constructor using the given codec instead of a {@link DataConverterUtil}
+	 * @param port the port the server will be bound to
+	 * @param codec the codec converting the written and read data
+	 */
+	public GenericSingleClientServerRunner(final int port, final Codec<D> codec) {
+		super(port);
+		server = new SingleClientServer(port);
+		converter = codec;
+	}
+	
+	/**
+	 * constructor using the codec the {@link CodecRegistry} finds for the given type,
+	 * which is the generated codec for types annotated with {@link niconoggi.clientserver.codec.WireMessage}
+	 * @param port the port the server will be bound to
+	 * @param type the class of the written and read data
+	 */
+	public GenericSingleClientServerRunner(final int port, final Class<D> type) {
+		this(port, CodecRegistry.forType(type));
 	}
 	
 	/**
 	 * sets the data the server will write. It will
-	 * be converted using {@link DataConverterUtil}, so in case
+	 * be converted using the {@link Codec}, so in case
 	 * an exception occurs, the data might not be set.
 	 * @param dataToWrite the data that is written by the server
 	 */
 	public void setDataToWrite(final D dataToWrite) {
 		try {
-			((SingleClientServer) server).setDataToWrite(converter.convertToBytes(dataToWrite));
+			((SingleClientServer) server).encodeDataToWrite(converter, dataToWrite);
 		} catch (IOException e) {
 			handleErrors(e);
 		}
@@ -47,13 +73,13 @@ public class GenericSingleClientServerRunner<D extends Serializable> extends Abs
 	/**
 	 * returns the data read by the server.<p>
 	 * If an error occured during converting the data
-	 * using {@link DataConverterUtil}, null is returned
+	 * using the {@link Codec}, null is returned
 	 * @return the read data by the server or null in case of an exception
 	 */
 	public D getReadData() {
 		try {
-			return converter.convertFromByteArray(((SingleClientServer)server).getReadData());
-		} catch (ClassNotFoundException | IOException e) {
+			return ((SingleClientServer) server).decodeReadData(converter);
+		} catch (IOException e) {
 			handleErrors(e);
 			return null;
 		}
@@ -1,8 +1,9 @@
 package niconoggi.clientserver.runner.serverrunner;
 
 import java.io.IOException;
-import java.io.Serializable;
 
+import niconoggi.clientserver.codec.Codec;
+import niconoggi.clientserver.codec.CodecRegistry;
 import niconoggi.clientserver.server.SingleClientServer;
 import niconoggi.clientserver.util.DataConverterUtil;
 
@@ -10,36 +11,65 @@ import niconoggi.clientserver.util.DataConverterUtil;
  * An instanciable extension of {@link AbstractServerRunner}
  * that represents a runner for {@link SingleClientServer}s.
  * This assumes that the type of written data and the type of
- * read data are different.
+ * read data are different. Both are converted with the {@link Codec}s
+ * given via constructor, which are {@link DataConverterUtil}s if none are given.
  * @author niconoggi
  *
  * @param <W> the type of written data
  * @param <R> the type of read data
  */
-public class MultipleGenericSingleClientServerRunner<W extends Serializable, R extends Serializable> extends AbstractServerRunner{
+public class MultipleGenericSingleClientServerRunner<W, R> extends AbstractServerRunner{
 
-	private DataConverterUtil<W> writeConverter;
-	private DataConverterUtil<R> readConverter;
+	private Codec<W> writeConverter;
+	private Codec<R> readConverter;
 	
 	public MultipleGenericSingleClientServerRunner() {
 		super();
 		server = new SingleClientServer();
+		writeConverter = new DataConverterUtil<W>();
+		readConverter = new DataConverterUtil<R>();
 	}
 	
 	public MultipleGenericSingleClientServerRunner(final int port) {
 		super(port);
 		server = new SingleClientServer(port);
+		writeConverter = new DataConverterUtil<W>();
+		readConverter = new DataConverterUtil<R>();
+	}
+	
+	/**
+	 * constructor using the given codecs instead of {@link DataConverterUtil}s
+	 * @param port the port the server will be bound to
+	 * @param writeCodec the codec converting the written data
+	 * @param readCodec the codec converting the read data
+	 */
+	public MultipleGenericSingleClientServerRunner(final int port, final Codec<W> writeCodec, final Codec<R> readCodec) {
+		super(port);
+		server = new SingleClientServer(port);
+		writeConverter = writeCodec;
+		readConverter = readCodec;
+	}
+	
+	/**
+	 * constructor using the codecs the {@link CodecRegistry} finds for the given types,
+	 * which are the generated codecs for types annotated with {@link niconoggi.clientserver.codec.WireMessage}
+	 * @param port the port the server will be bound to
+	 * @param writeType the class of the written data
+	 * @param readType the class of the read data
+	 */
+	public MultipleGenericSingleClientServerRunner(final int port, final Class<W> writeType, final Class<R> readType) {
+		this(port, CodecRegistry.forType(writeType), CodecRegistry.forType(readType));
 	}
 	
 	/**
 	 * sets the data the server will write. It will
-	 * be converted using {@link DataConverterUtil}, so in case
+	 * be converted using the write {@link Codec}, so in case
 	 * an exception occurs, the data might not be set.
 	 * @param dataToWrite the data that is written by the server
 	 */
 	public void setDataToWrite(final W dataToWrite) {
 		try {
-			((SingleClientServer) server).setDataToWrite(writeConverter.convertToBytes(dataToWrite));
+			((SingleClientServer) server).encodeDataToWrite(writeConverter, dataToWrite);
 		} catch (IOException e) {
 			handleErrors(e);
 		}
@@ -48,13 +78,13 @@ public class MultipleGenericSingleClientServerRunner<W extends Serializable, R e
 	/**
 	 * returns the data read by the server.<p>
 	 * If an error occured during converting the data
-	 * using {@link DataConverterUtil}, null is returned
+	 * using the read {@link Codec}, null is returned
 	 * @return the read data by the server or null in case of an exception
 	 */
 	public R getReadData() {
 		try {
-			return readConverter.convertFromByteArray(((SingleClientServer)server).getReadData());
-		} catch (ClassNotFoundException | IOException e) {
+			return ((SingleClientServer) server).decodeReadData(readConverter);
+		} catch (IOException e) {
 			handleErrors(e);
 			return null;
 		}
@@ -0,0 +1,286 @@
+package niconoggi.clientserver.runner.serverrunner;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Semaphore;
+
+import niconoggi.clientserver.codec.Codec;
+import niconoggi.clientserver.codec.CodecRegistry;
+import niconoggi.clientserver.protocol.FrameValues;
+import niconoggi.clientserver.protocol.MessageFrame;
+import niconoggi.clientserver.server.ClientConnection;
+import niconoggi.clientserver.server.ServerValues;
+import niconoggi.clientserver.server.ThreadPerClientServer;
+import niconoggi.clientserver.util.CorrelationUtil;
+import niconoggi.clientserver.util.DataConverterUtil;
+
+/**
+ * An instanciatable extension of {@link AbstractServerRunner} that runs a
+ * {@link ThreadPerClientServer}. Every accepted client is handled on a virtual
+ * thread of its own: the runner reads a message, lets the {@link ClientHandler}
+ * create the answer and writes it back, until the client disconnects or the
+ * handler returns null.
+ * <p>
+ * Both run methods keep accepting clients until {@link #stopServer()} is
+ * called from another thread. With {@link #runWriteFirst()}, every client
+ * first gets the data set by {@link #setDataToWrite(Object)}.
+ * <p>
+ * Correlated requests, as sent by a {@link niconoggi.clientserver.client.MultiplexedClient},
+ * are handled concurrently, each on a virtual thread of its own, and answered
+ * in the order they are finished. So the {@link ClientHandler} has to be thread
+ * safe if clients send correlated requests. If the handler fails or returns
+ * null for a correlated request, the client gets an error answer instead.
+ * At most {@link #setMaxInFlightRequests(int)} requests of a client are handled
+ * at the same time, further ones are not read before one of them is answered.
+ * <p>
+ * If the handler fails for a request that is not correlated, the client is disconnected.
+ * @author niconoggi
+ *
+ * @param <W> the type of written data
+ * @param <R> the type of read data
+ */
+public class VirtualThreadServerRunner<W, R> extends AbstractServerRunner{
+
+	private final Codec<W> writeConverter;
+	private final Codec<R> readConverter;
+	private final ClientHandler<W, R> handler;
+	private byte[] dataToWrite;
+	private int maxInFlightRequests = ServerValues.DEFAULT_MAX_IN_FLIGHT_REQUESTS;
+
+	public VirtualThreadServerRunner(final ClientHandler<W, R> handler) {
+		super();
+		this.handler = handler;
+		server = new ThreadPerClientServer();
+		writeConverter = new DataConverterUtil<W>();
+		readConverter = new DataConverterUtil<R>();
+	}
+
+	public VirtualThreadServerRunner(final int port, final ClientHandler<W, R> handler) {
+		this(port, handler, new DataConverterUtil<W>(), new DataConverterUtil<R>());
+	}
+
+	/**
+	 * constructor using the given codecs instead of {@link DataConverterUtil}s
+	 * @param port the port the server will be bound to
+	 * @param handler the logic answering the messages of the clients
+	 * @param writeCodec the codec converting the written data
+	 * @param readCodec the codec converting the read data
+	 */
+	public VirtualThreadServerRunner(final int port, final ClientHandler<W, R> handler, final Codec<W> writeCodec, final Codec<R> readCodec) {
+		super(port);
+		this.handler = handler;
+		server = new ThreadPerClientServer(port);
+		writeConverter = writeCodec;
+		readConverter = readCodec;
+	}
+
+	/**
+	 * constructor using the codecs the {@link CodecRegistry} finds for the given types,
+	 * which are the generated codecs for types annotated with {@link niconoggi.clientserver.codec.WireMessage}
+	 * @param port the port the server will be bound to
+	 * @param handler the logic answering the messages of the clients
+	 * @param writeType the class of the written data
+	 * @param readType the class of the read data
+	 */
+	public VirtualThreadServerRunner(final int port, final ClientHandler<W, R> handler, final Class<W> writeType, final Class<R> readType) {
+		this(port, handler, CodecRegistry.forType(writeType), CodecRegistry.forType(readType));
+	}
+
+	@Override
+	public void runReadFirst() {
+		serve(false);
+	}
+
+	@Override
+	public void runWriteFirst() {
+		serve(true);
+	}
+
+	/**
+	 * sets the data every client gets first when running with {@link #runWriteFirst()}.
+	 * It will be converted using the write {@link Codec}, so in case
+	 * an exception occurs, the data might not be set.
+	 * @param dataToWrite the data written to every client first
+	 */
+	public void setDataToWrite(final W dataToWrite) {
+		try {
+			this.dataToWrite = encode(dataToWrite);
+		} catch (IOException e) {
+			handleErrors(e);
+		}
+	}
+
+	/**
+	 * @param maxInFlightRequests the amount of correlated requests of a single client handled
+	 * 			at the same time. Applies to clients connecting afterwards
+	 */
+	public void setMaxInFlightRequests(final int maxInFlightRequests) {
+		this.maxInFlightRequests = maxInFlightRequests;
+	}
+
+	public int getMaxInFlightRequests() {
+		return maxInFlightRequests;
+	}
+
+	/**
+	 * @return the amount of clients currently handled
+	 */
+	public int getActualClientAmount() {
+		return ((ThreadPerClientServer) server).getActualClientAmount();
+	}
+
+	private void serve(final boolean writeFirst) {
+		try {
+			((ThreadPerClientServer) server).serve(connection -> converse(connection, writeFirst));
+		} catch (IOException e) {
+			stopServer();
+			handleErrors(e);
+		}
+	}
+
+	/**
+	 * the communication with a single client, running on its own thread
+	 * @param connection the client
+	 * @param writeFirst whether the client gets the data to write first
+	 * @throws IOException an error occuring while communicating, ending the communication
+	 */
+	private void converse(final ClientConnection connection, final boolean writeFirst) throws IOException {
+		if(writeFirst) {
+			connection.write(dataToWrite);
+		}
+		final Semaphore inFlight = new Semaphore(maxInFlightRequests);
+		while(true) {
+			final MessageFrame read;
+			try {
+				read = connection.readFrame();
+			} catch (EOFException e) {
+				//the client disconnected
+				return;
+			}
+			if(read.hasFlag(FrameValues.FLAG_CORRELATED)) {
+				final int id = CorrelationUtil.idOf(read);
+				//no further frame is read while the client has the most requests in flight
+				try {
+					inFlight.acquire();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("interrupted while waiting for a request to be answered");
+				}
+				Thread.startVirtualThread(() -> answer(connection, id, CorrelationUtil.dataOf(read), inFlight));
+				continue;
+			}
+			final R request = decode(read.getPayload());
+			final W answer;
+			try {
+				answer = handler.handle(request);
+			} catch (RuntimeException e) {
+				//the server records the error and drops the client
+				throw new IOException("the handler failed", e);
+			}
+			if(answer == null) {
+				return;
+			}
+			connection.write(encode(answer));
+		}
+	}
+
+	/**
+	 * answers a single correlated request, running on its own thread
+	 * @param connection the client that sent the request
+	 * @param id the correlation id of the request
+	 * @param request the data of the request
+	 * @param inFlight the requests of the client in flight, released once the request is answered
+	 */
+	private void answer(final ClientConnection connection, final int id, final byte[] request, final Semaphore inFlight) {
+		try {
+			answer(connection, id, request);
+		} finally {
+			inFlight.release();
+		}
+	}
+
+	private void answer(final ClientConnection connection, final int id, final byte[] request) {
+		MessageFrame answerFrame;
+		try {
+			final W answer = handler.handle(decode(request));
+			answerFrame = answer == null
+					? error(id, "no answer for the request")
+					: CorrelationUtil.correlate(id, FrameValues.TYPE_DATA, encode(answer));
+		} catch (IOException | RuntimeException e) {
+			server.getMetrics().recordError();
+			answerFrame = error(id, e.toString());
+		}
+		try {
+			connection.writeFrame(answerFrame);
+		} catch (IOException e) {
+			//the client is gone, closing makes the conversation end as well
+			try {
+				connection.close();
+			} catch (IOException closeError) {
+				//the connection is dropped either way
+			}
+		}
+	}
+
+	private byte[] encode(final W data) throws IOException {
+		final long start = System.nanoTime();
+		final byte[] encoded = writeConverter.encode(data);
+		server.getMetrics().recordEncode(start);
+		return encoded;
+	}
+
+	private R decode(final byte[] data) throws IOException {
+		final long start = System.nanoTime();
+		final R decoded = readConverter.decode(data);
+		server.getMetrics().recordDecode(start);
+		return decoded;
+	}
+
+	private static MessageFrame error(final int id, final String reason) {
+		return CorrelationUtil.correlate(id, FrameValues.TYPE_ERROR, reason.getBytes(StandardCharsets.UTF_8));
+	}
+
+	@Override
+	protected void handleErrors() {
+		//handling Errors should be an implementation
+		//done by yourselfs, so this will only sysout
+		//that an error occured
+		System.out.println("an error occured while running the server");
+	}
+
+	@Override
+	protected void handleErrors(Exception ex) {
+		//handling Errors should be an implementation
+		//done by yourselfs, so this will only sysout
+		//that an error occured
+		System.out.println("an error occured while running the server " + ex);
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if(!super.equals(obj)) {
+			return false;
+		}
+
+		if(!(obj instanceof VirtualThreadServerRunner)) {
+			return false;
+		}
+
+		final VirtualThreadServerRunner<W,R> other = (VirtualThreadServerRunner<W,R>) obj;
+		return handler.equals(other.handler);
+	}
+
+	@Override
+	public int hashCode() {
+		return super.hashCode() + handler.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder builder = new StringBuilder(super.toString());
+		builder.append(", handler = ").append(handler.toString());
+		return builder.toString();
+	}
+}
@@ -2,25 +2,31 @@ package niconoggi.clientserver.server;
 
 import java.io.IOException;
 import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
 
 import niconoggi.clientserver.base.AbstractServer;
 import niconoggi.clientserver.base.CommunicationComponent;
-import niconoggi.clientserver.base.SerializableSocket;
-import niconoggi.clientserver.util.InstanceCopier;
 
 /**
  * An abstract extension of {@link AbstractServer} which
  * provides basic implementations of {@link CommunicationComponent#connect()}
  * and {@link CommunicationComponent#disconnect()} for multiple clients at once.
  * <p>
- * Clients in this sense are represented by {@link SerializableSocket}
+ * Clients in this sense are represented by {@link Socket}s,
+ * kept in the slots of a {@link ClientRegistry}.
+ * <p>
+ * Accepted clients are registered as they are, without being copied. From then
+ * on they belong to the registry, which closes them when they are removed or the
+ * server disconnects. Accepted clients that find no slot are closed right away
  * @author niconoggi
  *
  */
 public abstract class AbstractMultiClientServer extends AbstractServer {
 
-	protected SerializableSocket[] clients;
-	protected String[] rememberedAddresses;
+	/** the connected clients and the addresses remembered for their slots */
+	protected ClientRegistry clients = new ClientRegistry(0);
+	private int clientAmount;
 	
 	/**
 	 * default constructor
@@ -46,35 +52,50 @@ public abstract class AbstractMultiClientServer extends AbstractServer {
 		setClientAmount(clientAmount);
 	}
 
+	/**
+	 * starts the server and its {@link Acceptor}
+	 */
 	@Override
-	public void connect() throws IOException {
-		if (clientsFull()) {
-			return;
-		}
-		if (maxRetries != ServerValues.NO_CONNECTION_RETRY_FLAG && connectionRetries > maxRetries) {
-			return;
-		}
-		server.setSoTimeout(connectTimeout);
-		final SerializableSocket requestor = (SerializableSocket) server.accept();
+	public void start() throws IOException {
+		super.start();
+		startAcceptor();
+	}
 
-		if(clientExpected(requestor)) {
-			rePutClient(requestor);
+	/**
+	 * Takes clients from the {@link Acceptor} until the client amount is connected.
+	 * Clients that do not fit into any slot are closed and count as retry.
+	 * <p>
+	 * If growing is enabled, clients waiting in the acceptor beyond the client
+	 * amount are registered as well, in new slots
+	 * @throws SocketTimeoutException if the clients did not connect within the connect timeout
+	 */
+	@Override
+	public void connect() throws IOException {
+		connectionRetries = 0;
+		final long deadline = System.currentTimeMillis() + connectTimeout;
+		while (clients.getLiveCount() < clientAmount) {
+			if (maxRetries != ServerValues.NO_CONNECTION_RETRY_FLAG && connectionRetries > maxRetries) {
+				return;
+			}
+			final long remaining = deadline - System.currentTimeMillis();
+			final Socket accepted = connectTimeout > 0 && remaining <= 0 ? null
+					: acceptor.take(connectTimeout > 0 ? remaining : 0);
+			if (accepted == null) {
+				throw new SocketTimeoutException("not all clients connected in time");
+			}
+			register(accepted);
 		}
-		if(!memoryAddressesFull()) {
-			addNextClient(requestor);
+		if (clients.isGrowable()) {
+			Socket waiting;
+			while ((waiting = acceptor.poll()) != null) {
+				register(waiting);
+			}
 		}
-		connectionRetries++;
-		connect();
 	}
 	
 	@Override
 	public void disconnect() throws IOException{
-		for(int client = 0; client < clients.length; client++) {
-			if(clients[client] != null && !clients[client].isClosed()) {
-				clients[client].close();
-			}
-			clients[client] = null;
-		}
+		clients.removeAll();
 	}
 	
 	/**
@@ -88,130 +109,79 @@ public abstract class AbstractMultiClientServer extends AbstractServer {
 	 * @param amount the client amount
 	 */
 	public void setClientAmount(final int amount) {
-		clients = new SerializableSocket[amount];
-		rememberedAddresses = new String[amount];
+		final boolean growable = clients.isGrowable();
+		clients = new ClientRegistry(amount);
+		clients.setGrowable(growable);
+		clientAmount = amount;
 	}
 	
 	/**
-	 * @return the length of the client array
+	 * @return the amount of clients expected
 	 */
 	public int getInitialClientAmount() {
-		return clients.length;
+		return clientAmount;
 	}
 	
 	/**
 	 * the actually connected clients. A client counts
-	 * as connected if they are not null and not closed
-	 * @return
+	 * as connected if it is registered and was not removed
+	 * @return the amount of connected clients
 	 */
 	public int getActualClientAmount() {
-		int amount = 0;
-		for(int client = 0; client < clients.length; client++) {
-			if(clients[client] != null && !clients[client].isClosed()) {
-				amount++;
-			}
-		}
-		return amount;
+		return clients.getLiveCount();
 	}
 	
 	/**
-	 * sets all the client addresses that are in memory to null
+	 * sets whether clients connecting while no slot is free get new slots.
+	 * Otherwise only clients whose address is remembered by a free slot and
+	 * clients finding a slot that was never used are accepted
+	 * @param growable true, to add slots if needed
 	 */
-	public void forgetAllAddresses() {
-		for(int address = 0; address < rememberedAddresses.length; address++) {
-			rememberedAddresses[address] = null;
-		}
+	public void setClientGrowth(final boolean growable) {
+		clients.setGrowable(growable);
 	}
 	
-	/**
-	 * @return the memorised addresses of the clients
-	 */
-	public String[] getCurrentAddressMemory() {
-		return rememberedAddresses;
+	public boolean isClientGrowth() {
+		return clients.isGrowable();
 	}
-
-	/**
-	 * Tries to put the given {@link SerializableSocket} at
-	 * the array position its inet address is in the remembered
-	 * addresses array
-	 * @param request the {@link SerializableSocket} that is tried to add
-	 */
-	private void rePutClient(final SerializableSocket request) {
-		for (int inArray = 0; inArray < rememberedAddresses.length; inArray++) {
-			if (rememberedAddresses[inArray].equals(request.getInetAddress().toString())) {
-				try {
-					clients[inArray] = new InstanceCopier<SerializableSocket>().copyInstance(request);
-					return;
-				} catch (ClassNotFoundException | IOException e) {
-					return;
-				}
-			}
-		}
-	}
-
+	
 	/**
-	 * checks if the given clients address is already in the memorized address
-	 * list, thus was one of the previous connected ones that now is expected
-	 * @param request the client to check on existing inet address
-	 * @return true, if the client by above definition is expected. false otherwise
+	 * sets all the client addresses that are in memory to null
 	 */
-	private boolean clientExpected(final SerializableSocket request) {
-		for (int inArray = 0; inArray < rememberedAddresses.length; inArray++) {
-			if (rememberedAddresses[inArray].equals(request.getInetAddress().toString())) {
-				return true;
-			}
-		}
-
-		return false;
+	public void forgetAllAddresses() {
+		clients.forgetAddresses();
 	}
-
+	
 	/**
-	 * @return true, if no {@link SerializableSocket} in the internal array
-	 * is null or closed. false otherwise
+	 * @return the memorised addresses of the clients
 	 */
-	private boolean clientsFull() {
-		for (final SerializableSocket client : clients) {
-			if (client == null || client.isClosed()) {
-				return false;
-			}
-		}
-
-		return true;
+	public String[] getCurrentAddressMemory() {
+		return clients.getAddresses();
 	}
-
+	
 	/**
-	 * @return true, if no remembered address is null or blank. false otherwise
+	 * registers an accepted client, which is closed if there is no slot for
+	 * it. Either way this counts as retry
+	 * @param accepted the client taken from the acceptor
 	 */
-	private boolean memoryAddressesFull() {
-		for (final String address : rememberedAddresses) {
-			if (address == null || address.isBlank()) {
-				return false;
-			}
+	private void register(final Socket accepted) throws IOException {
+		if (!addNextClient(accepted)) {
+			accepted.close();
+			connectionRetries++;
+			return;
 		}
-		return true;
+		metrics.recordConnect();
 	}
 	
 	/**
-	 * Tries to find the next empty spot in the client array, defined
-	 * by either a null value or a closed {@link SerializableSocket}.
-	 * That value is replaced with the parameter client. 
-	 * If any errors occur during copyig the {@link SerializableSocket}
-	 * the method just stops, so if you want any handling for that, 
-	 * add logic in an extended Subclass for that
-	 * @param nextClient the {@link SerializableSocket} that will be added
+	 * Puts the client into the slot remembering its address or into the next
+	 * free slot, see {@link ClientRegistry#register(Socket)}. If it was added,
+	 * the registry owns it from now on, otherwise the caller still does
+	 * @param nextClient the {@link Socket} that will be added
+	 * @return true, if the client was added
 	 */
-	protected void addNextClient(final SerializableSocket nextClient) {
-		for(int inArray = 0; inArray < clients.length; inArray++) {
-			if(clients[inArray] == null || clients[inArray].isClosed()) {
-				try {
-					clients[inArray] = new InstanceCopier<SerializableSocket>().copyInstance(nextClient);
-					rememberedAddresses[inArray] = clients[inArray].getInetAddress().toString();
-					return;
-				} catch (ClassNotFoundException | IOException e) {
-					return;
-				}
-			}
-		}
+	protected boolean addNextClient(final Socket nextClient) {
+		return clients.register(nextClient) != ClientRegistry.NO_SLOT;
 	}
 	
 	@Override
@@ -225,74 +195,18 @@ public abstract class AbstractMultiClientServer extends AbstractServer {
 		}
 		
 		final AbstractMultiClientServer other = (AbstractMultiClientServer) obj;
-		return clientsEqual(other.clients) && addressesEqual(other.rememberedAddresses);
+		return clients.equals(other.clients);
 	}
 	
 	@Override
 	public int hashCode() {
-		int hashCode = super.hashCode();
-		for(int inArray = 0; inArray < clients.length; inArray++) {
-			if(clients[inArray] != null && !clients[inArray].isClosed()) {
-				hashCode += clients[inArray].hashCode();
-			}
-			if(rememberedAddresses[inArray] != null) {
-				hashCode += rememberedAddresses[inArray].hashCode();
-			}
-		}
-		return hashCode;
+		return super.hashCode() + clients.hashCode();
 	}
 	
 	@Override
 	public String toString() {
 		final StringBuilder builder = new StringBuilder(super.toString());
-		builder.append("Clients: ");
-		for(final SerializableSocket client : clients) {
-			if(!client.equals(clients[0])) {
-				builder.append(", ");
-			}
-			builder.append(client.toString());
-		}
-		builder.append("; remembered addresses: ");
-		for(final String address : rememberedAddresses) {
-			if(!address.equals(rememberedAddresses[0])) {
-				builder.append(", ");
-			}
-			builder.append(address);
-		}
-		
+		builder.append(clients.toString());
 		return builder.toString();
 	}
-	
-	/**
-	 * iterates over the client array to see if the arrays
-	 * of this instance and the given instance equal
-	 * @param other the other array of {@link SerializableSocket} 
-	 * @return true, if both arrays equal. false otherwise
-	 */
-	private boolean clientsEqual(final SerializableSocket[] other) {
-		for(int inArray = 0; inArray < clients.length; inArray++) {
-			if(!clients[inArray].equals(other[inArray])) {
-				return false;
-			}
-		}
-		
-		return true;
-	}
-	
-	/**
-	 * iterates over the addresses to see if the arrays
-	 * of this instance and the given instance equal
-	 * @param other the other array of addresses
-	 * @return true, if both arrays equal. false otherwise
-	 */
-	private boolean addressesEqual(final String[] other) {
-		for(int inArray = 0; inArray < rememberedAddresses.length; inArray++) {
-			if(!rememberedAddresses[inArray].equals(other[inArray])) {
-				return false;
-			}
-		}
-		
-		return true;
-	}
-	
 }
@@ -2,10 +2,9 @@ package niconoggi.clientserver.server;
 
 import java.io.IOException;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
 
 import niconoggi.clientserver.base.AbstractServer;
-import niconoggi.clientserver.base.SerializableSocket;
-import niconoggi.clientserver.util.InstanceCopier;
 
 /**
  * An abstract class representing a Server that accepts only one client. It
@@ -16,7 +15,8 @@ import niconoggi.clientserver.util.InstanceCopier;
  */
 public abstract class AbstractSingleClientServer extends AbstractServer {
 
-	protected SerializableSocket client;
+	/** the connected client, which is owned by the server until it disconnects */
+	protected Socket client;
 
 	protected String rememberedClientAddress;
 	
@@ -28,25 +28,46 @@ public abstract class AbstractSingleClientServer extends AbstractServer {
 		super(port);
 	}
 
+	/**
+	 * starts the server and its {@link Acceptor}
+	 */
+	@Override
+	public void start() throws IOException {
+		super.start();
+		startAcceptor();
+	}
+
+	/**
+	 * takes clients from the {@link Acceptor} until the expected one connects.
+	 * The expected client is kept as it is and replaces the client connected so far,
+	 * which is closed. Unexpected clients are closed and count as retry
+	 * @throws SocketTimeoutException if the expected client did not connect within the connect timeout
+	 */
 	@Override
 	public void connect() throws IOException {
-		if (maxRetries != ServerValues.NO_CONNECTION_RETRY_FLAG && connectionRetries > maxRetries) {
-			return;
-		}
-		server.setSoTimeout(connectTimeout);
-		final SerializableSocket requestor = (SerializableSocket) server.accept();
-		if (isExpectedRequestor(requestor)) {
-			try {
-				client = new InstanceCopier<SerializableSocket>().copyInstance(requestor);
-				return;
-			} catch (ClassNotFoundException e) {
-				client = null;
+		connectionRetries = 0;
+		final long deadline = System.currentTimeMillis() + connectTimeout;
+		while (maxRetries == ServerValues.NO_CONNECTION_RETRY_FLAG || connectionRetries <= maxRetries) {
+			final long remaining = deadline - System.currentTimeMillis();
+			if (connectTimeout > 0 && remaining <= 0) {
+				break;
+			}
+			final Socket requestor = acceptor.take(connectTimeout > 0 ? remaining : 0);
+			if (requestor == null) {
+				break;
+			}
+			if (isExpectedRequestor(requestor)) {
+				disconnect();
+				client = requestor;
+				metrics.recordConnect();
 				return;
 			}
+			requestor.close();
+			connectionRetries++;
+		}
+		if (connectionRetries <= maxRetries || maxRetries == ServerValues.NO_CONNECTION_RETRY_FLAG) {
+			throw new SocketTimeoutException("the client did not connect in time");
 		}
-
-		connectionRetries++;
-		connect();
 	}
 
 	@Override
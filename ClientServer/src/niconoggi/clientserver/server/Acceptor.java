@@ -0,0 +1,236 @@
+package niconoggi.clientserver.server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import niconoggi.clientserver.metrics.ComponentMetrics;
+
+/**
+ * Accepts clients on a dedicated thread of its own, so accepting is never
+ * stalled by the reads and writes of a server, and hands them to the threads
+ * working with them through a bounded queue.
+ * <p>
+ * The acceptor accepts for as long as it runs, not only while a server connects.
+ * Clients connecting while all workers are busy wait in the queue until they are
+ * taken by {@link #take(long)}. If the queue is full, further clients are closed
+ * right away and counted as rejected, so a connection storm can neither exhaust
+ * the memory nor leave clients waiting for an answer that never comes. Clients
+ * that did not even make it to the acceptor wait in the backlog of the
+ * {@link ServerSocket}, see {@link ServerValues#DEFAULT_BACKLOG}.
+ * <p>
+ * Ownership: a client in the queue belongs to the acceptor, which closes it if
+ * the acceptor is closed. A client that was taken belongs to whoever took it.
+ * @author niconoggi
+ *
+ */
+public class Acceptor implements Closeable {
+
+	/** the length of the window the accept rate is measured over */
+	private static final long RATE_WINDOW = TimeUnit.SECONDS.toNanos(1);
+	/** the time to wait after accepting failed, for example if no file handles are left */
+	private static final long ERROR_BACKOFF = 10;
+
+	private final ServerSocket server;
+	private final BlockingQueue<Socket> handOff;
+	private final Thread thread;
+	private volatile boolean closed;
+
+	private final ComponentMetrics metrics;
+	//the accepts of the current and the last second, by the index of the second
+	private final AtomicLongArray rateSeconds = new AtomicLongArray(2);
+	private final AtomicLongArray rateAccepts = new AtomicLongArray(2);
+
+	/**
+	 * @param server the bound server socket to accept from
+	 * @param queueCapacity the amount of accepted clients waiting to be taken at most
+	 */
+	public Acceptor(final ServerSocket server, final int queueCapacity) {
+		this(server, queueCapacity, new ComponentMetrics());
+	}
+
+	/**
+	 * @param server the bound server socket to accept from
+	 * @param queueCapacity the amount of accepted clients waiting to be taken at most
+	 * @param metrics the metrics to record the accepted and rejected clients and failed accepts into
+	 */
+	public Acceptor(final ServerSocket server, final int queueCapacity, final ComponentMetrics metrics) {
+		this.server = server;
+		this.metrics = metrics;
+		handOff = new ArrayBlockingQueue<Socket>(queueCapacity);
+		thread = new Thread(this::acceptLoop, "acceptor-" + server.getLocalPort());
+		thread.setDaemon(true);
+	}
+
+	/**
+	 * starts accepting on the thread of the acceptor
+	 */
+	public void start() {
+		thread.start();
+	}
+
+	/**
+	 * takes the client that waits the longest
+	 * @param timeout the time in milliseconds to wait for a client, 0 or less to wait forever
+	 * @return the client, which is owned by the caller from now on, or null if no client connected in time
+	 * @throws IOException a {@link SocketException} if the acceptor is closed,
+	 * 						or an {@link InterruptedIOException} if the calling thread is interrupted
+	 */
+	public Socket take(final long timeout) throws IOException {
+		final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+		try {
+			while(true) {
+				if(closed) {
+					throw new SocketException("the acceptor is closed");
+				}
+				//waiting forever is done in steps, so closing is noticed
+				final long wait = timeout > 0 ? Math.min(deadline - System.nanoTime(), RATE_WINDOW) : RATE_WINDOW;
+				if(wait <= 0) {
+					return null;
+				}
+				final Socket taken = handOff.poll(wait, TimeUnit.NANOSECONDS);
+				if(taken != null) {
+					return taken;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted while waiting for a client");
+		}
+	}
+
+	/**
+	 * takes the client that waits the longest without waiting
+	 * @return the client, which is owned by the caller from now on, or null if no client is waiting
+	 */
+	public Socket poll() {
+		return handOff.poll();
+	}
+
+	/**
+	 * stops accepting by closing the server socket and closes
+	 * all clients that were not taken yet
+	 */
+	@Override
+	public void close() throws IOException {
+		closed = true;
+		server.close();
+		if(thread.isAlive() && thread != Thread.currentThread()) {
+			try {
+				thread.join(TimeUnit.NANOSECONDS.toMillis(RATE_WINDOW));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		Socket queued;
+		while((queued = handOff.poll()) != null) {
+			closeQuietly(queued);
+		}
+	}
+
+	/**
+	 * @return true, if the acceptor is accepting clients
+	 */
+	public boolean isRunning() {
+		return thread.isAlive() && !closed;
+	}
+
+	/**
+	 * @return the amount of clients accepted, including the rejected ones
+	 */
+	public long getAcceptedCount() {
+		return metrics.getAccepts();
+	}
+
+	/**
+	 * @return the amount of clients closed right after accepting, because the queue was full
+	 */
+	public long getRejectedCount() {
+		return metrics.getRejects();
+	}
+
+	/**
+	 * @return the amount of accepted clients waiting to be taken
+	 */
+	public int getQueuedCount() {
+		return handOff.size();
+	}
+
+	public int getQueueCapacity() {
+		return handOff.size() + handOff.remainingCapacity();
+	}
+
+	/**
+	 * @return the amount of clients accepted during the last full second
+	 */
+	public long getAcceptRate() {
+		final long second = Math.floorDiv(System.nanoTime(), RATE_WINDOW) - 1;
+		final int index = (int) (second & 1);
+		return rateSeconds.get(index) == second ? rateAccepts.get(index) : 0;
+	}
+
+	private void acceptLoop() {
+		while(!closed) {
+			final Socket accepted;
+			try {
+				accepted = server.accept();
+			} catch (IOException e) {
+				if(closed || server.isClosed()) {
+					return;
+				}
+				metrics.recordError();
+				backOff();
+				continue;
+			}
+			metrics.recordAccept();
+			countForRate();
+			if(closed || !handOff.offer(accepted)) {
+				metrics.recordReject();
+				closeQuietly(accepted);
+			}
+		}
+	}
+
+	private void countForRate() {
+		final long second = Math.floorDiv(System.nanoTime(), RATE_WINDOW);
+		final int index = (int) (second & 1);
+		if(rateSeconds.get(index) != second) {
+			rateAccepts.set(index, 0);
+			rateSeconds.set(index, second);
+		}
+		rateAccepts.incrementAndGet(index);
+	}
+
+	private void backOff() {
+		try {
+			Thread.sleep(ERROR_BACKOFF);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static void closeQuietly(final Socket socket) {
+		try {
+			socket.close();
+		} catch (IOException e) {
+			//the connection is dropped either way
+		}
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder builder = new StringBuilder("acceptor: ");
+		builder.append("accepted = ").append(getAcceptedCount());
+		builder.append(", rejected = ").append(getRejectedCount());
+		builder.append(", queued = ").append(handOff.size());
+		builder.append(", accept rate = ").append(getAcceptRate()).append("/s");
+		return builder.toString();
+	}
+}
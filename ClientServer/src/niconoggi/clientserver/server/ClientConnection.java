@@ -0,0 +1,125 @@
+package niconoggi.clientserver.server;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.util.concurrent.locks.ReentrantLock;
+
+import niconoggi.clientserver.compression.Compression;
+import niconoggi.clientserver.metrics.ComponentMetrics;
+import niconoggi.clientserver.protocol.MessageFrame;
+import niconoggi.clientserver.util.FramingUtil;
+
+/**
+ * A single accepted client of a {@link ThreadPerClientServer}.
+ * Reading and writing block the calling thread, just like the
+ * streams of the {@link MultiClientServer} do. Every read and write
+ * transfers exactly one {@link MessageFrame}.
+ * <p>
+ * Writing is guarded by a lock, so the handler of the connection and
+ * a broadcast of the server can write at the same time without mixing
+ * up their frames. A lock is used instead of synchronized so a virtual
+ * thread waiting for it does not block its carrier thread.
+ * @author niconoggi
+ *
+ */
+public class ClientConnection {
+
+	private final Socket socket;
+	private final ReentrantLock writeLock = new ReentrantLock();
+	private volatile Compression compression;
+	private volatile ComponentMetrics metrics = new ComponentMetrics();
+	
+	public ClientConnection(final Socket socket) {
+		this.socket = socket;
+	}
+	
+	/**
+	 * blocks until the client sent the next message
+	 * @return the payload of the message
+	 * @throws IOException an error occuring while reading
+	 */
+	public byte[] read() throws IOException {
+		final MessageFrame frame = FramingUtil.readFrame(socket.getInputStream());
+		metrics.recordReceived(frame.getPayload().length);
+		return Compression.payloadOf(frame);
+	}
+	
+	/**
+	 * blocks until the client sent the next message
+	 * @return the whole frame of the message, with its payload already decompressed
+	 * @throws IOException an error occuring while reading
+	 */
+	public MessageFrame readFrame() throws IOException {
+		final MessageFrame frame = FramingUtil.readFrame(socket.getInputStream());
+		metrics.recordReceived(frame.getPayload().length);
+		return Compression.decompress(frame);
+	}
+	
+	/**
+	 * writes the given data as one message to the client
+	 * @param data the data to write
+	 * @throws IOException an error occuring while writing
+	 */
+	public void write(final byte[] data) throws IOException {
+		writeLock.lock();
+		try {
+			metrics.recordSent(FramingUtil.writeData(socket.getOutputStream(), data, compression));
+		} finally {
+			writeLock.unlock();
+		}
+	}
+	
+	/**
+	 * writes the given frame to the client, compressing its payload if
+	 * a compression is set
+	 * @param frame the frame to write
+	 * @throws IOException an error occuring while writing
+	 */
+	public void writeFrame(final MessageFrame frame) throws IOException {
+		final MessageFrame toWrite = compression == null ? frame : compression.compress(frame);
+		writeLock.lock();
+		try {
+			FramingUtil.writeFrame(socket.getOutputStream(), toWrite);
+			metrics.recordSent(toWrite.getPayload().length);
+		} finally {
+			writeLock.unlock();
+		}
+	}
+	
+	/**
+	 * closes the socket of the client. Closing an already closed connection does nothing
+	 * @throws IOException an error occuring while closing
+	 */
+	public void close() throws IOException {
+		if(!socket.isClosed()) {
+			socket.close();
+		}
+	}
+	
+	/**
+	 * @param compression the compression stage applied to written payloads or null, to write them as they are
+	 */
+	public void setCompression(final Compression compression) {
+		this.compression = compression;
+	}
+	
+	/**
+	 * @param metrics the metrics to record the read and written messages into, which are the server's
+	 */
+	public void setMetrics(final ComponentMetrics metrics) {
+		this.metrics = metrics;
+	}
+	
+	public boolean isClosed() {
+		return socket.isClosed();
+	}
+	
+	public Socket getSocket() {
+		return socket;
+	}
+	
+	@Override
+	public String toString() {
+		return "client connection: " + socket.toString();
+	}
+}
@@ -0,0 +1,339 @@
+package niconoggi.clientserver.server;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * The clients of an {@link AbstractMultiClientServer}. Every client is kept in a
+ * slot of its own, and every slot remembers the address of the client that was
+ * in it last, so a client connecting again gets the slot it had before.
+ * <p>
+ * All lookups are indexed, so registering and removing a client takes the same
+ * time no matter how many clients there are:
+ * <ul>
+ * <li>the slot of every client is kept in a hash map, by the client and by its remote address</li>
+ * <li>free slots are kept per remembered address, and slots that never
+ * had a client are kept in a list of their own</li>
+ * <li>the amount of live clients is counted on every change instead of
+ * scanning the slots</li>
+ * </ul>
+ * Clients closed by another thread, for example by a thread writing to them, are
+ * reported by {@link #markClosed(int)}. They are removed when the live clients are
+ * counted and when a client finds no free slot, which only look at the reported
+ * slots. Clients closed without being reported count as live until they are removed
+ * or {@link #removeClosed()} scans all clients.
+ * A client whose address is not remembered by any free slot gets an unused slot.
+ * If there is none, the registry either grows, if growing is enabled, or the
+ * client is not registered.
+ * <p>
+ * A registered client belongs to the registry, which closes it when it is
+ * removed. A client that could not be registered still belongs to the caller.
+ * <p>
+ * A registry is not thread safe, it is meant to be used by the thread
+ * connecting, writing and reading. Only {@link #markClosed(int)} may be called by any thread.
+ * @author niconoggi
+ *
+ */
+public class ClientRegistry {
+
+	public static final int NO_SLOT = -1;
+
+	private Socket[] clients;
+	private String[] addresses;
+	private final Map<Socket, Integer> slotsByClient = new HashMap<Socket, Integer>();
+	private final Map<SocketAddress, Integer> slotsByRemoteAddress = new HashMap<SocketAddress, Integer>();
+	private final Map<String, ArrayDeque<Integer>> freeSlotsByAddress = new HashMap<String, ArrayDeque<Integer>>();
+	private final ArrayDeque<Integer> unusedSlots = new ArrayDeque<Integer>();
+	private final Queue<Integer> closedSlots = new ConcurrentLinkedQueue<Integer>();
+	private int liveCount;
+	private boolean growable;
+
+	/**
+	 * @param capacity the amount of slots
+	 */
+	public ClientRegistry(final int capacity) {
+		clients = new Socket[capacity];
+		addresses = new String[capacity];
+		for(int slot = 0; slot < capacity; slot++) {
+			unusedSlots.addLast(slot);
+		}
+	}
+
+	/**
+	 * puts the client into the slot its address is remembered by or into an unused slot
+	 * @param client the client to register
+	 * @return the slot of the client or {@link #NO_SLOT}, if there was no slot for it
+	 */
+	public int register(final Socket client) {
+		final Integer known = slotsByClient.get(client);
+		if(known != null) {
+			return known;
+		}
+		final String address = addressOf(client);
+		Integer slot = null;
+		final ArrayDeque<Integer> free = freeSlotsByAddress.get(address);
+		if(free != null) {
+			slot = free.pollFirst();
+			if(free.isEmpty()) {
+				freeSlotsByAddress.remove(address);
+			}
+		}
+		if(slot == null && unusedSlots.isEmpty() && removeMarked() > 0) {
+			return register(client);
+		}
+		if(slot == null) {
+			if(unusedSlots.isEmpty() && growable) {
+				grow();
+			}
+			slot = unusedSlots.pollFirst();
+		}
+		if(slot == null) {
+			return NO_SLOT;
+		}
+		clients[slot] = client;
+		addresses[slot] = address;
+		slotsByClient.put(client, slot);
+		if(client.getRemoteSocketAddress() != null) {
+			slotsByRemoteAddress.put(client.getRemoteSocketAddress(), slot);
+		}
+		liveCount++;
+		return slot;
+	}
+
+	/**
+	 * closes the client in the given slot and frees the slot, which keeps
+	 * remembering the address of the client
+	 * @param slot the slot to free
+	 */
+	public void remove(final int slot) {
+		final Socket client = clients[slot];
+		if(client == null) {
+			return;
+		}
+		clients[slot] = null;
+		slotsByClient.remove(client);
+		slotsByRemoteAddress.remove(client.getRemoteSocketAddress(), slot);
+		liveCount--;
+		free(slot);
+		closeQuietly(client);
+	}
+
+	/**
+	 * closes the given client and frees its slot
+	 * @param client the client to remove
+	 */
+	public void remove(final Socket client) {
+		final Integer slot = slotsByClient.get(client);
+		if(slot != null) {
+			remove(slot);
+		}
+	}
+
+	/**
+	 * closes all clients and frees their slots
+	 */
+	public void removeAll() {
+		for(final Integer slot : slotsByClient.values()) {
+			final Socket client = clients[slot];
+			clients[slot] = null;
+			free(slot);
+			closeQuietly(client);
+		}
+		slotsByClient.clear();
+		slotsByRemoteAddress.clear();
+		liveCount = 0;
+	}
+
+	/**
+	 * forgets the addresses of all slots, so every free slot can be taken by any client
+	 */
+	public void forgetAddresses() {
+		Arrays.fill(addresses, null);
+		freeSlotsByAddress.clear();
+		unusedSlots.clear();
+		for(int slot = 0; slot < clients.length; slot++) {
+			if(clients[slot] == null) {
+				unusedSlots.addLast(slot);
+			}
+		}
+	}
+
+	/**
+	 * @param slot the slot
+	 * @return the client in the slot or null, if the slot is free
+	 */
+	public Socket get(final int slot) {
+		return clients[slot];
+	}
+
+	/**
+	 * @param client the client
+	 * @return the slot of the client or {@link #NO_SLOT}, if it is not registered
+	 */
+	public int slotOf(final Socket client) {
+		final Integer slot = slotsByClient.get(client);
+		return slot == null ? NO_SLOT : slot;
+	}
+
+	/**
+	 * @param remoteAddress the remote address of the client, its address and port
+	 * @return the slot of the client or {@link #NO_SLOT}, if no registered client has the address
+	 */
+	public int slotOf(final SocketAddress remoteAddress) {
+		final Integer slot = slotsByRemoteAddress.get(remoteAddress);
+		return slot == null ? NO_SLOT : slot;
+	}
+
+	/**
+	 * @param slot the slot
+	 * @return the address remembered by the slot or null, if there is none
+	 */
+	public String getAddress(final int slot) {
+		return addresses[slot];
+	}
+
+	/**
+	 * @return a copy of the addresses remembered by all slots
+	 */
+	public String[] getAddresses() {
+		return Arrays.copyOf(addresses, addresses.length);
+	}
+
+	/**
+	 * @return the amount of slots
+	 */
+	public int getCapacity() {
+		return clients.length;
+	}
+
+	/**
+	 * @return the amount of registered clients that were not removed. Clients
+	 * 			reported by {@link #markClosed(int)} are removed first
+	 */
+	public int getLiveCount() {
+		removeMarked();
+		return liveCount;
+	}
+
+	/**
+	 * @return true, if there is a live client in every slot, see {@link #getLiveCount()}
+	 */
+	public boolean isFull() {
+		return getLiveCount() == clients.length;
+	}
+
+	/**
+	 * reports that the client in the given slot was closed, so it is removed the next
+	 * time the live clients are counted or a client is registered. May be called by any thread
+	 * @param slot the slot of the closed client
+	 */
+	public void markClosed(final int slot) {
+		closedSlots.offer(slot);
+	}
+
+	/**
+	 * removes all clients that were closed without being removed, freeing their slots.
+	 * Unlike counting the live clients this scans every client, so it is meant for
+	 * clients closed without being reported by {@link #markClosed(int)}
+	 * @return the amount of removed clients
+	 */
+	public int removeClosed() {
+		int removed = 0;
+		for(final Integer slot : slotsByClient.values().toArray(new Integer[0])) {
+			if(clients[slot].isClosed()) {
+				remove(slot);
+				removed++;
+			}
+		}
+		return removed;
+	}
+
+	public boolean isGrowable() {
+		return growable;
+	}
+
+	/**
+	 * sets whether the registry doubles its slots if a client finds no slot
+	 * @param growable true, to grow if needed
+	 */
+	public void setGrowable(final boolean growable) {
+		this.growable = growable;
+	}
+
+	/**
+	 * removes the clients reported by {@link #markClosed(int)}. A slot taken
+	 * by another client since is left as it is
+	 * @return the amount of removed clients
+	 */
+	private int removeMarked() {
+		int removed = 0;
+		Integer slot;
+		while((slot = closedSlots.poll()) != null) {
+			if(slot < clients.length && clients[slot] != null && clients[slot].isClosed()) {
+				remove(slot);
+				removed++;
+			}
+		}
+		return removed;
+	}
+
+	private void free(final int slot) {
+		final String address = addresses[slot];
+		if(address == null) {
+			unusedSlots.addFirst(slot);
+		} else {
+			freeSlotsByAddress.computeIfAbsent(address, key -> new ArrayDeque<Integer>()).addLast(slot);
+		}
+	}
+
+	private void grow() {
+		final int capacity = clients.length;
+		final int grown = Math.max(1, capacity * 2);
+		clients = Arrays.copyOf(clients, grown);
+		addresses = Arrays.copyOf(addresses, grown);
+		for(int slot = capacity; slot < grown; slot++) {
+			unusedSlots.addLast(slot);
+		}
+	}
+
+	private static String addressOf(final Socket client) {
+		return String.valueOf(client.getInetAddress());
+	}
+
+	private static void closeQuietly(final Socket client) {
+		try {
+			client.close();
+		} catch (IOException e) {
+			//the connection is dropped either way
+		}
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if(!(obj instanceof ClientRegistry)) {
+			return false;
+		}
+		final ClientRegistry other = (ClientRegistry) obj;
+		return Arrays.equals(clients, other.clients) && Arrays.equals(addresses, other.addresses);
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(clients) + Arrays.hashCode(addresses);
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder builder = new StringBuilder("clients: ");
+		builder.append(Arrays.toString(clients));
+		builder.append("; remembered addresses: ").append(Arrays.toString(addresses));
+		return builder.toString();
+	}
+}
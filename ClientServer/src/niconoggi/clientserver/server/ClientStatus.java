@@ -0,0 +1,21 @@
+package niconoggi.clientserver.server;
+
+/**
+ * The outcome of a read or write for a single client
+ * of a server communicating with multiple clients
+ * @author niconoggi
+ *
+ */
+public enum ClientStatus {
+
+	/** the data was transferred completely */
+	SUCCESS,
+	/** an error occured while transferring the data */
+	FAILED,
+	/** the data was not transferred before the deadline */
+	TIMED_OUT,
+	/** the transfer did not start before the deadline, as all threads were busy with other clients */
+	NOT_ATTEMPTED,
+	/** there was no connected client to transfer data with */
+	NOT_CONNECTED
+}
@@ -0,0 +1,21 @@
+package niconoggi.clientserver.server;
+
+import java.io.IOException;
+
+/**
+ * The logic a {@link ThreadPerClientServer} runs for every accepted
+ * client, on a thread of its own. The handler may block as long as it
+ * wants, when it returns the connection is closed.
+ * @author niconoggi
+ *
+ */
+@FunctionalInterface
+public interface ConnectionHandler {
+
+	/**
+	 * communicates with the given client
+	 * @param connection the accepted client
+	 * @throws IOException an error occuring during communication, which closes the connection
+	 */
+	void handle(final ClientConnection connection) throws IOException;
+}
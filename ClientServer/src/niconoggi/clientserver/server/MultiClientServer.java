@@ -1,12 +1,39 @@
 package niconoggi.clientserver.server;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
-import java.net.ServerSocket;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
-import niconoggi.clientserver.base.SerializableSocket;
+import niconoggi.clientserver.base.MultiClientCommunicationComponent;
+import niconoggi.clientserver.base.SerializableArrayList;
+import niconoggi.clientserver.compression.Compression;
+import niconoggi.clientserver.protocol.ChunkPublisher;
+import niconoggi.clientserver.protocol.ChunkedInputStream;
+import niconoggi.clientserver.protocol.ChunkedOutputStream;
+import niconoggi.clientserver.protocol.FrameValues;
+import niconoggi.clientserver.protocol.MessageFrame;
+import niconoggi.clientserver.util.FileTransferUtil;
+import niconoggi.clientserver.util.FramingUtil;
 
 /**
  * A basic extension of {@link AbstractMultiClientServer}
@@ -14,17 +41,63 @@ import niconoggi.clientserver.base.SerializableSocket;
  * clients. 
  * <p>
  * <b>IMPORTANT FOR USE:</b> The data which is written is represented as
- * a byte array meaning that all clients will get the same data (if each
- * client should get different data, please extend this or the super class 
- * yourself).<p>
- * The read data on the other hand is stored in a {@link List} of byte arrays. 
+ * a byte array meaning that all clients will get the same data, unless data
+ * of their own is set for single clients with {@link #setDataToWrite(int, byte[][])}.
+ * Such data may be several messages, which leave in one gathering write, see
+ * {@link FramingUtil#writeFrames(java.nio.channels.GatheringByteChannel, MessageFrame...)}.
+ * Single clients can also be written to directly, by slot or by remote address,
+ * see {@link #write(int, byte[][])}.<p>
+ * The read data on the other hand is stored in a {@link List} of byte arrays.
+ * <p>
+ * Every client gets and sends exactly one {@link MessageFrame} per write or read,
+ * so the clients stay connected between the calls.
+ * <p>
+ * By default the clients are written to and read from one after another. With
+ * {@link #setBroadcastParallelism(int)} all clients are written to and read
+ * from concurrently instead, see {@link #writeConcurrently()} and
+ * {@link #readConcurrently()}.
+ * <p>
+ * Instead of writing, the data can be {@link #enqueue() enqueued}: every client
+ * then has an {@link OutboundQueue} of its own, which a virtual thread per client
+ * writes from. Enqueuing does not wait for any client, so clients reading slowly
+ * only fall behind themselves, until their queue is full and the {@link OverflowPolicy}
+ * applies.
+ * <p>
+ * Messages too long to hold as a whole are streamed in chunks instead, see
+ * {@link #writeStream(InputStream)} and {@link #readStream(int)}, files are sent
+ * without passing the heap, see {@link #sendFile(Path)}.
  * @author niconoggi
  *
  */
-public class MultiClientServer extends AbstractMultiClientServer{
+public class MultiClientServer extends AbstractMultiClientServer implements MultiClientCommunicationComponent{
 
+	/** the state of a client in a concurrent round whose task waits for a thread */
+	private static final int QUEUED = 0;
+	/** the state of a client in a concurrent round whose task was taken on by a thread */
+	private static final int STARTED = 1;
+	/** the state of a client in a concurrent round whose task did not start before the deadline */
+	private static final int SKIPPED = 2;
+	private static final MessageFrame[] NO_FRAMES = new MessageFrame[0];
+	
 	private byte[] dataToWrite;
-	private List<byte[]> readData;
+	private ByteBuffer frameToWrite;
+	private byte[] frameBytes;
+	/** the frame to write after compressing, so it is compressed only once */
+	private ByteBuffer compressedFrame;
+	private List<byte[]> readData = new SerializableArrayList<byte[]>();
+	
+	private int broadcastParallelism = ServerValues.NO_BROADCAST_PARALLELISM;
+	private ExecutorService broadcastExecutor;
+	private RoundResult lastWriteResult;
+	private RoundResult lastReadResult;
+	private int clientReadTimeout = ServerValues.DEFAULT_IO_TIMEOUT;
+	private int outboundMessages = ServerValues.DEFAULT_OUTBOUND_MESSAGES;
+	private long outboundBytes = ServerValues.DEFAULT_OUTBOUND_BYTES;
+	private OverflowPolicy overflowPolicy = OverflowPolicy.DROP_OLDEST;
+	/** the messages to write to single client slots instead of the data to write, null for slots getting the data to write */
+	private byte[][][] slotData = new byte[0][][];
+	/** the outbound queue of every client slot, created on the first enqueue for the client */
+	private Outbound[] outbound = new Outbound[0];
 	
 	public MultiClientServer() {
 	}
@@ -37,42 +110,890 @@ public class MultiClientServer extends AbstractMultiClientServer{
 		super(port, clientAmount);
 	}
 	
+	/**
+	 * writes the data to all clients. If a broadcast parallelism is set,
+	 * this is the same as {@link #writeConcurrently()}, so errors of single
+	 * clients do not end up as exception but in {@link #getLastWriteResult()}
+	 */
 	@Override
 	public void write() throws IOException {
-		for(final SerializableSocket client : clients) {
+		if(broadcastParallelism != ServerValues.NO_BROADCAST_PARALLELISM) {
+			writeConcurrently();
+			return;
+		}
+		compressFrameToWrite();
+		for(int slot = 0; slot < clients.getCapacity(); slot++) {
+			final Socket client = clients.get(slot);
 			if(client != null && !client.isClosed()) {
-				final DataOutputStream out = new DataOutputStream(client.getOutputStream());
-				out.write(dataToWrite);
-				out.flush();
-				out.close();
+				final MessageFrame[] frames = framesOf(slot);
+				if(frames == null || frames.length > 0) {
+					writeTo(client, frames);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * writes the given messages to a single client right away, in one gathering write.
+	 * A client whose write fails is disconnected, as the messages may have been written partly
+	 * @param slot the slot of the client
+	 * @param payloads the messages to write, each as a frame of its own
+	 * @throws IOException an error occuring while compressing or writing, or if there is no client in the slot
+	 */
+	public void write(final int slot, final byte[]... payloads) throws IOException {
+		final Socket client = clients.get(slot);
+		if(client == null || client.isClosed()) {
+			throw new IOException("there is no client in slot " + slot);
+		}
+		final MessageFrame[] frames = framesOf(payloads);
+		try {
+			writeFrames(client, frames);
+		} catch (IOException e) {
+			clients.remove(slot);
+			metrics.recordError();
+			throw e;
+		}
+	}
+	
+	/**
+	 * writes the given messages to the client connected from the given address,
+	 * see {@link #write(int, byte[][])}
+	 * @param remoteAddress the address and port the client is connected from
+	 * @param payloads the messages to write, each as a frame of its own
+	 * @throws IOException an error occuring while compressing or writing, or if no client has the address
+	 */
+	public void write(final SocketAddress remoteAddress, final byte[]... payloads) throws IOException {
+		final int slot = slotOf(remoteAddress);
+		if(slot == ClientRegistry.NO_SLOT) {
+			throw new IOException("there is no client connected from " + remoteAddress);
+		}
+		write(slot, payloads);
+	}
+	
+	/**
+	 * @param remoteAddress the address and port a client is connected from
+	 * @return the slot of the client or {@link ClientRegistry#NO_SLOT}, if no client is connected from the address
+	 */
+	public int slotOf(final SocketAddress remoteAddress) {
+		return clients.slotOf(remoteAddress);
+	}
+
+	/**
+	 * Writes the data to all clients at once, using as many threads as
+	 * the broadcast parallelism allows, so one slow client does not delay the others.
+	 * Returns when every write finished or the io timeout ran out.
+	 * <p>
+	 * A client whose write is not finished by then is disconnected, as a
+	 * partly written message leaves its connection unusable. A client whose write
+	 * did not even start, as all threads were busy with other clients, stays connected
+	 * and is {@link ClientStatus#NOT_ATTEMPTED}.
+	 * @return the status of the write for every client slot
+	 * @throws IOException if the calling thread is interrupted while waiting
+	 */
+	public RoundResult writeConcurrently() throws IOException {
+		compressFrameToWrite();
+		final ExecutorService executor = broadcastExecutor();
+		final Future<byte[]>[] writes = newRound();
+		final AtomicIntegerArray started = new AtomicIntegerArray(writes.length);
+		for(int client = 0; client < writes.length; client++) {
+			final Socket socket = clients.get(client);
+			if(socket != null && !socket.isClosed()) {
+				final MessageFrame[] frames = framesOf(client);
+				if(frames != null && frames.length == 0) {
+					//nothing to write counts as written
+					writes[client] = CompletableFuture.completedFuture(null);
+				} else {
+					writes[client] = submit(executor, started, client, () -> {
+						writeTo(socket, frames);
+						return null;
+					});
+				}
+			}
+		}
+		lastWriteResult = awaitRound(writes, started);
+		return lastWriteResult;
+	}
+	
+	/**
+	 * writes the messages of a client slot or, if it has none, the data to write
+	 * @param socket the client to write to
+	 * @param frames the messages of the client slot or null
+	 * @throws IOException an error occuring while writing
+	 */
+	private void writeTo(final Socket socket, final MessageFrame[] frames) throws IOException {
+		if(frames == null) {
+			writeTo(socket);
+		} else {
+			writeFrames(socket, frames);
+		}
+	}
+	
+	/**
+	 * writes the given frames in one gathering write if the client has a channel,
+	 * otherwise one after another with a single flush
+	 * @param socket the client to write to
+	 * @param frames the frames to write
+	 * @throws IOException an error occuring while writing
+	 */
+	private void writeFrames(final Socket socket, final MessageFrame[] frames) throws IOException {
+		final SocketChannel channel = socket.getChannel();
+		if(channel != null) {
+			FramingUtil.writeFrames(channel, frames);
+		} else {
+			FramingUtil.writeFrames(socket.getOutputStream(), frames);
+		}
+		for(final MessageFrame frame : frames) {
+			metrics.recordSent(frame.getPayload().length);
+		}
+	}
+	
+	/**
+	 * @param slot the slot of a client
+	 * @return the messages set for the client slot, compressed if a compression is set,
+	 * 			null, if the slot gets the data to write, or none, if there is nothing to write to the slot
+	 * @throws IOException an error occuring while compressing
+	 */
+	private MessageFrame[] framesOf(final int slot) throws IOException {
+		if(slot >= slotData.length || slotData[slot] == null) {
+			return dataToWrite == null && frameToWrite == null ? NO_FRAMES : null;
+		}
+		return framesOf(slotData[slot]);
+	}
+	
+	private MessageFrame[] framesOf(final byte[][] payloads) throws IOException {
+		final MessageFrame[] frames = new MessageFrame[payloads.length];
+		for(int index = 0; index < payloads.length; index++) {
+			final MessageFrame frame = new MessageFrame(payloads[index]);
+			frames[index] = compression == null ? frame : compression.compress(frame);
+		}
+		return frames;
+	}
+	
+	/**
+	 * writes the data to write to a single client. A frame set by
+	 * {@link #setFrameToWrite(ByteBuffer)} is written as a read-only view if
+	 * the client has a channel, otherwise it is copied to the heap once and
+	 * that copy is shared by all clients
+	 * @param socket the client to write to
+	 * @throws IOException an error occuring while writing
+	 */
+	private void writeTo(final Socket socket) throws IOException {
+		if(frameToWrite == null) {
+			FramingUtil.writeData(socket.getOutputStream(), dataToWrite);
+			metrics.recordSent(dataToWrite.length);
+			return;
+		}
+		final SocketChannel channel = socket.getChannel();
+		if(channel != null) {
+			final ByteBuffer view = frameToWrite.asReadOnlyBuffer();
+			while(view.hasRemaining()) {
+				channel.write(view);
+			}
+		} else {
+			final OutputStream out = socket.getOutputStream();
+			out.write(frameBytes());
+			out.flush();
+		}
+		metrics.recordSent(frameToWrite.remaining() - FrameValues.HEADER_LENGTH);
+	}
+	
+	/**
+	 * Queues the data to write for every client and returns without waiting
+	 * for any of them. Every client is written to by a virtual thread of its own,
+	 * in the order the data was enqueued. All clients share the same frame, so the
+	 * data is encoded and compressed once no matter the amount of clients. Clients
+	 * with messages of their own, see {@link #setDataToWrite(int, byte[][])}, get those instead.
+	 * <p>
+	 * If the queue of a client is full, the {@link OverflowPolicy} decides, which may
+	 * disconnect the client. A client whose connection broke while writing is
+	 * removed the next time data is enqueued.
+	 * <p>
+	 * {@link #write()} must not be used while data is still queued, as the messages
+	 * would mix on the connection. {@link #awaitDrained(long)} waits for the queues to empty.
+	 * @throws IOException an error occuring while compressing
+	 */
+	public void enqueue() throws IOException {
+		compressFrameToWrite();
+		if(frameToWrite == null && dataToWrite != null) {
+			frameToWrite = FramingUtil.encodeFrame(new MessageFrame(dataToWrite));
+		}
+		for(int slot = 0; slot < clients.getCapacity(); slot++) {
+			final Socket client = clients.get(slot);
+			if(client == null) {
+				continue;
+			}
+			if(client.isClosed()) {
+				removeIfClosed(slot);
+				continue;
+			}
+			final OutboundQueue queue = outboundOf(slot, client).queue;
+			final MessageFrame[] frames = framesOf(slot);
+			boolean kept = true;
+			if(frames == null) {
+				kept = offer(queue, frameToWrite.duplicate());
+			} else {
+				for(int index = 0; index < frames.length && kept; index++) {
+					kept = offer(queue, FramingUtil.encodeFrame(frames[index]));
+				}
+			}
+			if(!kept) {
+				queue.close();
+				clients.remove(slot);
+				metrics.recordError();
+			}
+		}
+	}
+	
+	private boolean offer(final OutboundQueue queue, final ByteBuffer frame) {
+		final long droppedBefore = queue.getDropped();
+		final boolean kept = queue.offer(frame);
+		metrics.recordDropped(queue.getDropped() - droppedBefore);
+		return kept;
+	}
+	
+	/**
+	 * waits until everything enqueued was written to the clients
+	 * @param timeout the time in milliseconds to wait at most
+	 * @return true, if every queue was drained, false if the time ran out
+	 * @throws IOException if the calling thread is interrupted while waiting
+	 */
+	public boolean awaitDrained(final long timeout) throws IOException {
+		final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+		for(final Outbound target : outbound) {
+			if(target != null && !target.queue.awaitDrained(
+					TimeUnit.NANOSECONDS.toMillis(Math.max(0, deadline - System.nanoTime())))) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * @param slot the slot of the client
+	 * @return the outbound queue of the client, which is created and started if the
+	 * 			client has none yet or the slot was taken over by another client
+	 */
+	private Outbound outboundOf(final int slot, final Socket client) {
+		if(outbound.length <= slot) {
+			outbound = Arrays.copyOf(outbound, clients.getCapacity());
+		}
+		final Outbound existing = outbound[slot];
+		if(existing != null && existing.socket == client) {
+			return existing;
+		}
+		if(existing != null) {
+			existing.queue.close();
+		}
+		final Outbound created = new Outbound(clients, slot, client, new OutboundQueue(outboundMessages, outboundBytes, overflowPolicy));
+		Thread.ofVirtual().name("outbound-" + port + "-" + slot).start(() -> drain(created));
+		outbound[slot] = created;
+		return created;
+	}
+	
+	/**
+	 * writes the queued messages of a client until its queue is closed or writing fails
+	 * @param target the client and its queue
+	 */
+	private void drain(final Outbound target) {
+		try {
+			ByteBuffer frame;
+			while((frame = target.queue.take()) != null) {
+				final int payloadLength = frame.remaining() - FrameValues.HEADER_LENGTH;
+				writeBuffer(target.socket, frame);
+				target.queue.written();
+				metrics.recordSent(payloadLength);
+			}
+		} catch (IOException e) {
+			if(!target.queue.isClosed()) {
+				metrics.recordError();
+			}
+			target.queue.close();
+			try {
+				target.socket.close();
+			} catch (IOException closeError) {
+				//the connection is dropped either way
+			}
+			//the registry belongs to the server's thread, which frees the slot the next time it counts the clients
+			target.registry.markClosed(target.slot);
+		}
+	}
+	
+	/**
+	 * writes the given frame completely, using the channel of the client if it has one
+	 * @param socket the client to write to
+	 * @param frame the frame to write
+	 * @throws IOException an error occuring while writing
+	 */
+	private static void writeBuffer(final Socket socket, final ByteBuffer frame) throws IOException {
+		final SocketChannel channel = socket.getChannel();
+		if(channel != null) {
+			while(frame.hasRemaining()) {
+				channel.write(frame);
+			}
+			return;
+		}
+		final OutputStream out = socket.getOutputStream();
+		if(frame.hasArray()) {
+			out.write(frame.array(), frame.arrayOffset() + frame.position(), frame.remaining());
+		} else {
+			final byte[] bytes = new byte[frame.remaining()];
+			frame.get(bytes);
+			out.write(bytes);
+		}
+		out.flush();
+	}
+	
+	private void closeOutbound() {
+		for(int slot = 0; slot < outbound.length; slot++) {
+			if(outbound[slot] != null) {
+				outbound[slot].queue.close();
+				outbound[slot] = null;
+			}
+		}
+	}
+	
+	/**
+	 * compresses the data to write once for all clients, if a compression is set
+	 * @throws IOException an error occuring while compressing
+	 */
+	private void compressFrameToWrite() throws IOException {
+		if(compression == null || (frameToWrite != null && frameToWrite == compressedFrame)
+				|| (frameToWrite == null && dataToWrite == null)) {
+			return;
+		}
+		if(frameToWrite == null) {
+			frameToWrite = FramingUtil.encodeFrame(new MessageFrame(dataToWrite));
+		}
+		final ByteBuffer compressed = compression.compress(frameToWrite);
+		if(compressed != frameToWrite) {
+			frameToWrite = compressed;
+			frameBytes = null;
+		}
+		compressedFrame = frameToWrite;
+	}
+	
+	private synchronized byte[] frameBytes() {
+		if(frameBytes == null) {
+			frameBytes = new byte[frameToWrite.remaining()];
+			frameToWrite.asReadOnlyBuffer().get(frameBytes);
+		}
+		return frameBytes;
+	}
+	
+	/**
+	 * Reads one message of every client at once, using as many threads as
+	 * the broadcast parallelism allows, so the round takes as long as the slowest
+	 * client and not as long as all clients together. Two deadlines apply:
+	 * <ul>
+	 * <li>the client read timeout, the longest a single client may stay silent</li>
+	 * <li>the io timeout, the longest the whole round may take</li>
+	 * </ul>
+	 * A client that did not start sending within the client read timeout is
+	 * {@link ClientStatus#TIMED_OUT} but stays connected. A client whose read did not
+	 * start before the io timeout, as all threads were busy with other clients, is
+	 * {@link ClientStatus#NOT_ATTEMPTED} and stays connected as well. A client that is still
+	 * sending when the io timeout runs out, or whose message breaks off, is
+	 * disconnected, as the rest of its message would be unusable.
+	 * <p>
+	 * Unlike {@link #read()}, the read data holds one entry per client slot,
+	 * which is null if nothing was read from that slot.
+	 * @return the status and the read data of every client slot
+	 * @throws IOException if the calling thread is interrupted while waiting
+	 */
+	public RoundResult readConcurrently() throws IOException {
+		final ExecutorService executor = broadcastExecutor();
+		final int timeout = clientReadTimeout;
+		final Future<byte[]>[] reads = newRound();
+		final AtomicIntegerArray started = new AtomicIntegerArray(reads.length);
+		for(int client = 0; client < reads.length; client++) {
+			final Socket socket = clients.get(client);
+			if(socket != null && !socket.isClosed()) {
+				reads[client] = submit(executor, started, client, () -> readWithTimeout(socket, timeout));
+			}
+		}
+		lastReadResult = awaitRound(reads, started);
+		readData.clear();
+		for(int client = 0; client < reads.length; client++) {
+			readData.add(lastReadResult.getData(client));
+		}
+		return lastReadResult;
+	}
+	
+	/**
+	 * reads one message with the given read timeout set on the socket. If
+	 * reading fails for any other reason than the client not sending at
+	 * all, the socket is closed
+	 * @param socket the client to read from
+	 * @param timeout the read timeout in milliseconds
+	 * @return the read message
+	 * @throws IOException an error occuring while reading
+	 */
+	private byte[] readWithTimeout(final Socket socket, final int timeout) throws IOException {
+		final int previousTimeout = socket.getSoTimeout();
+		socket.setSoTimeout(timeout);
+		try {
+			return readFrom(socket);
+		} catch (SocketTimeoutException e) {
+			throw e;
+		} catch (IOException e) {
+			socket.close();
+			throw e;
+		} finally {
+			if(!socket.isClosed()) {
+				socket.setSoTimeout(previousTimeout);
+			}
+		}
+	}
+	
+	/**
+	 * reads the next message of the given client
+	 * @param socket the client to read from
+	 * @return the payload of the message, decompressed if it was compressed
+	 * @throws IOException an error occuring while reading
+	 */
+	private byte[] readFrom(final Socket socket) throws IOException {
+		final MessageFrame frame = FramingUtil.readFrame(socket.getInputStream());
+		metrics.recordReceived(frame.getPayload().length);
+		return Compression.payloadOf(frame);
+	}
+	
+	@SuppressWarnings("unchecked")
+	private Future<byte[]>[] newRound() {
+		return (Future<byte[]>[]) new Future<?>[clients.getCapacity()];
+	}
+	
+	/**
+	 * submits the task of a client, which runs only if the client was not skipped before a thread took it on
+	 * @param executor the executor to run the task
+	 * @param started the state of every client of the round, see {@link #QUEUED}
+	 * @param client the slot of the client
+	 * @param task the read or write of the client
+	 * @return the future of the task
+	 */
+	private static Future<byte[]> submit(final ExecutorService executor, final AtomicIntegerArray started,
+			final int client, final Callable<byte[]> task) {
+		return executor.submit(() -> {
+			if(!started.compareAndSet(client, QUEUED, STARTED)) {
+				return null;
+			}
+			return task.call();
+		});
+	}
+	
+	/**
+	 * waits for all tasks of a round until the io timeout runs out. Clients
+	 * whose task started but did not finish by then are disconnected, clients
+	 * whose task did not start yet are skipped and stay connected
+	 * @param tasks the task of every client slot, null for slots without client
+	 * @param started the state of every client of the round, see {@link #QUEUED}
+	 * @return the result of the round
+	 * @throws IOException if the calling thread is interrupted while waiting
+	 */
+	private RoundResult awaitRound(final Future<byte[]>[] tasks, final AtomicIntegerArray started) throws IOException {
+		final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ioTimeout);
+		for(int client = 0; client < tasks.length; client++) {
+			if(tasks[client] == null) {
+				continue;
+			}
+			try {
+				tasks[client].get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+			} catch (TimeoutException e) {
+				break;
+			} catch (ExecutionException e) {
+				//collected below
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("interrupted while waiting for the clients");
+			}
+		}
+		//skipping all waiting tasks before cancelling the running ones keeps the freed threads from starting them
+		for(int client = 0; client < tasks.length; client++) {
+			if(tasks[client] != null && !tasks[client].isDone() && started.compareAndSet(client, QUEUED, SKIPPED)) {
+				tasks[client].cancel(false);
+			}
+		}
+		final RoundResult result = new RoundResult(tasks.length);
+		for(int client = 0; client < tasks.length; client++) {
+			if(tasks[client] == null) {
+				continue;
+			}
+			if(started.get(client) == SKIPPED) {
+				result.setStatus(client, ClientStatus.NOT_ATTEMPTED);
+			} else if(!tasks[client].isDone() && tasks[client].cancel(true)) {
+				clients.remove(client);
+				metrics.recordError();
+				result.setStatus(client, ClientStatus.TIMED_OUT);
+			} else {
+				collect(result, client, tasks[client]);
 			}
 		}
+		return result;
+	}
+	
+	/**
+	 * puts the outcome of a finished task into the result
+	 * @param result the result of the round
+	 * @param client the slot of the client
+	 * @param task the finished task of the client
+	 * @throws IOException if the calling thread is interrupted
+	 */
+	private void collect(final RoundResult result, final int client, final Future<byte[]> task) throws IOException {
+		try {
+			result.setData(client, task.get());
+		} catch (ExecutionException e) {
+			if(e.getCause() instanceof SocketTimeoutException) {
+				result.setStatus(client, ClientStatus.TIMED_OUT);
+			} else {
+				result.setFailed(client, e.getCause());
+				removeIfClosed(client);
+				metrics.recordError();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted while waiting for the clients");
+		}
+	}
+
+	/**
+	 * removes the client of the given slot from the registry, if its
+	 * connection was closed because it broke
+	 * @param slot the slot of the client
+	 */
+	private void removeIfClosed(final int slot) {
+		final Socket socket = clients.get(slot);
+		if(socket != null && socket.isClosed()) {
+			clients.remove(slot);
+		}
+	}
+
+	/**
+	 * creates the broadcast threads on first use. Without a broadcast parallelism
+	 * set, there is one thread per client slot
+	 * @return the executor writing to and reading from the clients
+	 */
+	private ExecutorService broadcastExecutor() {
+		if(broadcastExecutor == null) {
+			final int threads = broadcastParallelism == ServerValues.NO_BROADCAST_PARALLELISM
+					? Math.max(1, clients.getCapacity()) : broadcastParallelism;
+			broadcastExecutor = Executors.newFixedThreadPool(threads, runnable -> {
+				final Thread thread = new Thread(runnable, "broadcast-" + port);
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		return broadcastExecutor;
 	}
 
+	/**
+	 * reads one message of every client. If a broadcast parallelism is set,
+	 * this is the same as {@link #readConcurrently()}, so errors of single
+	 * clients do not end up as exception but in {@link #getLastReadResult()}
+	 */
 	@Override
 	public void read() throws IOException {
+		if(broadcastParallelism != ServerValues.NO_BROADCAST_PARALLELISM) {
+			readConcurrently();
+			return;
+		}
 		readData.clear();
-		for(final SerializableSocket client : clients) {
+		for(int slot = 0; slot < clients.getCapacity(); slot++) {
+			final Socket client = clients.get(slot);
 			if(client != null && !client.isClosed()) {
-				final DataInputStream in = new DataInputStream(client.getInputStream());
-				readData.add(in.readAllBytes());
-				in.close();
+				readData.add(readFrom(client));
+			}
+		}
+	}
+	
+	/**
+	 * writes the given data to all clients as a streamed message, in chunks of the chunk
+	 * length, so the data is never held as a whole. Every chunk is compressed once and
+	 * written to the clients one after another, so the slowest client sets the pace.
+	 * <p>
+	 * A client whose connection breaks is disconnected, the others get the whole message
+	 * @param data the data to write, which is read until its end but not closed
+	 * @return the amount of written bytes, before compressing
+	 * @throws IOException an error occuring while reading the data
+	 */
+	public long writeStream(final InputStream data) throws IOException {
+		final ChunkedOutputStream out = new ChunkedOutputStream(this::broadcastChunk, chunkLength, compression);
+		data.transferTo(out);
+		out.close();
+		return out.getWritten();
+	}
+	
+	/**
+	 * reads the next message of the given client as a stream, chunk by chunk as the
+	 * returned stream is read. Nothing else may be read from the client until the returned
+	 * stream is at its end or closed
+	 * @param slot the slot of the client
+	 * @return the stream of the next message of the client
+	 * @throws IOException if there is no client in the slot
+	 */
+	public ChunkedInputStream readStream(final int slot) throws IOException {
+		final Socket client = clients.get(slot);
+		if(client == null || client.isClosed()) {
+			throw new IOException("there is no client in slot " + slot);
+		}
+		return new ChunkedInputStream(() -> {
+			final MessageFrame frame = FramingUtil.readFrame(client.getInputStream());
+			metrics.recordReceived(frame.getPayload().length);
+			return frame;
+		});
+	}
+	
+	/**
+	 * reads the next message of the given client as the chunks a {@link Flow.Publisher}
+	 * publishes, as its subscriber requests them, see {@link #readStream(int)}
+	 * @param slot the slot of the client
+	 * @return the publisher of the chunks of the next message of the client
+	 * @throws IOException if there is no client in the slot
+	 */
+	public Flow.Publisher<ByteBuffer> readPublisher(final int slot) throws IOException {
+		return new ChunkPublisher(readStream(slot));
+	}
+	
+	/**
+	 * sends the given file to all clients as a streamed message, without reading it into
+	 * the heap, see {@link FileTransferUtil}. The clients get the whole file one after another.
+	 * <p>
+	 * A client whose connection breaks is disconnected, the others get the whole file.
+	 * Messages enqueued for the clients must be written before, see {@link #awaitDrained(long)}
+	 * @param file the file to send
+	 * @return the amount of clients the file was sent to
+	 * @throws IOException an error occuring while reading the file
+	 */
+	public int sendFile(final Path file) throws IOException {
+		if(!Files.isReadable(file)) {
+			throw new IOException("cannot read " + file);
+		}
+		int sent = 0;
+		for(int slot = 0; slot < clients.getCapacity(); slot++) {
+			final Socket client = clients.get(slot);
+			if(client == null || client.isClosed()) {
+				continue;
+			}
+			try {
+				FileTransferUtil.sendFile(client, file, chunkLength, metrics);
+				sent++;
+			} catch (IOException e) {
+				//the rest of the file cannot reach the client anymore
+				clients.remove(slot);
+				metrics.recordError();
 			}
 		}
+		return sent;
 	}
 	
+	/**
+	 * receives the next message of the given client into the given file, without
+	 * reading it into the heap, see {@link FileTransferUtil}
+	 * @param slot the slot of the client
+	 * @param file the file to write to, replacing its content
+	 * @return the amount of received bytes
+	 * @throws IOException an error occuring while receiving or writing the file, or if there is no client in the slot
+	 */
+	public long receiveFile(final int slot, final Path file) throws IOException {
+		final Socket client = clients.get(slot);
+		if(client == null || client.isClosed()) {
+			throw new IOException("there is no client in slot " + slot);
+		}
+		return FileTransferUtil.receiveFile(client, file, metrics);
+	}
+	
+	private void broadcastChunk(final MessageFrame chunk) {
+		for(int slot = 0; slot < clients.getCapacity(); slot++) {
+			final Socket client = clients.get(slot);
+			if(client == null || client.isClosed()) {
+				continue;
+			}
+			try {
+				FramingUtil.writeFrame(client.getOutputStream(), chunk);
+				metrics.recordSent(chunk.getPayload().length);
+			} catch (IOException e) {
+				//the rest of the message cannot reach the client anymore
+				clients.remove(slot);
+				metrics.recordError();
+			}
+		}
+	}
+	
+	/**
+	 * discards the messages still queued for the clients, in addition to disconnecting them
+	 */
+	@Override
+	public void disconnect() throws IOException {
+		closeOutbound();
+		super.disconnect();
+	}
+	
+	/**
+	 * shuts the broadcast threads down in addition to stopping the server
+	 */
+	@Override
+	public void stop() throws IOException {
+		super.stop();
+		if(broadcastExecutor != null) {
+			broadcastExecutor.shutdownNow();
+			broadcastExecutor = null;
+		}
+	}
+	
+	/**
+	 * sets the amount of threads used to write to and read from the clients concurrently.
+	 * {@link ServerValues#NO_BROADCAST_PARALLELISM} makes write and read go back to
+	 * handling the clients one after another
+	 * @param parallelism the amount of threads writing or reading at the same time
+	 */
+	public void setBroadcastParallelism(final int parallelism) {
+		if(broadcastExecutor != null) {
+			broadcastExecutor.shutdown();
+			broadcastExecutor = null;
+		}
+		broadcastParallelism = parallelism;
+	}
+	
+	public int getBroadcastParallelism() {
+		return broadcastParallelism;
+	}
+	
+	/**
+	 * @return the result of the last concurrent write or null, if there was none
+	 */
+	public RoundResult getLastWriteResult() {
+		return lastWriteResult;
+	}
+	
+	/**
+	 * @return the result of the last concurrent read or null, if there was none
+	 */
+	public RoundResult getLastReadResult() {
+		return lastReadResult;
+	}
+	
+	/**
+	 * sets the limits of the outbound queues created from now on
+	 * @param maxMessages the amount of messages queued for a single client at most
+	 * @param maxBytes the amount of bytes queued for a single client at most
+	 */
+	public void setOutboundLimits(final int maxMessages, final long maxBytes) {
+		outboundMessages = maxMessages;
+		outboundBytes = maxBytes;
+	}
+	
+	public int getOutboundMessages() {
+		return outboundMessages;
+	}
+	
+	public long getOutboundBytes() {
+		return outboundBytes;
+	}
+	
+	public OverflowPolicy getOverflowPolicy() {
+		return overflowPolicy;
+	}
+	
+	/**
+	 * sets the policy of the outbound queues created from now on, {@link OverflowPolicy#DROP_OLDEST} by default
+	 * @param overflowPolicy the policy handling messages for clients whose queue is full
+	 */
+	public void setOverflowPolicy(final OverflowPolicy overflowPolicy) {
+		this.overflowPolicy = overflowPolicy;
+	}
+	
+	/**
+	 * @param slot the slot of the client
+	 * @return the outbound queue of the client or null, if nothing was enqueued for it yet
+	 */
+	public OutboundQueue getOutboundQueue(final int slot) {
+		return slot < outbound.length && outbound[slot] != null ? outbound[slot].queue : null;
+	}
+	
+	public int getClientReadTimeout() {
+		return clientReadTimeout;
+	}
+	
+	/**
+	 * sets the time in milliseconds a single client may stay silent
+	 * during a concurrent read before it counts as timed out
+	 * @param timeout the timeout in milliseconds
+	 */
+	public void setClientReadTimeout(final int timeout) {
+		clientReadTimeout = timeout;
+	}
+	
+	@Override
 	public void setDataToWrite(final byte[] dataToWrite) {
 		this.dataToWrite = dataToWrite;
+		frameToWrite = null;
+		frameBytes = null;
+	}
+	
+	/**
+	 * sets the messages the client in the given slot gets instead of the data to write, on
+	 * every write, concurrent write and enqueue until they are reset. The messages leave in
+	 * one gathering write. They are kept if another client takes over the slot. Without
+	 * data to write, the clients without messages of their own are skipped
+	 * @param slot the slot of the client
+	 * @param payloads the messages of the client, none to write nothing to it
+	 */
+	public void setDataToWrite(final int slot, final byte[]... payloads) {
+		if(slotData.length <= slot) {
+			slotData = Arrays.copyOf(slotData, Math.max(slot + 1, clients.getCapacity()));
+		}
+		slotData[slot] = payloads;
+	}
+	
+	/**
+	 * makes the client in the given slot get the data to write again
+	 * @param slot the slot of the client
+	 */
+	public void resetDataToWrite(final int slot) {
+		if(slot < slotData.length) {
+			slotData[slot] = null;
+		}
 	}
 	
+	/**
+	 * makes all clients get the data to write again
+	 */
+	public void resetDataToWrite() {
+		Arrays.fill(slotData, null);
+	}
+	
+	@Override
+	public void setFrameToWrite(final ByteBuffer frame) {
+		frameToWrite = frame;
+		frameBytes = null;
+	}
+	
+	@Override
 	public List<byte[]> getReadData(){
 		return readData;
 	}
 
+	@Override
 	public byte[] getSpecificReadData(final int clientNumber) {
 		return readData.get(clientNumber);
 	}
 	
+	/**
+	 * a client and the queue of the messages waiting to be written to it
+	 */
+	private static final class Outbound {
+		
+		private final ClientRegistry registry;
+		private final int slot;
+		private final Socket socket;
+		private final OutboundQueue queue;
+		
+		private Outbound(final ClientRegistry registry, final int slot, final Socket socket, final OutboundQueue queue) {
+			this.registry = registry;
+			this.slot = slot;
+			this.socket = socket;
+			this.queue = queue;
+		}
+	}
+	
 	@Override
 	public boolean equals(final Object obj) {
 		if(!super.equals(obj)) {
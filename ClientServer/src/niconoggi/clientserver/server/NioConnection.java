@@ -0,0 +1,125 @@
+package niconoggi.clientserver.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import niconoggi.clientserver.protocol.FrameDecoder;
+import niconoggi.clientserver.protocol.MessageFrame;
+
+/**
+ * The state of a single client of a {@link NioMultiClientServer}:
+ * its channel, the frames read but not yet consumed and the
+ * buffers queued for writing but not yet fully written.
+ * <p>
+ * Instances are only used by the thread driving the selector of the server
+ * @author niconoggi
+ *
+ */
+class NioConnection {
+
+	private final SocketChannel channel;
+	private final SelectionKey key;
+	private final FrameDecoder decoder = new FrameDecoder();
+	private final Deque<MessageFrame> inbound = new ArrayDeque<MessageFrame>();
+	private final Deque<ByteBuffer> outbound = new ArrayDeque<ByteBuffer>();
+	
+	NioConnection(final SocketChannel channel, final SelectionKey key) {
+		this.channel = channel;
+		this.key = key;
+	}
+	
+	/**
+	 * reads everything currently available on the channel and decodes
+	 * all completed frames into the inbound queue
+	 * @param buffer a buffer used for reading, which may be shared between connections
+	 * @return false, if the client closed the connection. true otherwise
+	 * @throws IOException an error occuring while reading or decoding
+	 */
+	boolean readAvailable(final ByteBuffer buffer) throws IOException {
+		while(true) {
+			buffer.clear();
+			final int read = channel.read(buffer);
+			if(read < 0) {
+				return false;
+			}
+			if(read == 0) {
+				return true;
+			}
+			buffer.flip();
+			while(buffer.hasRemaining()) {
+				final MessageFrame frame = decoder.decode(buffer);
+				if(frame != null) {
+					inbound.add(frame);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * queues the given buffer and writes as much as possible right away.
+	 * If the channel cannot take everything, the connection registers for
+	 * write readiness, so the rest is written by the selector loop.
+	 * @param buffer the bytes to write
+	 * @throws IOException an error occuring while writing
+	 */
+	void enqueue(final ByteBuffer buffer) throws IOException {
+		outbound.add(buffer);
+		if(!flush()) {
+			key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+		}
+	}
+	
+	/**
+	 * writes queued buffers until either all are written or the
+	 * channel does not take any more bytes
+	 * @return true, if nothing is left to write. false otherwise
+	 * @throws IOException an error occuring while writing
+	 */
+	boolean flush() throws IOException {
+		while(!outbound.isEmpty()) {
+			final ByteBuffer next = outbound.peek();
+			channel.write(next);
+			if(next.hasRemaining()) {
+				return false;
+			}
+			outbound.poll();
+		}
+		if(key.isValid()) {
+			key.interestOps(SelectionKey.OP_READ);
+		}
+		return true;
+	}
+	
+	/**
+	 * @return the oldest read frame that was not consumed yet or null, if there is none
+	 */
+	MessageFrame pollFrame() {
+		return inbound.poll();
+	}
+	
+	boolean hasFrame() {
+		return !inbound.isEmpty();
+	}
+	
+	boolean hasPendingWrites() {
+		return !outbound.isEmpty();
+	}
+	
+	SocketChannel getChannel() {
+		return channel;
+	}
+	
+	void close() throws IOException {
+		key.cancel();
+		channel.close();
+	}
+	
+	@Override
+	public String toString() {
+		return channel.toString();
+	}
+}
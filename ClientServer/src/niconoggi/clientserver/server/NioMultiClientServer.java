@@ -0,0 +1,331 @@
+package niconoggi.clientserver.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import niconoggi.clientserver.base.AbstractServer;
+import niconoggi.clientserver.base.MultiClientCommunicationComponent;
+import niconoggi.clientserver.base.SerializableArrayList;
+import niconoggi.clientserver.compression.Compression;
+import niconoggi.clientserver.protocol.FrameValues;
+import niconoggi.clientserver.protocol.MessageFrame;
+import niconoggi.clientserver.util.FramingUtil;
+
+/**
+ * A server for multiple clients built on a {@link Selector}, so any amount of
+ * clients is served by the thread calling connect, write and read, without ever
+ * blocking on a single client.
+ * <p>
+ * Accepting, reading and writing happen whenever the selector reports the
+ * channels ready, so a slow client only delays itself:
+ * <ul>
+ * <li>connect accepts clients until the expected client amount is connected
+ * or the connect timeout runs out</li>
+ * <li>write queues a read-only view of the same encoded {@link MessageFrame} for all
+ * clients, so the frame is encoded once no matter how many clients get it, and returns once
+ * everything is written or the io timeout runs out. Bytes not written by then
+ * stay queued and are written during the following calls</li>
+ * <li>read waits until every client sent a frame or the io timeout runs out.
+ * Clients that did not send anything in time get a null entry in the read data</li>
+ * </ul>
+ * Clients connecting at any other time are accepted as well.
+ * @author niconoggi
+ *
+ */
+public class NioMultiClientServer extends AbstractServer implements MultiClientCommunicationComponent {
+
+	private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+	private ServerSocketChannel serverChannel;
+	private Selector selector;
+	private final List<NioConnection> connections = new ArrayList<NioConnection>();
+	private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+
+	private int clientAmount;
+
+	private ByteBuffer frameToWrite;
+	/** the frame to write after compressing, so it is compressed only once */
+	private ByteBuffer compressedFrame;
+	private final List<byte[]> readData = new SerializableArrayList<byte[]>();
+
+	public NioMultiClientServer() {
+	}
+
+	public NioMultiClientServer(final int port) {
+		super(port);
+	}
+
+	/**
+	 * constructor that sets the port and the amount of clients
+	 * connect waits for
+	 * @param port the port the server will be bound to
+	 * @param clientAmount the amount of clients expected to connect
+	 */
+	public NioMultiClientServer(final int port, final int clientAmount) {
+		super(port);
+		setClientAmount(clientAmount);
+	}
+
+	/**
+	 * Starts the server by opening a non-blocking {@link ServerSocketChannel}.
+	 * The {@link ServerSocket} of the channel is used as the server socket,
+	 * so everything relying on it keeps working.
+	 */
+	@Override
+	public void start() throws IOException {
+		serverChannel = ServerSocketChannel.open();
+		serverChannel.bind(new InetSocketAddress(port), backlog);
+		serverChannel.configureBlocking(false);
+		selector = Selector.open();
+		serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+		server = serverChannel.socket();
+		registerMetrics();
+	}
+
+	@Override
+	public void stop() throws IOException {
+		disconnect();
+		selector.close();
+		serverChannel.close();
+		unregisterMetrics();
+	}
+
+	@Override
+	public void connect() throws IOException {
+		final long deadline = System.currentTimeMillis() + connectTimeout;
+		acceptPending();
+		while(connections.size() < clientAmount && System.currentTimeMillis() < deadline) {
+			select(deadline);
+		}
+	}
+
+	/**
+	 * queues the data to write for all clients and writes until everything is
+	 * written or the io timeout runs out. Without data to write, only bytes still
+	 * queued from earlier calls are written
+	 */
+	@Override
+	public void write() throws IOException {
+		if(frameToWrite != null) {
+			enqueueFrameToWrite();
+		}
+		final long deadline = System.currentTimeMillis() + ioTimeout;
+		while(hasPendingWrites() && System.currentTimeMillis() < deadline) {
+			select(deadline);
+		}
+	}
+
+	@Override
+	public void read() throws IOException {
+		final long deadline = System.currentTimeMillis() + ioTimeout;
+		while(!allClientsSent() && System.currentTimeMillis() < deadline) {
+			select(deadline);
+		}
+		readData.clear();
+		for(final NioConnection connection : new ArrayList<NioConnection>(connections)) {
+			final MessageFrame frame = connection.pollFrame();
+			if(frame != null) {
+				metrics.recordReceived(frame.getPayload().length);
+			}
+			try {
+				readData.add(frame == null ? null : Compression.payloadOf(frame));
+			} catch (IOException e) {
+				//a payload that does not decompress breaks the protocol
+				close(connection);
+				readData.add(null);
+			}
+		}
+	}
+
+	@Override
+	public void disconnect() throws IOException {
+		for(final NioConnection connection : connections) {
+			connection.close();
+		}
+		connections.clear();
+	}
+
+	@Override
+	public void setDataToWrite(final byte[] dataToWrite) {
+		frameToWrite = FramingUtil.encodeFrame(new MessageFrame(dataToWrite));
+	}
+
+	@Override
+	public void setFrameToWrite(final ByteBuffer frame) {
+		frameToWrite = frame;
+	}
+
+	@Override
+	public List<byte[]> getReadData() {
+		return readData;
+	}
+
+	@Override
+	public byte[] getSpecificReadData(final int clientNumber) {
+		return readData.get(clientNumber);
+	}
+
+	/**
+	 * sets the amount of clients connect waits for. Unlike the
+	 * {@link AbstractMultiClientServer}, this is no upper limit: more clients
+	 * may connect, the server accepts all of them
+	 * @param amount the expected client amount
+	 */
+	public void setClientAmount(final int amount) {
+		clientAmount = amount;
+	}
+
+	public int getInitialClientAmount() {
+		return clientAmount;
+	}
+
+	/**
+	 * @return the amount of currently connected clients
+	 */
+	public int getActualClientAmount() {
+		return connections.size();
+	}
+
+	/**
+	 * queues a read-only view of the frame to write for every client, compressing it once
+	 * @throws IOException an error occuring while compressing
+	 */
+	private void enqueueFrameToWrite() throws IOException {
+		if(compression != null && frameToWrite != compressedFrame) {
+			frameToWrite = compression.compress(frameToWrite);
+			compressedFrame = frameToWrite;
+		}
+		for(final NioConnection connection : new ArrayList<NioConnection>(connections)) {
+			try {
+				connection.enqueue(frameToWrite.asReadOnlyBuffer());
+				metrics.recordSent(frameToWrite.remaining() - FrameValues.HEADER_LENGTH);
+			} catch (IOException e) {
+				close(connection);
+			}
+		}
+	}
+
+	/**
+	 * waits until the selector reports ready channels or the deadline
+	 * is reached and handles all ready channels
+	 * @param deadline the point in time to stop waiting at
+	 * @throws IOException an error of the selector itself
+	 */
+	private void select(final long deadline) throws IOException {
+		final long remaining = deadline - System.currentTimeMillis();
+		if(remaining <= 0 || selector.select(remaining) == 0) {
+			return;
+		}
+		final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+		while(keys.hasNext()) {
+			final SelectionKey key = keys.next();
+			keys.remove();
+			if(!key.isValid()) {
+				continue;
+			}
+			if(key.isAcceptable()) {
+				acceptPending();
+				continue;
+			}
+			final NioConnection connection = (NioConnection) key.attachment();
+			try {
+				if(key.isReadable() && !connection.readAvailable(readBuffer)) {
+					close(connection);
+					continue;
+				}
+				if(key.isValid() && key.isWritable()) {
+					connection.flush();
+				}
+			} catch (IOException e) {
+				close(connection);
+			}
+		}
+	}
+
+	/**
+	 * accepts all clients currently waiting to be accepted and
+	 * registers them for reading
+	 * @throws IOException an error occuring while accepting
+	 */
+	private void acceptPending() throws IOException {
+		SocketChannel accepted;
+		while((accepted = serverChannel.accept()) != null) {
+			accepted.configureBlocking(false);
+			accepted.setOption(StandardSocketOptions.TCP_NODELAY, true);
+			final SelectionKey key = accepted.register(selector, SelectionKey.OP_READ);
+			final NioConnection connection = new NioConnection(accepted, key);
+			key.attach(connection);
+			connections.add(connection);
+			metrics.recordConnect();
+		}
+	}
+
+	/**
+	 * drops a connection that broke
+	 * @param connection the connection to drop
+	 */
+	private void close(final NioConnection connection) {
+		metrics.recordError();
+		connections.remove(connection);
+		try {
+			connection.close();
+		} catch (IOException e) {
+			//the connection is dropped either way
+		}
+	}
+
+	private boolean hasPendingWrites() {
+		for(final NioConnection connection : connections) {
+			if(connection.hasPendingWrites()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean allClientsSent() {
+		for(final NioConnection connection : connections) {
+			if(!connection.hasFrame()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if(!super.equals(obj)) {
+			return false;
+		}
+
+		if(!(obj instanceof NioMultiClientServer)) {
+			return false;
+		}
+
+		final NioMultiClientServer other = (NioMultiClientServer) obj;
+		return connections.equals(other.connections) && clientAmount == other.clientAmount;
+	}
+
+	@Override
+	public int hashCode() {
+		return super.hashCode() + connections.hashCode() + clientAmount;
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder builder = new StringBuilder(super.toString());
+		builder.append(", connections: ").append(connections.toString());
+		builder.append(", expected client amount: ").append(clientAmount);
+		return builder.toString();
+	}
+}
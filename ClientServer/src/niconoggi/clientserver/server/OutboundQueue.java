@@ -0,0 +1,276 @@
+package niconoggi.clientserver.server;
+
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The messages waiting to be written to a single client, as complete frames.
+ * The queue is bounded by an amount of messages and of bytes, so a client that
+ * reads slowly or not at all takes up a bounded amount of memory. What happens
+ * to a message that does not fit is up to the {@link OverflowPolicy}.
+ * <p>
+ * An empty queue takes any message, so a message larger than the byte limit
+ * is still written on its own.
+ * <p>
+ * All methods take the lock of the queue. As the lock is reentrant, the methods
+ * meant for policies also work within a policy, which is called with the lock
+ * held, so a policy sees and changes the queue as a whole.
+ * @author niconoggi
+ *
+ */
+public class OutboundQueue {
+
+	private final ArrayDeque<ByteBuffer> frames = new ArrayDeque<ByteBuffer>();
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notEmpty = lock.newCondition();
+	private final Condition drained = lock.newCondition();
+	private final int maxMessages;
+	private final long maxBytes;
+	private final OverflowPolicy policy;
+	private long queuedBytes;
+	private long dropped;
+	/** true while a taken message is being written */
+	private boolean writing;
+	private boolean closed;
+
+	/**
+	 * @param maxMessages the amount of messages the queue holds at most
+	 * @param maxBytes the amount of bytes the queued messages take up at most
+	 * @param policy the policy handling messages that do not fit
+	 */
+	public OutboundQueue(final int maxMessages, final long maxBytes, final OverflowPolicy policy) {
+		this.maxMessages = maxMessages;
+		this.maxBytes = maxBytes;
+		this.policy = policy;
+	}
+
+	/**
+	 * queues the given message, applying the overflow policy if it does not fit
+	 * @param frame the complete frame to write, which must not be changed afterwards
+	 * @return true, if the client stays connected, false if the policy decided to disconnect it
+	 */
+	public boolean offer(final ByteBuffer frame) {
+		lock.lock();
+		try {
+			if(closed) {
+				return false;
+			}
+			if(fits(frame)) {
+				add(frame);
+				return true;
+			}
+			return policy.overflow(this, frame);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * takes the next message to write, waiting for one if the queue is empty.
+	 * The queue counts as drained once the taken message is reported as
+	 * written by {@link #written()}
+	 * @return the next message or null, if the queue was closed
+	 * @throws InterruptedIOException if the calling thread is interrupted while waiting
+	 */
+	public ByteBuffer take() throws InterruptedIOException {
+		lock.lock();
+		try {
+			while(frames.isEmpty() && !closed) {
+				notEmpty.await();
+			}
+			if(closed) {
+				return null;
+			}
+			final ByteBuffer frame = frames.poll();
+			queuedBytes -= frame.remaining();
+			writing = true;
+			return frame;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted while waiting for a message to write");
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * reports the message taken last as written
+	 */
+	public void written() {
+		lock.lock();
+		try {
+			writing = false;
+			if(frames.isEmpty()) {
+				drained.signalAll();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * waits until all queued messages are written
+	 * @param timeout the time in milliseconds to wait at most
+	 * @return true, if all messages were written or the queue was closed, false if the time ran out
+	 * @throws InterruptedIOException if the calling thread is interrupted while waiting
+	 */
+	public boolean awaitDrained(final long timeout) throws InterruptedIOException {
+		long remaining = TimeUnit.MILLISECONDS.toNanos(timeout);
+		lock.lock();
+		try {
+			while((writing || !frames.isEmpty()) && !closed) {
+				if(remaining <= 0) {
+					return false;
+				}
+				remaining = drained.awaitNanos(remaining);
+			}
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted while waiting for the messages to be written");
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * discards all queued messages and wakes up the thread waiting to write
+	 */
+	public void close() {
+		lock.lock();
+		try {
+			closed = true;
+			frames.clear();
+			queuedBytes = 0;
+			notEmpty.signalAll();
+			drained.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @param frame a message
+	 * @return true, if the message fits into the queue without dropping any other
+	 */
+	public boolean fits(final ByteBuffer frame) {
+		lock.lock();
+		try {
+			return frames.isEmpty() || (frames.size() < maxMessages && queuedBytes + frame.remaining() <= maxBytes);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * queues the message regardless of the limits, unless the queue is closed.
+	 * Meant for {@link OverflowPolicy}s
+	 * @param frame the message to queue
+	 */
+	public void add(final ByteBuffer frame) {
+		lock.lock();
+		try {
+			if(closed) {
+				return;
+			}
+			frames.add(frame);
+			queuedBytes += frame.remaining();
+			notEmpty.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * drops the oldest queued message. Meant for {@link OverflowPolicy}s
+	 * @return true, if a message was dropped, false if the queue was empty
+	 */
+	public boolean dropOldest() {
+		lock.lock();
+		try {
+			final ByteBuffer oldest = frames.poll();
+			if(oldest == null) {
+				return false;
+			}
+			queuedBytes -= oldest.remaining();
+			dropped++;
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * drops all queued messages. Meant for {@link OverflowPolicy}s
+	 */
+	public void clear() {
+		lock.lock();
+		try {
+			dropped += frames.size();
+			frames.clear();
+			queuedBytes = 0;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return the amount of queued messages
+	 */
+	public int size() {
+		lock.lock();
+		try {
+			return frames.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return the amount of bytes the queued messages take up
+	 */
+	public long getQueuedBytes() {
+		lock.lock();
+		try {
+			return queuedBytes;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return the amount of messages dropped by the overflow policy so far
+	 */
+	public long getDropped() {
+		lock.lock();
+		try {
+			return dropped;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public boolean isClosed() {
+		lock.lock();
+		try {
+			return closed;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public String toString() {
+		lock.lock();
+		try {
+			return "outbound queue: messages = " + frames.size() + "/" + maxMessages + ", bytes = " + queuedBytes + "/" + maxBytes
+					+ ", dropped = " + dropped + (closed ? ", closed" : "");
+		} finally {
+			lock.unlock();
+		}
+	}
+}
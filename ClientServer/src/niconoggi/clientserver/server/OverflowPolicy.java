@@ -0,0 +1,52 @@
+package niconoggi.clientserver.server;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Decides what happens to a message for a client whose {@link OutboundQueue}
+ * is full, because the client reads slower than it is written to.
+ * <p>
+ * A policy is called by the queue while it holds its lock, so it may change the
+ * queue with {@link OutboundQueue#dropOldest()}, {@link OutboundQueue#clear()}
+ * and {@link OutboundQueue#add(ByteBuffer)}, but must not block.
+ * @author niconoggi
+ *
+ */
+@FunctionalInterface
+public interface OverflowPolicy {
+
+	/**
+	 * drops the oldest queued messages until the new message fits.
+	 * The client misses messages but gets the most recent ones
+	 */
+	OverflowPolicy DROP_OLDEST = (queue, frame) -> {
+		while(!queue.fits(frame) && queue.dropOldest()) {
+			//drops until the message fits
+		}
+		queue.add(frame);
+		return true;
+	};
+
+	/**
+	 * drops all queued messages, so only the new one is left. Fits clients
+	 * which only care about the latest state, such as the latest price
+	 */
+	OverflowPolicy CONFLATE = (queue, frame) -> {
+		queue.clear();
+		queue.add(frame);
+		return true;
+	};
+
+	/**
+	 * disconnects the client, as it does not keep up
+	 */
+	OverflowPolicy DISCONNECT = (queue, frame) -> false;
+
+	/**
+	 * handles a message that does not fit into the queue
+	 * @param queue the full queue
+	 * @param frame the message that does not fit
+	 * @return true, if the client stays connected, false if it has to be disconnected
+	 */
+	boolean overflow(OutboundQueue queue, ByteBuffer frame);
+}
@@ -0,0 +1,115 @@
+package niconoggi.clientserver.server;
+
+import java.util.Arrays;
+
+/**
+ * The outcome of a concurrent read or write round of a server communicating
+ * with multiple clients. It holds the {@link ClientStatus}, the read data
+ * and, if one occured, the error for every client slot. Slots without a
+ * client are {@link ClientStatus#NOT_CONNECTED}.
+ * @author niconoggi
+ *
+ */
+public class RoundResult {
+
+	private final ClientStatus[] statuses;
+	private final Throwable[] errors;
+	private final byte[][] data;
+	
+	/**
+	 * creates a result with all slots {@link ClientStatus#NOT_CONNECTED}
+	 * @param clientAmount the amount of client slots
+	 */
+	public RoundResult(final int clientAmount) {
+		statuses = new ClientStatus[clientAmount];
+		errors = new Throwable[clientAmount];
+		data = new byte[clientAmount][];
+		Arrays.fill(statuses, ClientStatus.NOT_CONNECTED);
+	}
+	
+	void setStatus(final int client, final ClientStatus status) {
+		statuses[client] = status;
+	}
+	
+	void setFailed(final int client, final Throwable error) {
+		statuses[client] = ClientStatus.FAILED;
+		errors[client] = error;
+	}
+	
+	void setData(final int client, final byte[] read) {
+		statuses[client] = ClientStatus.SUCCESS;
+		data[client] = read;
+	}
+	
+	public ClientStatus getStatus(final int client) {
+		return statuses[client];
+	}
+	
+	/**
+	 * @param client the slot of the client
+	 * @return the error that occured for the client or null, if there was none
+	 */
+	public Throwable getError(final int client) {
+		return errors[client];
+	}
+	
+	/**
+	 * @param client the slot of the client
+	 * @return the data read from the client or null, if nothing was read
+	 */
+	public byte[] getData(final int client) {
+		return data[client];
+	}
+	
+	public int getClientAmount() {
+		return statuses.length;
+	}
+	
+	/**
+	 * @param status the status to count
+	 * @return the amount of clients that ended with the given status
+	 */
+	public int count(final ClientStatus status) {
+		int amount = 0;
+		for(final ClientStatus inArray : statuses) {
+			if(inArray == status) {
+				amount++;
+			}
+		}
+		return amount;
+	}
+	
+	/**
+	 * @return true, if every connected client transferred its data. false otherwise
+	 */
+	public boolean isSuccessful() {
+		return count(ClientStatus.FAILED) == 0 && count(ClientStatus.TIMED_OUT) == 0
+				&& count(ClientStatus.NOT_ATTEMPTED) == 0;
+	}
+	
+	@Override
+	public boolean equals(final Object obj) {
+		if(obj == null) {
+			return false;
+		}
+		if(!(obj instanceof RoundResult)) {
+			return false;
+		}
+		
+		final RoundResult other = (RoundResult) obj;
+		return Arrays.equals(statuses, other.statuses) && Arrays.equals(errors, other.errors);
+	}
+	
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(statuses) + Arrays.hashCode(errors);
+	}
+	
+	@Override
+	public String toString() {
+		final StringBuilder builder = new StringBuilder();
+		builder.append("statuses = ").append(Arrays.toString(statuses));
+		builder.append(", errors = ").append(Arrays.toString(errors));
+		return builder.toString();
+	}
+}
@@ -12,5 +12,26 @@ public class ServerValues {
 	public static final int NO_CONNECTION_RETRY_FLAG = -1;
 	public static final int DEFAULT_CONNECTION_RETRIES = 3;
 	
+	/** the time servers wait for a read or write round with multiple clients to complete */
+	public static final int DEFAULT_IO_TIMEOUT = 10000;
+	
+	/** flag for writing to all clients one after another instead of concurrently */
+	public static final int NO_BROADCAST_PARALLELISM = 0;
+	
+	/** the amount of pending connections the operating system queues before an {@link Acceptor} accepts them */
+	public static final int DEFAULT_BACKLOG = 512;
+	
+	/** the amount of accepted clients waiting in an {@link Acceptor} to be taken by a server */
+	public static final int DEFAULT_ACCEPT_QUEUE_CAPACITY = 1024;
+	
+	/** the amount of messages an {@link OutboundQueue} holds for a single client by default */
+	public static final int DEFAULT_OUTBOUND_MESSAGES = 1024;
+	
+	/** the amount of bytes an {@link OutboundQueue} holds for a single client by default */
+	public static final long DEFAULT_OUTBOUND_BYTES = 16 * 1024 * 1024;
+	
+	/** the amount of correlated requests of a single client a server runner handles at the same time by default */
+	public static final int DEFAULT_MAX_IN_FLIGHT_REQUESTS = 256;
+	
 	private ServerValues() {}
 }
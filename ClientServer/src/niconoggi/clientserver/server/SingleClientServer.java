@@ -1,16 +1,33 @@
 package niconoggi.clientserver.server;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.concurrent.Flow;
 
+import niconoggi.clientserver.codec.Codec;
+import niconoggi.clientserver.protocol.ChunkPublisher;
+import niconoggi.clientserver.protocol.ChunkedInputStream;
+import niconoggi.clientserver.protocol.ChunkedOutputStream;
+import niconoggi.clientserver.protocol.FrameBuffer;
+import niconoggi.clientserver.protocol.MessageFrame;
 import niconoggi.clientserver.util.DataConverterUtil;
+import niconoggi.clientserver.util.FileTransferUtil;
+import niconoggi.clientserver.util.FramingUtil;
 import niconoggi.clientserver.util.InstanceCopier;
 
 /**
  * A very basic instanciateable extension of {@link AbstractSingleClientServer}.
  * It provides basic writing and reading of bytes. This is to create compatibility
- * with {@link InstanceCopier} and {@link DataConverterUtil}
+ * with {@link InstanceCopier} and {@link DataConverterUtil}.
+ * The bytes are sent as {@link MessageFrame}s, so the client stays connected
+ * after reading or writing.
+ * <p>
+ * Messages too long to hold as a whole are streamed in chunks instead, see
+ * {@link #writeStream(InputStream)} and {@link #readStream()}, files are sent and
+ * received without passing the heap, see {@link #sendFile(Path)} and {@link #receiveFile(Path)}.
  * @author niconoggi
  *
  */
@@ -18,6 +35,8 @@ public class SingleClientServer extends AbstractSingleClientServer{
 
 	protected byte[] dataToWrite;
 	protected byte[] readData;
+	protected final FrameBuffer readBuffer = new FrameBuffer();
+	protected final FrameBuffer writeBuffer = new FrameBuffer();
 	
 	public SingleClientServer() {
 		super();
@@ -29,17 +48,22 @@ public class SingleClientServer extends AbstractSingleClientServer{
 	
 	@Override
 	public void write() throws IOException {
-		final DataOutputStream out = new DataOutputStream(client.getOutputStream());
-		out.write(dataToWrite);
-		out.close();
-		out.flush();
+		if(dataToWrite == null && !writeBuffer.isEmpty()) {
+			if(compression != null) {
+				writeBuffer.compress(compression);
+			}
+			writeBuffer.writeTo(client.getOutputStream());
+			metrics.recordSent(writeBuffer.getPayloadLength());
+			return;
+		}
+		metrics.recordSent(FramingUtil.writeData(client.getOutputStream(), dataToWrite, compression));
 	}
 
 	@Override
 	public void read() throws IOException {
-		final DataInputStream in = new DataInputStream(client.getInputStream());
-		readData = in.readAllBytes();
-		in.close();
+		readBuffer.readFrom(client.getInputStream());
+		metrics.recordReceived(readBuffer.getReceivedLength());
+		readData = null;
 	}
 	
 	/**
@@ -51,6 +75,24 @@ public class SingleClientServer extends AbstractSingleClientServer{
 	 */
 	public void setDataToWrite(final byte[] dataToWrite) {
 		this.dataToWrite = dataToWrite;
+		writeBuffer.clear();
+	}
+	
+	/**
+	 * encodes the data that will be written later directly into
+	 * a reused buffer, so no arrays are allocated for it.
+	 * <p>
+	 * IMPORTANT: Ensure this is used <b>before</b> the write method is called.
+	 * @param <D> the type of the data
+	 * @param codec the codec to encode with
+	 * @param data the data to write
+	 * @throws IOException an error occuring while encoding
+	 */
+	public <D> void encodeDataToWrite(final Codec<D> codec, final D data) throws IOException {
+		dataToWrite = null;
+		final long start = System.nanoTime();
+		writeBuffer.encode(codec, data);
+		metrics.recordEncode(start);
 	}
 	
 	/**
@@ -59,9 +101,106 @@ public class SingleClientServer extends AbstractSingleClientServer{
 	 * @return the read data
 	 */
 	public byte[] getReadData() {
+		if(readData == null && !readBuffer.isEmpty()) {
+			readData = readBuffer.copyPayload();
+		}
 		return readData; 
 	}
 	
+	/**
+	 * decodes the read data directly out of the read buffer,
+	 * so no arrays are allocated for it.
+	 * <p>
+	 * IMPORTANT: call this method <b>after</b> using the read method.
+	 * @param <D> the type of the data
+	 * @param codec the codec to decode with
+	 * @return the decoded read data
+	 * @throws IOException an error occuring while decoding or if nothing was read yet
+	 */
+	public <D> D decodeReadData(final Codec<D> codec) throws IOException {
+		final long start = System.nanoTime();
+		final D decoded = readBuffer.decode(codec);
+		metrics.recordDecode(start);
+		return decoded;
+	}
+	
+	/**
+	 * writes the given data as a streamed message, in chunks of the chunk length,
+	 * so the data is never held as a whole. Blocks while the other side does not keep up
+	 * @param data the data to write, which is read until its end but not closed
+	 * @return the amount of written bytes, before compressing
+	 * @throws IOException an error occuring while reading the data or writing
+	 */
+	public long writeStream(final InputStream data) throws IOException {
+		final ChunkedOutputStream out = openWriteStream();
+		data.transferTo(out);
+		out.close();
+		return out.getWritten();
+	}
+	
+	/**
+	 * opens a streamed message to write. Closing the returned stream ends the message,
+	 * nothing else may be written until then
+	 * @return the stream writing the message in chunks of the chunk length
+	 */
+	public ChunkedOutputStream openWriteStream() {
+		final Socket connected = client;
+		return new ChunkedOutputStream(frame -> writeChunk(connected, frame), chunkLength, compression);
+	}
+	
+	/**
+	 * reads the next message as a stream, chunk by chunk as the returned stream is read,
+	 * so the message is never held as a whole. Nothing else may be read until the
+	 * returned stream is at its end or closed
+	 * @return the stream of the next message
+	 */
+	public ChunkedInputStream readStream() {
+		final Socket connected = client;
+		return new ChunkedInputStream(() -> readChunk(connected));
+	}
+	
+	/**
+	 * reads the next message as the chunks a {@link Flow.Publisher} publishes,
+	 * as its subscriber requests them, see {@link #readStream()}
+	 * @return the publisher of the chunks of the next message
+	 */
+	public Flow.Publisher<ByteBuffer> readPublisher() {
+		return new ChunkPublisher(readStream());
+	}
+	
+	/**
+	 * sends the given file as a streamed message, without reading it into the heap,
+	 * see {@link FileTransferUtil}. The other side reads it like any streamed message
+	 * @param file the file to send
+	 * @return the amount of sent bytes
+	 * @throws IOException an error occuring while reading the file or sending
+	 */
+	public long sendFile(final Path file) throws IOException {
+		return FileTransferUtil.sendFile(client, file, chunkLength, metrics);
+	}
+	
+	/**
+	 * receives the next message into the given file, without reading it into the heap,
+	 * see {@link FileTransferUtil}. The message may be any streamed or plain message
+	 * @param file the file to write to, replacing its content
+	 * @return the amount of received bytes
+	 * @throws IOException an error occuring while receiving or writing the file
+	 */
+	public long receiveFile(final Path file) throws IOException {
+		return FileTransferUtil.receiveFile(client, file, metrics);
+	}
+	
+	private void writeChunk(final Socket connected, final MessageFrame frame) throws IOException {
+		FramingUtil.writeFrame(connected.getOutputStream(), frame);
+		metrics.recordSent(frame.getPayload().length);
+	}
+	
+	private MessageFrame readChunk(final Socket connected) throws IOException {
+		final MessageFrame frame = FramingUtil.readFrame(connected.getInputStream());
+		metrics.recordReceived(frame.getPayload().length);
+		return frame;
+	}
+	
 	@Override
 	public boolean equals(final Object obj) {
 		if(!super.equals(obj)) {
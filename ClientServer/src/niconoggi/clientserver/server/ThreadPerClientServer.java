@@ -0,0 +1,220 @@
+package niconoggi.clientserver.server;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import niconoggi.clientserver.base.AbstractServer;
+import niconoggi.clientserver.base.SerializableArrayList;
+
+/**
+ * A server that handles every accepted client on a thread of its own,
+ * which by default is a virtual thread. Thus the handling logic can use
+ * plain blocking reads and writes, while the amount of clients is only
+ * limited by the memory available and not by a fixed client array as in
+ * {@link AbstractMultiClientServer}.
+ * <p>
+ * Clients are handled by the {@link ConnectionHandler} given to
+ * {@link #serve(ConnectionHandler)}. Clients accepted by {@link #connect()}
+ * without a handler are only kept, so write can send data to all of them
+ * and read can read from all of them.
+ * @author niconoggi
+ *
+ */
+public class ThreadPerClientServer extends AbstractServer {
+
+	private final Set<ClientConnection> connections = ConcurrentHashMap.newKeySet();
+	private ExecutorService executor;
+	private ConnectionHandler handler;
+	private volatile boolean serving;
+
+	private byte[] dataToWrite;
+	private final List<byte[]> readData = new SerializableArrayList<byte[]>();
+
+	public ThreadPerClientServer() {
+	}
+
+	public ThreadPerClientServer(final int port) {
+		super(port);
+	}
+
+	/**
+	 * starts the server with its {@link Acceptor} and creates the
+	 * executor handing every client a virtual thread of its own
+	 */
+	@Override
+	public void start() throws IOException {
+		super.start();
+		startAcceptor();
+		executor = Executors.newVirtualThreadPerTaskExecutor();
+	}
+
+	/**
+	 * stops accepting, closes all connections, which ends their handlers,
+	 * and closes the {@link java.net.ServerSocket}
+	 */
+	@Override
+	public void stop() throws IOException {
+		serving = false;
+		super.stop();
+		//there is none if the server was never started or its start failed
+		if(executor != null) {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * takes exactly one client from the {@link Acceptor}. If a handler is set by
+	 * {@link #serve(ConnectionHandler)}, the client is handed to it on
+	 * a thread of its own
+	 * @throws SocketTimeoutException if no client connected within the connect timeout
+	 */
+	@Override
+	public void connect() throws IOException {
+		final Socket accepted = acceptor.take(connectTimeout);
+		if(accepted == null) {
+			throw new SocketTimeoutException("no client connected in time");
+		}
+		final ClientConnection connection = new ClientConnection(accepted);
+		connection.setCompression(compression);
+		connection.setMetrics(metrics);
+		metrics.recordConnect();
+		connections.add(connection);
+		if(handler != null) {
+			executor.execute(() -> handle(connection));
+		}
+	}
+
+	/**
+	 * Accepts clients until {@link #stopServing()} or {@link #stop()} is called
+	 * and hands each of them to the given handler on a thread of its own.
+	 * <p>
+	 * NOTE: this blocks the calling thread for as long as the server serves
+	 * @param handler the logic run for every client
+	 * @throws IOException an error occuring while accepting
+	 */
+	public void serve(final ConnectionHandler handler) throws IOException {
+		this.handler = handler;
+		serving = true;
+		while(serving && !server.isClosed()) {
+			try {
+				connect();
+			} catch (SocketTimeoutException e) {
+				//no client in time, just keep accepting
+			} catch (SocketException e) {
+				if(!server.isClosed()) {
+					throw e;
+				}
+			}
+		}
+	}
+
+	/**
+	 * makes {@link #serve(ConnectionHandler)} return after the current accept.
+	 * Clients already connected keep being handled.
+	 */
+	public void stopServing() {
+		serving = false;
+	}
+
+	/**
+	 * writes the data to all connected clients. A client whose connection fails
+	 * is closed and dropped, the others are still written to
+	 */
+	@Override
+	public void write() throws IOException {
+		for(final ClientConnection connection : connections) {
+			try {
+				connection.write(dataToWrite);
+			} catch (IOException e) {
+				drop(connection);
+			}
+		}
+	}
+
+	/**
+	 * reads one message of every connected client. This should not
+	 * be used while handlers read from their clients themselves
+	 */
+	@Override
+	public void read() throws IOException {
+		readData.clear();
+		for(final ClientConnection connection : connections) {
+			readData.add(connection.read());
+		}
+	}
+
+	@Override
+	public void disconnect() throws IOException {
+		for(final ClientConnection connection : connections) {
+			drop(connection);
+		}
+	}
+
+	public void setDataToWrite(final byte[] dataToWrite) {
+		this.dataToWrite = dataToWrite;
+	}
+
+	public List<byte[]> getReadData() {
+		return readData;
+	}
+
+	/**
+	 * @return the amount of currently connected clients
+	 */
+	public int getActualClientAmount() {
+		return connections.size();
+	}
+
+	private void handle(final ClientConnection connection) {
+		try {
+			handler.handle(connection);
+		} catch (IOException e) {
+			//the client is gone or broke the protocol, either way it is dropped
+			metrics.recordError();
+		} finally {
+			drop(connection);
+		}
+	}
+
+	private void drop(final ClientConnection connection) {
+		connections.remove(connection);
+		try {
+			connection.close();
+		} catch (IOException e) {
+			//the connection is dropped either way
+		}
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if(!super.equals(obj)) {
+			return false;
+		}
+
+		if(!(obj instanceof ThreadPerClientServer)) {
+			return false;
+		}
+
+		final ThreadPerClientServer other = (ThreadPerClientServer) obj;
+		return connections.equals(other.connections);
+	}
+
+	@Override
+	public int hashCode() {
+		return super.hashCode() + connections.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder builder = new StringBuilder(super.toString());
+		builder.append(", connections: ").append(connections.toString());
+		return builder.toString();
+	}
+}
@@ -0,0 +1,74 @@
+package niconoggi.clientserver.util;
+
+/**
+ * A pool of reusable byte arrays, so encoding and decoding messages does
+ * not allocate a new array every time. Arrays are grouped in size classes
+ * of powers of two between {@link #MIN_POOLED_SIZE} and {@link #MAX_POOLED_SIZE}.
+ * Every size class is an {@link ObjectPool} shared by all threads, so arrays are
+ * reused across virtual threads as well. A size class keeps up to
+ * {@link #MAX_POOLED_PER_CLASS} arrays and about {@link #POOLED_BYTES_PER_CLASS} bytes.
+ * <p>
+ * Bigger arrays are allocated and dropped as usual, so a single huge message
+ * does not stay in memory forever.
+ * @author niconoggi
+ *
+ */
+public class BufferPool {
+
+	public static final int MIN_POOLED_SIZE = 256;
+	public static final int MAX_POOLED_SIZE = 1024 * 1024;
+	
+	private static final int MIN_SHIFT = Integer.numberOfTrailingZeros(MIN_POOLED_SIZE);
+	private static final int SIZE_CLASSES = Integer.numberOfTrailingZeros(MAX_POOLED_SIZE) - MIN_SHIFT + 1;
+	public static final int MAX_POOLED_PER_CLASS = 64;
+	public static final int POOLED_BYTES_PER_CLASS = 2 * MAX_POOLED_SIZE;
+	
+	private static final ObjectPool<byte[]>[] POOLS = createPools();
+	
+	private BufferPool() {}
+	
+	/**
+	 * @param minSize the size the array needs at least
+	 * @return an array with at least the given size. Its content is undefined
+	 */
+	public static byte[] acquire(final int minSize) {
+		if(minSize > MAX_POOLED_SIZE) {
+			return new byte[minSize];
+		}
+		final int sizeClass = sizeClass(minSize);
+		final byte[] pooled = POOLS[sizeClass].poll();
+		return pooled != null ? pooled : new byte[MIN_POOLED_SIZE << sizeClass];
+	}
+	
+	/**
+	 * gives the array back to the pool. Arrays that were
+	 * not handed out by {@link #acquire(int)} or do not fit in the pool are ignored.
+	 * <p>
+	 * NOTE: the array must not be used anymore after releasing it
+	 * @param buffer the array to give back
+	 */
+	public static void release(final byte[] buffer) {
+		if(buffer == null || buffer.length < MIN_POOLED_SIZE || buffer.length > MAX_POOLED_SIZE
+				|| Integer.bitCount(buffer.length) != 1) {
+			return;
+		}
+		POOLS[sizeClass(buffer.length)].offer(buffer);
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static ObjectPool<byte[]>[] createPools() {
+		final ObjectPool<byte[]>[] pools = (ObjectPool<byte[]>[]) new ObjectPool<?>[SIZE_CLASSES];
+		for(int sizeClass = 0; sizeClass < SIZE_CLASSES; sizeClass++) {
+			final int capacity = Math.min(MAX_POOLED_PER_CLASS, POOLED_BYTES_PER_CLASS / (MIN_POOLED_SIZE << sizeClass));
+			pools[sizeClass] = new ObjectPool<byte[]>(capacity);
+		}
+		return pools;
+	}
+	
+	private static int sizeClass(final int size) {
+		if(size <= MIN_POOLED_SIZE) {
+			return 0;
+		}
+		return 32 - Integer.numberOfLeadingZeros(size - 1) - MIN_SHIFT;
+	}
+}
@@ -0,0 +1,99 @@
+package niconoggi.clientserver.util;
+
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * An {@link OutputStream} writing into a direct {@link ByteBuffer}, which grows
+ * as needed. Some bytes at the start of the buffer can be reserved, so a header
+ * can be put in front of the written data later without copying the data.
+ * <p>
+ * As the buffer is direct, it can be written to channels without the JDK
+ * copying it into a temporary native buffer first.
+ * <p>
+ * Alternatively the stream writes into a buffer given by the caller, which
+ * does not grow, so a full buffer results in a {@link BufferOverflowException}.
+ * @author niconoggi
+ *
+ */
+public class ByteBufferOutputStream extends OutputStream {
+
+	private static final int DEFAULT_CAPACITY = 4096;
+	
+	private ByteBuffer buffer;
+	private boolean growable = true;
+	
+	public ByteBufferOutputStream() {
+		this(DEFAULT_CAPACITY, 0);
+	}
+	
+	/**
+	 * constructor writing into the given buffer, starting at its position
+	 * @param target the buffer to write to, which will not grow
+	 */
+	public ByteBufferOutputStream(final ByteBuffer target) {
+		buffer = target;
+		growable = false;
+	}
+	
+	/**
+	 * @param capacity the initial capacity of the buffer
+	 * @param reserved the amount of bytes kept free at the start of the buffer
+	 */
+	public ByteBufferOutputStream(final int capacity, final int reserved) {
+		buffer = ByteBuffer.allocateDirect(Math.max(capacity, reserved));
+		buffer.position(reserved);
+	}
+	
+	@Override
+	public void write(final int b) {
+		ensureRemaining(1);
+		buffer.put((byte) b);
+	}
+	
+	@Override
+	public void write(final byte[] bytes, final int offset, final int length) {
+		ensureRemaining(length);
+		buffer.put(bytes, offset, length);
+	}
+	
+	/**
+	 * makes the stream write into the given buffer from now on, starting
+	 * at its position. The buffer will not grow
+	 * @param target the buffer to write to
+	 */
+	public void setTarget(final ByteBuffer target) {
+		buffer = target;
+		growable = false;
+	}
+	
+	/**
+	 * @return a buffer containing everything written including the reserved
+	 * 			bytes, ready to be read from. It shares its content with this stream
+	 */
+	public ByteBuffer toBuffer() {
+		return buffer.duplicate().flip();
+	}
+	
+	/**
+	 * @return the amount of bytes written including the reserved bytes
+	 */
+	public int size() {
+		return buffer.position();
+	}
+	
+	private void ensureRemaining(final int needed) {
+		if(buffer.remaining() >= needed) {
+			return;
+		}
+		if(!growable) {
+			throw new BufferOverflowException();
+		}
+		final int capacity = Math.max(buffer.capacity() * 2, buffer.position() + needed);
+		final ByteBuffer grown = ByteBuffer.allocateDirect(capacity);
+		buffer.flip();
+		grown.put(buffer);
+		buffer = grown;
+	}
+}
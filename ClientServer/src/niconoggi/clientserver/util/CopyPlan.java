@@ -0,0 +1,417 @@
+package niconoggi.clientserver.util;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.RecordComponent;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Pattern;
+
+/**
+ * How the {@link InstanceCopier} copies the instances of a class. The plan of
+ * every class is worked out once, when its first instance is copied, and kept
+ * for all further copies:
+ * <ul>
+ * <li>immutable classes, such as strings, boxed primitives and enums, are not copied at all</li>
+ * <li>primitive arrays are cloned, other arrays are copied element by element</li>
+ * <li>records are copied component by component and created by their canonical constructor</li>
+ * <li>the common collections and maps are created empty and filled with copies of their content</li>
+ * <li>other classes with a constructor without parameters are created by it and copied field by field</li>
+ * <li>everything else, mostly classes of the JDK and classes with custom serialization, is
+ * copied by serializing and deserializing it with the {@link DataConverterUtil}</li>
+ * </ul>
+ * @author niconoggi
+ *
+ */
+abstract class CopyPlan {
+
+	private static final Set<Class<?>> IMMUTABLE_TYPES = Set.of(String.class, Boolean.class, Character.class,
+			Byte.class, Short.class, Integer.class, Long.class, Float.class, Double.class, BigInteger.class,
+			BigDecimal.class, UUID.class, Locale.class, URI.class, Pattern.class, Class.class);
+
+	/** collections and maps that are filled the same way they are iterated */
+	private static final Set<Class<?>> FILLABLE_TYPES = Set.of(ArrayList.class, LinkedList.class, Vector.class,
+			ArrayDeque.class, HashSet.class, LinkedHashSet.class, TreeSet.class, CopyOnWriteArrayList.class,
+			ConcurrentLinkedQueue.class, ConcurrentLinkedDeque.class, HashMap.class, LinkedHashMap.class,
+			TreeMap.class, ConcurrentHashMap.class);
+
+	private static final ClassValue<CopyPlan> PLANS = new ClassValue<CopyPlan>() {
+		@Override
+		protected CopyPlan computeValue(final Class<?> type) {
+			return planFor(type);
+		}
+	};
+
+	static final CopyPlan IMMUTABLE = new CopyPlan() {
+		@Override
+		Object copy(final Object original, final InstanceCopier.Copies copies) {
+			return original;
+		}
+	};
+
+	static final CopyPlan SERIALIZATION = new CopyPlan() {
+		@Override
+		Object copy(final Object original, final InstanceCopier.Copies copies) throws IOException, ClassNotFoundException {
+			final DataConverterUtil<Object> converter = new DataConverterUtil<Object>();
+			final Object copy = converter.convertFromByteArray(converter.convertToBytes(original));
+			copies.remember(original, copy);
+			return copy;
+		}
+	};
+
+	/**
+	 * @param type the class of an instance to copy
+	 * @return the plan for copying instances of the class
+	 */
+	static CopyPlan of(final Class<?> type) {
+		return PLANS.get(type);
+	}
+
+	/**
+	 * copies the given instance. Plans creating a new instance have to remember
+	 * it in the copies before copying anything the instance refers to
+	 * @param original the instance to copy, which is not null
+	 * @param copies the copies made so far
+	 * @return the copy
+	 * @throws IOException an error occuring while copying
+	 * @throws ClassNotFoundException an error occuring while copying by serialization
+	 */
+	abstract Object copy(final Object original, final InstanceCopier.Copies copies) throws IOException, ClassNotFoundException;
+
+	private static CopyPlan planFor(final Class<?> type) {
+		if(isImmutable(type)) {
+			return IMMUTABLE;
+		}
+		if(type.isArray()) {
+			return type.getComponentType().isPrimitive() ? new PrimitiveArrayPlan() : new ArrayPlan();
+		}
+		try {
+			if(type.isRecord()) {
+				return new RecordPlan(type);
+			}
+			if(hasSerializationHook(type)) {
+				return SERIALIZATION;
+			}
+			final Class<?> fillable = fillableBase(type);
+			if(fillable != null) {
+				final Constructor<?> constructor = type.getDeclaredConstructor();
+				constructor.setAccessible(true);
+				return Map.class.isAssignableFrom(fillable) ? new MapPlan(constructor) : new CollectionPlan(constructor);
+			}
+			if(isJdkType(type) || type.isInterface() || Modifier.isAbstract(type.getModifiers())) {
+				return SERIALIZATION;
+			}
+			return new FieldPlan(type);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			//no constructor to use or no access to the class
+			return SERIALIZATION;
+		}
+	}
+
+	private static boolean isImmutable(final Class<?> type) {
+		if(IMMUTABLE_TYPES.contains(type) || type.isEnum() || (type.getSuperclass() != null && type.getSuperclass().isEnum())) {
+			return true;
+		}
+		if(InetAddress.class.isAssignableFrom(type) && isJdkType(type)) {
+			return true;
+		}
+		//the value classes of java.time are final and immutable
+		return "java.time".equals(type.getPackageName()) && Modifier.isFinal(type.getModifiers());
+	}
+
+	private static boolean isJdkType(final Class<?> type) {
+		final ClassLoader loader = type.getClassLoader();
+		return loader == null || loader == ClassLoader.getPlatformClassLoader();
+	}
+
+	/**
+	 * @return true, if the class or one of its super classes replaces or resolves its instances
+	 * 			when being serialized, which a copy has to respect
+	 */
+	private static boolean hasSerializationHook(final Class<?> type) {
+		for(Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+			for(final Method method : current.getDeclaredMethods()) {
+				if(method.getParameterCount() == 0 && !Modifier.isStatic(method.getModifiers())
+						&& ("readResolve".equals(method.getName()) || "writeReplace".equals(method.getName()))) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the fillable collection or map the class is or extends without adding
+	 * 			fields of its own, such as a {@link niconoggi.clientserver.base.SerializableArrayList},
+	 * 			or null if there is none
+	 */
+	private static Class<?> fillableBase(final Class<?> type) {
+		for(Class<?> current = type; current != null; current = current.getSuperclass()) {
+			if(FILLABLE_TYPES.contains(current)) {
+				return current;
+			}
+			if(isJdkType(current) || instanceFields(current).size() > 0) {
+				return null;
+			}
+		}
+		return null;
+	}
+
+	private static List<Field> instanceFields(final Class<?> type) {
+		final List<Field> fields = new ArrayList<Field>();
+		for(final Field field : type.getDeclaredFields()) {
+			if(!Modifier.isStatic(field.getModifiers())) {
+				fields.add(field);
+			}
+		}
+		return fields;
+	}
+
+	private static IOException copyError(final Object original, final Exception cause) {
+		return new IOException("could not copy an instance of " + original.getClass().getName(), cause);
+	}
+
+	/**
+	 * clones arrays of primitives, which hold no references to copy
+	 */
+	private static final class PrimitiveArrayPlan extends CopyPlan {
+		@Override
+		Object copy(final Object original, final InstanceCopier.Copies copies) {
+			final Object copy;
+			if(original instanceof byte[]) {
+				copy = ((byte[]) original).clone();
+			} else if(original instanceof int[]) {
+				copy = ((int[]) original).clone();
+			} else if(original instanceof long[]) {
+				copy = ((long[]) original).clone();
+			} else if(original instanceof double[]) {
+				copy = ((double[]) original).clone();
+			} else if(original instanceof float[]) {
+				copy = ((float[]) original).clone();
+			} else if(original instanceof char[]) {
+				copy = ((char[]) original).clone();
+			} else if(original instanceof short[]) {
+				copy = ((short[]) original).clone();
+			} else {
+				copy = ((boolean[]) original).clone();
+			}
+			copies.remember(original, copy);
+			return copy;
+		}
+	}
+
+	private static final class ArrayPlan extends CopyPlan {
+		@Override
+		Object copy(final Object original, final InstanceCopier.Copies copies) throws IOException, ClassNotFoundException {
+			final Object[] elements = (Object[]) original;
+			final Object[] copy = (Object[]) Array.newInstance(original.getClass().getComponentType(), elements.length);
+			copies.remember(original, copy);
+			for(int element = 0; element < elements.length; element++) {
+				copy[element] = copies.copy(elements[element]);
+			}
+			return copy;
+		}
+	}
+
+	/**
+	 * copies records by their components. A record can only be created once all
+	 * of its components are copied, so records referring back to themselves
+	 * cannot be copied
+	 */
+	private static final class RecordPlan extends CopyPlan {
+		private final Method[] accessors;
+		private final Constructor<?> constructor;
+
+		private RecordPlan(final Class<?> type) throws NoSuchMethodException {
+			final RecordComponent[] components = type.getRecordComponents();
+			accessors = new Method[components.length];
+			final Class<?>[] types = new Class<?>[components.length];
+			for(int component = 0; component < components.length; component++) {
+				accessors[component] = components[component].getAccessor();
+				accessors[component].setAccessible(true);
+				types[component] = components[component].getType();
+			}
+			constructor = type.getDeclaredConstructor(types);
+			constructor.setAccessible(true);
+		}
+
+		@Override
+		Object copy(final Object original, final InstanceCopier.Copies copies) throws IOException, ClassNotFoundException {
+			copies.remember(original, InstanceCopier.Copies.IN_PROGRESS);
+			try {
+				final Object[] values = new Object[accessors.length];
+				for(int component = 0; component < accessors.length; component++) {
+					values[component] = copies.copy(accessors[component].invoke(original));
+				}
+				final Object copy = constructor.newInstance(values);
+				copies.remember(original, copy);
+				return copy;
+			} catch (IllegalAccessException | InstantiationException | InvocationTargetException e) {
+				throw copyError(original, e);
+			}
+		}
+	}
+
+	private static final class CollectionPlan extends CopyPlan {
+		private final Constructor<?> constructor;
+
+		private CollectionPlan(final Constructor<?> constructor) {
+			this.constructor = constructor;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		Object copy(final Object original, final InstanceCopier.Copies copies) throws IOException, ClassNotFoundException {
+			if(original instanceof SortedSet && ((SortedSet<?>) original).comparator() != null) {
+				//the comparator cannot be given to the constructor without parameters
+				return SERIALIZATION.copy(original, copies);
+			}
+			final Collection<Object> copy;
+			try {
+				copy = (Collection<Object>) constructor.newInstance();
+			} catch (ReflectiveOperationException e) {
+				throw copyError(original, e);
+			}
+			copies.remember(original, copy);
+			for(final Object element : (Collection<?>) original) {
+				copy.add(copies.copy(element));
+			}
+			return copy;
+		}
+	}
+
+	private static final class MapPlan extends CopyPlan {
+		private final Constructor<?> constructor;
+
+		private MapPlan(final Constructor<?> constructor) {
+			this.constructor = constructor;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		Object copy(final Object original, final InstanceCopier.Copies copies) throws IOException, ClassNotFoundException {
+			if(original instanceof SortedMap && ((SortedMap<?, ?>) original).comparator() != null) {
+				//the comparator cannot be given to the constructor without parameters
+				return SERIALIZATION.copy(original, copies);
+			}
+			final Map<Object, Object> copy;
+			try {
+				copy = (Map<Object, Object>) constructor.newInstance();
+			} catch (ReflectiveOperationException e) {
+				throw copyError(original, e);
+			}
+			copies.remember(original, copy);
+			for(final Map.Entry<?, ?> entry : ((Map<?, ?>) original).entrySet()) {
+				copy.put(copies.copy(entry.getKey()), copies.copy(entry.getValue()));
+			}
+			return copy;
+		}
+	}
+
+	/**
+	 * creates instances by the constructor without parameters and copies
+	 * every field of the class and its super classes
+	 */
+	private static final class FieldPlan extends CopyPlan {
+		private final Constructor<?> constructor;
+		private final Field[] primitives;
+		private final Field[] immutables;
+		private final Field[] references;
+
+		private FieldPlan(final Class<?> type) throws NoSuchMethodException {
+			constructor = type.getDeclaredConstructor();
+			constructor.setAccessible(true);
+			final List<Field> primitiveFields = new ArrayList<Field>();
+			final List<Field> immutableFields = new ArrayList<Field>();
+			final List<Field> referenceFields = new ArrayList<Field>();
+			for(Class<?> current = type; current != Object.class; current = current.getSuperclass()) {
+				if(isJdkType(current)) {
+					throw new IllegalArgumentException("the fields of " + current + " are not accessible");
+				}
+				for(final Field field : instanceFields(current)) {
+					field.setAccessible(true);
+					if(field.getType().isPrimitive()) {
+						primitiveFields.add(field);
+					} else if(isImmutable(field.getType()) && Modifier.isFinal(field.getType().getModifiers())) {
+						immutableFields.add(field);
+					} else {
+						referenceFields.add(field);
+					}
+				}
+			}
+			primitives = primitiveFields.toArray(new Field[0]);
+			immutables = immutableFields.toArray(new Field[0]);
+			references = referenceFields.toArray(new Field[0]);
+		}
+
+		@Override
+		Object copy(final Object original, final InstanceCopier.Copies copies) throws IOException, ClassNotFoundException {
+			try {
+				final Object copy = constructor.newInstance();
+				copies.remember(original, copy);
+				for(final Field field : primitives) {
+					copyPrimitive(field, original, copy);
+				}
+				for(final Field field : immutables) {
+					field.set(copy, field.get(original));
+				}
+				for(final Field field : references) {
+					field.set(copy, copies.copy(field.get(original)));
+				}
+				return copy;
+			} catch (ReflectiveOperationException e) {
+				throw copyError(original, e);
+			}
+		}
+
+		private static void copyPrimitive(final Field field, final Object original, final Object copy) throws IllegalAccessException {
+			final Class<?> type = field.getType();
+			if(type == int.class) {
+				field.setInt(copy, field.getInt(original));
+			} else if(type == long.class) {
+				field.setLong(copy, field.getLong(original));
+			} else if(type == boolean.class) {
+				field.setBoolean(copy, field.getBoolean(original));
+			} else if(type == double.class) {
+				field.setDouble(copy, field.getDouble(original));
+			} else if(type == float.class) {
+				field.setFloat(copy, field.getFloat(original));
+			} else if(type == byte.class) {
+				field.setByte(copy, field.getByte(original));
+			} else if(type == short.class) {
+				field.setShort(copy, field.getShort(original));
+			} else {
+				field.setChar(copy, field.getChar(original));
+			}
+		}
+	}
+}
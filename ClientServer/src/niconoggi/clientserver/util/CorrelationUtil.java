@@ -0,0 +1,61 @@
+package niconoggi.clientserver.util;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import niconoggi.clientserver.protocol.FrameValues;
+import niconoggi.clientserver.protocol.MessageFrame;
+
+/**
+ * Util class for correlated {@link MessageFrame}s, which allow many requests
+ * to be in flight on the same connection at once. A correlated frame has
+ * {@link FrameValues#FLAG_CORRELATED} set and its payload starts with the
+ * {@link #ID_LENGTH} bytes of the correlation id (big endian), followed by the data.
+ * The answer to a request carries the same id, so answers can be matched
+ * to their requests no matter in which order they arrive.
+ * @author niconoggi
+ *
+ */
+public class CorrelationUtil {
+
+	public static final int ID_LENGTH = 4;
+
+	private CorrelationUtil() {}
+
+	/**
+	 * @param id the correlation id
+	 * @param type the message type
+	 * @param data the data of the message
+	 * @return the correlated frame carrying the data
+	 */
+	public static MessageFrame correlate(final int id, final byte type, final byte[] data) {
+		final byte[] payload = new byte[ID_LENGTH + data.length];
+		payload[0] = (byte) (id >>> 24);
+		payload[1] = (byte) (id >>> 16);
+		payload[2] = (byte) (id >>> 8);
+		payload[3] = (byte) id;
+		System.arraycopy(data, 0, payload, ID_LENGTH, data.length);
+		return new MessageFrame(type, FrameValues.FLAG_CORRELATED, payload);
+	}
+
+	/**
+	 * @param frame a correlated frame with a decompressed payload
+	 * @return the correlation id of the frame
+	 * @throws IOException if the frame is not correlated or too short to hold an id
+	 */
+	public static int idOf(final MessageFrame frame) throws IOException {
+		final byte[] payload = frame.getPayload();
+		if(!frame.hasFlag(FrameValues.FLAG_CORRELATED) || payload.length < ID_LENGTH) {
+			throw new IOException("the frame carries no correlation id: " + frame);
+		}
+		return ((payload[0] & 0xFF) << 24) | ((payload[1] & 0xFF) << 16) | ((payload[2] & 0xFF) << 8) | (payload[3] & 0xFF);
+	}
+
+	/**
+	 * @param frame a correlated frame with a decompressed payload
+	 * @return the data of the frame, without the correlation id
+	 */
+	public static byte[] dataOf(final MessageFrame frame) {
+		return Arrays.copyOfRange(frame.getPayload(), ID_LENGTH, frame.getPayload().length);
+	}
+}
@@ -5,7 +5,13 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+
+import niconoggi.clientserver.codec.Codec;
+import niconoggi.clientserver.protocol.FrameValues;
+import niconoggi.clientserver.protocol.MessageFrame;
 
 /**
  * Util class for converting types defined by the generic
@@ -13,12 +19,20 @@ import java.io.Serializable;
  * <p>
  * Could be used to copy values from one instance to another
  * or similarly.
+ * <p>
+ * This is the {@link Codec} using Java serialization, which
+ * is used by all runners if no other codec is given. The data
+ * objects need to be {@link Serializable}, otherwise converting them
+ * fails with a {@link java.io.NotSerializableException}.
  * @author niconoggi
  *
  * @param <D> the data object
  */
-public class DataConverterUtil<D extends Serializable> {
+public class DataConverterUtil<D> implements Codec<D> {
 
+	/** the output arrays, kept so they do not grow again for every conversion */
+	private static final ObjectPool<ByteArrayOutputStream> BYTES = new ObjectPool<ByteArrayOutputStream>(ObjectPool.PER_PROCESSOR_CAPACITY);
+	
 	/**
 	 * converts an instance of the given generic type to
 	 * a byte array
@@ -27,11 +41,58 @@ public class DataConverterUtil<D extends Serializable> {
 	 * @throws IOException an exception that could be thrown by {@link ObjectOutputStream}
 	 */
 	public byte[] convertToBytes(final D data) throws IOException {
-		final ByteArrayOutputStream byteArrayOut = new ByteArrayOutputStream();
-		final ObjectOutputStream objectOut = new ObjectOutputStream(byteArrayOut);
+		final ByteArrayOutputStream byteArrayOut = takeBytes();
+		try {
+			serialize(data, byteArrayOut);
+			return byteArrayOut.toByteArray();
+		} finally {
+			giveBackBytes(byteArrayOut);
+		}
+	}
+	
+	/**
+	 * converts an instance of the given generic type directly into a
+	 * complete {@link MessageFrame}, encoded into a direct {@link ByteBuffer}.
+	 * The data is serialized exactly once into a pooled array, so its
+	 * size is known, and then copied into a direct buffer of exactly that size, which
+	 * is the only buffer allocated. The buffer can be shared by any amount of receivers.
+	 * @param data the instance to convert
+	 * @return the encoded frame, ready to be read from
+	 * @throws IOException an exception that could be thrown by {@link ObjectOutputStream}
+	 */
+	public ByteBuffer convertToFrame(final D data) throws IOException {
+		final ByteArrayOutputStream byteArrayOut = takeBytes();
+		try {
+			serialize(data, byteArrayOut);
+			final ByteBuffer frame = ByteBuffer.allocateDirect(FrameValues.HEADER_LENGTH + byteArrayOut.size());
+			frame.position(FrameValues.HEADER_LENGTH);
+			byteArrayOut.writeTo(new ByteBufferOutputStream(frame));
+			return FramingUtil.completeFrame(frame.flip(), FrameValues.TYPE_DATA, FrameValues.NO_FLAGS);
+		} finally {
+			giveBackBytes(byteArrayOut);
+		}
+	}
+	
+	private static void serialize(final Object data, final ByteArrayOutputStream target) throws IOException {
+		target.reset();
+		final ObjectOutputStream objectOut = new ObjectOutputStream(target);
 		objectOut.writeObject(data);
-		
-		return byteArrayOut.toByteArray();
+		objectOut.flush();
+	}
+	
+	/**
+	 * @return an idle output array out of the pool, which is not available to others
+	 * 			while in use, in case the data converts something itself
+	 */
+	private static ByteArrayOutputStream takeBytes() {
+		final ByteArrayOutputStream byteArrayOut = BYTES.poll();
+		return byteArrayOut == null ? new ByteArrayOutputStream() : byteArrayOut;
+	}
+	
+	private static void giveBackBytes(final ByteArrayOutputStream byteArrayOut) {
+		if(byteArrayOut.size() <= BufferPool.MAX_POOLED_SIZE) {
+			BYTES.offer(byteArrayOut);
+		}
 	}
 	
 	/**
@@ -48,4 +109,69 @@ public class DataConverterUtil<D extends Serializable> {
 		return (D) objectIn.readObject();
 	}
 	
+	/**
+	 * same as {@link #convertToBytes(Object)}
+	 */
+	@Override
+	public byte[] encode(final D data) throws IOException {
+		return convertToBytes(data);
+	}
+	
+	/**
+	 * same as {@link #convertFromByteArray(byte[])}, but a {@link ClassNotFoundException}
+	 * is thrown as the cause of an {@link IOException}
+	 */
+	@Override
+	public D decode(final byte[] bytes) throws IOException {
+		try {
+			return convertFromByteArray(bytes);
+		} catch (ClassNotFoundException e) {
+			throw new IOException("the serialized class is unknown", e);
+		}
+	}
+	
+	/**
+	 * converts the given part of the array without copying it first
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public D decode(final byte[] bytes, final int offset, final int length) throws IOException {
+		final ObjectInputStream objectIn = new ObjectInputStream(new ByteArrayInputStream(bytes, offset, length));
+		try {
+			return (D) objectIn.readObject();
+		} catch (ClassNotFoundException e) {
+			throw new IOException("the serialized class is unknown", e);
+		}
+	}
+	
+	/**
+	 * serializes the data directly into the given buffer
+	 */
+	@Override
+	public int encodeInto(final D data, final ByteBuffer target) throws IOException {
+		final int start = target.position();
+		final ObjectOutputStream objectOut = new ObjectOutputStream(new ByteBufferOutputStream(target));
+		objectOut.writeObject(data);
+		objectOut.flush();
+		return target.position() - start;
+	}
+	
+	/**
+	 * serializes the data directly into the given stream
+	 */
+	@Override
+	public void encodeTo(final D data, final OutputStream out) throws IOException {
+		final ObjectOutputStream objectOut = new ObjectOutputStream(out);
+		objectOut.writeObject(data);
+		objectOut.flush();
+	}
+	
+	/**
+	 * same as {@link #convertToFrame(Object)}
+	 */
+	@Override
+	public ByteBuffer encodeToFrame(final D data) throws IOException {
+		return convertToFrame(data);
+	}
+	
 }
@@ -0,0 +1,149 @@
+package niconoggi.clientserver.util;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import niconoggi.clientserver.compression.Compression;
+import niconoggi.clientserver.metrics.ComponentMetrics;
+import niconoggi.clientserver.protocol.FrameValues;
+
+/**
+ * Util class sending files as streamed messages, see
+ * {@link niconoggi.clientserver.protocol.ChunkedOutputStream}, without
+ * reading them into the heap.
+ * <p>
+ * The chunks are sent with {@link FileChannel#transferTo(long, long, WritableByteChannel)}.
+ * If the socket is backed by a {@link java.nio.channels.SocketChannel}, as the sockets of
+ * clients and servers are, the operating system copies the file to the connection
+ * directly (sendfile on Linux), so the bytes never reach the Java heap. Other sockets
+ * fall back to copying through a buffer.
+ * <p>
+ * The chunks are received with {@link FileChannel#transferFrom(ReadableByteChannel, long, long)}
+ * from the input stream of the socket rather than from its channel, as only the stream
+ * applies the read timeout of the socket. The same timeout rules as for
+ * {@link FramingUtil#readFrame(java.io.InputStream)} apply.
+ * <p>
+ * Files are sent uncompressed. A received file may have compressed chunks, which
+ * are decompressed piece by piece while being written, so a chunk is never held
+ * in the heap as a whole.
+ * @author niconoggi
+ *
+ */
+public class FileTransferUtil {
+
+	private FileTransferUtil() {}
+
+	/**
+	 * sends the given file as streamed message
+	 * @param socket the connection to send to
+	 * @param file the file to send
+	 * @param chunkLength the payload length of a chunk
+	 * @param metrics the metrics recording the sent chunks
+	 * @return the amount of sent bytes of the file
+	 * @throws IOException an error occuring while reading the file or sending
+	 */
+	public static long sendFile(final Socket socket, final Path file, final int chunkLength, final ComponentMetrics metrics) throws IOException {
+		final WritableByteChannel target = socket.getChannel() != null
+				? socket.getChannel() : Channels.newChannel(socket.getOutputStream());
+		try (FileChannel source = FileChannel.open(file, StandardOpenOption.READ)) {
+			final long size = source.size();
+			final byte[] header = new byte[FrameValues.HEADER_LENGTH];
+			long position = 0;
+			do {
+				final int length = (int) Math.min(chunkLength, size - position);
+				final byte type = position + length == size ? FrameValues.TYPE_CHUNK_END : FrameValues.TYPE_CHUNK;
+				FramingUtil.writeHeader(header, length, type, FrameValues.NO_FLAGS);
+				writeFully(target, ByteBuffer.wrap(header));
+				transferFully(source, position, length, target);
+				metrics.recordSent(length);
+				position += length;
+			} while(position < size);
+			return size;
+		}
+	}
+
+	/**
+	 * receives a streamed message into the given file, replacing its content
+	 * @param socket the connection to receive from
+	 * @param file the file to write to, which is created if it does not exist
+	 * @param metrics the metrics recording the received chunks
+	 * @return the amount of received bytes of the file
+	 * @throws SocketTimeoutException if no frame started within the read timeout of the socket
+	 * @throws IOException an error occuring while receiving or writing the file
+	 */
+	public static long receiveFile(final Socket socket, final Path file, final ComponentMetrics metrics) throws IOException {
+		final InputStream in = socket.getInputStream();
+		final ReadableByteChannel source = Channels.newChannel(in);
+		try (FileChannel target = FileChannel.open(file, StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			//writes at the position of the channel, which is moved there before every use
+			final OutputStream toFile = Channels.newOutputStream(target);
+			final byte[] header = new byte[FrameValues.HEADER_LENGTH];
+			long position = 0;
+			while(true) {
+				final int length = FramingUtil.readHeader(in, header);
+				final byte type = header[4];
+				final byte flags = header[5];
+				if(type != FrameValues.TYPE_CHUNK && type != FrameValues.TYPE_CHUNK_END && type != FrameValues.TYPE_DATA) {
+					throw new IOException("expected a chunk of a streamed message, got a frame of type " + type);
+				}
+				try {
+					if((flags & FrameValues.FLAG_COMPRESSED) != 0) {
+						target.position(position);
+						position += Compression.decompress(in, length, toFile);
+					} else {
+						receiveFully(source, target, position, length);
+						position += length;
+					}
+				} catch (SocketTimeoutException e) {
+					throw new IOException("timed out in the middle of a frame", e);
+				}
+				metrics.recordReceived(length);
+				if(type != FrameValues.TYPE_CHUNK) {
+					return position;
+				}
+			}
+		}
+	}
+
+	private static void transferFully(final FileChannel source, final long position, final long length,
+			final WritableByteChannel target) throws IOException {
+		long transferred = 0;
+		while(transferred < length) {
+			final long count = source.transferTo(position + transferred, length - transferred, target);
+			if(count <= 0 && source.size() < position + length) {
+				throw new EOFException("the file got shorter while it was sent");
+			}
+			transferred += count;
+		}
+	}
+
+	private static void receiveFully(final ReadableByteChannel source, final FileChannel target,
+			final long position, final long length) throws IOException {
+		long received = 0;
+		while(received < length) {
+			final long count = target.transferFrom(source, position + received, length - received);
+			if(count <= 0) {
+				throw new EOFException("connection ended " + (length - received) + " bytes before the end of the chunk");
+			}
+			received += count;
+		}
+	}
+
+	private static void writeFully(final WritableByteChannel target, final ByteBuffer bytes) throws IOException {
+		while(bytes.hasRemaining()) {
+			target.write(bytes);
+		}
+	}
+}
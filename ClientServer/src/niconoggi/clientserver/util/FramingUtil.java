@@ -0,0 +1,304 @@
+package niconoggi.clientserver.util;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.util.Arrays;
+
+import niconoggi.clientserver.compression.Compression;
+import niconoggi.clientserver.protocol.FrameValues;
+import niconoggi.clientserver.protocol.MessageFrame;
+
+/**
+ * Util class for writing and reading {@link MessageFrame}s to and from
+ * streams, and writing them to channels. Neither method closes the given
+ * stream or channel, so the underlying socket stays usable for the next message.
+ * @author niconoggi
+ *
+ */
+public class FramingUtil {
+
+	/** payloads up to this size are sent together with the header in one write */
+	private static final int COALESCE_LIMIT = 8192;
+	
+	private FramingUtil() {}
+	
+	/**
+	 * writes the given data as a plain data frame
+	 * @param out the stream to write to
+	 * @param payload the data to write
+	 * @throws IOException an error occuring while writing to the stream
+	 */
+	public static void writeData(final OutputStream out, final byte[] payload) throws IOException {
+		writeFrame(out, new MessageFrame(payload));
+	}
+	
+	/**
+	 * writes the given data as a data frame, compressed if the compression applies to it
+	 * @param out the stream to write to
+	 * @param payload the data to write
+	 * @param compression the compression stage to use or null, to write the data as it is
+	 * @return the length of the written payload, which is the compressed length if it was compressed
+	 * @throws IOException an error occuring while compressing or writing to the stream
+	 */
+	public static int writeData(final OutputStream out, final byte[] payload, final Compression compression) throws IOException {
+		final MessageFrame frame = new MessageFrame(payload);
+		final MessageFrame written = compression == null ? frame : compression.compress(frame);
+		writeFrame(out, written);
+		return written.getPayload().length;
+	}
+	
+	/**
+	 * writes the header and the payload of the given frame and flushes the stream.
+	 * Small payloads are copied behind the header so the whole frame
+	 * leaves with a single write.
+	 * @param out the stream to write to
+	 * @param frame the frame to write
+	 * @throws IOException an error occuring while writing to the stream
+	 */
+	public static void writeFrame(final OutputStream out, final MessageFrame frame) throws IOException {
+		writeUnflushed(out, frame);
+		out.flush();
+	}
+	
+	/**
+	 * writes the given frames one after another and flushes the stream once, after the last frame
+	 * @param out the stream to write to
+	 * @param frames the frames to write
+	 * @throws IOException an error occuring while writing to the stream
+	 */
+	public static void writeFrames(final OutputStream out, final MessageFrame... frames) throws IOException {
+		for(final MessageFrame frame : frames) {
+			writeUnflushed(out, frame);
+		}
+		out.flush();
+	}
+	
+	/**
+	 * writes the given frames with gathering writes: the headers and the payloads are handed
+	 * to the channel as separate buffers, so nothing is copied and all frames leave with a
+	 * single system call, as long as the socket buffer takes them
+	 * @param channel the channel to write to, which has to be blocking
+	 * @param frames the frames to write
+	 * @return the amount of written bytes, headers included
+	 * @throws IOException an error occuring while writing to the channel
+	 */
+	public static long writeFrames(final GatheringByteChannel channel, final MessageFrame... frames) throws IOException {
+		final byte[] headers = new byte[frames.length * FrameValues.HEADER_LENGTH];
+		final ByteBuffer[] buffers = new ByteBuffer[frames.length * 2];
+		long length = 0;
+		for(int index = 0; index < frames.length; index++) {
+			final MessageFrame frame = frames[index];
+			final ByteBuffer header = ByteBuffer.wrap(headers, index * FrameValues.HEADER_LENGTH, FrameValues.HEADER_LENGTH).slice();
+			header.putInt(0, frame.getPayload().length);
+			header.put(4, frame.getType());
+			header.put(5, frame.getFlags());
+			buffers[index * 2] = header;
+			buffers[index * 2 + 1] = ByteBuffer.wrap(frame.getPayload());
+			length += FrameValues.HEADER_LENGTH + frame.getPayload().length;
+		}
+		int first = 0;
+		long written = 0;
+		while(written < length) {
+			written += channel.write(buffers, first, buffers.length - first);
+			while(first < buffers.length && !buffers[first].hasRemaining()) {
+				first++;
+			}
+		}
+		return written;
+	}
+	
+	private static void writeUnflushed(final OutputStream out, final MessageFrame frame) throws IOException {
+		final byte[] payload = frame.getPayload();
+		if(payload.length <= COALESCE_LIMIT) {
+			final int length = FrameValues.HEADER_LENGTH + payload.length;
+			final byte[] whole = BufferPool.acquire(length);
+			writeHeader(whole, payload.length, frame.getType(), frame.getFlags());
+			System.arraycopy(payload, 0, whole, FrameValues.HEADER_LENGTH, payload.length);
+			try {
+				out.write(whole, 0, length);
+			} finally {
+				BufferPool.release(whole);
+			}
+		} else {
+			final byte[] header = new byte[FrameValues.HEADER_LENGTH];
+			writeHeader(header, payload.length, frame.getType(), frame.getFlags());
+			out.write(header);
+			out.write(payload);
+		}
+	}
+	
+	/**
+	 * encodes the whole frame, header and payload, into one buffer.
+	 * The buffer can be written to any number of channels by using
+	 * {@link ByteBuffer#duplicate()}, so the frame is only encoded once.
+	 * @param frame the frame to encode
+	 * @return the encoded frame, ready to be read from
+	 */
+	public static ByteBuffer encodeFrame(final MessageFrame frame) {
+		final byte[] payload = frame.getPayload();
+		final byte[] whole = new byte[FrameValues.HEADER_LENGTH + payload.length];
+		writeHeader(whole, payload.length, frame.getType(), frame.getFlags());
+		System.arraycopy(payload, 0, whole, FrameValues.HEADER_LENGTH, payload.length);
+		return ByteBuffer.wrap(whole);
+	}
+	
+	/**
+	 * writes the header in front of a payload that was encoded into a buffer
+	 * with {@link FrameValues#HEADER_LENGTH} bytes reserved at its start, for example
+	 * by a {@link ByteBufferOutputStream}. The payload is not copied.
+	 * @param buffer the buffer holding the reserved header bytes and the payload, ready to be read from
+	 * @param type the message type
+	 * @param flags the message flags
+	 * @return the given buffer, now holding the complete frame
+	 * @throws IOException if the payload is too long for a frame
+	 */
+	public static ByteBuffer completeFrame(final ByteBuffer buffer, final byte type, final byte flags) throws IOException {
+		final int length = buffer.remaining() - FrameValues.HEADER_LENGTH;
+		if(length > FrameValues.MAX_PAYLOAD_LENGTH) {
+			throw new IOException("payload of " + length + " bytes is too long for a frame");
+		}
+		final int start = buffer.position();
+		buffer.putInt(start, length);
+		buffer.put(start + 4, type);
+		buffer.put(start + 5, flags);
+		return buffer;
+	}
+	
+	/**
+	 * reads the next frame from the given stream and returns its payload,
+	 * which is decompressed if the frame is flagged as compressed
+	 * @param in the stream to read from
+	 * @return the payload of the next frame
+	 * @throws IOException an error occuring while reading, or an {@link EOFException}
+	 * 						if the stream ended before a complete frame was read
+	 */
+	public static byte[] readData(final InputStream in) throws IOException {
+		return Compression.payloadOf(readFrame(in));
+	}
+	
+	/**
+	 * reads exactly one frame from the given stream. This blocks until the
+	 * whole frame is available.
+	 * <p>
+	 * If the stream belongs to a socket with a read timeout, a
+	 * {@link SocketTimeoutException} is only thrown if no byte of the frame
+	 * was read yet, so the stream can still be read from afterwards. A timeout
+	 * in the middle of a frame leaves the stream unusable and is thrown as
+	 * plain {@link IOException} instead.
+	 * @param in the stream to read from
+	 * @return the read frame
+	 * @throws IOException an error occuring while reading, or an {@link EOFException}
+	 * 						if the stream ended before a complete frame was read
+	 */
+	public static MessageFrame readFrame(final InputStream in) throws IOException {
+		final byte[] header = new byte[FrameValues.HEADER_LENGTH];
+		final int length = readHeader(in, header);
+		return new MessageFrame(header[4], header[5], readPayload(in, length));
+	}
+	
+	/**
+	 * reads the payload announced by a header read with {@link #readHeader(InputStream, byte[])}
+	 * into a new array. The array starts with {@link FrameValues#INITIAL_PAYLOAD_CAPACITY}
+	 * bytes and doubles while the payload arrives
+	 * @param in the stream to read from
+	 * @param length the payload length
+	 * @return the payload
+	 * @throws IOException an error occuring while reading, also a timeout
+	 */
+	public static byte[] readPayload(final InputStream in, final int length) throws IOException {
+		byte[] payload = new byte[Math.min(length, FrameValues.INITIAL_PAYLOAD_CAPACITY)];
+		int read = 0;
+		while(true) {
+			readPayload(in, payload, read, payload.length - read);
+			read = payload.length;
+			if(read == length) {
+				return payload;
+			}
+			payload = Arrays.copyOf(payload, (int) Math.min(length, 2L * read));
+		}
+	}
+	
+	/**
+	 * reads the header of the next frame into the given array. The same timeout
+	 * rules as for {@link #readFrame(InputStream)} apply
+	 * @param in the stream to read from
+	 * @param header the array to read into, at least {@link FrameValues#HEADER_LENGTH} long
+	 * @return the validated payload length
+	 * @throws IOException an error occuring while reading
+	 */
+	public static int readHeader(final InputStream in, final byte[] header) throws IOException {
+		final int started = in.read(header, 0, FrameValues.HEADER_LENGTH);
+		if(started < 0) {
+			throw new EOFException("stream ended before the next frame");
+		}
+		try {
+			readFully(in, header, started, FrameValues.HEADER_LENGTH);
+		} catch (SocketTimeoutException e) {
+			throw new IOException("timed out in the middle of a frame", e);
+		}
+		return readLength(header);
+	}
+	
+	/**
+	 * reads the payload announced by a header read with {@link #readHeader(InputStream, byte[])}
+	 * @param in the stream to read from
+	 * @param target the array to read into
+	 * @param offset the index in the array to put the first byte at
+	 * @param length the payload length
+	 * @throws IOException an error occuring while reading, also a timeout
+	 */
+	public static void readPayload(final InputStream in, final byte[] target, final int offset, final int length) throws IOException {
+		try {
+			readFully(in, target, offset, offset + length);
+		} catch (SocketTimeoutException e) {
+			throw new IOException("timed out in the middle of a frame", e);
+		}
+	}
+	
+	/**
+	 * writes the header values to the start of the given array
+	 * @param target the array, at least {@link FrameValues#HEADER_LENGTH} long
+	 * @param length the payload length
+	 * @param type the message type
+	 * @param flags the message flags
+	 */
+	public static void writeHeader(final byte[] target, final int length, final byte type, final byte flags) {
+		target[0] = (byte) (length >>> 24);
+		target[1] = (byte) (length >>> 16);
+		target[2] = (byte) (length >>> 8);
+		target[3] = (byte) length;
+		target[4] = type;
+		target[5] = flags;
+	}
+	
+	/**
+	 * reads the payload length out of a header and validates it
+	 * @param header the header bytes
+	 * @return the payload length
+	 * @throws IOException if the length is negative or exceeds {@link FrameValues#MAX_PAYLOAD_LENGTH}
+	 */
+	public static int readLength(final byte[] header) throws IOException {
+		final int length = ((header[0] & 0xFF) << 24) | ((header[1] & 0xFF) << 16)
+				| ((header[2] & 0xFF) << 8) | (header[3] & 0xFF);
+		if(length < 0 || length > FrameValues.MAX_PAYLOAD_LENGTH) {
+			throw new IOException("invalid frame length " + length);
+		}
+		return length;
+	}
+	
+	private static void readFully(final InputStream in, final byte[] target, final int from, final int to) throws IOException {
+		int read = from;
+		while(read < to) {
+			final int count = in.read(target, read, to - read);
+			if(count < 0) {
+				throw new EOFException("stream ended " + (to - read) + " bytes before the end of the frame");
+			}
+			read += count;
+		}
+	}
+}
@@ -1,26 +1,77 @@
 package niconoggi.clientserver.util;
 
 import java.io.IOException;
-import java.io.Serializable;
+import java.util.IdentityHashMap;
+import java.util.Map;
 
 /**
  * Util class for copying values of an instance to another one,
- * providing generic support
+ * providing generic support.
+ * <p>
+ * The copy is deep: everything the instance refers to is copied as well,
+ * and instances referred to several times, also in cycles, are copied once
+ * and referred to the same way in the copy. Instances are copied directly
+ * instead of being serialized, by a plan worked out once per class:
+ * immutable instances are shared, arrays, records, the common collections and
+ * classes with a constructor without parameters are copied directly. Only
+ * instances of other classes are serialized and deserialized using the
+ * {@link DataConverterUtil}, which requires them to be {@link java.io.Serializable}.
+ * <p>
+ * Unlike serialization, directly copied instances keep the values of their transient fields.
  * @author niconoggi
  *
  * @param <T> the type of the cloned instance
  */
-public class InstanceCopier<T extends Serializable> {
+public class InstanceCopier<T> {
 
 	/**
-	 * copies the target instance using {@link DataConverterUtil}
+	 * copies the target instance and everything it refers to
 	 * @param copyFrom the instance that is copied
 	 * @return a copy of the given instance
-	 * @throws ClassNotFoundException
-	 * @throws IOException
+	 * @throws ClassNotFoundException an error occuring while copying an instance by serialization
+	 * @throws IOException an error occuring while copying, for example if an instance
+	 * 						that has to be serialized is not serializable
 	 */
+	@SuppressWarnings("unchecked")
 	public T copyInstance(final T copyFrom) throws ClassNotFoundException, IOException {
-		final DataConverterUtil<T> converter = new DataConverterUtil<T>();
-		return converter.convertFromByteArray(converter.convertToBytes(copyFrom));
+		return (T) new Copies().copy(copyFrom);
+	}
+
+	/**
+	 * the copies made during copying a single instance, by the instance they are a copy of
+	 */
+	static final class Copies {
+
+		/** remembered for records until they are created */
+		static final Object IN_PROGRESS = new Object();
+
+		private final Map<Object, Object> copies = new IdentityHashMap<Object, Object>();
+
+		/**
+		 * @param original the instance to copy or null
+		 * @return the copy of the instance, which is the same copy every time
+		 * 			the same instance is copied
+		 */
+		Object copy(final Object original) throws IOException, ClassNotFoundException {
+			if(original == null) {
+				return null;
+			}
+			final CopyPlan plan = CopyPlan.of(original.getClass());
+			if(plan == CopyPlan.IMMUTABLE) {
+				return original;
+			}
+			final Object copy = copies.get(original);
+			if(copy == IN_PROGRESS) {
+				throw new IOException("a " + original.getClass().getName() + " refers to itself and cannot be copied");
+			}
+			if(copy != null) {
+				return copy;
+			}
+			return plan.copy(original, this);
+		}
+
+		void remember(final Object original, final Object copy) {
+			copies.put(original, copy);
+		}
 	}
 }
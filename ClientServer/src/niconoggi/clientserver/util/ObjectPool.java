@@ -0,0 +1,90 @@
+package niconoggi.clientserver.util;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * A bounded pool of reusable objects shared by all threads. Unlike a pool per
+ * thread it also pays off for virtual threads, which mostly live for a single
+ * connection or request and would take their pool with them.
+ * <p>
+ * An empty pool hands out nothing, so the caller creates a new object. An object
+ * given back to a full pool is passed to the discard action instead, so objects
+ * holding native memory, such as {@link java.util.zip.Inflater}, can free it right away.
+ * @author niconoggi
+ *
+ * @param <T> the type of the pooled objects
+ */
+public class ObjectPool<T> {
+
+	/** a capacity fitting objects that are only held while a thread computes */
+	public static final int PER_PROCESSOR_CAPACITY = 2 * Runtime.getRuntime().availableProcessors();
+
+	private final ConcurrentLinkedQueue<T> idle = new ConcurrentLinkedQueue<T>();
+	/** counted separately, as the size of the queue is not constant in time */
+	private final AtomicInteger idleCount = new AtomicInteger();
+	private final int capacity;
+	private final Consumer<? super T> discard;
+
+	/**
+	 * @param capacity the amount of idle objects kept at most
+	 */
+	public ObjectPool(final int capacity) {
+		this(capacity, object -> {});
+	}
+
+	/**
+	 * @param capacity the amount of idle objects kept at most
+	 * @param discard the action for objects given back to a full pool
+	 */
+	public ObjectPool(final int capacity, final Consumer<? super T> discard) {
+		this.capacity = capacity;
+		this.discard = discard;
+	}
+
+	/**
+	 * @return an idle object, which belongs to the caller until it is given back, or
+	 * 			null, if there is none
+	 */
+	public T poll() {
+		final T object = idle.poll();
+		if(object != null) {
+			idleCount.decrementAndGet();
+		}
+		return object;
+	}
+
+	/**
+	 * gives the object back to the pool or, if the pool is full, to the discard action.
+	 * <p>
+	 * NOTE: the object must not be used anymore after giving it back
+	 * @param object the object to give back
+	 * @return true, if the object was kept, false if it was discarded
+	 */
+	public boolean offer(final T object) {
+		if(idleCount.incrementAndGet() > capacity) {
+			idleCount.decrementAndGet();
+			discard.accept(object);
+			return false;
+		}
+		idle.offer(object);
+		return true;
+	}
+
+	/**
+	 * @return the amount of idle objects
+	 */
+	public int getIdleCount() {
+		return idleCount.get();
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	@Override
+	public String toString() {
+		return "object pool: idle = " + idleCount.get() + "/" + capacity;
+	}
+}
@@ -0,0 +1,29 @@
+package niconoggi.clientserver.util;
+
+import java.io.ByteArrayInputStream;
+
+/**
+ * A {@link ByteArrayInputStream} that can be pointed at another array,
+ * so one instance can be used for decoding any amount of messages
+ * @author niconoggi
+ *
+ */
+public class ReusableByteArrayInputStream extends ByteArrayInputStream {
+
+	public ReusableByteArrayInputStream() {
+		super(new byte[0]);
+	}
+	
+	/**
+	 * makes the stream read the given part of the given array from now on
+	 * @param bytes the array to read
+	 * @param offset the index of the first byte to read
+	 * @param length the amount of bytes to read
+	 */
+	public void setBytes(final byte[] bytes, final int offset, final int length) {
+		buf = bytes;
+		pos = offset;
+		mark = offset;
+		count = Math.min(offset + length, bytes.length);
+	}
+}
@@ -0,0 +1,161 @@
+package niconoggi.clientserver.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ClientConnectionPoolTest {
+
+	private ServerSocket server;
+	private Thread acceptor;
+	/** the server side of every connection, kept open */
+	private final List<Socket> accepted = new CopyOnWriteArrayList<Socket>();
+
+	@BeforeEach
+	void bind() throws IOException {
+		server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+		acceptor = Thread.startVirtualThread(() -> {
+			try {
+				while(true) {
+					accepted.add(server.accept());
+				}
+			} catch (IOException e) {
+				//the server socket was closed
+			}
+		});
+	}
+
+	@AfterEach
+	void close() throws IOException, InterruptedException {
+		server.close();
+		acceptor.join();
+		for(final Socket socket : accepted) {
+			socket.close();
+		}
+	}
+
+	@Test
+	void releasedConnectionIsReused() throws IOException {
+		try(ClientConnectionPool pool = new ClientConnectionPool(2, 60_000, 1000)) {
+			final Socket first = pool.borrow("localhost", server.getLocalPort());
+			pool.release(first);
+
+			assertSame(first, pool.borrow("localhost", server.getLocalPort()));
+			assertEquals(1, pool.getBorrowedCount());
+			assertEquals(0, pool.getIdleCount());
+		}
+	}
+
+	@Test
+	void expiredAndClosedConnectionsAreEvicted() throws IOException, InterruptedException {
+		try(ClientConnectionPool pool = new ClientConnectionPool(2, 100, 1000)) {
+			final Socket expiring = pool.borrow("localhost", server.getLocalPort());
+			pool.release(expiring);
+			Thread.sleep(200);
+			pool.evictIdle();
+
+			assertTrue(expiring.isClosed());
+			assertEquals(0, pool.getIdleCount());
+		}
+		try(ClientConnectionPool pool = new ClientConnectionPool(2, 60_000, 1000)) {
+			final Socket dropped = pool.borrow("localhost", server.getLocalPort());
+			pool.release(dropped);
+			waitForAccepted(2);
+			accepted.get(1).close();
+			Thread.sleep(100);
+			pool.evictIdle();
+
+			assertTrue(dropped.isClosed());
+			assertNotSame(dropped, pool.borrow("localhost", server.getLocalPort()));
+		}
+	}
+
+	@Test
+	void evictingWhileBorrowingNeverHandsOutConnectionTwice() throws Exception {
+		final int threads = 8;
+		final Set<Socket> inUse = ConcurrentHashMap.newKeySet();
+		final AtomicInteger failures = new AtomicInteger();
+		final AtomicBoolean stop = new AtomicBoolean();
+		try(ClientConnectionPool pool = new ClientConnectionPool(threads, 60_000, 5000)) {
+			//platform threads, as a spinning virtual thread could starve the others on a single core
+			final Thread evictor = Thread.ofPlatform().start(() -> {
+				while(!stop.get()) {
+					pool.evictIdle();
+					Thread.yield();
+				}
+			});
+			final Thread[] borrowers = new Thread[threads];
+			for(int i = 0; i < threads; i++) {
+				borrowers[i] = Thread.ofPlatform().start(() -> {
+					try {
+						for(int round = 0; round < 500; round++) {
+							final Socket socket = pool.borrow("localhost", server.getLocalPort());
+							if(!inUse.add(socket) || socket.isClosed()) {
+								failures.incrementAndGet();
+							}
+							Thread.yield();
+							if(socket.isClosed()) {
+								failures.incrementAndGet();
+							}
+							inUse.remove(socket);
+							pool.release(socket);
+						}
+					} catch (IOException e) {
+						failures.incrementAndGet();
+					}
+				});
+			}
+			for(final Thread borrower : borrowers) {
+				borrower.join();
+			}
+			//not interrupted, which would close the channel checked at that moment
+			stop.set(true);
+			evictor.join();
+
+			assertEquals(0, failures.get());
+			assertEquals(0, pool.getBorrowedCount());
+			assertTrue(pool.getIdleCount() <= threads);
+		}
+	}
+
+	@Test
+	void closedPoolRejectsBorrowing() throws IOException {
+		final ClientConnectionPool pool = new ClientConnectionPool();
+		final Socket socket = pool.borrow("localhost", server.getLocalPort());
+		pool.close();
+		pool.release(socket);
+
+		assertTrue(socket.isClosed());
+		assertFalse(pool.getIdleCount() > 0);
+		try {
+			pool.borrow("localhost", server.getLocalPort());
+		} catch (IOException e) {
+			return;
+		}
+		throw new AssertionError("borrowing from a closed pool succeeded");
+	}
+
+	private void waitForAccepted(final int amount) throws InterruptedException {
+		final long deadline = System.currentTimeMillis() + 5000;
+		while(accepted.size() < amount && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+	}
+}
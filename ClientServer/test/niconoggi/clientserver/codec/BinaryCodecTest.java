@@ -0,0 +1,126 @@
+package niconoggi.clientserver.codec;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class BinaryCodecTest {
+
+	enum Level { LOW, HIGH }
+
+	record Reading(String name, Level level, List<String> tags, byte[] raw) {}
+
+	/**
+	 * written the way the {@link niconoggi.clientserver.codec.processor.WireMessageProcessor} writes codecs
+	 */
+	static final class ReadingCodec extends BinaryCodec<Reading> {
+
+		private static final Level[] LEVELS = Level.values();
+
+		@Override
+		protected void write(final Reading data, final DataOutput out) throws IOException {
+			writeString(out, data.name());
+			out.writeInt(data.level().ordinal());
+			out.writeInt(data.tags().size());
+			for(final String tag : data.tags()) {
+				writeString(out, tag);
+			}
+			writeBytes(out, data.raw());
+		}
+
+		@Override
+		protected Reading read(final DataInput in) throws IOException {
+			final String name = readString(in);
+			final Level level = readEnum(in, LEVELS);
+			final int size = readSize(in);
+			final List<String> tags = newList(size);
+			for(int i = 0; i < size; i++) {
+				tags.add(readString(in));
+			}
+			return new Reading(name, level, tags, readBytes(in));
+		}
+	}
+
+	private final ReadingCodec codec = new ReadingCodec();
+
+	@Test
+	void roundTrip() throws IOException {
+		final Reading reading = new Reading("tempäöü", Level.HIGH, List.of("a", "", "c"), new byte[] {1, 2});
+		final Reading decoded = codec.decode(codec.encode(reading));
+
+		assertEquals(reading.name(), decoded.name());
+		assertEquals(reading.level(), decoded.level());
+		assertEquals(reading.tags(), decoded.tags());
+		assertArrayEquals(reading.raw(), decoded.raw());
+	}
+
+	@Test
+	void nullsRoundTrip() throws IOException {
+		final Reading decoded = codec.decode(codec.encode(new Reading(null, Level.LOW, List.of(), null)));
+
+		assertNull(decoded.name());
+		assertNull(decoded.raw());
+	}
+
+	@Test
+	void allEncodingsAreEqual() throws IOException {
+		final Reading reading = new Reading("name", Level.LOW, List.of("x"), new byte[100]);
+		final byte[] encoded = codec.encode(reading);
+
+		final ByteBuffer buffer = ByteBuffer.allocate(encoded.length);
+		assertEquals(encoded.length, codec.encodeInto(reading, buffer));
+		assertArrayEquals(encoded, buffer.array());
+
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		codec.encodeTo(reading, out);
+		assertArrayEquals(encoded, out.toByteArray());
+	}
+
+	@Test
+	void invalidOrdinalIsRejected() throws IOException {
+		assertThrows(IOException.class, () -> codec.decode(encodeRaw(2, 0, -1)));
+		assertThrows(IOException.class, () -> codec.decode(encodeRaw(-1, 0, -1)));
+	}
+
+	@Test
+	void negativeSizeIsRejected() throws IOException {
+		assertThrows(IOException.class, () -> codec.decode(encodeRaw(0, -1, -1)));
+	}
+
+	@Test
+	void invalidBytesLengthIsRejected() throws IOException {
+		assertThrows(IOException.class, () -> codec.decode(encodeRaw(0, 0, -2)));
+		assertThrows(IOException.class, () -> codec.decode(encodeRaw(0, 0, Integer.MAX_VALUE)));
+	}
+
+	@Test
+	void truncatedInputIsRejected() throws IOException {
+		final byte[] encoded = codec.encode(new Reading("name", Level.LOW, List.of("x"), null));
+
+		assertThrows(IOException.class, () -> codec.decode(encoded, 0, encoded.length - 1));
+	}
+
+	/**
+	 * @return a reading with a null name and the given raw values
+	 */
+	private static byte[] encodeRaw(final int ordinal, final int size, final int rawLength) throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final DataOutputStream out = new DataOutputStream(bytes);
+		BinaryCodec.writeString(out, null);
+		out.writeInt(ordinal);
+		out.writeInt(size);
+		out.writeInt(rawLength);
+		return bytes.toByteArray();
+	}
+}
@@ -0,0 +1,117 @@
+package niconoggi.clientserver.compression;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import niconoggi.clientserver.protocol.FrameValues;
+import niconoggi.clientserver.protocol.MessageFrame;
+
+class CompressionTest {
+
+	private final Compression compression = new Compression();
+
+	@Test
+	void compressedFrameRoundTrip() throws IOException {
+		final byte[] payload = new byte[Compression.DEFAULT_THRESHOLD * 4];
+		Arrays.fill(payload, (byte) 7);
+		final MessageFrame frame = new MessageFrame(FrameValues.TYPE_DATA, FrameValues.FLAG_CORRELATED, payload);
+		final MessageFrame compressed = compression.compress(frame);
+
+		assertTrue(compressed.hasFlag(FrameValues.FLAG_COMPRESSED));
+		assertTrue(compressed.hasFlag(FrameValues.FLAG_CORRELATED));
+		assertTrue(compressed.getPayload().length < payload.length);
+		assertEquals(frame, Compression.decompress(compressed));
+	}
+
+	@Test
+	void streamedRoundTrip() throws IOException {
+		final byte[] original = new byte[Compression.DEFAULT_THRESHOLD * 64];
+		for(int i = 0; i < original.length; i++) {
+			original[i] = (byte) (i / 100);
+		}
+		final byte[] compressed = compression.compressPayload(original, 0, original.length);
+		final ByteArrayInputStream in = new ByteArrayInputStream(Arrays.copyOf(compressed, compressed.length + 1));
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		assertEquals(original.length, Compression.decompress(in, compressed.length, out));
+		assertArrayEquals(original, out.toByteArray());
+		//the stream is read up to the end of the payload only
+		assertEquals(1, in.available());
+	}
+
+	@Test
+	void streamedPayloadWithWrongLengthIsRejected() throws IOException {
+		final byte[] original = new byte[Compression.DEFAULT_THRESHOLD * 4];
+		final byte[] compressed = compression.compressPayload(original, 0, original.length);
+		compressed[4]--;
+
+		assertThrows(IOException.class, () -> Compression.decompress(
+				new ByteArrayInputStream(compressed), compressed.length, new ByteArrayOutputStream()));
+		assertThrows(IOException.class, () -> Compression.decompress(
+				new ByteArrayInputStream(compressed), compressed.length + 1, new ByteArrayOutputStream()));
+	}
+
+	@Test
+	void smallPayloadIsNotCompressed() throws IOException {
+		final MessageFrame frame = new MessageFrame(new byte[Compression.DEFAULT_THRESHOLD - 1]);
+
+		assertSame(frame, compression.compress(frame));
+	}
+
+	@Test
+	void incompressiblePayloadIsNotCompressed() throws IOException {
+		final byte[] payload = new byte[Compression.DEFAULT_THRESHOLD * 2];
+		new Random(42).nextBytes(payload);
+		final MessageFrame frame = new MessageFrame(payload);
+
+		assertSame(frame, compression.compress(frame));
+	}
+
+	@Test
+	void lengthAboveMaxRatioIsRejected() {
+		//announces 1 MB for 10 compressed bytes
+		final byte[] payload = new byte[Compression.PREFIX_LENGTH + 10];
+		payload[0] = DeflateCompressor.ID;
+		payload[2] = 0x10;
+
+		assertThrows(IOException.class, () -> Compression.originalLength(payload, 0, payload.length));
+		assertThrows(IOException.class, () -> Compression.payloadOf(
+				new MessageFrame(FrameValues.TYPE_DATA, FrameValues.FLAG_COMPRESSED, payload)));
+	}
+
+	@Test
+	void invalidPrefixIsRejected() {
+		final byte[] negative = {DeflateCompressor.ID, (byte) 0x80, 0, 0, 0, 1};
+		assertThrows(IOException.class, () -> Compression.originalLength(negative, 0, negative.length));
+
+		final byte[] tooShort = {DeflateCompressor.ID, 0, 0};
+		assertThrows(IOException.class, () -> Compression.originalLength(tooShort, 0, tooShort.length));
+	}
+
+	@Test
+	void unknownCompressorIsRejected() {
+		final byte[] payload = {(byte) 0xEE, 0, 0, 0, 1, 0};
+
+		assertThrows(IOException.class, () -> Compression.decompress(payload, 0, payload.length, new byte[1], 0));
+	}
+
+	@Test
+	void corruptPayloadIsRejected() throws IOException {
+		final byte[] original = new byte[Compression.DEFAULT_THRESHOLD * 4];
+		final byte[] compressed = compression.compressPayload(original, 0, original.length);
+		Arrays.fill(compressed, Compression.PREFIX_LENGTH, compressed.length, (byte) 0xFF);
+
+		assertThrows(IOException.class, () -> Compression.decompress(compressed, 0, compressed.length, new byte[original.length], 0));
+	}
+}
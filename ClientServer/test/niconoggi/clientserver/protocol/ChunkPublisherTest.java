@@ -0,0 +1,118 @@
+package niconoggi.clientserver.protocol;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+
+import org.junit.jupiter.api.Test;
+
+class ChunkPublisherTest {
+
+	@Test
+	void publishesAllChunksOnRequest() {
+		final Recorder recorder = new Recorder(1);
+		new ChunkPublisher(message(3), Runnable::run).subscribe(recorder);
+
+		assertEquals(List.of("next 0", "next 1", "next 2", "complete"), recorder.signals);
+	}
+
+	@Test
+	void invalidRequestIsSignalledAfterCurrentChunk() {
+		final Recorder recorder = new Recorder(0);
+		new ChunkPublisher(message(3), Runnable::run).subscribe(recorder);
+
+		assertEquals(List.of("next 0", "error"), recorder.signals);
+		assertInstanceOf(IllegalArgumentException.class, recorder.error);
+		assertFalse(recorder.overlapped);
+	}
+
+	@Test
+	void secondSubscriberGetsError() {
+		final ChunkPublisher publisher = new ChunkPublisher(message(1), Runnable::run);
+		publisher.subscribe(new Recorder(1));
+		final Recorder second = new Recorder(1);
+		publisher.subscribe(second);
+
+		assertEquals(List.of("error"), second.signals);
+		assertInstanceOf(IllegalStateException.class, second.error);
+	}
+
+	@Test
+	void cancelSkipsRestOfMessage() {
+		final ChunkedInputStream source = message(3);
+		final Recorder recorder = new Recorder(-1);
+		new ChunkPublisher(source, Runnable::run).subscribe(recorder);
+
+		assertEquals(List.of("next 0"), recorder.signals);
+		assertTrue(source.isEnded());
+	}
+
+	/**
+	 * @param chunks the amount of chunks
+	 * @return a message whose chunks hold their index
+	 */
+	private static ChunkedInputStream message(final int chunks) {
+		final ArrayDeque<MessageFrame> frames = new ArrayDeque<MessageFrame>();
+		for(int i = 0; i < chunks; i++) {
+			frames.add(new MessageFrame(FrameValues.TYPE_CHUNK, FrameValues.NO_FLAGS, new byte[] {(byte) i}));
+		}
+		frames.add(new MessageFrame(FrameValues.TYPE_CHUNK_END, FrameValues.NO_FLAGS, null));
+		return new ChunkedInputStream(frames::poll);
+	}
+
+	/**
+	 * requests one chunk at a time and, after every chunk, requests the given amount.
+	 * A negative amount cancels instead
+	 */
+	private static final class Recorder implements Flow.Subscriber<ByteBuffer> {
+
+		private final long nextRequest;
+		private final List<String> signals = new ArrayList<String>();
+		private Flow.Subscription subscription;
+		private Throwable error;
+		private boolean inOnNext;
+		private boolean overlapped;
+
+		private Recorder(final long nextRequest) {
+			this.nextRequest = nextRequest;
+		}
+
+		@Override
+		public void onSubscribe(final Flow.Subscription subscription) {
+			this.subscription = subscription;
+			subscription.request(1);
+		}
+
+		@Override
+		public void onNext(final ByteBuffer chunk) {
+			inOnNext = true;
+			signals.add("next " + chunk.get());
+			if(nextRequest < 0) {
+				subscription.cancel();
+			} else {
+				subscription.request(nextRequest);
+			}
+			inOnNext = false;
+		}
+
+		@Override
+		public void onError(final Throwable throwable) {
+			overlapped |= inOnNext;
+			error = throwable;
+			signals.add("error");
+		}
+
+		@Override
+		public void onComplete() {
+			overlapped |= inOnNext;
+			signals.add("complete");
+		}
+	}
+}
@@ -0,0 +1,69 @@
+package niconoggi.clientserver.protocol;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import niconoggi.clientserver.util.FramingUtil;
+
+class FrameDecoderTest {
+
+	@Test
+	void frameSpreadOverManyBuffers() throws IOException {
+		final byte[] payload = new byte[FrameValues.INITIAL_PAYLOAD_CAPACITY * 3 + 1];
+		new Random(3).nextBytes(payload);
+		final MessageFrame sent = new MessageFrame(FrameValues.TYPE_DATA, FrameValues.FLAG_CORRELATED, payload);
+		final ByteBuffer encoded = FramingUtil.encodeFrame(sent);
+		final FrameDecoder decoder = new FrameDecoder();
+
+		MessageFrame decoded = null;
+		while(encoded.hasRemaining()) {
+			assertNull(decoded);
+			final ByteBuffer part = encoded.slice(encoded.position(), Math.min(encoded.remaining(), 1000));
+			encoded.position(encoded.position() + part.remaining());
+			decoded = decoder.decode(part);
+			assertFalse(part.hasRemaining());
+		}
+		assertEquals(sent, decoded);
+		assertFalse(decoder.isInsideFrame());
+	}
+
+	@Test
+	void bytesOfNextFrameAreLeftInBuffer() throws IOException {
+		final ByteBuffer both = ByteBuffer.allocate(2 * FrameValues.HEADER_LENGTH + 3);
+		both.put(FramingUtil.encodeFrame(new MessageFrame(new byte[] {1, 2})));
+		both.put(FramingUtil.encodeFrame(new MessageFrame(new byte[] {3})));
+		both.flip();
+		final FrameDecoder decoder = new FrameDecoder();
+
+		assertEquals(new MessageFrame(new byte[] {1, 2}), decoder.decode(both));
+		assertEquals(new MessageFrame(new byte[] {3}), decoder.decode(both));
+		assertFalse(both.hasRemaining());
+	}
+
+	@Test
+	void announcedLengthIsNotTrusted() throws IOException {
+		final ByteBuffer frame = ByteBuffer.allocate(FrameValues.HEADER_LENGTH + 10);
+		frame.putInt(FrameValues.MAX_PAYLOAD_LENGTH).put(FrameValues.TYPE_DATA).put(FrameValues.NO_FLAGS).flip();
+		final FrameDecoder decoder = new FrameDecoder();
+
+		assertNull(decoder.decode(frame));
+		assertTrue(decoder.isInsideFrame());
+	}
+
+	@Test
+	void invalidLengthIsRejected() {
+		final ByteBuffer frame = ByteBuffer.allocate(FrameValues.HEADER_LENGTH);
+		frame.putInt(-1).put(FrameValues.TYPE_DATA).put(FrameValues.NO_FLAGS).flip();
+
+		assertThrows(IOException.class, () -> new FrameDecoder().decode(frame));
+	}
+}
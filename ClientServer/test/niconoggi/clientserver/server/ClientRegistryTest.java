@@ -0,0 +1,175 @@
+package niconoggi.clientserver.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ClientRegistryTest {
+
+	private ServerSocket server;
+	private final List<Socket> sockets = new ArrayList<Socket>();
+
+	@BeforeEach
+	void bind() throws IOException {
+		server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+	}
+
+	@AfterEach
+	void close() throws IOException {
+		for(final Socket socket : sockets) {
+			socket.close();
+		}
+		server.close();
+	}
+
+	@Test
+	void registerAndRemove() throws IOException {
+		final ClientRegistry registry = new ClientRegistry(2);
+		final Socket first = accept();
+		final Socket second = accept();
+
+		assertEquals(0, registry.register(first));
+		assertEquals(1, registry.register(second));
+		assertEquals(0, registry.register(first));
+		assertTrue(registry.isFull());
+		assertEquals(ClientRegistry.NO_SLOT, registry.register(accept()));
+
+		registry.remove(first);
+		assertTrue(first.isClosed());
+		assertNull(registry.get(0));
+		assertEquals(ClientRegistry.NO_SLOT, registry.slotOf(first));
+		assertEquals(1, registry.getLiveCount());
+	}
+
+	@Test
+	void slotIsFoundByRemoteAddress() throws IOException {
+		final ClientRegistry registry = new ClientRegistry(2);
+		final Socket client = accept();
+		final int slot = registry.register(client);
+
+		assertEquals(slot, registry.slotOf(client.getRemoteSocketAddress()));
+		assertEquals(ClientRegistry.NO_SLOT, registry.slotOf(new InetSocketAddress(InetAddress.getLoopbackAddress(), 1)));
+
+		registry.remove(slot);
+		assertEquals(ClientRegistry.NO_SLOT, registry.slotOf(client.getRemoteSocketAddress()));
+	}
+
+	@Test
+	void reconnectingClientGetsItsSlotBack() throws IOException {
+		final ClientRegistry registry = new ClientRegistry(3);
+		final Socket unconnected = new Socket();
+		sockets.add(unconnected);
+		assertEquals(0, registry.register(unconnected));
+		assertEquals(1, registry.register(accept()));
+		registry.remove(1);
+
+		//the unused slot 2 is skipped, as slot 1 remembers the address
+		final Socket again = accept();
+		assertEquals(1, registry.register(again));
+		assertEquals(String.valueOf(again.getInetAddress()), registry.getAddress(1));
+	}
+
+	@Test
+	void reportedClientsAreRemoved() throws IOException {
+		final ClientRegistry registry = new ClientRegistry(1);
+		final Socket client = accept();
+		registry.register(client);
+		client.close();
+		registry.markClosed(0);
+
+		assertEquals(0, registry.getLiveCount());
+		assertFalse(registry.isFull());
+		final Socket next = accept();
+		assertEquals(0, registry.register(next));
+		assertSame(next, registry.get(0));
+	}
+
+	@Test
+	void reportedClientGivesItsSlotToNewClient() throws IOException {
+		final ClientRegistry registry = new ClientRegistry(1);
+		final Socket client = accept();
+		registry.register(client);
+		client.close();
+		registry.markClosed(0);
+
+		assertEquals(0, registry.register(accept()));
+		assertEquals(1, registry.getLiveCount());
+	}
+
+	@Test
+	void reportedSlotTakenOverMeanwhileIsKept() throws IOException {
+		final ClientRegistry registry = new ClientRegistry(1);
+		registry.register(accept());
+		registry.markClosed(0);
+		registry.remove(0);
+		final Socket next = accept();
+		registry.register(next);
+
+		assertEquals(1, registry.getLiveCount());
+		assertSame(next, registry.get(0));
+	}
+
+	@Test
+	void unreportedClientsAreOnlyRemovedByScan() throws IOException {
+		final ClientRegistry registry = new ClientRegistry(2);
+		final Socket client = accept();
+		registry.register(client);
+		registry.register(accept());
+		client.close();
+
+		assertEquals(2, registry.getLiveCount());
+		assertEquals(1, registry.removeClosed());
+		assertEquals(1, registry.getLiveCount());
+		assertNull(registry.get(0));
+	}
+
+	@Test
+	void growableRegistryGrows() throws IOException {
+		final ClientRegistry registry = new ClientRegistry(1);
+		registry.setGrowable(true);
+		registry.register(accept());
+
+		assertEquals(1, registry.register(accept()));
+		assertEquals(2, registry.getCapacity());
+		assertEquals(2, registry.getLiveCount());
+	}
+
+	@Test
+	void removeAllClosesAllClients() throws IOException {
+		final ClientRegistry registry = new ClientRegistry(2);
+		final Socket first = accept();
+		final Socket second = accept();
+		registry.register(first);
+		registry.register(second);
+		registry.removeAll();
+
+		assertTrue(first.isClosed());
+		assertTrue(second.isClosed());
+		assertEquals(0, registry.getLiveCount());
+	}
+
+	/**
+	 * @return the server side of a new loopback connection
+	 */
+	private Socket accept() throws IOException {
+		final Socket client = new Socket(server.getInetAddress(), server.getLocalPort());
+		sockets.add(client);
+		final Socket accepted = server.accept();
+		sockets.add(accepted);
+		return accepted;
+	}
+}
@@ -0,0 +1,105 @@
+package niconoggi.clientserver.server;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import niconoggi.clientserver.protocol.FrameValues;
+import niconoggi.clientserver.util.FramingUtil;
+
+class MultiClientServerTest {
+
+	private static final int CLIENTS = 3;
+
+	private MultiClientServer server;
+	/** the clients by the slot they got */
+	private final Socket[] clients = new Socket[CLIENTS];
+
+	@BeforeEach
+	void connect() throws IOException {
+		final int port;
+		try(ServerSocket free = new ServerSocket(0)) {
+			port = free.getLocalPort();
+		}
+		server = new MultiClientServer(port, CLIENTS);
+		server.setConnectTimeout(5000);
+		server.start();
+		final Socket[] connected = new Socket[CLIENTS];
+		for(int i = 0; i < CLIENTS; i++) {
+			connected[i] = new Socket("localhost", port);
+		}
+		for(int i = 0; i < CLIENTS; i++) {
+			server.connect();
+		}
+		for(final Socket client : connected) {
+			clients[server.slotOf(client.getLocalSocketAddress())] = client;
+		}
+	}
+
+	@AfterEach
+	void disconnect() throws IOException {
+		for(final Socket client : clients) {
+			client.close();
+		}
+		server.stop();
+	}
+
+	@Test
+	void concurrentReadOfAllClients() throws IOException {
+		server.setBroadcastParallelism(CLIENTS);
+		for(int slot = 0; slot < CLIENTS; slot++) {
+			FramingUtil.writeData(clients[slot].getOutputStream(), new byte[] {(byte) slot});
+		}
+		final RoundResult result = server.readConcurrently();
+
+		assertTrue(result.isSuccessful());
+		for(int slot = 0; slot < CLIENTS; slot++) {
+			assertEquals(ClientStatus.SUCCESS, result.getStatus(slot));
+			assertArrayEquals(new byte[] {(byte) slot}, result.getData(slot));
+		}
+	}
+
+	@Test
+	void clientsNotStartedBeforeDeadlineStayConnected() throws IOException {
+		//the only thread is stuck on slot 0, which sends half a message
+		server.setBroadcastParallelism(1);
+		server.setIoTimeout(300);
+		server.setClientReadTimeout(10_000);
+		final byte[] header = new byte[FrameValues.HEADER_LENGTH];
+		FramingUtil.writeHeader(header, 10, FrameValues.TYPE_DATA, FrameValues.NO_FLAGS);
+		final OutputStream out = clients[0].getOutputStream();
+		out.write(header);
+		out.write(new byte[5]);
+		out.flush();
+		final RoundResult result = server.readConcurrently();
+
+		assertEquals(ClientStatus.TIMED_OUT, result.getStatus(0));
+		assertEquals(ClientStatus.NOT_ATTEMPTED, result.getStatus(1));
+		assertEquals(ClientStatus.NOT_ATTEMPTED, result.getStatus(2));
+		assertFalse(result.isSuccessful());
+		assertEquals(CLIENTS - 1, server.getActualClientAmount());
+
+		//the skipped clients are read in the next round
+		server.setBroadcastParallelism(CLIENTS);
+		server.setIoTimeout(5000);
+		FramingUtil.writeData(clients[1].getOutputStream(), new byte[] {1});
+		FramingUtil.writeData(clients[2].getOutputStream(), new byte[] {2});
+		final RoundResult next = server.readConcurrently();
+
+		assertEquals(ClientStatus.NOT_CONNECTED, next.getStatus(0));
+		assertEquals(ClientStatus.SUCCESS, next.getStatus(1));
+		assertEquals(ClientStatus.SUCCESS, next.getStatus(2));
+		assertNotNull(next.getData(2));
+	}
+}
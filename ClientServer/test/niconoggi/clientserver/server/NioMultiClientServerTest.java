@@ -0,0 +1,94 @@
+package niconoggi.clientserver.server;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import niconoggi.clientserver.client.Client;
+
+class NioMultiClientServerTest {
+
+	private static final int CLIENTS = 3;
+
+	private NioMultiClientServer server;
+	private final List<Client> clients = new ArrayList<Client>();
+
+	@BeforeEach
+	void connect() throws IOException {
+		final int port;
+		try(ServerSocket free = new ServerSocket(0)) {
+			port = free.getLocalPort();
+		}
+		server = new NioMultiClientServer(port, CLIENTS);
+		server.setConnectTimeout(5000);
+		server.setIoTimeout(5000);
+		server.start();
+		for(int i = 0; i < CLIENTS; i++) {
+			final Client client = new Client("localhost", port);
+			client.connect();
+			clients.add(client);
+		}
+		server.connect();
+	}
+
+	@AfterEach
+	void disconnect() throws IOException {
+		for(final Client client : clients) {
+			client.disconnect();
+		}
+		server.stop();
+	}
+
+	@Test
+	void allClientsConnect() {
+		assertEquals(CLIENTS, server.getActualClientAmount());
+	}
+
+	@Test
+	void writeReachesAllClients() throws IOException {
+		server.setDataToWrite(new byte[] {4, 2});
+		server.write();
+
+		for(final Client client : clients) {
+			client.read();
+			assertArrayEquals(new byte[] {4, 2}, client.getReadData());
+		}
+	}
+
+	@Test
+	void readCollectsOneMessagePerClient() throws IOException {
+		for(int i = 0; i < CLIENTS; i++) {
+			clients.get(i).setDataToWrite(new byte[] {(byte) i});
+			clients.get(i).write();
+		}
+		server.read();
+
+		assertEquals(CLIENTS, server.getReadData().size());
+		int sum = 0;
+		for(final byte[] data : server.getReadData()) {
+			assertEquals(1, data.length);
+			sum += data[0];
+		}
+		assertEquals(0 + 1 + 2, sum);
+	}
+
+	@Test
+	void writeWithoutDataWritesNothing() throws IOException {
+		server.write();
+		server.setDataToWrite(new byte[] {1});
+		server.write();
+
+		for(final Client client : clients) {
+			client.read();
+			assertArrayEquals(new byte[] {1}, client.getReadData());
+		}
+	}
+}
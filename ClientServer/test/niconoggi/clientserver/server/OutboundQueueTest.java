@@ -0,0 +1,131 @@
+package niconoggi.clientserver.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Test;
+
+class OutboundQueueTest {
+
+	@Test
+	void messagesAreTakenInOrder() throws InterruptedIOException {
+		final OutboundQueue queue = new OutboundQueue(3, 100, OverflowPolicy.DISCONNECT);
+		final ByteBuffer first = frame(10);
+		final ByteBuffer second = frame(20);
+		assertTrue(queue.offer(first));
+		assertTrue(queue.offer(second));
+		assertEquals(2, queue.size());
+		assertEquals(30, queue.getQueuedBytes());
+
+		assertSame(first, queue.take());
+		queue.written();
+		assertSame(second, queue.take());
+		queue.written();
+		assertEquals(0, queue.getQueuedBytes());
+		assertTrue(queue.awaitDrained(0));
+	}
+
+	@Test
+	void disconnectPolicyRejectsMessageThatDoesNotFit() {
+		final OutboundQueue queue = new OutboundQueue(1, 100, OverflowPolicy.DISCONNECT);
+
+		assertTrue(queue.offer(frame(10)));
+		assertFalse(queue.offer(frame(10)));
+		assertEquals(1, queue.size());
+	}
+
+	@Test
+	void dropOldestPolicyKeepsNewestMessages() throws InterruptedIOException {
+		final OutboundQueue queue = new OutboundQueue(10, 30, OverflowPolicy.DROP_OLDEST);
+		final ByteBuffer newest = frame(20);
+		queue.offer(frame(10));
+		queue.offer(frame(10));
+		queue.offer(frame(10));
+
+		assertTrue(queue.offer(newest));
+		assertEquals(2, queue.size());
+		assertEquals(30, queue.getQueuedBytes());
+		assertEquals(2, queue.getDropped());
+		queue.take();
+		assertSame(newest, queue.take());
+	}
+
+	@Test
+	void conflatePolicyKeepsOnlyNewestMessage() throws InterruptedIOException {
+		final OutboundQueue queue = new OutboundQueue(2, 100, OverflowPolicy.CONFLATE);
+		final ByteBuffer newest = frame(5);
+		queue.offer(frame(10));
+		queue.offer(frame(10));
+
+		assertTrue(queue.offer(newest));
+		assertEquals(1, queue.size());
+		assertEquals(2, queue.getDropped());
+		assertSame(newest, queue.take());
+	}
+
+	@Test
+	void emptyQueueTakesMessageAboveByteLimit() {
+		final OutboundQueue queue = new OutboundQueue(2, 10, OverflowPolicy.DISCONNECT);
+
+		assertTrue(queue.offer(frame(100)));
+		assertEquals(100, queue.getQueuedBytes());
+	}
+
+	@Test
+	void messageIsDrainedOnlyOnceWritten() throws InterruptedIOException {
+		final OutboundQueue queue = new OutboundQueue(2, 100, OverflowPolicy.DISCONNECT);
+		queue.offer(frame(1));
+		queue.take();
+
+		assertFalse(queue.awaitDrained(10));
+		queue.written();
+		assertTrue(queue.awaitDrained(10));
+	}
+
+	@Test
+	void closeWakesUpWaitingWriter() throws InterruptedException {
+		final OutboundQueue queue = new OutboundQueue(2, 100, OverflowPolicy.DISCONNECT);
+		final ByteBuffer[] taken = {frame(1)};
+		final Thread writer = new Thread(() -> {
+			try {
+				taken[0] = queue.take();
+			} catch (InterruptedIOException e) {
+				//the test fails on the non null message
+			}
+		});
+		writer.start();
+		queue.close();
+		writer.join(5000);
+
+		assertFalse(writer.isAlive());
+		assertNull(taken[0]);
+		assertFalse(queue.offer(frame(1)));
+		assertTrue(queue.isClosed());
+	}
+
+	@Test
+	void policyMethodsWorkOutsideOfPolicy() {
+		final OutboundQueue queue = new OutboundQueue(1, 100, OverflowPolicy.DISCONNECT);
+		queue.add(frame(10));
+		queue.add(frame(10));
+
+		assertEquals(2, queue.size());
+		assertFalse(queue.fits(frame(1)));
+		assertTrue(queue.dropOldest());
+		queue.clear();
+		assertEquals(2, queue.getDropped());
+		queue.close();
+		queue.add(frame(10));
+		assertEquals(0, queue.size());
+	}
+
+	private static ByteBuffer frame(final int length) {
+		return ByteBuffer.allocate(length);
+	}
+}
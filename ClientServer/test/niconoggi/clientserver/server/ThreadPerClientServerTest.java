@@ -0,0 +1,13 @@
+package niconoggi.clientserver.server;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+
+import org.junit.jupiter.api.Test;
+
+class ThreadPerClientServerTest {
+
+	@Test
+	void stopWithoutStart() {
+		assertDoesNotThrow(() -> new ThreadPerClientServer(0).stop());
+	}
+}
@@ -0,0 +1,46 @@
+package niconoggi.clientserver.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+
+import niconoggi.clientserver.protocol.FrameValues;
+import niconoggi.clientserver.protocol.MessageFrame;
+
+class CorrelationUtilTest {
+
+	@Test
+	void correlatedFrameRoundTrip() throws IOException {
+		final byte[] data = {4, 5, 6};
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		FramingUtil.writeFrame(out, CorrelationUtil.correlate(0xCAFEBABE, FrameValues.TYPE_ERROR, data));
+		final MessageFrame frame = FramingUtil.readFrame(new ByteArrayInputStream(out.toByteArray()));
+
+		assertTrue(frame.hasFlag(FrameValues.FLAG_CORRELATED));
+		assertEquals(FrameValues.TYPE_ERROR, frame.getType());
+		assertEquals(0xCAFEBABE, CorrelationUtil.idOf(frame));
+		assertArrayEquals(data, CorrelationUtil.dataOf(frame));
+	}
+
+	@Test
+	void emptyData() throws IOException {
+		final MessageFrame frame = CorrelationUtil.correlate(-1, FrameValues.TYPE_DATA, new byte[0]);
+
+		assertEquals(-1, CorrelationUtil.idOf(frame));
+		assertArrayEquals(new byte[0], CorrelationUtil.dataOf(frame));
+	}
+
+	@Test
+	void frameWithoutIdIsRejected() {
+		assertThrows(IOException.class, () -> CorrelationUtil.idOf(new MessageFrame(new byte[] {0, 0, 0, 1})));
+		assertThrows(IOException.class, () -> CorrelationUtil.idOf(
+				new MessageFrame(FrameValues.TYPE_DATA, FrameValues.FLAG_CORRELATED, new byte[] {0, 0, 1})));
+	}
+}
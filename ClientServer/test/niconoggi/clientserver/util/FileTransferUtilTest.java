@@ -0,0 +1,119 @@
+package niconoggi.clientserver.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import niconoggi.clientserver.compression.Compression;
+import niconoggi.clientserver.metrics.ComponentMetrics;
+import niconoggi.clientserver.protocol.FrameValues;
+import niconoggi.clientserver.protocol.MessageFrame;
+
+class FileTransferUtilTest {
+
+	@TempDir
+	Path directory;
+
+	private ServerSocketChannel server;
+	private Socket sender;
+	private Socket receiver;
+
+	@BeforeEach
+	void connect() throws IOException {
+		server = ServerSocketChannel.open().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+		sender = SocketChannel.open(server.getLocalAddress()).socket();
+		receiver = server.accept().socket();
+	}
+
+	@AfterEach
+	void close() throws IOException {
+		sender.close();
+		receiver.close();
+		server.close();
+	}
+
+	@Test
+	void fileRoundTrip() throws IOException {
+		final byte[] content = new byte[200_000];
+		for(int i = 0; i < content.length; i++) {
+			content[i] = (byte) (i % 251);
+		}
+		final Path file = Files.write(directory.resolve("sent"), content);
+		final Path received = directory.resolve("received");
+
+		assertEquals(content.length, FileTransferUtil.sendFile(sender, file, 64 * 1024, new ComponentMetrics()));
+		assertEquals(content.length, FileTransferUtil.receiveFile(receiver, received, new ComponentMetrics()));
+		assertArrayEquals(content, Files.readAllBytes(received));
+	}
+
+	@Test
+	void compressedChunksAreDecompressed() throws IOException {
+		final byte[] repeated = new byte[Compression.DEFAULT_THRESHOLD * 16];
+		Arrays.fill(repeated, (byte) 'x');
+		final MessageFrame compressed = new Compression().compress(
+				new MessageFrame(FrameValues.TYPE_CHUNK, FrameValues.NO_FLAGS, repeated));
+		assertTrue(compressed.hasFlag(FrameValues.FLAG_COMPRESSED));
+		final OutputStream out = sender.getOutputStream();
+		FramingUtil.writeFrames(out,
+				new MessageFrame(FrameValues.TYPE_CHUNK, FrameValues.NO_FLAGS, new byte[] {1, 2}),
+				compressed,
+				new MessageFrame(FrameValues.TYPE_CHUNK_END, FrameValues.NO_FLAGS, new byte[] {3}));
+		final Path received = directory.resolve("received");
+
+		assertEquals(3 + repeated.length, FileTransferUtil.receiveFile(receiver, received, new ComponentMetrics()));
+		final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		expected.write(new byte[] {1, 2});
+		expected.write(repeated);
+		expected.write(3);
+		assertArrayEquals(expected.toByteArray(), Files.readAllBytes(received));
+	}
+
+	@Test
+	void readTimeoutApplies() throws IOException {
+		receiver.setSoTimeout(100);
+		final Path received = directory.resolve("received");
+
+		assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+			assertThrows(SocketTimeoutException.class,
+					() -> FileTransferUtil.receiveFile(receiver, received, new ComponentMetrics()));
+		});
+	}
+
+	@Test
+	void timeoutInTheMiddleOfChunkIsNoPlainTimeout() throws IOException {
+		receiver.setSoTimeout(100);
+		final byte[] header = new byte[FrameValues.HEADER_LENGTH];
+		FramingUtil.writeHeader(header, 10, FrameValues.TYPE_CHUNK_END, FrameValues.NO_FLAGS);
+		sender.getOutputStream().write(header);
+		sender.getOutputStream().write(new byte[5]);
+		final Path received = directory.resolve("received");
+
+		assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+			final IOException e = assertThrows(IOException.class,
+					() -> FileTransferUtil.receiveFile(receiver, received, new ComponentMetrics()));
+			assertFalse(e instanceof SocketTimeoutException);
+		});
+	}
+}
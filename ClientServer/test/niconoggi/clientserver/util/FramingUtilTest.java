@@ -0,0 +1,123 @@
+package niconoggi.clientserver.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import niconoggi.clientserver.compression.Compression;
+import niconoggi.clientserver.protocol.FrameBuffer;
+import niconoggi.clientserver.protocol.FrameValues;
+import niconoggi.clientserver.protocol.MessageFrame;
+
+class FramingUtilTest {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void frameRoundTrip() throws IOException {
+		final MessageFrame frame = new MessageFrame(FrameValues.TYPE_ERROR, FrameValues.FLAG_CORRELATED, new byte[] {1, 2, 3});
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		FramingUtil.writeFrame(out, frame);
+
+		assertEquals(FrameValues.HEADER_LENGTH + 3, out.size());
+		assertEquals(frame, FramingUtil.readFrame(new ByteArrayInputStream(out.toByteArray())));
+	}
+
+	@Test
+	void payloadLongerThanInitialCapacityRoundTrip() throws IOException {
+		final byte[] payload = new byte[FrameValues.INITIAL_PAYLOAD_CAPACITY * 5 + 3];
+		new Random(1).nextBytes(payload);
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		FramingUtil.writeData(out, payload);
+		FramingUtil.writeData(out, payload);
+		final ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
+
+		assertArrayEquals(payload, FramingUtil.readData(in));
+		final FrameBuffer buffer = new FrameBuffer();
+		buffer.readFrom(in);
+		assertArrayEquals(payload, buffer.copyPayload());
+	}
+
+	@Test
+	void announcedLengthIsNotTrusted() {
+		//announces almost the longest payload, but sends 10 bytes only
+		final byte[] frame = new byte[FrameValues.HEADER_LENGTH + 10];
+		FramingUtil.writeHeader(frame, FrameValues.MAX_PAYLOAD_LENGTH, FrameValues.TYPE_DATA, FrameValues.NO_FLAGS);
+
+		assertThrows(EOFException.class, () -> FramingUtil.readFrame(new ByteArrayInputStream(frame)));
+		assertThrows(EOFException.class, () -> new FrameBuffer().readFrom(new ByteArrayInputStream(frame)));
+	}
+
+	@Test
+	void emptyPayloadRoundTrip() throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		FramingUtil.writeData(out, new byte[0]);
+
+		assertArrayEquals(new byte[0], FramingUtil.readData(new ByteArrayInputStream(out.toByteArray())));
+	}
+
+	@Test
+	void compressedDataRoundTrip() throws IOException {
+		final byte[] payload = new byte[64 * 1024];
+		Arrays.fill(payload, (byte) 'a');
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		FramingUtil.writeData(out, payload, new Compression());
+
+		assertTrue(out.size() < payload.length);
+		assertArrayEquals(payload, FramingUtil.readData(new ByteArrayInputStream(out.toByteArray())));
+	}
+
+	@Test
+	void framesWrittenInOneGoAreReadInOrder() throws IOException {
+		final MessageFrame first = new MessageFrame(new byte[] {1});
+		final MessageFrame second = new MessageFrame(new byte[0]);
+		final MessageFrame third = new MessageFrame(FrameValues.TYPE_CHUNK, FrameValues.NO_FLAGS, new byte[] {3, 3, 3});
+		final Path file = directory.resolve("frames");
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+			assertEquals(3 * FrameValues.HEADER_LENGTH + 4, FramingUtil.writeFrames(channel, first, second, third));
+		}
+		try(InputStream in = Files.newInputStream(file)) {
+			assertEquals(first, FramingUtil.readFrame(in));
+			assertEquals(second, FramingUtil.readFrame(in));
+			assertEquals(third, FramingUtil.readFrame(in));
+			assertThrows(EOFException.class, () -> FramingUtil.readFrame(in));
+		}
+	}
+
+	@Test
+	void truncatedFrameIsRejected() throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		FramingUtil.writeData(out, new byte[] {1, 2, 3});
+		final byte[] truncated = Arrays.copyOf(out.toByteArray(), out.size() - 1);
+
+		assertThrows(EOFException.class, () -> FramingUtil.readFrame(new ByteArrayInputStream(truncated)));
+		assertThrows(EOFException.class, () -> FramingUtil.readFrame(new ByteArrayInputStream(new byte[3])));
+	}
+
+	@Test
+	void invalidLengthIsRejected() {
+		final byte[] header = new byte[FrameValues.HEADER_LENGTH];
+		FramingUtil.writeHeader(header, FrameValues.MAX_PAYLOAD_LENGTH + 1, FrameValues.TYPE_DATA, FrameValues.NO_FLAGS);
+		assertThrows(IOException.class, () -> FramingUtil.readFrame(new ByteArrayInputStream(header)));
+
+		FramingUtil.writeHeader(header, -1, FrameValues.TYPE_DATA, FrameValues.NO_FLAGS);
+		assertThrows(IOException.class, () -> FramingUtil.readFrame(new ByteArrayInputStream(header)));
+	}
+}
@@ -0,0 +1,165 @@
+package niconoggi.clientserver.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+
+class InstanceCopierTest {
+
+	@Test
+	void cyclesAreCopiedOnce() throws Exception {
+		final Node first = new Node("first");
+		final Node second = new Node("second");
+		first.next = second;
+		second.next = first;
+		first.neighbours.add(second);
+		first.neighbours.add(first);
+
+		final Node copy = new InstanceCopier<Node>().copyInstance(first);
+
+		assertNotSame(first, copy);
+		assertNotSame(second, copy.next);
+		assertEquals("second", copy.next.name);
+		assertSame(copy, copy.next.next);
+		assertSame(copy.next, copy.neighbours.get(0));
+		assertSame(copy, copy.neighbours.get(1));
+	}
+
+	@Test
+	void fieldsAndArraysAreCopiedDeeply() throws Exception {
+		final Node original = new Node("node");
+		original.weight = 7;
+		original.cache = "kept";
+		original.bytes = new byte[] {1, 2, 3};
+		original.children = new Node[] {new Node("child"), null};
+
+		final Node copy = new InstanceCopier<Node>().copyInstance(original);
+
+		assertEquals(7, copy.weight);
+		//copied directly, so transient fields keep their value
+		assertEquals("kept", copy.cache);
+		assertNotSame(original.bytes, copy.bytes);
+		assertArrayEquals(original.bytes, copy.bytes);
+		assertNotSame(original.children[0], copy.children[0]);
+		assertEquals("child", copy.children[0].name);
+	}
+
+	@Test
+	void recordsAreCopiedByComponents() throws Exception {
+		final Node node = new Node("node");
+		final Pair original = new Pair("pair", node, node);
+
+		final Pair copy = new InstanceCopier<Pair>().copyInstance(original);
+
+		assertNotSame(original, copy);
+		assertEquals("pair", copy.name());
+		assertNotSame(node, copy.left());
+		assertSame(copy.left(), copy.right());
+	}
+
+	@Test
+	void recordReferringToItselfIsRejected() {
+		final List<Object> content = new ArrayList<Object>();
+		final Holder holder = new Holder(content);
+		content.add(holder);
+
+		assertThrows(IOException.class, () -> new InstanceCopier<Holder>().copyInstance(holder));
+	}
+
+	@Test
+	void sortedCollectionsKeepTheirComparator() throws Exception {
+		final TreeSet<String> set = new TreeSet<String>(Comparator.reverseOrder());
+		set.add("a");
+		set.add("c");
+		set.add("b");
+		final TreeMap<String, Integer> map = new TreeMap<String, Integer>(Comparator.reverseOrder());
+		map.put("a", 1);
+		map.put("b", 2);
+
+		final TreeSet<String> setCopy = new InstanceCopier<TreeSet<String>>().copyInstance(set);
+		final TreeMap<String, Integer> mapCopy = new InstanceCopier<TreeMap<String, Integer>>().copyInstance(map);
+
+		assertNotSame(set, setCopy);
+		assertEquals(List.of("c", "b", "a"), new ArrayList<String>(setCopy));
+		setCopy.add("d");
+		assertEquals("d", setCopy.first());
+		assertNotSame(map, mapCopy);
+		assertEquals("b", mapCopy.firstKey());
+		assertEquals(Map.of("a", 1, "b", 2), mapCopy);
+	}
+
+	@Test
+	void sortedCollectionsWithoutComparatorAreFilled() throws Exception {
+		final TreeSet<Integer> set = new TreeSet<Integer>(List.of(3, 1, 2));
+
+		final TreeSet<Integer> copy = new InstanceCopier<TreeSet<Integer>>().copyInstance(set);
+
+		assertNotSame(set, copy);
+		assertEquals(List.of(1, 2, 3), new ArrayList<Integer>(copy));
+	}
+
+	@Test
+	void classesWithoutDefaultConstructorAreSerialized() throws Exception {
+		final Fixed original = new Fixed(5);
+
+		final Fixed copy = new InstanceCopier<Fixed>().copyInstance(original);
+
+		assertNotSame(original, copy);
+		assertEquals(5, copy.value);
+	}
+
+	@Test
+	void unserializableFallbackIsRejected() {
+		assertThrows(IOException.class, () -> new InstanceCopier<Unserializable>().copyInstance(new Unserializable(1)));
+	}
+
+	static final class Node {
+		private String name;
+		private int weight;
+		private transient String cache;
+		private byte[] bytes;
+		private Node next;
+		private Node[] children;
+		private final List<Node> neighbours = new ArrayList<Node>();
+
+		Node() {}
+
+		Node(final String name) {
+			this.name = name;
+		}
+	}
+
+	record Pair(String name, Node left, Node right) {}
+
+	record Holder(List<Object> content) {}
+
+	static final class Fixed implements Serializable {
+		private static final long serialVersionUID = 1L;
+		private final int value;
+
+		Fixed(final int value) {
+			this.value = value;
+		}
+	}
+
+	static final class Unserializable {
+		private final int value;
+
+		Unserializable(final int value) {
+			this.value = value;
+		}
+	}
+}
@@ -0,0 +1,70 @@
+package niconoggi.clientserver.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class ObjectPoolTest {
+
+	@Test
+	void objectsAreReused() {
+		final ObjectPool<Object> pool = new ObjectPool<Object>(2);
+		final Object object = new Object();
+
+		assertNull(pool.poll());
+		assertTrue(pool.offer(object));
+		assertEquals(1, pool.getIdleCount());
+		assertSame(object, pool.poll());
+		assertEquals(0, pool.getIdleCount());
+	}
+
+	@Test
+	void fullPoolDiscards() {
+		final List<Object> discarded = new ArrayList<Object>();
+		final ObjectPool<Object> pool = new ObjectPool<Object>(1, discarded::add);
+		final Object kept = new Object();
+		final Object dropped = new Object();
+
+		assertTrue(pool.offer(kept));
+		assertFalse(pool.offer(dropped));
+		assertEquals(List.of(dropped), discarded);
+		assertSame(kept, pool.poll());
+	}
+
+	@Test
+	void arraysAreSharedBetweenThreads() throws InterruptedException {
+		final byte[][] released = new byte[1][];
+		final Thread thread = Thread.startVirtualThread(() -> {
+			released[0] = BufferPool.acquire(5000);
+			BufferPool.release(released[0]);
+		});
+		thread.join();
+
+		//the pool may hold other arrays of the size class, released by other tests
+		boolean found = false;
+		final List<byte[]> acquired = new ArrayList<byte[]>();
+		for(int i = 0; i < BufferPool.MAX_POOLED_PER_CLASS && !found; i++) {
+			final byte[] buffer = BufferPool.acquire(5000);
+			found = buffer == released[0];
+			acquired.add(buffer);
+		}
+		acquired.forEach(BufferPool::release);
+		assertTrue(found);
+	}
+
+	@Test
+	void bigArraysAreNotPooled() {
+		final byte[] big = BufferPool.acquire(BufferPool.MAX_POOLED_SIZE + 1);
+		assertEquals(BufferPool.MAX_POOLED_SIZE + 1, big.length);
+		BufferPool.release(big);
+
+		assertTrue(BufferPool.acquire(BufferPool.MAX_POOLED_SIZE + 1) != big);
+	}
+}
@@ -0,0 +1,94 @@
+package niconoggi.clientserver.benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import niconoggi.clientserver.client.Client;
+import niconoggi.clientserver.server.MultiClientServer;
+
+/**
+ * Measures how many broadcasts per second a {@link MultiClientServer}
+ * writes to all of its clients over loopback, depending on the amount of
+ * clients. Every client reads on a thread of its own for as long as it is connected.
+ * @author niconoggi
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BroadcastBenchmark {
+
+	private static final int PORT = 47301;
+
+	@Param({"1", "4", "16", "64"})
+	private int clientAmount;
+
+	@Param({"64", "4096"})
+	private int payloadSize;
+
+	private MultiClientServer server;
+	private final List<Thread> readers = new ArrayList<Thread>();
+
+	@Setup
+	public void setUp() throws IOException {
+		server = new MultiClientServer(PORT, clientAmount);
+		server.start();
+		for(int reader = 0; reader < clientAmount; reader++) {
+			final Thread thread = new Thread(BroadcastBenchmark::readUntilDisconnected, "broadcast-reader-" + reader);
+			thread.setDaemon(true);
+			thread.start();
+			readers.add(thread);
+		}
+		server.connect();
+		server.setDataToWrite(new byte[payloadSize]);
+	}
+
+	@Benchmark
+	public void broadcast() throws IOException {
+		server.write();
+	}
+
+	@TearDown
+	public void tearDown() throws IOException, InterruptedException {
+		server.stop();
+		for(final Thread reader : readers) {
+			reader.join(TimeUnit.SECONDS.toMillis(5));
+		}
+		readers.clear();
+	}
+
+	private static void readUntilDisconnected() {
+		final Client client = new Client("localhost", PORT);
+		try {
+			client.connect();
+			while(true) {
+				client.read();
+			}
+		} catch (IOException e) {
+			//the server stopped, the client is done
+		}
+		try {
+			client.disconnect();
+		} catch (IOException e) {
+			//the connection is dropped either way
+		}
+	}
+}
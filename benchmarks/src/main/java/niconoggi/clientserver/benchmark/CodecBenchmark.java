@@ -0,0 +1,56 @@
+package niconoggi.clientserver.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import niconoggi.clientserver.util.DataConverterUtil;
+
+/**
+ * Measures converting a {@link Sample} to bytes and back with the
+ * {@link DataConverterUtil}, the codec every runner uses by default.
+ * @author niconoggi
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+
+	@Param({"64", "1024", "16384", "262144"})
+	private int payloadSize;
+
+	private final DataConverterUtil<Sample> converter = new DataConverterUtil<Sample>();
+	private Sample sample;
+	private byte[] encoded;
+
+	@Setup
+	public void setUp() throws IOException {
+		sample = Sample.ofSize(payloadSize);
+		encoded = converter.encode(sample);
+	}
+
+	@Benchmark
+	public byte[] encode() throws IOException {
+		return converter.encode(sample);
+	}
+
+	@Benchmark
+	public Sample decode() throws IOException {
+		return converter.decode(encoded);
+	}
+}
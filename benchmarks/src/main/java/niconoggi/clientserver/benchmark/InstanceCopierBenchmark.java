@@ -0,0 +1,64 @@
+package niconoggi.clientserver.benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import niconoggi.clientserver.util.InstanceCopier;
+
+/**
+ * Measures deep copying with the {@link InstanceCopier}, of a single
+ * {@link Sample} and of a list of samples sharing their tags.
+ * @author niconoggi
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InstanceCopierBenchmark {
+
+	private static final int LIST_LENGTH = 100;
+
+	@Param({"64", "1024", "16384"})
+	private int payloadSize;
+
+	private final InstanceCopier<Sample> sampleCopier = new InstanceCopier<Sample>();
+	private final InstanceCopier<List<Sample>> listCopier = new InstanceCopier<List<Sample>>();
+	private Sample sample;
+	private List<Sample> samples;
+
+	@Setup
+	public void setUp() {
+		sample = Sample.ofSize(payloadSize);
+		samples = new ArrayList<Sample>();
+		for(int index = 0; index < LIST_LENGTH; index++) {
+			samples.add(index % 2 == 0 ? sample : Sample.ofSize(payloadSize));
+		}
+	}
+
+	@Benchmark
+	public Sample copySample() throws ClassNotFoundException, IOException {
+		return sampleCopier.copyInstance(sample);
+	}
+
+	@Benchmark
+	public List<Sample> copyList() throws ClassNotFoundException, IOException {
+		return listCopier.copyInstance(samples);
+	}
+}
@@ -0,0 +1,78 @@
+package niconoggi.clientserver.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import niconoggi.clientserver.runner.clientrunner.GenericClientRunner;
+import niconoggi.clientserver.runner.serverrunner.GenericSingleClientServerRunner;
+import niconoggi.clientserver.util.DataConverterUtil;
+
+/**
+ * Measures the latency of a single exchange over loopback: a
+ * {@link GenericClientRunner} writes a {@link Sample} and reads the answer
+ * of a {@link GenericSingleClientServerRunner}, both within an open session.
+ * The time includes converting the request and the answer.
+ * @author niconoggi
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RoundTripBenchmark {
+
+	private static final int PORT = 47300;
+
+	@Param({"64", "16384"})
+	private int payloadSize;
+
+	private GenericSingleClientServerRunner<Sample> server;
+	private GenericClientRunner<Sample> client;
+	private Thread serverThread;
+
+	@Setup
+	public void setUp() {
+		final Sample sample = Sample.ofSize(payloadSize);
+		server = new GenericSingleClientServerRunner<Sample>(PORT, new DataConverterUtil<Sample>());
+		server.setDataToWrite(sample);
+		server.startServer();
+		serverThread = new Thread(() -> {
+			server.openSession();
+			while(server.isSessionOpen()) {
+				server.runReadFirst();
+			}
+		}, "round-trip-server");
+		serverThread.start();
+		client = new GenericClientRunner<Sample>("localhost", PORT, new DataConverterUtil<Sample>());
+		client.setDataToWrite(sample);
+		client.openSession();
+	}
+
+	@Benchmark
+	public Sample roundTrip() {
+		client.runWriteFirst();
+		return client.getReadData();
+	}
+
+	@TearDown
+	public void tearDown() throws InterruptedException {
+		//the server sees the connection end and closes its session
+		client.stopClient();
+		serverThread.join(TimeUnit.SECONDS.toMillis(5));
+		server.stopServer();
+	}
+}
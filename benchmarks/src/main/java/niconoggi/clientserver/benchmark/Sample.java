@@ -0,0 +1,59 @@
+package niconoggi.clientserver.benchmark;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The data the benchmarks convert, copy and send. Besides its payload
+ * it has a few fields of the kinds data objects usually have, so converting
+ * and copying it costs about as much as for real data of the same size.
+ * @author niconoggi
+ *
+ */
+public class Sample implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private long id;
+	private String name;
+	private List<String> tags;
+	private int[] values;
+
+	public Sample() {}
+
+	/**
+	 * @param payloadSize the approximate size of the sample in bytes
+	 * @return a sample of about the given size
+	 */
+	public static Sample ofSize(final int payloadSize) {
+		final Sample sample = new Sample();
+		sample.id = payloadSize;
+		sample.name = "sample-" + payloadSize;
+		sample.tags = new ArrayList<String>();
+		for(int tag = 0; tag < 4; tag++) {
+			sample.tags.add("tag-" + tag);
+		}
+		sample.values = new int[Math.max(1, payloadSize / Integer.BYTES)];
+		for(int value = 0; value < sample.values.length; value++) {
+			sample.values[value] = value * 31;
+		}
+		return sample;
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public List<String> getTags() {
+		return tags;
+	}
+
+	public int[] getValues() {
+		return values;
+	}
+}
@@ -0,0 +1,265 @@
+package niconoggi.clientserver.benchmark.load;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import niconoggi.clientserver.codec.Codec;
+import niconoggi.clientserver.metrics.LatencyHistogram;
+import niconoggi.clientserver.runner.clientrunner.MultipleGenericClientRunner;
+
+/**
+ * Puts load on a server by simulating many clients, each a
+ * {@link MultipleGenericClientRunner} with an open session running on a
+ * virtual thread of its own. Every request is a write followed by reading
+ * the answer, so the server has to answer every message it reads, as a
+ * {@link niconoggi.clientserver.runner.serverrunner.GenericMultiClientServerRunner}
+ * running read first does for all of its clients at once.
+ * <p>
+ * The clients either send back to back, see {@link LoadMode#CLOSED_LOOP}, or at
+ * a fixed rate shared among them, see {@link LoadMode#OPEN_LOOP}. A client whose
+ * exchange fails opens its session again for the next request.
+ * @author niconoggi
+ *
+ * @param <W> the type of the requests
+ * @param <R> the type of the answers
+ */
+public class LoadGenerator<W, R> {
+
+	private final String host;
+	private final int port;
+	private final int clientAmount;
+	private final Codec<W> writeCodec;
+	private final Codec<R> readCodec;
+	private LoadMode mode = LoadMode.CLOSED_LOOP;
+	private double rate = LoadValues.DEFAULT_RATE;
+	private long durationMillis = LoadValues.DEFAULT_DURATION;
+	private long warmupMillis = LoadValues.DEFAULT_WARMUP;
+	private W request;
+
+	private final LatencyHistogram latency = new LatencyHistogram();
+	private final LatencyHistogram serviceTime = new LatencyHistogram();
+	private final LongAdder requests = new LongAdder();
+	private final LongAdder errors = new LongAdder();
+	private volatile boolean running;
+
+	/**
+	 * @param host the host of the server
+	 * @param port the port of the server
+	 * @param clientAmount the amount of simulated clients
+	 * @param writeCodec the codec converting the requests
+	 * @param readCodec the codec converting the answers
+	 */
+	public LoadGenerator(final String host, final int port, final int clientAmount, final Codec<W> writeCodec, final Codec<R> readCodec) {
+		this.host = host;
+		this.port = port;
+		this.clientAmount = clientAmount;
+		this.writeCodec = writeCodec;
+		this.readCodec = readCodec;
+	}
+
+	/**
+	 * connects all clients, puts load on the server for the warm up and the
+	 * duration and disconnects the clients again. Only requests started after the
+	 * warm up are reported
+	 * @return the report of the run
+	 * @throws InterruptedException if the calling thread is interrupted while waiting for the clients
+	 */
+	public LoadReport run() throws InterruptedException {
+		latency.reset();
+		serviceTime.reset();
+		requests.reset();
+		errors.reset();
+		final List<SimulatedClient> clients = new ArrayList<SimulatedClient>();
+		final List<Thread> threads = new ArrayList<Thread>();
+		//connecting is not part of the load, so all clients are connected before the first request is due
+		for(int index = 0; index < clientAmount; index++) {
+			final SimulatedClient client = new SimulatedClient(index);
+			clients.add(client);
+			threads.add(Thread.ofVirtual().name("load-connect-" + index).start(client.runner::openSession));
+		}
+		for(final Thread thread : threads) {
+			thread.join();
+		}
+		threads.clear();
+		final long start = System.nanoTime();
+		final long measureStart = start + TimeUnit.MILLISECONDS.toNanos(warmupMillis);
+		final long end = measureStart + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+		running = true;
+		for(final SimulatedClient client : clients) {
+			client.schedule(start, measureStart, end);
+			threads.add(Thread.ofVirtual().name("load-client-" + client.index).start(client));
+		}
+		final long remaining = end - System.nanoTime();
+		if(remaining > 0) {
+			TimeUnit.NANOSECONDS.sleep(remaining);
+		}
+		final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(LoadValues.STOP_GRACE_PERIOD);
+		for(final Thread thread : threads) {
+			TimeUnit.NANOSECONDS.timedJoin(thread, Math.max(1, deadline - System.nanoTime()));
+		}
+		running = false;
+		//clients still waiting for an answer are given up on
+		for(final SimulatedClient client : clients) {
+			client.runner.stopClient();
+		}
+		for(final Thread thread : threads) {
+			thread.join();
+		}
+		return new LoadReport(mode, clientAmount, requests.sum(), errors.sum(),
+				Math.min(System.nanoTime(), end) - measureStart, latency, serviceTime);
+	}
+
+	/**
+	 * @return the interval in nanoseconds between the requests of a single client in open loop
+	 */
+	private long intervalNanos() {
+		return (long) (TimeUnit.SECONDS.toNanos(1) * clientAmount / rate);
+	}
+
+	public LoadMode getMode() {
+		return mode;
+	}
+
+	public void setMode(final LoadMode mode) {
+		this.mode = mode;
+	}
+
+	public double getRate() {
+		return rate;
+	}
+
+	/**
+	 * @param rate the requests per second all clients together send in {@link LoadMode#OPEN_LOOP}
+	 */
+	public void setRate(final double rate) {
+		this.rate = rate;
+	}
+
+	public long getDuration() {
+		return durationMillis;
+	}
+
+	/**
+	 * @param durationMillis the time in milliseconds the load is measured for
+	 */
+	public void setDuration(final long durationMillis) {
+		this.durationMillis = durationMillis;
+	}
+
+	public long getWarmup() {
+		return warmupMillis;
+	}
+
+	/**
+	 * @param warmupMillis the time in milliseconds the load is put on before measuring starts
+	 */
+	public void setWarmup(final long warmupMillis) {
+		this.warmupMillis = warmupMillis;
+	}
+
+	public W getRequest() {
+		return request;
+	}
+
+	/**
+	 * @param request the request every client sends over and over
+	 */
+	public void setRequest(final W request) {
+		this.request = request;
+	}
+
+	/**
+	 * a single simulated client and its loop
+	 */
+	private final class SimulatedClient implements Runnable {
+
+		private final int index;
+		private final MultipleGenericClientRunner<W, R> runner;
+		private long firstDue;
+		private long measureStart;
+		private long end;
+		private boolean failed;
+
+		SimulatedClient(final int index) {
+			this.index = index;
+			runner = new MultipleGenericClientRunner<W, R>(host, port, writeCodec, readCodec) {
+				@Override
+				protected void handleErrors(final Exception ex) {
+					failed = true;
+				}
+			};
+		}
+
+		/**
+		 * @param start the point in time the load starts at
+		 * @param measureStart the point in time the warm up ends at
+		 * @param end the point in time the load ends at
+		 */
+		void schedule(final long start, final long measureStart, final long end) {
+			//in open loop, the clients take turns so the requests are spread evenly
+			firstDue = start + intervalNanos() * index / clientAmount;
+			this.measureStart = measureStart;
+			this.end = end;
+		}
+
+		@Override
+		public void run() {
+			final long interval = intervalNanos();
+			long due = firstDue;
+			while(running) {
+				final long now = System.nanoTime();
+				if(mode == LoadMode.OPEN_LOOP) {
+					if(due >= end) {
+						return;
+					}
+					if(due > now) {
+						LockSupport.parkNanos(due - now);
+						continue;
+					}
+				} else {
+					if(now >= end) {
+						return;
+					}
+					due = now;
+				}
+				exchange(due);
+				due += interval;
+			}
+		}
+
+		/**
+		 * sends one request and waits for its answer
+		 * @param due the point in time the request was due
+		 */
+		private void exchange(final long due) {
+			failed = false;
+			if(!runner.isSessionOpen()) {
+				runner.openSession();
+			}
+			final long sent = System.nanoTime();
+			if(!failed) {
+				runner.setDataToWrite(request);
+				runner.runWriteFirst();
+				runner.getReadData();
+			}
+			final long answered = System.nanoTime();
+			if(failed && !runner.isSessionOpen()) {
+				//the server is not reachable, so the next request would fail right away as well
+				LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(LoadValues.ERROR_BACKOFF));
+			}
+			if(!running || due < measureStart) {
+				return;
+			}
+			if(failed) {
+				errors.increment();
+				return;
+			}
+			requests.increment();
+			latency.record(answered - due);
+			serviceTime.record(answered - sent);
+		}
+	}
+}
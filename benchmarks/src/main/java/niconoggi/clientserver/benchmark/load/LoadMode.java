@@ -0,0 +1,22 @@
+package niconoggi.clientserver.benchmark.load;
+
+/**
+ * How a {@link LoadGenerator} decides when its clients send the next request.
+ * @author niconoggi
+ *
+ */
+public enum LoadMode {
+
+	/**
+	 * every client sends its next request as soon as the answer to the last
+	 * one arrived, so the concurrency is fixed and the rate follows the server
+	 */
+	CLOSED_LOOP,
+
+	/**
+	 * the clients send at a fixed rate, no matter how fast the server answers.
+	 * Latencies are measured from the point in time a request was due, so a
+	 * server falling behind shows in the latencies instead of lowering the rate
+	 */
+	OPEN_LOOP
+}
@@ -0,0 +1,108 @@
+package niconoggi.clientserver.benchmark.load;
+
+import java.util.concurrent.TimeUnit;
+
+import niconoggi.clientserver.metrics.LatencyHistogram;
+
+/**
+ * The result of a run of a {@link LoadGenerator}. Only requests started
+ * after the warm up count.
+ * <p>
+ * The latency is the time from the point in time a request was due to its
+ * answer. In {@link LoadMode#CLOSED_LOOP} a request is due when it is sent,
+ * so latency and service time are the same. In {@link LoadMode#OPEN_LOOP}
+ * a request waiting for its client to be free adds that wait to its latency,
+ * which corrects the coordinated omission the service time suffers from.
+ * @author niconoggi
+ *
+ */
+public class LoadReport {
+
+	private static final double[] PERCENTILES = {50, 90, 99, 99.9, 99.99};
+
+	private final LoadMode mode;
+	private final int clientAmount;
+	private final long requests;
+	private final long errors;
+	private final long elapsedNanos;
+	private final LatencyHistogram latency;
+	private final LatencyHistogram serviceTime;
+
+	LoadReport(final LoadMode mode, final int clientAmount, final long requests, final long errors,
+			final long elapsedNanos, final LatencyHistogram latency, final LatencyHistogram serviceTime) {
+		this.mode = mode;
+		this.clientAmount = clientAmount;
+		this.requests = requests;
+		this.errors = errors;
+		this.elapsedNanos = elapsedNanos;
+		this.latency = latency;
+		this.serviceTime = serviceTime;
+	}
+
+	public LoadMode getMode() {
+		return mode;
+	}
+
+	public int getClientAmount() {
+		return clientAmount;
+	}
+
+	/**
+	 * @return the amount of answered requests
+	 */
+	public long getRequests() {
+		return requests;
+	}
+
+	/**
+	 * @return the amount of requests that failed
+	 */
+	public long getErrors() {
+		return errors;
+	}
+
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	/**
+	 * @return the answered requests per second
+	 */
+	public double getThroughput() {
+		return elapsedNanos == 0 ? 0 : requests * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+	}
+
+	/**
+	 * @return the latencies from the point in time the requests were due
+	 */
+	public LatencyHistogram getLatency() {
+		return latency;
+	}
+
+	/**
+	 * @return the latencies from the point in time the requests were sent
+	 */
+	public LatencyHistogram getServiceTime() {
+		return serviceTime;
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder builder = new StringBuilder();
+		builder.append(mode).append(" with ").append(clientAmount).append(" clients over ")
+				.append(TimeUnit.NANOSECONDS.toMillis(elapsedNanos)).append("ms\n");
+		builder.append(String.format("requests = %d, errors = %d, throughput = %.1f/s%n", requests, errors, getThroughput()));
+		appendLatencies(builder, "latency", latency);
+		appendLatencies(builder, "service time", serviceTime);
+		return builder.toString();
+	}
+
+	private static void appendLatencies(final StringBuilder builder, final String name, final LatencyHistogram histogram) {
+		builder.append(String.format("%-12s: mean = %.1fus", name, histogram.getMean() / 1000));
+		for(final double percentile : PERCENTILES) {
+			builder.append(String.format(", p%s = %.1fus", percentile % 1 == 0 ? String.valueOf((int) percentile) : String.valueOf(percentile),
+					histogram.getPercentile(percentile) / 1000.0));
+		}
+		builder.append(String.format(", max = %.1fus%n", histogram.getMax() / 1000.0));
+	}
+}
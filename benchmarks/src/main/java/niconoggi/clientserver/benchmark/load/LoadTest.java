@@ -0,0 +1,126 @@
+package niconoggi.clientserver.benchmark.load;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import niconoggi.clientserver.base.SerializableArrayList;
+import niconoggi.clientserver.codec.StringCodec;
+import niconoggi.clientserver.runner.serverrunner.GenericMultiClientServerRunner;
+import niconoggi.clientserver.runner.serverrunner.VirtualThreadServerRunner;
+
+/**
+ * Runs a {@link LoadGenerator} from the command line, sending strings of the
+ * given payload size. Options are given as {@code --name value}:
+ * <ul>
+ * <li>{@code --host}, {@code --port}: the server, localhost:47400 by default</li>
+ * <li>{@code --clients}: the amount of simulated clients, 16 by default</li>
+ * <li>{@code --mode}: {@code closed} or {@code open}, closed by default</li>
+ * <li>{@code --rate}: the requests per second in open loop</li>
+ * <li>{@code --duration}, {@code --warmup}: in seconds</li>
+ * <li>{@code --payload}: the size of a request in bytes, 64 by default</li>
+ * <li>{@code --server}: the server started on the loopback before, {@code rounds} for a
+ * {@link GenericMultiClientServerRunner} answering all clients at once per round,
+ * {@code echo} for a {@link VirtualThreadServerRunner} answering every client on its own
+ * or {@code none} to use a running server. rounds by default</li>
+ * </ul>
+ * For example, running 64 clients at 20000 requests per second against the echo server:
+ * <pre>
+ * java -cp benchmarks.jar niconoggi.clientserver.benchmark.load.LoadTest --server echo --clients 64 --mode open --rate 20000
+ * </pre>
+ * @author niconoggi
+ *
+ */
+public class LoadTest {
+
+	private LoadTest() {}
+
+	public static void main(final String[] args) throws InterruptedException {
+		final Map<String, String> options = parse(args);
+		final String host = options.getOrDefault("host", "localhost");
+		final int port = Integer.parseInt(options.getOrDefault("port", "47400"));
+		final int clients = Integer.parseInt(options.getOrDefault("clients", "16"));
+		final int payload = Integer.parseInt(options.getOrDefault("payload", "64"));
+		final String server = options.getOrDefault("server", "rounds");
+
+		final LoadGenerator<String, String> generator = new LoadGenerator<String, String>(host, port, clients, new StringCodec(), new StringCodec());
+		generator.setMode("open".equals(options.get("mode")) ? LoadMode.OPEN_LOOP : LoadMode.CLOSED_LOOP);
+		generator.setRate(Double.parseDouble(options.getOrDefault("rate", String.valueOf(LoadValues.DEFAULT_RATE))));
+		generator.setDuration(seconds(options.get("duration"), LoadValues.DEFAULT_DURATION));
+		generator.setWarmup(seconds(options.get("warmup"), LoadValues.DEFAULT_WARMUP));
+		generator.setRequest("x".repeat(payload));
+
+		final Runnable stop;
+		switch (server) {
+		case "rounds":
+			stop = startRoundsServer(port, clients, "x".repeat(payload));
+			break;
+		case "echo":
+			stop = startEchoServer(port);
+			break;
+		case "none":
+			stop = () -> {};
+			break;
+		default:
+			throw new IllegalArgumentException("unknown server " + server + ", use rounds, echo or none");
+		}
+		try {
+			System.out.print(generator.run());
+		} finally {
+			stop.run();
+		}
+	}
+
+	/**
+	 * starts a server reading one request of every client and answering all of them at once
+	 * @return stops the server
+	 */
+	private static Runnable startRoundsServer(final int port, final int clients, final String answer) {
+		final GenericMultiClientServerRunner<String, SerializableArrayList<String>> runner =
+				new GenericMultiClientServerRunner<String, SerializableArrayList<String>>(port, clients, new StringCodec()) {
+			@Override
+			protected void handleErrors(final Exception ex) {
+				//clients leaving at the end of the run end the session
+			}
+		};
+		runner.setDataToWrite(answer);
+		runner.startServer();
+		final Thread thread = new Thread(() -> {
+			runner.openSession();
+			while(runner.isSessionOpen()) {
+				runner.runReadFirst();
+			}
+		}, "load-test-server");
+		thread.setDaemon(true);
+		thread.start();
+		return runner::stopServer;
+	}
+
+	/**
+	 * starts a server answering every request with the request itself, each client on a thread of its own
+	 * @return stops the server
+	 */
+	private static Runnable startEchoServer(final int port) {
+		final VirtualThreadServerRunner<String, String> runner =
+				new VirtualThreadServerRunner<String, String>(port, request -> request, new StringCodec(), new StringCodec());
+		runner.startServer();
+		final Thread thread = new Thread(runner::runReadFirst, "load-test-server");
+		thread.setDaemon(true);
+		thread.start();
+		return runner::stopServer;
+	}
+
+	private static long seconds(final String value, final long defaultMillis) {
+		return value == null ? defaultMillis : (long) (Double.parseDouble(value) * 1000);
+	}
+
+	private static Map<String, String> parse(final String[] args) {
+		final Map<String, String> options = new HashMap<String, String>();
+		for(int index = 0; index + 1 < args.length; index += 2) {
+			if(!args[index].startsWith("--")) {
+				throw new IllegalArgumentException("expected an option like --clients, got " + args[index]);
+			}
+			options.put(args[index].substring(2), args[index + 1]);
+		}
+		return options;
+	}
+}
@@ -0,0 +1,22 @@
+package niconoggi.clientserver.benchmark.load;
+
+/**
+ * Values the {@link LoadGenerator} uses as default.
+ * @author niconoggi
+ *
+ */
+public class LoadValues {
+
+	/** the default requests per second in open loop */
+	public static final double DEFAULT_RATE = 1000;
+	/** the default time in milliseconds the load is measured for */
+	public static final long DEFAULT_DURATION = 10_000;
+	/** the default time in milliseconds the load is put on before measuring */
+	public static final long DEFAULT_WARMUP = 2_000;
+	/** the time in milliseconds the clients get to finish their last exchange */
+	public static final long STOP_GRACE_PERIOD = 2_000;
+	/** the time in milliseconds a client waits after it lost its connection */
+	public static final long ERROR_BACKOFF = 10;
+
+	private LoadValues() {}
+}